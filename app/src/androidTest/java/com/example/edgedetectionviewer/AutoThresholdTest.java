@@ -0,0 +1,114 @@
+package com.example.edgedetectionviewer;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the automatic threshold modes follow scene exposure
+ * The same stripe pattern is rendered dark and bright; thresholds derived from it must move with the
+ * exposure, while manual mode keeps reporting the configured values.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AutoThresholdTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    // Enough frames for the smoothed histogram to settle on a new exposure
+    private static final int SETTLE_FRAMES = 40;
+
+    private static final Pattern THRESHOLDS = Pattern.compile("Thresholds: (\\d+)/(\\d+)");
+
+    private long detector;
+
+    @BeforeClass
+    public static void initNative() {
+        assertTrue(EdgeDetectionJNI.isLibraryLoaded());
+    }
+
+    @Before
+    public void createDetector() {
+        detector = EdgeDetectionJNI.create();
+        assertTrue(detector != 0);
+        EdgeDetectionJNI.setDetectorThreadCount(detector, 1);
+    }
+
+    @After
+    public void destroyDetector() {
+        EdgeDetectionJNI.destroy(detector);
+    }
+
+    @Test
+    public void manualMode_reportsConfiguredThresholds() {
+        EdgeDetectionJNI.updateDetectorParameters(detector, 40, 120, 5);
+        detect(createStripes(30, 60));
+
+        assertArrayEquals(new int[]{40, 120}, thresholds());
+    }
+
+    @Test
+    public void medianMode_followsExposure() {
+        assertThresholdsFollowExposure(ThresholdMode.MEDIAN);
+    }
+
+    @Test
+    public void otsuMode_followsExposure() {
+        assertThresholdsFollowExposure(ThresholdMode.OTSU);
+    }
+
+    private void assertThresholdsFollowExposure(ThresholdMode mode) {
+        EdgeDetectionJNI.setDetectorThresholdMode(detector, mode);
+
+        ByteBuffer dark = createStripes(30, 60);
+        for (int i = 0; i < SETTLE_FRAMES; i++) {
+            detect(dark);
+        }
+        int[] darkThresholds = thresholds();
+
+        ByteBuffer bright = createStripes(120, 240);
+        for (int i = 0; i < SETTLE_FRAMES; i++) {
+            detect(bright);
+        }
+        int[] brightThresholds = thresholds();
+
+        assertTrue("low threshold should rise with exposure", brightThresholds[0] > darkThresholds[0]);
+        assertTrue("high threshold should rise with exposure", brightThresholds[1] > darkThresholds[1]);
+        assertTrue(darkThresholds[0] <= darkThresholds[1]);
+        assertTrue(brightThresholds[0] <= brightThresholds[1]);
+    }
+
+    private int[] thresholds() {
+        Matcher matcher = THRESHOLDS.matcher(EdgeDetectionJNI.getDetectorStats(detector));
+        assertTrue(matcher.find());
+        return new int[]{Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))};
+    }
+
+    private void detect(ByteBuffer input) {
+        ByteBuffer output = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4);
+        assertEquals(EdgeDetectionJNI.STATUS_OK,
+                EdgeDetectionJNI.process(detector, input.duplicate(), output, WIDTH, HEIGHT));
+    }
+
+    private static ByteBuffer createStripes(int darkLevel, int brightLevel) {
+        ByteBuffer input = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                byte value = (byte) ((x / 16) % 2 == 0 ? darkLevel : brightLevel);
+                input.put(value).put(value).put(value).put((byte) 255);
+            }
+        }
+        input.flip();
+        return input;
+    }
+}
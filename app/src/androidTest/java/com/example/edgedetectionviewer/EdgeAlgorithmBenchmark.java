@@ -0,0 +1,158 @@
+package com.example.edgedetectionviewer;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * On-device benchmark of every EdgeAlgorithm at standard camera resolutions
+ * Reports ms per frame and output density (share of pixels with any edge response, and mean edge
+ * strength) so the cheapest acceptable detector can be chosen per device class. Results are written
+ * to logcat under this class name
+ */
+@RunWith(AndroidJUnit4.class)
+public class EdgeAlgorithmBenchmark {
+
+    private static final String TAG = "EdgeAlgorithmBenchmark";
+    private static final int WARMUP_ITERATIONS = 10;
+    private static final int ITERATIONS = 60;
+
+    private static final int[][] RESOLUTIONS = {
+            {640, 480},
+            {1280, 720},
+            {1920, 1080}
+    };
+
+    private long detector;
+
+    @BeforeClass
+    public static void initNative() {
+        assertTrue(EdgeDetectionJNI.isLibraryLoaded());
+    }
+
+    @Before
+    public void createDetector() {
+        detector = EdgeDetectionJNI.create();
+        assertTrue(detector != 0);
+    }
+
+    @After
+    public void destroyDetector() {
+        EdgeDetectionJNI.destroy(detector);
+    }
+
+    @Test
+    public void benchmark_allAlgorithms() {
+        for (int[] resolution : RESOLUTIONS) {
+            int width = resolution[0];
+            int height = resolution[1];
+            ByteBuffer input = createScene(width, height);
+            ByteBuffer output = ByteBuffer.allocateDirect(width * height * 4);
+
+            for (EdgeAlgorithm algorithm : EdgeAlgorithm.values()) {
+                EdgeDetectionJNI.setDetectorAlgorithm(detector, algorithm);
+                for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                    EdgeDetectionJNI.process(detector, input, output, width, height);
+                }
+
+                int status = EdgeDetectionJNI.STATUS_OK;
+                long start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    status = EdgeDetectionJNI.process(detector, input, output, width, height);
+                }
+                double frameMs = (System.nanoTime() - start) / 1e6 / ITERATIONS;
+                assertEquals(EdgeDetectionJNI.STATUS_OK, status);
+
+                // Every channel holds the same edge value, so the red channel is enough
+                long edgePixels = 0;
+                long strength = 0;
+                for (int i = 0; i < output.capacity(); i += 4) {
+                    int value = output.get(i) & 0xFF;
+                    if (value != 0) {
+                        edgePixels++;
+                    }
+                    strength += value;
+                }
+                int pixels = width * height;
+
+                Log.i(TAG, String.format("%dx%d %s: %.2f ms, density %.1f%%, mean strength %.1f",
+                        width, height, algorithm, frameMs,
+                        100.0 * edgePixels / pixels, (double) strength / pixels));
+            }
+        }
+    }
+
+    @Test
+    public void switchingAlgorithms_takesEffectOnNextFrame() {
+        int width = 320;
+        int height = 240;
+        ByteBuffer input = createScene(width, height);
+
+        byte[][] results = new byte[EdgeAlgorithm.values().length][];
+        for (EdgeAlgorithm algorithm : EdgeAlgorithm.values()) {
+            results[algorithm.ordinal()] = detect(input, width, height, algorithm);
+        }
+
+        // Each algorithm gives its own output, and switching back reproduces it
+        for (int a = 0; a < results.length; a++) {
+            for (int b = a + 1; b < results.length; b++) {
+                assertFalse(EdgeAlgorithm.values()[a] + " vs " + EdgeAlgorithm.values()[b],
+                        Arrays.equals(results[a], results[b]));
+            }
+        }
+        for (EdgeAlgorithm algorithm : EdgeAlgorithm.values()) {
+            assertArrayEquals(algorithm.toString(), results[algorithm.ordinal()],
+                    detect(input, width, height, algorithm));
+        }
+    }
+
+    private byte[] detect(ByteBuffer input, int width, int height, EdgeAlgorithm algorithm) {
+        EdgeDetectionJNI.setDetectorAlgorithm(detector, algorithm);
+        ByteBuffer output = ByteBuffer.allocateDirect(width * height * 4);
+
+        assertEquals(EdgeDetectionJNI.STATUS_OK,
+                EdgeDetectionJNI.process(detector, input.duplicate(), output, width, height));
+
+        byte[] result = new byte[output.capacity()];
+        output.get(result);
+        return result;
+    }
+
+    /**
+     * Smooth shading with a few hard-edged shapes and mild sensor-like noise
+     */
+    private static ByteBuffer createScene(int width, int height) {
+        Random random = new Random(11);
+        ByteBuffer input = ByteBuffer.allocateDirect(width * height * 4);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int level = 60 + 80 * x / width + 40 * y / height;
+                if ((x / (width / 8) + y / (height / 6)) % 3 == 0) {
+                    level += 70;
+                }
+                int dx = x - width / 2;
+                int dy = y - height / 2;
+                if (dx * dx + dy * dy < height * height / 9) {
+                    level = 255 - level;
+                }
+                level += random.nextInt(9) - 4;
+                byte value = (byte) Math.max(0, Math.min(255, level));
+                input.put(value).put(value).put(value).put((byte) 255);
+            }
+        }
+        input.flip();
+        return input;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.edgedetectionviewer;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that detector handles are independent of each other
+ * Two detectors with different parameters and thread counts run on separate threads at the same time;
+ * each must produce exactly what it produces when running alone. Parameter updates racing a frame
+ * must leave that frame processed with one whole parameter set.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EdgeDetectorHandleTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int ITERATIONS = 50;
+
+    private long first;
+    private long second;
+
+    @BeforeClass
+    public static void initNative() {
+        assertTrue(EdgeDetectionJNI.isLibraryLoaded());
+    }
+
+    @Before
+    public void createDetectors() {
+        first = EdgeDetectionJNI.create();
+        second = EdgeDetectionJNI.create();
+        assertTrue(first != 0);
+        assertTrue(second != 0);
+
+        EdgeDetectionJNI.updateDetectorParameters(first, 50, 150, 3);
+        EdgeDetectionJNI.setDetectorThreadCount(first, 1);
+        EdgeDetectionJNI.updateDetectorParameters(second, 20, 60, 7);
+        EdgeDetectionJNI.setDetectorThreadCount(second, 4);
+    }
+
+    @After
+    public void destroyDetectors() {
+        EdgeDetectionJNI.destroy(first);
+        EdgeDetectionJNI.destroy(second);
+    }
+
+    @Test
+    public void settings_arePerDetector() {
+        assertEquals(1, EdgeDetectionJNI.getDetectorThreadCount(first));
+        assertEquals(4, EdgeDetectionJNI.getDetectorThreadCount(second));
+    }
+
+    @Test
+    public void concurrentDetectors_matchSerialResults() throws Exception {
+        ByteBuffer input = TestFrames.noise(WIDTH * HEIGHT * 4, 42);
+        byte[] firstExpected = detect(first, input);
+        byte[] secondExpected = detect(second, input);
+        assertFalse("parameters should change the result", Arrays.equals(firstExpected, secondExpected));
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread firstThread = startDetecting(first, input, firstExpected, failure);
+        Thread secondThread = startDetecting(second, input, secondExpected, failure);
+        firstThread.join();
+        secondThread.join();
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    @Test
+    public void parameterUpdatesDuringProcessing_neverTearAFrame() throws Exception {
+        // Every frame must come out exactly as one complete parameter set would produce it
+        ByteBuffer input = TestFrames.noise(WIDTH * HEIGHT * 4, 42);
+        EdgeDetectionJNI.updateDetectorParameters(first, 20, 60, 7);
+        byte[] alternateExpected = detect(first, input);
+        EdgeDetectionJNI.updateDetectorParameters(first, 50, 150, 3);
+        byte[] defaultExpected = detect(first, input);
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ByteBuffer view = input.duplicate();
+        Thread worker = new Thread(() -> {
+            try {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    byte[] actual = detect(first, view);
+                    assertTrue("iteration " + i, Arrays.equals(defaultExpected, actual)
+                            || Arrays.equals(alternateExpected, actual));
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        });
+        worker.start();
+
+        for (int i = 0; worker.isAlive(); i++) {
+            if (i % 2 == 0) {
+                EdgeDetectionJNI.updateDetectorParameters(first, 20, 60, 7);
+            } else {
+                EdgeDetectionJNI.updateDetectorParameters(first, 50, 150, 3);
+            }
+        }
+        worker.join();
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    @Test
+    public void stats_arePerDetector() {
+        ByteBuffer input = TestFrames.noise(WIDTH * HEIGHT * 4, 42);
+        detect(first, input);
+        detect(first, input);
+
+        assertTrue(EdgeDetectionJNI.getDetectorStats(first).startsWith("Frames: 2,"));
+        assertTrue(EdgeDetectionJNI.getDetectorStats(second).startsWith("Frames: 0,"));
+    }
+
+    @Test
+    public void nullHandle_isRejected() {
+        ByteBuffer input = TestFrames.noise(WIDTH * HEIGHT * 4, 42);
+        ByteBuffer output = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4);
+
+        assertEquals(EdgeDetectionJNI.STATUS_INVALID_ARGUMENT,
+                EdgeDetectionJNI.process(0, input, output, WIDTH, HEIGHT));
+        assertEquals(0, EdgeDetectionJNI.getDetectorThreadCount(0));
+        EdgeDetectionJNI.destroy(0);
+    }
+
+    private static Thread startDetecting(long handle, ByteBuffer input, byte[] expected,
+                                         AtomicReference<Throwable> failure) {
+        // Each thread reads through its own view so buffer positions are not shared
+        ByteBuffer view = input.duplicate();
+        Thread thread = new Thread(() -> {
+            try {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    assertArrayEquals("iteration " + i, expected, detect(handle, view));
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static byte[] detect(long handle, ByteBuffer input) {
+        ByteBuffer output = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4);
+
+        assertEquals(EdgeDetectionJNI.STATUS_OK,
+                EdgeDetectionJNI.process(handle, input, output, WIDTH, HEIGHT));
+
+        byte[] result = new byte[output.capacity()];
+        output.get(result);
+        return result;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.edgedetectionviewer;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the one-byte-per-pixel and bit-packed edge outputs against the RGBA output
+ * Every RGBA channel holds the edge value, so the single-channel result must equal any one of them,
+ * and the unpacked mask must equal that value thresholded at EdgeMask.EDGE_THRESHOLD.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EdgeOutputFormatTest {
+
+    // Odd width, so rows are not a multiple of four bytes
+    private static final int WIDTH = 333;
+    private static final int HEIGHT = 97;
+
+    private long detector;
+
+    @BeforeClass
+    public static void initNative() {
+        assertTrue(EdgeDetectionJNI.isLibraryLoaded());
+    }
+
+    @Before
+    public void createDetector() {
+        detector = EdgeDetectionJNI.create();
+        assertTrue(detector != 0);
+    }
+
+    @After
+    public void destroyDetector() {
+        EdgeDetectionJNI.destroy(detector);
+    }
+
+    @Test
+    public void singleChannelRgbaInput_matchesRgbaOutput() {
+        ByteBuffer input = TestFrames.noise(WIDTH * HEIGHT * 4, 42);
+
+        for (EdgeAlgorithm algorithm : EdgeAlgorithm.values()) {
+            EdgeDetectionJNI.setDetectorAlgorithm(detector, algorithm);
+            ByteBuffer rgba = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4);
+            ByteBuffer edges = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+
+            assertEquals(EdgeDetectionJNI.STATUS_OK,
+                    EdgeDetectionJNI.process(detector, input.duplicate(), rgba, WIDTH, HEIGHT));
+            assertEquals(EdgeDetectionJNI.STATUS_OK,
+                    EdgeDetectionJNI.processEdges(detector, input.duplicate(), edges, WIDTH, HEIGHT));
+
+            assertArrayEquals(algorithm.toString(), firstChannel(rgba), toArray(edges));
+        }
+    }
+
+    @Test
+    public void singleChannelLumaInput_matchesRgbaOutput() {
+        ByteBuffer luma = TestFrames.noise(WIDTH * HEIGHT, 42);
+        ByteBuffer rgba = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4);
+        ByteBuffer edges = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+
+        assertEquals(EdgeDetectionJNI.STATUS_OK,
+                EdgeDetectionJNI.processLuma(detector, luma.duplicate(), WIDTH, WIDTH, HEIGHT, rgba));
+        assertEquals(EdgeDetectionJNI.STATUS_OK,
+                EdgeDetectionJNI.processLumaEdges(detector, luma.duplicate(), WIDTH, WIDTH, HEIGHT, edges));
+
+        assertArrayEquals(firstChannel(rgba), toArray(edges));
+    }
+
+    @Test
+    public void singleChannelOutput_needsOneBytePerPixel() {
+        ByteBuffer luma = TestFrames.noise(WIDTH * HEIGHT, 42);
+
+        assertEquals(EdgeDetectionJNI.STATUS_BUFFER_TOO_SMALL, EdgeDetectionJNI.processLumaEdges(
+                detector, luma, WIDTH, WIDTH, HEIGHT, ByteBuffer.allocateDirect(WIDTH * HEIGHT - 1)));
+        assertEquals(EdgeDetectionJNI.STATUS_INVALID_ARGUMENT, EdgeDetectionJNI.processLumaEdges(
+                0, luma, WIDTH, WIDTH, HEIGHT, ByteBuffer.allocateDirect(WIDTH * HEIGHT)));
+    }
+
+    @Test
+    public void packedMask_matchesThresholdedEdges() {
+        ByteBuffer input = TestFrames.noise(WIDTH * HEIGHT * 4, 42);
+
+        for (EdgeAlgorithm algorithm : EdgeAlgorithm.values()) {
+            EdgeDetectionJNI.setDetectorAlgorithm(detector, algorithm);
+            ByteBuffer edges = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+            ByteBuffer mask = ByteBuffer.allocateDirect(EdgeMask.byteCount(WIDTH, HEIGHT));
+
+            assertEquals(EdgeDetectionJNI.STATUS_OK,
+                    EdgeDetectionJNI.processEdges(detector, input.duplicate(), edges, WIDTH, HEIGHT));
+            assertEquals(EdgeDetectionJNI.STATUS_OK,
+                    EdgeDetectionJNI.processMask(detector, input.duplicate(), mask, WIDTH, HEIGHT));
+
+            byte[] expected = toArray(edges);
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = (expected[i] & 0xFF) >= EdgeMask.EDGE_THRESHOLD ? (byte) 255 : 0;
+            }
+            byte[] unpacked = new byte[WIDTH * HEIGHT];
+            EdgeMask.unpack(mask, WIDTH, HEIGHT, unpacked);
+
+            assertArrayEquals(algorithm.toString(), expected, unpacked);
+        }
+    }
+
+    @Test
+    public void packedLumaMask_matchesThresholdedEdges() {
+        ByteBuffer luma = TestFrames.noise(WIDTH * HEIGHT, 42);
+        ByteBuffer edges = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+        ByteBuffer mask = ByteBuffer.allocateDirect(EdgeMask.byteCount(WIDTH, HEIGHT));
+
+        assertEquals(EdgeDetectionJNI.STATUS_OK,
+                EdgeDetectionJNI.processLumaEdges(detector, luma.duplicate(), WIDTH, WIDTH, HEIGHT, edges));
+        assertEquals(EdgeDetectionJNI.STATUS_OK,
+                EdgeDetectionJNI.processLumaMask(detector, luma.duplicate(), WIDTH, WIDTH, HEIGHT, mask));
+
+        // Native word-wide packing must give the same bytes as the Java reference packer
+        ByteBuffer expected = ByteBuffer.allocate(EdgeMask.byteCount(WIDTH, HEIGHT));
+        EdgeMask.pack(toArray(edges), WIDTH, HEIGHT, expected);
+
+        assertArrayEquals(expected.array(), toArray(mask));
+    }
+
+    @Test
+    public void packedMask_needsWholeWordRows() {
+        ByteBuffer luma = TestFrames.noise(WIDTH * HEIGHT, 42);
+
+        assertEquals(EdgeDetectionJNI.STATUS_BUFFER_TOO_SMALL, EdgeDetectionJNI.processLumaMask(
+                detector, luma, WIDTH, WIDTH, HEIGHT,
+                ByteBuffer.allocateDirect(EdgeMask.byteCount(WIDTH, HEIGHT) - 1)));
+    }
+
+    private static byte[] firstChannel(ByteBuffer rgba) {
+        byte[] values = new byte[rgba.capacity() / 4];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = rgba.get(i * 4);
+        }
+        return values;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] values = new byte[buffer.capacity()];
+        buffer.get(values);
+        return values;
+    }
+}
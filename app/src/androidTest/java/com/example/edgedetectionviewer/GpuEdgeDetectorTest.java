@@ -0,0 +1,253 @@
+package com.example.edgedetectionviewer;
+
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLSurface;
+import android.opengl.GLES20;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the shader edge detector with the native CPU detector on the same frames
+ * Runs on an offscreen EGL context, so it works on the emulator's software GLES (SwiftShader) as well
+ * as on devices. The paths differ in border handling, float rounding and how far hysteresis reaches,
+ * so edges are matched within one pixel instead of exactly.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GpuEdgeDetectorTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    // Share of one path's edge pixels that must have an edge from the other path within one pixel
+    private static final double MIN_AGREEMENT = 0.9;
+
+    // Pixels near the border are skipped, where clamping and reflection disagree
+    private static final int BORDER = 4;
+
+    private EGLDisplay display;
+    private EGLContext context;
+    private EGLSurface surface;
+    private ShaderLibrary shaderLibrary;
+    private GpuEdgeDetector gpuDetector;
+    private long cpuDetector;
+
+    @BeforeClass
+    public static void initNative() {
+        assertTrue(EdgeDetectionJNI.isLibraryLoaded());
+    }
+
+    @Before
+    public void createContext() {
+        display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        int[] version = new int[2];
+        assertTrue(EGL14.eglInitialize(display, version, 0, version, 1));
+
+        int[] configAttributes = {
+                EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+                EGL14.EGL_SURFACE_TYPE, EGL14.EGL_PBUFFER_BIT,
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_ALPHA_SIZE, 8,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] configCount = new int[1];
+        assertTrue(EGL14.eglChooseConfig(display, configAttributes, 0, configs, 0, 1, configCount, 0));
+        assertTrue(configCount[0] > 0);
+
+        context = EGL14.eglCreateContext(display, configs[0], EGL14.EGL_NO_CONTEXT,
+                new int[]{EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE}, 0);
+        surface = EGL14.eglCreatePbufferSurface(display, configs[0],
+                new int[]{EGL14.EGL_WIDTH, 1, EGL14.EGL_HEIGHT, 1, EGL14.EGL_NONE}, 0);
+        assertTrue(EGL14.eglMakeCurrent(display, surface, surface, context));
+
+        shaderLibrary = new ShaderLibrary(InstrumentationRegistry.getInstrumentation().getTargetContext());
+        shaderLibrary.onContextCreated();
+        gpuDetector = new GpuEdgeDetector();
+        assertTrue(gpuDetector.create(shaderLibrary));
+
+        cpuDetector = EdgeDetectionJNI.create();
+        assertTrue(cpuDetector != 0);
+    }
+
+    @After
+    public void destroyContext() {
+        EdgeDetectionJNI.destroy(cpuDetector);
+        gpuDetector.release();
+        shaderLibrary.release();
+        EGL14.eglMakeCurrent(display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+        EGL14.eglDestroySurface(display, surface);
+        EGL14.eglDestroyContext(display, context);
+        EGL14.eglTerminate(display);
+    }
+
+    @Test
+    public void flatFrame_hasNoEdges() {
+        ByteBuffer input = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4);
+        while (input.hasRemaining()) {
+            input.put((byte) 120);
+        }
+        input.flip();
+
+        byte[] edges = detectOnGpu(input);
+        for (byte edge : edges) {
+            assertEquals(0, edge);
+        }
+    }
+
+    @Test
+    public void shapes_matchCpuWithinOnePixel() {
+        for (int kernelSize : new int[]{3, 5, 7}) {
+            gpuDetector.setThresholds(50.0f, 150.0f);
+            gpuDetector.setKernelSize(kernelSize);
+            EdgeDetectionJNI.updateDetectorParameters(cpuDetector, 50.0, 150.0, kernelSize);
+
+            ByteBuffer input = createShapes();
+            byte[] gpuEdges = detectOnGpu(input);
+            byte[] cpuEdges = detectOnCpu(input);
+
+            assertTrue("CPU found no edges", countEdges(cpuEdges) > 0);
+            assertTrue("Kernel " + kernelSize + ": GPU edges not found by CPU",
+                    agreement(gpuEdges, cpuEdges) >= MIN_AGREEMENT);
+            assertTrue("Kernel " + kernelSize + ": CPU edges not found by GPU",
+                    agreement(cpuEdges, gpuEdges) >= MIN_AGREEMENT);
+        }
+    }
+
+    @Test
+    public void higherThresholds_giveFewerEdges() {
+        ByteBuffer input = createShapes();
+
+        gpuDetector.setThresholds(20.0f, 60.0f);
+        int lowThresholdEdges = countEdges(detectOnGpu(input));
+        gpuDetector.setThresholds(200.0f, 600.0f);
+        int highThresholdEdges = countEdges(detectOnGpu(input));
+
+        assertTrue(highThresholdEdges < lowThresholdEdges);
+    }
+
+    @Test
+    public void canRun_onlyManualCannyWithSupportedKernels() {
+        assertTrue(GpuEdgeDetector.canRun(ThresholdMode.MANUAL, EdgeAlgorithm.CANNY, 3));
+        assertTrue(GpuEdgeDetector.canRun(ThresholdMode.MANUAL, EdgeAlgorithm.CANNY,
+                GpuEdgeDetector.MAX_KERNEL_SIZE));
+
+        assertFalse(GpuEdgeDetector.canRun(ThresholdMode.MEDIAN, EdgeAlgorithm.CANNY, 3));
+        assertFalse(GpuEdgeDetector.canRun(ThresholdMode.OTSU, EdgeAlgorithm.CANNY, 3));
+        assertFalse(GpuEdgeDetector.canRun(ThresholdMode.MANUAL, EdgeAlgorithm.SOBEL, 3));
+        assertFalse(GpuEdgeDetector.canRun(ThresholdMode.MANUAL, EdgeAlgorithm.CANNY, 1));
+        assertFalse(GpuEdgeDetector.canRun(ThresholdMode.MANUAL, EdgeAlgorithm.CANNY, 4));
+        assertFalse(GpuEdgeDetector.canRun(ThresholdMode.MANUAL, EdgeAlgorithm.CANNY,
+                GpuEdgeDetector.MAX_KERNEL_SIZE + 2));
+    }
+
+    private byte[] detectOnGpu(ByteBuffer input) {
+        int[] textures = new int[1];
+        GLES20.glGenTextures(1, textures, 0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textures[0]);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        input.position(0);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, WIDTH, HEIGHT, 0, GLES20.GL_RGBA,
+                GLES20.GL_UNSIGNED_BYTE, input);
+
+        gpuDetector.process(textures[0], WIDTH, HEIGHT);
+        ByteBuffer output = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+        gpuDetector.readEdges(output);
+        GLES20.glDeleteTextures(1, textures, 0);
+
+        byte[] edges = new byte[WIDTH * HEIGHT];
+        output.get(edges);
+        return edges;
+    }
+
+    private byte[] detectOnCpu(ByteBuffer input) {
+        ByteBuffer output = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+        input.position(0);
+        assertEquals(EdgeDetectionJNI.STATUS_OK,
+                EdgeDetectionJNI.processEdges(cpuDetector, input, output, WIDTH, HEIGHT));
+
+        byte[] edges = new byte[WIDTH * HEIGHT];
+        output.get(edges);
+        return edges;
+    }
+
+    /**
+     * Share of edge pixels in one map that have an edge in the other within one pixel
+     */
+    private static double agreement(byte[] edges, byte[] reference) {
+        int total = 0;
+        int matched = 0;
+        for (int y = BORDER; y < HEIGHT - BORDER; y++) {
+            for (int x = BORDER; x < WIDTH - BORDER; x++) {
+                if (edges[y * WIDTH + x] == 0) {
+                    continue;
+                }
+                total++;
+                search:
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        if (reference[(y + dy) * WIDTH + x + dx] != 0) {
+                            matched++;
+                            break search;
+                        }
+                    }
+                }
+            }
+        }
+        return total == 0 ? 1.0 : (double) matched / total;
+    }
+
+    private static int countEdges(byte[] edges) {
+        int count = 0;
+        for (byte edge : edges) {
+            if (edge != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gray background with a bright disc, a dark rectangle and a mid-gray triangle
+     */
+    private static ByteBuffer createShapes() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int value = 90;
+                int dx = x - 90;
+                int dy = y - 110;
+                if (dx * dx + dy * dy < 55 * 55) {
+                    value = 220;
+                }
+                if (x > 170 && x < 280 && y > 40 && y < 120) {
+                    value = 20;
+                }
+                if (y > 150 && y < 220 && x > 170 && x - 170 < (y - 150) * 1.5) {
+                    value = 160;
+                }
+                buffer.put((byte) value).put((byte) value).put((byte) value).put((byte) 255);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
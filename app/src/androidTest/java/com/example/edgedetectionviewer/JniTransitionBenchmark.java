@@ -0,0 +1,131 @@
+package com.example.edgedetectionviewer;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * On-device microbenchmark of the JNI call cost of processFrame (new array, pin, copy back)
+ * against processFrameInto (caller-supplied direct buffers)
+ * The tiny frame is dominated by the transition itself; the VGA frame shows the share left
+ * once real edge detection work is included. Results are written to logcat under this class name
+ */
+@RunWith(AndroidJUnit4.class)
+public class JniTransitionBenchmark {
+
+    private static final String TAG = "JniTransitionBenchmark";
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 200;
+
+    private static final int[][] RESOLUTIONS = {
+            {8, 8},
+            {640, 480}
+    };
+
+    @BeforeClass
+    public static void initNative() {
+        assertTrue(EdgeDetectionJNI.isLibraryLoaded());
+    }
+
+    @Test
+    public void benchmark_processFrameVsProcessFrameInto() {
+        for (int[] resolution : RESOLUTIONS) {
+            int width = resolution[0];
+            int height = resolution[1];
+            int frameBytes = width * height * 4;
+
+            byte[] inputArray = new byte[frameBytes];
+            new Random(42).nextBytes(inputArray);
+
+            ByteBuffer input = ByteBuffer.allocateDirect(frameBytes);
+            input.put(inputArray).flip();
+            ByteBuffer output = ByteBuffer.allocateDirect(frameBytes);
+
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                EdgeDetectionJNI.processFrame(inputArray, width, height);
+                EdgeDetectionJNI.processFrameInto(input, output, width, height);
+            }
+
+            byte[] legacyResult = null;
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                legacyResult = EdgeDetectionJNI.processFrame(inputArray, width, height);
+            }
+            double legacyUs = (System.nanoTime() - start) / 1e3 / ITERATIONS;
+
+            int status = EdgeDetectionJNI.STATUS_OK;
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                status = EdgeDetectionJNI.processFrameInto(input, output, width, height);
+            }
+            double intoUs = (System.nanoTime() - start) / 1e3 / ITERATIONS;
+
+            Log.i(TAG, String.format("%dx%d: processFrame %.1f us, processFrameInto %.1f us (%.2fx)",
+                    width, height, legacyUs, intoUs, legacyUs / intoUs));
+
+            assertEquals(EdgeDetectionJNI.STATUS_OK, status);
+            assertNotNull(legacyResult);
+            byte[] intoResult = new byte[frameBytes];
+            output.get(intoResult);
+            assertArrayEquals(legacyResult, intoResult);
+        }
+    }
+
+    @Test
+    public void processFrameInto_rejectsHeapAndUndersizedBuffers() {
+        int width = 16;
+        int height = 16;
+        ByteBuffer input = ByteBuffer.allocateDirect(width * height * 4);
+
+        assertEquals(EdgeDetectionJNI.STATUS_NOT_DIRECT, EdgeDetectionJNI.processFrameInto(
+                input, ByteBuffer.allocate(width * height * 4), width, height));
+        assertEquals(EdgeDetectionJNI.STATUS_BUFFER_TOO_SMALL, EdgeDetectionJNI.processFrameInto(
+                input, ByteBuffer.allocateDirect(width * height), width, height));
+        assertEquals(EdgeDetectionJNI.STATUS_INVALID_ARGUMENT, EdgeDetectionJNI.processFrameInto(
+                input, null, width, height));
+    }
+
+    @Test
+    public void planeEntryPoints_rejectStridesThatEscapeTheCapacityCheck() {
+        int width = 16;
+        int height = 16;
+        ByteBuffer y = ByteBuffer.allocateDirect(width * height);
+        ByteBuffer u = ByteBuffer.allocateDirect(width * height / 4);
+        ByteBuffer v = ByteBuffer.allocateDirect(width * height / 4);
+        ByteBuffer output = ByteBuffer.allocateDirect(width * height * 4);
+
+        assertEquals(EdgeDetectionJNI.STATUS_OK, EdgeDetectionJNI.processYuvPlanes(
+                y, u, v, width, width / 2, 1, width, height, output));
+
+        // A zero row stride would pass the span check with only width bytes, negative ones with none
+        assertEquals(EdgeDetectionJNI.STATUS_INVALID_ARGUMENT, EdgeDetectionJNI.processLumaPlane(
+                ByteBuffer.allocateDirect(width), 0, width, height, output));
+        assertEquals(EdgeDetectionJNI.STATUS_INVALID_ARGUMENT, EdgeDetectionJNI.processLumaPlane(
+                y, -width, width, height, output));
+        assertEquals(EdgeDetectionJNI.STATUS_INVALID_ARGUMENT, EdgeDetectionJNI.processYuvPlanes(
+                y, u, v, 0, width / 2, 1, width, height, output));
+        assertEquals(EdgeDetectionJNI.STATUS_INVALID_ARGUMENT, EdgeDetectionJNI.processYuvPlanes(
+                y, u, v, width, -1, 1, width, height, output));
+        assertEquals(EdgeDetectionJNI.STATUS_INVALID_ARGUMENT, EdgeDetectionJNI.processYuvPlanes(
+                y, u, v, width, width / 2, 0, width, height, output));
+        assertEquals(EdgeDetectionJNI.STATUS_INVALID_ARGUMENT, EdgeDetectionJNI.convertYuvPlanes(
+                y, u, v, width, width / 2 - 1, 1, width, height, output));
+        assertEquals(EdgeDetectionJNI.STATUS_INVALID_ARGUMENT, EdgeDetectionJNI.convertYuvPlanes(
+                y, u, v, width, width / 2, 2, width, height, output));
+
+        // Chroma of odd or single-pixel frames is not covered by the width / 2 x height / 2 span
+        assertEquals(EdgeDetectionJNI.STATUS_INVALID_ARGUMENT, EdgeDetectionJNI.processYuvPlanes(
+                y, u, v, 1, 1, 1, 1, 1, output));
+        assertEquals(EdgeDetectionJNI.STATUS_INVALID_ARGUMENT, EdgeDetectionJNI.processYuvPlanes(
+                y, u, v, width, width / 2, 1, width - 1, height, output));
+    }
+}
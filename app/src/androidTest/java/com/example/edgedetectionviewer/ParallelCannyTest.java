@@ -0,0 +1,119 @@
+package com.example.edgedetectionviewer;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks strip-parallel edge detection against the single-threaded cv::Canny path
+ * With one thread the native code runs cvtColor, GaussianBlur and cv::Canny over the whole frame, so
+ * any difference at other thread counts points at halo rows, hysteresis across strip boundaries or
+ * the fused gray + blur + gradient kernel.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ParallelCannyTest {
+
+    private static final int[] THREAD_COUNTS = {2, 3, 4, 8};
+
+    // Odd sizes give strips of unequal height
+    private static final int[][] RESOLUTIONS = {
+            {640, 480},
+            {333, 97},
+            {1280, 720}
+    };
+
+    private int originalThreadCount;
+
+    @BeforeClass
+    public static void initNative() {
+        assertTrue(EdgeDetectionJNI.isLibraryLoaded());
+    }
+
+    @Before
+    public void saveThreadCount() {
+        originalThreadCount = EdgeDetectionJNI.getThreadCount();
+    }
+
+    @After
+    public void restoreThreadCount() {
+        EdgeDetectionJNI.setThreadCount(originalThreadCount);
+    }
+
+    @Test
+    public void setThreadCount_isReported() {
+        EdgeDetectionJNI.setThreadCount(3);
+        assertEquals(3, EdgeDetectionJNI.getThreadCount());
+        EdgeDetectionJNI.setThreadCount(1);
+        assertEquals(1, EdgeDetectionJNI.getThreadCount());
+        EdgeDetectionJNI.setThreadCount(0);
+        assertEquals(Runtime.getRuntime().availableProcessors(), EdgeDetectionJNI.getThreadCount());
+    }
+
+    @Test
+    public void noiseFrames_matchSingleThreaded() {
+        Random random = new Random(42);
+        for (int[] resolution : RESOLUTIONS) {
+            ByteBuffer input = createFrame(resolution[0], resolution[1]);
+            byte[] pixels = new byte[input.capacity()];
+            random.nextBytes(pixels);
+            input.put(pixels).flip();
+
+            assertMatchesSingleThreaded(input, resolution[0], resolution[1]);
+        }
+    }
+
+    @Test
+    public void structuredFrames_matchSingleThreaded() {
+        // Long diagonal edges with weak segments cross many strip boundaries
+        Random random = new Random(7);
+        for (int[] resolution : RESOLUTIONS) {
+            int width = resolution[0];
+            int height = resolution[1];
+            ByteBuffer input = createFrame(width, height);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int level = 128 + (int) (90 * Math.sin(x * 0.05 + y * 0.09)) + random.nextInt(24);
+                    byte value = (byte) Math.max(0, Math.min(255, level));
+                    input.put(value).put(value).put(value).put((byte) 255);
+                }
+            }
+            input.flip();
+
+            assertMatchesSingleThreaded(input, width, height);
+        }
+    }
+
+    private static ByteBuffer createFrame(int width, int height) {
+        return ByteBuffer.allocateDirect(width * height * 4);
+    }
+
+    private static void assertMatchesSingleThreaded(ByteBuffer input, int width, int height) {
+        byte[] expected = detect(input, width, height, 1);
+
+        for (int threadCount : THREAD_COUNTS) {
+            byte[] actual = detect(input, width, height, threadCount);
+            assertArrayEquals(width + "x" + height + " with " + threadCount + " threads", expected, actual);
+        }
+    }
+
+    private static byte[] detect(ByteBuffer input, int width, int height, int threadCount) {
+        EdgeDetectionJNI.setThreadCount(threadCount);
+        ByteBuffer output = ByteBuffer.allocateDirect(width * height * 4);
+
+        assertEquals(EdgeDetectionJNI.STATUS_OK,
+                EdgeDetectionJNI.processFrameInto(input, output, width, height));
+
+        byte[] result = new byte[output.capacity()];
+        output.get(result);
+        return result;
+    }
+}
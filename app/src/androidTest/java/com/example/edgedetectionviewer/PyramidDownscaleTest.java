@@ -0,0 +1,103 @@
+package com.example.edgedetectionviewer;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the native pyramid downscale used to run detection on reduced frames
+ */
+@RunWith(AndroidJUnit4.class)
+public class PyramidDownscaleTest {
+
+    // Odd sizes exercise the round-up of each halving
+    private static final int WIDTH = 333;
+    private static final int HEIGHT = 97;
+
+    @BeforeClass
+    public static void initNative() {
+        assertTrue(EdgeDetectionJNI.isLibraryLoaded());
+    }
+
+    @Test
+    public void flatFrame_staysFlat() {
+        for (int channels : new int[]{1, 4}) {
+            ByteBuffer input = ByteBuffer.allocateDirect(WIDTH * HEIGHT * channels);
+            while (input.hasRemaining()) {
+                input.put((byte) 173);
+            }
+
+            for (int level = 1; level <= PyramidPolicy.MAX_LEVEL; level++) {
+                byte[] output = downscale(input, WIDTH * channels, WIDTH, HEIGHT, channels, level);
+                for (byte value : output) {
+                    assertEquals(channels + " channels at level " + level, (byte) 173, value);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void deeperLevel_matchesRepeatedSingleLevels() {
+        ByteBuffer input = TestFrames.noise(WIDTH * HEIGHT, 19);
+        int halfWidth = PyramidPolicy.scaledSize(WIDTH, 1);
+        int halfHeight = PyramidPolicy.scaledSize(HEIGHT, 1);
+
+        byte[] half = downscale(input, WIDTH, WIDTH, HEIGHT, 1, 1);
+        ByteBuffer halfBuffer = ByteBuffer.allocateDirect(half.length);
+        halfBuffer.put(half).flip();
+        byte[] quarterInTwoSteps = downscale(halfBuffer, halfWidth, halfWidth, halfHeight, 1, 1);
+
+        assertArrayEquals(quarterInTwoSteps, downscale(input, WIDTH, WIDTH, HEIGHT, 1, 2));
+    }
+
+    @Test
+    public void rowPadding_isSkipped() {
+        int stride = WIDTH + 11;
+        ByteBuffer packed = TestFrames.noise(WIDTH * HEIGHT, 19);
+        ByteBuffer padded = ByteBuffer.allocateDirect(stride * HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < stride; x++) {
+                padded.put(x < WIDTH ? packed.get(y * WIDTH + x) : (byte) 255);
+            }
+        }
+        padded.flip();
+
+        assertArrayEquals(downscale(packed, WIDTH, WIDTH, HEIGHT, 1, 1),
+                downscale(padded, stride, WIDTH, HEIGHT, 1, 1));
+    }
+
+    @Test
+    public void invalidArguments_areRejected() {
+        ByteBuffer input = TestFrames.noise(WIDTH * HEIGHT, 19);
+        int scaledBytes = PyramidPolicy.scaledSize(WIDTH, 1) * PyramidPolicy.scaledSize(HEIGHT, 1);
+
+        assertEquals(EdgeDetectionJNI.STATUS_BUFFER_TOO_SMALL, EdgeDetectionJNI.downscale(
+                input, WIDTH, WIDTH, HEIGHT, 1, 1, ByteBuffer.allocateDirect(scaledBytes - 1)));
+        assertEquals(EdgeDetectionJNI.STATUS_INVALID_ARGUMENT, EdgeDetectionJNI.downscale(
+                input, WIDTH, WIDTH, HEIGHT, 1, 0, ByteBuffer.allocateDirect(WIDTH * HEIGHT)));
+        assertEquals(EdgeDetectionJNI.STATUS_INVALID_ARGUMENT, EdgeDetectionJNI.downscale(
+                input, WIDTH, WIDTH, HEIGHT, 3, 1, ByteBuffer.allocateDirect(WIDTH * HEIGHT)));
+        assertEquals(EdgeDetectionJNI.STATUS_BUFFER_TOO_SMALL, EdgeDetectionJNI.downscale(
+                input, WIDTH * 4, WIDTH, HEIGHT, 4, 1, ByteBuffer.allocateDirect(WIDTH * HEIGHT)));
+    }
+
+    private static byte[] downscale(ByteBuffer input, int rowStride, int width, int height, int channels,
+                                    int level) {
+        int scaledWidth = PyramidPolicy.scaledSize(width, level);
+        int scaledHeight = PyramidPolicy.scaledSize(height, level);
+        ByteBuffer output = ByteBuffer.allocateDirect(scaledWidth * scaledHeight * channels);
+
+        assertEquals(EdgeDetectionJNI.STATUS_OK,
+                EdgeDetectionJNI.downscale(input, rowStride, width, height, channels, level, output));
+
+        byte[] values = new byte[output.capacity()];
+        output.get(values);
+        return values;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.edgedetectionviewer;
+
+import android.content.Context;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Loads the app's shader assets through ShaderLibrary on an offscreen EGL context
+ * A GLES 3 context is used where available, so program binaries can be saved and reloaded.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ShaderLibraryTest {
+
+    private static final String VERTEX_SHADER = "vertex_shader.glsl";
+    private static final String FRAGMENT_SHADER = "fragment_shader.glsl";
+
+    private Context appContext;
+    private EGLDisplay display;
+    private EGLContext context;
+    private EGLSurface surface;
+    private boolean isGles3;
+
+    @Before
+    public void createContext() {
+        appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        int[] version = new int[2];
+        assertTrue(EGL14.eglInitialize(display, version, 0, version, 1));
+
+        EGLConfig config = chooseConfig(EGLExt.EGL_OPENGL_ES3_BIT_KHR);
+        isGles3 = config != null;
+        if (config == null) {
+            config = chooseConfig(EGL14.EGL_OPENGL_ES2_BIT);
+        }
+        assertNotNull(config);
+
+        context = EGL14.eglCreateContext(display, config, EGL14.EGL_NO_CONTEXT,
+                new int[]{EGL14.EGL_CONTEXT_CLIENT_VERSION, isGles3 ? 3 : 2, EGL14.EGL_NONE}, 0);
+        surface = EGL14.eglCreatePbufferSurface(display, config,
+                new int[]{EGL14.EGL_WIDTH, 1, EGL14.EGL_HEIGHT, 1, EGL14.EGL_NONE}, 0);
+        assertTrue(EGL14.eglMakeCurrent(display, surface, surface, context));
+    }
+
+    @After
+    public void destroyContext() {
+        EGL14.eglMakeCurrent(display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+        EGL14.eglDestroySurface(display, surface);
+        EGL14.eglDestroyContext(display, context);
+        EGL14.eglTerminate(display);
+    }
+
+    private EGLConfig chooseConfig(int renderableType) {
+        int[] attributes = {
+                EGL14.EGL_RENDERABLE_TYPE, renderableType,
+                EGL14.EGL_SURFACE_TYPE, EGL14.EGL_PBUFFER_BIT,
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_ALPHA_SIZE, 8,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] configCount = new int[1];
+        if (!EGL14.eglChooseConfig(display, attributes, 0, configs, 0, 1, configCount, 0) || configCount[0] == 0) {
+            return null;
+        }
+        return configs[0];
+    }
+
+    @Test
+    public void getProgram_isCachedWithItsLocations() {
+        ShaderLibrary library = new ShaderLibrary(appContext);
+        library.onContextCreated();
+
+        ShaderLibrary.Program program = library.getProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+        assertTrue(program.getId() != 0);
+        assertTrue(program.attribute("aPosition") >= 0);
+        assertTrue(program.attribute("aTexCoord") >= 0);
+        assertTrue(program.uniform("uTexture") >= 0);
+        assertEquals(-1, program.uniform("uMissing"));
+
+        assertSame(program, library.getProgram(VERTEX_SHADER, FRAGMENT_SHADER));
+        assertEquals(1, library.getCompiledCount() + library.getBinaryLoadCount());
+        library.release();
+    }
+
+    @Test
+    public void variants_areSeparatePrograms() {
+        ShaderLibrary library = new ShaderLibrary(appContext);
+        library.onContextCreated();
+
+        ShaderLibrary.Program plain = library.getProgram("gpu/quad_vertex.glsl", "gpu/gray_fragment.glsl");
+        ShaderLibrary.Program external = library.getProgram("gpu/quad_vertex.glsl", "gpu/gray_fragment.glsl",
+                "EXTERNAL_INPUT");
+        assertTrue(plain.getId() != external.getId());
+        assertEquals(2, library.getCompiledCount() + library.getBinaryLoadCount());
+        library.release();
+    }
+
+    @Test
+    public void onContextCreated_forgetsPrograms() {
+        ShaderLibrary library = new ShaderLibrary(appContext);
+        library.onContextCreated();
+        library.getProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+        library.release();
+
+        library.onContextCreated();
+        library.getProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+        assertEquals(2, library.getCompiledCount() + library.getBinaryLoadCount());
+        library.release();
+    }
+
+    @Test
+    public void savedBinary_isLoadedByTheNextLibrary() {
+        ShaderLibrary first = new ShaderLibrary(appContext);
+        first.onContextCreated();
+        assumeTrue("Program binaries need GLES 3", isGles3 && first.isBinaryCacheEnabled());
+        first.getProgram("gpu/quad_vertex.glsl", "gpu/sobel_fragment.glsl");
+        first.release();
+
+        ShaderLibrary second = new ShaderLibrary(appContext);
+        second.onContextCreated();
+        ShaderLibrary.Program program = second.getProgram("gpu/quad_vertex.glsl", "gpu/sobel_fragment.glsl");
+        assertTrue(program.getId() != 0);
+        assertTrue(program.uniform("uTexel") >= 0);
+        assertEquals(0, second.getCompiledCount());
+        assertEquals(1, second.getBinaryLoadCount());
+        second.release();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void missingAsset_throws() {
+        ShaderLibrary library = new ShaderLibrary(appContext);
+        library.onContextCreated();
+        library.getProgram(VERTEX_SHADER, "missing.glsl");
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.edgedetectionviewer;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * On-device microbenchmark of the CV_64F Sobel path against the CV_16S fixed-point modes
+ * The table magnitude must reproduce the CV_64F output exactly; the L1 approximation may only
+ * overestimate it, by at most a factor of sqrt(2). Results are written to logcat under this class name
+ */
+@RunWith(AndroidJUnit4.class)
+public class SobelBenchmark {
+
+    private static final String TAG = "SobelBenchmark";
+    private static final int WARMUP_ITERATIONS = 10;
+    private static final int ITERATIONS = 100;
+
+    private static final int[][] RESOLUTIONS = {
+            {640, 480},
+            {1280, 720},
+            {1920, 1080}
+    };
+
+    private static final SobelMode[] MODES = {
+            SobelMode.FLOAT64,
+            SobelMode.FIXED_L1,
+            SobelMode.FIXED_LUT
+    };
+
+    private static final String[] MODE_NAMES = {"CV_64F", "CV_16S L1", "CV_16S LUT"};
+
+    private long detector;
+
+    @BeforeClass
+    public static void initNative() {
+        assertTrue(EdgeDetectionJNI.isLibraryLoaded());
+    }
+
+    @Before
+    public void createDetector() {
+        detector = EdgeDetectionJNI.create();
+        assertTrue(detector != 0);
+        EdgeDetectionJNI.setDetectorAlgorithm(detector, EdgeAlgorithm.SOBEL);
+    }
+
+    @After
+    public void destroyDetector() {
+        EdgeDetectionJNI.destroy(detector);
+    }
+
+    @Test
+    public void benchmark_float64VsFixedPoint() {
+        for (int[] resolution : RESOLUTIONS) {
+            int width = resolution[0];
+            int height = resolution[1];
+            ByteBuffer input = TestFrames.noise(width * height * 4, 42);
+            ByteBuffer output = ByteBuffer.allocateDirect(width * height * 4);
+
+            double[] frameMs = new double[MODES.length];
+            for (int m = 0; m < MODES.length; m++) {
+                EdgeDetectionJNI.setDetectorSobelMode(detector, MODES[m]);
+                for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                    EdgeDetectionJNI.process(detector, input, output, width, height);
+                }
+
+                int status = EdgeDetectionJNI.STATUS_OK;
+                long start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    status = EdgeDetectionJNI.process(detector, input, output, width, height);
+                }
+                frameMs[m] = (System.nanoTime() - start) / 1e6 / ITERATIONS;
+                assertEquals(EdgeDetectionJNI.STATUS_OK, status);
+            }
+
+            Log.i(TAG, String.format("%dx%d: %s %.2f ms, %s %.2f ms (%.2fx), %s %.2f ms (%.2fx)",
+                    width, height,
+                    MODE_NAMES[0], frameMs[0],
+                    MODE_NAMES[1], frameMs[1], frameMs[0] / frameMs[1],
+                    MODE_NAMES[2], frameMs[2], frameMs[0] / frameMs[2]));
+        }
+    }
+
+    @Test
+    public void fixedLut_matchesFloat64() {
+        int width = 333;
+        int height = 97;
+        ByteBuffer input = TestFrames.noise(width * height * 4, 42);
+
+        byte[] expected = detect(input, width, height, SobelMode.FLOAT64);
+        byte[] actual = detect(input, width, height, SobelMode.FIXED_LUT);
+
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void fixedL1_boundsFloat64() {
+        int width = 333;
+        int height = 97;
+        ByteBuffer input = TestFrames.noise(width * height * 4, 42);
+
+        byte[] exact = detect(input, width, height, SobelMode.FLOAT64);
+        byte[] approximate = detect(input, width, height, SobelMode.FIXED_L1);
+
+        for (int i = 0; i < exact.length; i++) {
+            int exactValue = exact[i] & 0xFF;
+            int approximateValue = approximate[i] & 0xFF;
+            assertTrue("pixel " + i, approximateValue + 1 >= exactValue);
+            assertTrue("pixel " + i, approximateValue <= Math.ceil(exactValue * Math.sqrt(2)) + 1);
+        }
+    }
+
+    private byte[] detect(ByteBuffer input, int width, int height, SobelMode mode) {
+        EdgeDetectionJNI.setDetectorSobelMode(detector, mode);
+        ByteBuffer output = ByteBuffer.allocateDirect(width * height * 4);
+
+        assertEquals(EdgeDetectionJNI.STATUS_OK,
+                EdgeDetectionJNI.process(detector, input.duplicate(), output, width, height));
+
+        byte[] result = new byte[output.capacity()];
+        output.get(result);
+        return result;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.edgedetectionviewer;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Input buffers shared by the on-device tests and benchmarks
+ */
+final class TestFrames {
+
+    private TestFrames() {
+    }
+
+    /**
+     * Create a direct buffer of seeded random bytes, ready to read from position 0
+     * @param size Buffer size in bytes
+     * @param seed Random seed, so each test sees the same input on every run
+     */
+    static ByteBuffer noise(int size, long seed) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        buffer.put(bytes).flip();
+        return buffer;
+    }
+}
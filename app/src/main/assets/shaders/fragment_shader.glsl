@@ -7,31 +7,28 @@ precision mediump float;
 varying vec2 vTexCoord;        // Texture coordinates from vertex shader
 
 // Uniform variables
-uniform sampler2D uTexture;    // Input texture (processed camera frame)
+uniform sampler2D uTexture;    // Edge texture: GL_LUMINANCE (one byte per pixel) or RGBA
+uniform int uColorMode;        // 0 = white, 1 = tinted, 2 = inverted, 3 = heat map
+uniform vec3 uEdgeColor;       // Edge colour for the tinted mode
 
 void main() {
-    // Sample the texture at current fragment's texture coordinates
-    vec4 textureColor = texture2D(uTexture, vTexCoord);
-
-    // For edge detection visualization:
-    // The input texture contains edge data in all RGBA channels
-    // We can enhance the visualization or apply color effects
-
-    // Option 1: Direct output (white edges on black background)
-    gl_FragColor = textureColor;
-
-    // Option 2: Enhance edge visibility with colored edges
-    // float edgeIntensity = textureColor.r; // Use red channel for edge intensity
-    // vec3 edgeColor = vec3(0.0, 1.0, 0.0); // Green edges
-    // gl_FragColor = vec4(edgeColor * edgeIntensity, textureColor.a);
-
-    // Option 3: Invert for better visibility (black edges on white background)
-    // gl_FragColor = vec4(1.0 - textureColor.rgb, textureColor.a);
-
-    // Option 4: Colorize based on edge intensity
-    // float intensity = textureColor.r;
-    // vec3 hotColor = vec3(1.0, 0.0, 0.0);     // Red for high intensity
-    // vec3 coldColor = vec3(0.0, 0.0, 1.0);    // Blue for low intensity
-    // vec3 finalColor = mix(coldColor, hotColor, intensity);
-    // gl_FragColor = vec4(finalColor, textureColor.a);
-}
\ No newline at end of file
+    // Edge strength is in the red channel for both texture formats:
+    // GL_LUMINANCE replicates its single byte into r, g and b
+    float edge = texture2D(uTexture, vTexCoord).r;
+
+    if (uColorMode == 1) {
+        // Enhance edge visibility with coloured edges
+        gl_FragColor = vec4(uEdgeColor * edge, edge);
+    } else if (uColorMode == 2) {
+        // Invert for better visibility (black edges on white background)
+        gl_FragColor = vec4(vec3(1.0 - edge), 1.0);
+    } else if (uColorMode == 3) {
+        // Colourise by edge intensity: blue for weak, red for strong
+        vec3 coldColor = vec3(0.0, 0.0, 1.0);
+        vec3 hotColor = vec3(1.0, 0.0, 0.0);
+        gl_FragColor = vec4(mix(coldColor, hotColor, edge), edge);
+    } else {
+        // White edges on a transparent background
+        gl_FragColor = vec4(edge, edge, edge, edge);
+    }
+}
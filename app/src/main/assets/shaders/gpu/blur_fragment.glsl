@@ -0,0 +1,25 @@
+// One separable Gaussian pass along uStep
+// uWeights holds the centre tap then one side of the symmetric kernel, up to a 15-tap kernel
+
+#ifdef GL_FRAGMENT_PRECISION_HIGH
+precision highp float;
+#else
+precision mediump float;
+#endif
+
+uniform sampler2D uInput;
+uniform vec2 uStep;            // One texel along the blur direction
+uniform float uWeights[8];
+uniform int uRadius;           // Taps used on each side of the centre
+varying vec2 vTexCoord;
+
+void main() {
+    float sum = texture2D(uInput, vTexCoord).r * uWeights[0];
+    for (int i = 1; i < 8; i++) {
+        if (i > uRadius) break;
+        vec2 offset = uStep * float(i);
+        sum += (texture2D(uInput, vTexCoord - offset).r
+                + texture2D(uInput, vTexCoord + offset).r) * uWeights[i];
+    }
+    gl_FragColor = vec4(sum, 0.0, 0.0, 1.0);
+}
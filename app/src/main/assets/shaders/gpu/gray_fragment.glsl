@@ -0,0 +1,25 @@
+// RGB to gray with the same luma weights as the native RGBA to gray conversion
+// Variant EXTERNAL_INPUT reads the camera's GL_TEXTURE_EXTERNAL_OES texture instead of a 2D texture
+
+#ifdef EXTERNAL_INPUT
+#extension GL_OES_EGL_image_external : require
+#endif
+
+#ifdef GL_FRAGMENT_PRECISION_HIGH
+precision highp float;
+#else
+precision mediump float;
+#endif
+
+#ifdef EXTERNAL_INPUT
+uniform samplerExternalOES uInput;
+#else
+uniform sampler2D uInput;
+#endif
+
+varying vec2 vTexCoord;
+
+void main() {
+    vec3 rgb = texture2D(uInput, vTexCoord).rgb;
+    gl_FragColor = vec4(dot(rgb, vec3(0.299, 0.587, 0.114)), 0.0, 0.0, 1.0);
+}
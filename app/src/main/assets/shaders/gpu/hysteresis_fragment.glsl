@@ -0,0 +1,32 @@
+// One hysteresis step: weak pixels next to a strong one become strong
+// The final pass (uFinal = 1) also drops the weak pixels left over.
+
+#ifdef GL_FRAGMENT_PRECISION_HIGH
+precision highp float;
+#else
+precision mediump float;
+#endif
+
+uniform sampler2D uInput;
+uniform vec2 uTexel;           // Size of one texel
+uniform float uFinal;
+varying vec2 vTexCoord;
+
+void main() {
+    float edge = texture2D(uInput, vTexCoord).r;
+    if (edge > 0.25 && edge < 0.75) {
+        float strongest = 0.0;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                vec2 offset = vec2(float(dx), float(dy)) * uTexel;
+                strongest = max(strongest, texture2D(uInput, vTexCoord + offset).r);
+            }
+        }
+        if (strongest > 0.75) {
+            edge = 1.0;
+        } else if (uFinal > 0.5) {
+            edge = 0.0;
+        }
+    }
+    gl_FragColor = vec4(edge, 0.0, 0.0, 1.0);
+}
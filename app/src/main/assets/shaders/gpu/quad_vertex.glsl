@@ -0,0 +1,11 @@
+// Full-screen quad for the GPU edge detection passes
+// Texture coordinate v = 0 is framebuffer row 0, the top image row; uTexMatrix maps it to the input
+
+attribute vec2 aPosition;      // Quad corner in normalized device coordinates
+uniform mat4 uTexMatrix;       // Input texture transform (SurfaceTexture matrix for the camera)
+varying vec2 vTexCoord;
+
+void main() {
+    gl_Position = vec4(aPosition, 0.0, 1.0);
+    vTexCoord = (uTexMatrix * vec4(aPosition * 0.5 + 0.5, 0.0, 1.0)).xy;
+}
@@ -0,0 +1,41 @@
+// 3x3 Sobel on 0-255 values
+// The L1 magnitude (up to 2040) is split over red (high byte) and green (low byte), and blue holds
+// the direction bin: 0 horizontal, 1 vertical, 2 diagonal with equal signs, 3 opposite signs.
+// The bin limits are tan(22.5) and tan(67.5) = 2 + tan(22.5) in the native fixed-point form, 13573 / 32768.
+// They are compared as ratios so no product leaves the mediump range; in highp every term is exact for
+// gradients up to 1020, giving the same bins as the native code.
+
+#ifdef GL_FRAGMENT_PRECISION_HIGH
+precision highp float;
+#else
+precision mediump float;
+#endif
+
+uniform sampler2D uInput;
+uniform vec2 uTexel;           // Size of one texel
+varying vec2 vTexCoord;
+
+float at(float dx, float dy) {
+    return floor(texture2D(uInput, vTexCoord + vec2(dx, dy) * uTexel).r * 255.0 + 0.5);
+}
+
+void main() {
+    float tl = at(-1.0, -1.0); float t = at(0.0, -1.0); float tr = at(1.0, -1.0);
+    float l = at(-1.0, 0.0); float r = at(1.0, 0.0);
+    float bl = at(-1.0, 1.0); float b = at(0.0, 1.0); float br = at(1.0, 1.0);
+    float gx = (tr - tl) + 2.0 * (r - l) + (br - bl);
+    float gy = (bl - tl) + 2.0 * (b - t) + (br - tr);
+    float ax = abs(gx);
+    float ay = abs(gy);
+    float mag = ax + ay;
+    float limit = ax * 0.414215087890625;
+    float bin;
+    if (ay < limit) {
+        bin = 0.0;
+    } else if (ay - 2.0 * ax > limit) {
+        bin = 1.0;
+    } else {
+        bin = (gx < 0.0) != (gy < 0.0) ? 3.0 : 2.0;
+    }
+    gl_FragColor = vec4(floor(mag / 256.0) / 255.0, mod(mag, 256.0) / 255.0, bin / 3.0, 1.0);
+}
@@ -0,0 +1,45 @@
+// Non-maximum suppression along the gradient direction and the double threshold, as in cv::Canny
+// Outside the image the magnitude is zero, like the native border ring. Strong edges come out as 1.0
+// and weak ones as 0.5, for the hysteresis passes to keep or drop.
+
+#ifdef GL_FRAGMENT_PRECISION_HIGH
+precision highp float;
+#else
+precision mediump float;
+#endif
+
+uniform sampler2D uInput;
+uniform vec2 uTexel;           // Size of one texel
+uniform float uLow;            // Canny thresholds on the L1 magnitude
+uniform float uHigh;
+varying vec2 vTexCoord;
+
+float decode(vec4 v) {
+    return floor(v.r * 255.0 + 0.5) * 256.0 + floor(v.g * 255.0 + 0.5);
+}
+
+float magAt(float dx, float dy) {
+    vec2 p = vTexCoord + vec2(dx, dy) * uTexel;
+    if (p.x < 0.0 || p.x > 1.0 || p.y < 0.0 || p.y > 1.0) return 0.0;
+    return decode(texture2D(uInput, p));
+}
+
+void main() {
+    vec4 centre = texture2D(uInput, vTexCoord);
+    float m = decode(centre);
+    float bin = floor(centre.b * 3.0 + 0.5);
+    float edge = 0.0;
+    if (m > uLow) {
+        bool isMaximum;
+        if (bin < 0.5) {
+            isMaximum = m > magAt(-1.0, 0.0) && m >= magAt(1.0, 0.0);
+        } else if (bin < 1.5) {
+            isMaximum = m > magAt(0.0, -1.0) && m >= magAt(0.0, 1.0);
+        } else {
+            float s = bin < 2.5 ? 1.0 : -1.0;
+            isMaximum = m > magAt(-s, -1.0) && m > magAt(s, 1.0);
+        }
+        if (isMaximum) edge = m > uHigh ? 1.0 : 0.5;
+    }
+    gl_FragColor = vec4(edge, 0.0, 0.0, 1.0);
+}
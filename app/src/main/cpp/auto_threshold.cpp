@@ -0,0 +1,153 @@
+//
+// Automatic Canny thresholds from a temporally smoothed luminance histogram
+//
+#include "auto_threshold.h"
+#include <algorithm>
+#include <cstdint>
+
+namespace EdgeDetection {
+
+    namespace {
+
+        // Weight of the accumulated histogram against each new frame
+        const float HISTORY_DECAY = 0.8f;
+
+        // Median mode brackets the median by this fraction either side
+        const double MEDIAN_SPREAD = 0.33;
+
+        // Keeps flat or very dark frames from turning sensor noise into edges
+        const double MIN_HIGH_THRESHOLD = 8.0;
+
+        /**
+         * @brief Luminance of one sampled pixel (same weights as cv::cvtColor)
+         */
+        inline int sampleLuma(const uint8_t* pixel, int channels) {
+            if (channels == 1) {
+                return pixel[0];
+            }
+            if (channels == 3) {
+                return (pixel[2] * 4899 + pixel[1] * 9617 + pixel[0] * 1868 + 8192) >> 14;
+            }
+            return (pixel[0] * 4899 + pixel[1] * 9617 + pixel[2] * 1868 + 8192) >> 14;
+        }
+
+        double medianOf(const float* histogram, int bins) {
+            float total = 0.0f;
+            for (int i = 0; i < bins; i++) {
+                total += histogram[i];
+            }
+
+            float cumulative = 0.0f;
+            for (int i = 0; i < bins; i++) {
+                cumulative += histogram[i];
+                if (cumulative >= total * 0.5f) {
+                    return i;
+                }
+            }
+            return bins - 1;
+        }
+
+        double otsuOf(const float* histogram, int bins) {
+            double total = 0.0;
+            double weightedTotal = 0.0;
+            for (int i = 0; i < bins; i++) {
+                total += histogram[i];
+                weightedTotal += i * static_cast<double>(histogram[i]);
+            }
+
+            double background = 0.0;
+            double weightedBackground = 0.0;
+            double bestVariance = -1.0;
+            int best = 0;
+            for (int i = 0; i < bins; i++) {
+                background += histogram[i];
+                weightedBackground += i * static_cast<double>(histogram[i]);
+                const double foreground = total - background;
+                if (background <= 0.0 || foreground <= 0.0) {
+                    continue;
+                }
+
+                const double meanBackground = weightedBackground / background;
+                const double meanForeground = (weightedTotal - weightedBackground) / foreground;
+                const double difference = meanBackground - meanForeground;
+                const double variance = background * foreground * difference * difference;
+                if (variance > bestVariance) {
+                    bestVariance = variance;
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+    } // namespace
+
+    AutoThreshold::AutoThreshold() : frameCounter(0), hasHistory(false) {
+        std::fill(histogram, histogram + BINS, 0.0f);
+    }
+
+    void AutoThreshold::update(const cv::Mat& image, ThresholdMode mode,
+                               double* lowThreshold, double* highThreshold) {
+        if (mode == ThresholdMode::Manual || image.empty()) {
+            return;
+        }
+
+        // Rotate the sampled position inside each block so every pixel is visited over
+        // SAMPLE_STEP * SAMPLE_STEP frames
+        const unsigned phase = frameCounter.fetch_add(1) % (SAMPLE_STEP * SAMPLE_STEP);
+        const int offsetX = static_cast<int>(phase % SAMPLE_STEP);
+        const int offsetY = static_cast<int>(phase / SAMPLE_STEP);
+        const int channels = image.channels();
+
+        uint32_t counts[BINS] = {};
+        uint32_t samples = 0;
+        for (int y = offsetY; y < image.rows; y += SAMPLE_STEP) {
+            const uint8_t* row = image.ptr<uint8_t>(y);
+            for (int x = offsetX; x < image.cols; x += SAMPLE_STEP) {
+                counts[sampleLuma(row + x * channels, channels)]++;
+            }
+            samples += static_cast<uint32_t>((image.cols - offsetX + SAMPLE_STEP - 1) / SAMPLE_STEP);
+        }
+        if (samples == 0) {
+            return;
+        }
+
+        float smoothed[BINS];
+        {
+            // Fractions rather than counts, so a resolution change does not swamp the history
+            std::lock_guard<std::mutex> lock(histogramMutex);
+            const float frameWeight = hasHistory ? 1.0f - HISTORY_DECAY : 1.0f;
+            const float historyWeight = hasHistory ? HISTORY_DECAY : 0.0f;
+            const float scale = frameWeight / samples;
+            for (int i = 0; i < BINS; i++) {
+                histogram[i] = histogram[i] * historyWeight + counts[i] * scale;
+            }
+            hasHistory = true;
+            std::copy(histogram, histogram + BINS, smoothed);
+        }
+
+        double high;
+        double low;
+        if (mode == ThresholdMode::Otsu) {
+            high = otsuOf(smoothed, BINS);
+            low = high * 0.5;
+        } else {
+            const double median = medianOf(smoothed, BINS);
+            low = median * (1.0 - MEDIAN_SPREAD);
+            high = std::min(255.0, median * (1.0 + MEDIAN_SPREAD));
+        }
+
+        if (high < MIN_HIGH_THRESHOLD) {
+            high = MIN_HIGH_THRESHOLD;
+            low = MIN_HIGH_THRESHOLD * 0.5;
+        }
+        *lowThreshold = low;
+        *highThreshold = high;
+    }
+
+    void AutoThreshold::reset() {
+        std::lock_guard<std::mutex> lock(histogramMutex);
+        std::fill(histogram, histogram + BINS, 0.0f);
+        hasHistory = false;
+    }
+
+} // namespace EdgeDetection
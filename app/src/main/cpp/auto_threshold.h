@@ -0,0 +1,59 @@
+#ifndef AUTO_THRESHOLD_H
+#define AUTO_THRESHOLD_H
+
+#include <opencv2/opencv.hpp>
+#include <atomic>
+#include <mutex>
+
+namespace EdgeDetection {
+
+/**
+ * @brief How a frame's Canny thresholds are chosen
+ */
+    enum class ThresholdMode {
+        Manual = 0,     // Use the configured low / high thresholds
+        Median = 1,     // Bracket the median luminance
+        Otsu = 2        // Otsu's threshold as high, half of it as low
+    };
+
+/**
+ * @brief Canny thresholds derived from a sparsely sampled, temporally smoothed luminance histogram
+ * Each frame samples one pixel of every SAMPLE_STEP x SAMPLE_STEP block, cycling through the block
+ * positions over consecutive frames, and folds the result into an exponentially decaying histogram.
+ * Safe to call from several threads at once.
+ */
+    class AutoThreshold {
+    public:
+        // Pixels between samples in each direction
+        static const int SAMPLE_STEP = 8;
+
+        AutoThreshold();
+
+        /**
+         * @brief Add a frame's luminance to the histogram and derive thresholds from it
+         * @param image Grayscale, BGR or RGBA frame
+         * @param mode Median or Otsu (Manual leaves the thresholds untouched)
+         * @param lowThreshold Receives the lower threshold
+         * @param highThreshold Receives the upper threshold
+         */
+        void update(const cv::Mat& image, ThresholdMode mode, double* lowThreshold, double* highThreshold);
+
+        /**
+         * @brief Forget the accumulated histogram (e.g. after a scene or resolution change)
+         */
+        void reset();
+
+    private:
+        static const int BINS = 256;
+
+        std::atomic<unsigned> frameCounter;
+
+        // Guards the smoothed histogram
+        std::mutex histogramMutex;
+        float histogram[BINS];
+        bool hasHistory;
+    };
+
+} // namespace EdgeDetection
+
+#endif // AUTO_THRESHOLD_H
@@ -5,9 +5,16 @@
 // Created by my lapi on 08-10-2025.
 //
 #include "image_processor.h"
+#include "simd_kernels.h"
+#include "thread_pool.h"
 #include <opencv2/opencv.hpp>
 #include <opencv2/imgproc.hpp>
 #include <android/log.h>
+#include <algorithm>
+#include <cmath>
+#include <cstdlib>
+#include <cstring>
+#include <vector>
 
 #define LOG_TAG "EdgeDetection"
 #define LOGI(...) __android_log_print(ANDROID_LOG_INFO, LOG_TAG, __VA_ARGS__)
@@ -15,54 +22,715 @@
 
 namespace EdgeDetection {
 
+// Strips shorter than this cost more in halo rows and stitching than they save
+static const int MIN_STRIP_ROWS = 16;
+
 /**
- * @brief Apply Canny edge detection to input image
- * @param inputMat Input image matrix (BGR or RGBA format)
- * @param outputMat Output edge image (single channel)
- * @param lowThreshold Lower threshold for edge detection (default: 100)
- * @param highThreshold Upper threshold for edge detection (default: 200)
- * @param kernelSize Gaussian blur kernel size (default: 3)
- * @return true if successful, false otherwise
+ * @brief Grayscale input read row by row by the fused kernel, without converting the whole frame
  */
-    bool applyCanny(const cv::Mat& inputMat, cv::Mat& outputMat,
-                    double lowThreshold = 100.0, double highThreshold = 200.0,
-                    int kernelSize = 3) {
-        try {
-            if (inputMat.empty()) {
-                LOGE("Input matrix is empty");
-                return false;
+    struct GraySource {
+        const uint8_t* data;        // First pixel
+        size_t step;                // Bytes between rows
+        int channels;               // 1 = gray/luma, 4 = RGBA
+        int width;
+        int height;
+    };
+
+/**
+ * @brief Fixed-point Gaussian kernel with 8 fractional bits
+ * Rounded with error diffusion so the taps sum to exactly 256, matching the bit-exact kernel
+ * cv::GaussianBlur uses for 8-bit images; blurring with it gives identical results.
+ */
+    struct GaussianKernelQ8 {
+        int size = 0;
+        double sigma = 0.0;
+        int taps[MAX_FUSED_KERNEL] = {};
+
+        void build(int kernelSize, double kernelSigma) {
+            if (size == kernelSize && sigma == kernelSigma) {
+                return;
+            }
+            size = kernelSize;
+            sigma = kernelSigma;
+
+            const int centre = kernelSize / 2;
+            double weights[MAX_FUSED_KERNEL];
+            double sum = 0.0;
+            for (int i = 0; i < kernelSize; i++) {
+                const double x = i - centre;
+                weights[i] = std::exp(-x * x / (2.0 * kernelSigma * kernelSigma));
+                sum += weights[i];
+            }
+
+            double error = 0.0;
+            int total = 0;
+            for (int i = 0; i < centre; i++) {
+                const double adjusted = weights[i] / sum * 256.0 + error;
+                const int tap = static_cast<int>(std::nearbyint(adjusted));
+                error = adjusted - tap;
+                taps[i] = tap;
+                taps[kernelSize - 1 - i] = tap;
+                total += 2 * tap;
             }
+            taps[centre] = 256 - total;
+        }
+    };
+
+/**
+ * @brief Row buffers one strip reuses from frame to frame
+ * Only a few rows of each intermediate image exist at a time, so the working set stays in cache.
+ */
+    struct StripScratch {
+        std::vector<uint8_t> grayRow;       // Converted gray row when the source is RGBA
+        std::vector<uint16_t> hblurRows;    // Horizontally blurred gray rows (Q8), ring of kernelSize
+        std::vector<int> hblurTags;         // Image row held by each hblur slot, -1 if none
+        std::vector<uint8_t> blurRows;      // Fully blurred rows, ring of 3
+        std::vector<int> blurTags;
+        std::vector<short> dxRows;          // Gradient rows, ring of 3
+        std::vector<short> dyRows;
+        std::vector<int> magRows;           // Magnitude rows with a zero column each side, ring of 3 + zero row
+        std::vector<uint8_t*> stack;        // Hysteresis stack
+        GaussianKernelQ8 kernel;
+        const SimdKernels* kernels = &simdKernels();
+    };
+
+/**
+ * @brief Buffers one detection call needs, kept by the detector and reused across frames
+ */
+    struct FrameScratch {
+        std::vector<uint8_t> map;           // Hysteresis map with a one-pixel border ring
+        std::vector<int> stripStarts;
+        std::vector<uint8_t*> stack;        // Stitching stack
+        std::vector<StripScratch> strips;   // Row rings, one per strip
+
+        // Single-threaded OpenCV path; OpenCV only reallocates these when the size changes
+        cv::Mat grayMat;
+        cv::Mat blurredMat;
+        cv::Mat edgeMat;
+        cv::Mat rgbaMat;                    // YUV input converted to RGBA
 
-            cv::Mat grayMat;
+        // Sobel gradients
+        cv::Mat gradXMat;
+        cv::Mat gradYMat;
+
+        // Edge bytes waiting to be packed into a one-bit mask
+        std::vector<uint8_t> maskBytes;
+    };
+
+/**
+ * @brief Reflect-101 border index (BORDER_DEFAULT), valid for offsets smaller than the size
+ */
+    static inline int reflect101(int index, int size) {
+        if (index < 0) {
+            return -index;
+        }
+        if (index >= size) {
+            return 2 * size - 2 - index;
+        }
+        return index;
+    }
+
+/**
+ * @brief Get one source row as gray, converting RGBA on the fly
+ */
+    static const uint8_t* loadGrayRow(const GraySource& source, int row, StripScratch& scratch) {
+        const uint8_t* src = source.data + row * source.step;
+        if (source.channels == 1) {
+            return src;
+        }
+
+        uint8_t* gray = scratch.grayRow.data();
+        scratch.kernels->rgbaToGray(src, gray, source.width);
+        return gray;
+    }
+
+/**
+ * @brief Horizontally blurred gray row (Q8), computed on first use and kept while it is in the ring
+ */
+    static const uint16_t* hblurRow(const GraySource& source, int row, StripScratch& scratch) {
+        const GaussianKernelQ8& kernel = scratch.kernel;
+        const int slot = row % kernel.size;
+        uint16_t* out = scratch.hblurRows.data() + static_cast<size_t>(slot) * source.width;
+        if (scratch.hblurTags[slot] == row) {
+            return out;
+        }
+        scratch.hblurTags[slot] = row;
+
+        const uint8_t* gray = loadGrayRow(source, row, scratch);
+        const int width = source.width;
+        const int radius = kernel.size / 2;
+
+        auto reflectedSum = [&](int x) {
+            int sum = 0;
+            for (int i = 0; i < kernel.size; i++) {
+                sum += kernel.taps[i] * gray[reflect101(x + i - radius, width)];
+            }
+            return static_cast<uint16_t>(sum);
+        };
+
+        // Interior pixels have every tap inside the row; only the border ones reflect
+        const int interiorEnd = std::max(radius, width - radius);
+        for (int x = 0; x < std::min(radius, width); x++) {
+            out[x] = reflectedSum(x);
+        }
+        if (interiorEnd > radius) {
+            scratch.kernels->horizontalBlur(gray, out + radius, interiorEnd - radius, kernel.taps, kernel.size);
+        }
+        for (int x = interiorEnd; x < width; x++) {
+            out[x] = reflectedSum(x);
+        }
+        return out;
+    }
+
+/**
+ * @brief Fully blurred row, from the kernelSize horizontally blurred rows around it
+ */
+    static const uint8_t* blurRow(const GraySource& source, int row, StripScratch& scratch) {
+        const int slot = row % 3;
+        uint8_t* out = scratch.blurRows.data() + static_cast<size_t>(slot) * source.width;
+        if (scratch.blurTags[slot] == row) {
+            return out;
+        }
+        scratch.blurTags[slot] = row;
+
+        const GaussianKernelQ8& kernel = scratch.kernel;
+        const int radius = kernel.size / 2;
+        const uint16_t* rows[MAX_FUSED_KERNEL];
+        for (int i = 0; i < kernel.size; i++) {
+            rows[i] = hblurRow(source, reflect101(row + i - radius, source.height), scratch);
+        }
+
+        scratch.kernels->verticalBlur(rows, kernel.taps, kernel.size, out, source.width);
+        return out;
+    }
+
+/**
+ * @brief Fused gray + blur + gradient + non-maximum suppression for rows [rowStart, rowEnd), then
+ * hysteresis inside the strip
+ * Rows stream through small rings (kernelSize gray rows, 3 blurred rows, 3 gradient rows), so no
+ * intermediate image is ever stored in full. The strip reads halo rows above and below it (blur
+ * radius + 1 for Sobel + 1 for suppression) but only writes its own rows of the shared map.
+ * @param source Full input image
+ * @param rowStart First row of the strip
+ * @param rowEnd One past the last row of the strip
+ * @param low Lower threshold on the L1 gradient magnitude
+ * @param high Upper threshold on the L1 gradient magnitude
+ * @param kernelSize Gaussian blur kernel size
+ * @param map Shared hysteresis map (first row/column are the border ring)
+ * @param mapStep Bytes between map rows
+ * @param scratch Row rings for this strip
+ */
+    static void cannyStrip(const GraySource& source, int rowStart, int rowEnd, int low, int high,
+                           int kernelSize, uint8_t* map, ptrdiff_t mapStep, StripScratch& scratch) {
+        const int width = source.width;
+        const int height = source.height;
+        const int magStep = width + 2;
+
+        scratch.kernel.build(kernelSize, 1.4);
+        scratch.grayRow.resize(width);
+        scratch.hblurRows.resize(static_cast<size_t>(kernelSize) * width);
+        scratch.hblurTags.assign(kernelSize, -1);
+        scratch.blurRows.resize(3 * static_cast<size_t>(width));
+        scratch.blurTags.assign(3, -1);
+        scratch.dxRows.resize(3 * static_cast<size_t>(width));
+        scratch.dyRows.resize(3 * static_cast<size_t>(width));
+        scratch.magRows.assign(4 * static_cast<size_t>(magStep), 0);
+        scratch.stack.clear();
+
+        const int* zeroMagRow = scratch.magRows.data() + 3 * static_cast<size_t>(magStep) + 1;
+        auto gradSlot = [](int row) { return static_cast<size_t>(row % 3); };
+
+        // Non-maximum suppression along the gradient direction, as in cv::Canny
+        auto suppressRow = [&](int row) {
+            const short* dx = scratch.dxRows.data() + gradSlot(row) * width;
+            const short* dy = scratch.dyRows.data() + gradSlot(row) * width;
+            const int* mag = scratch.magRows.data() + gradSlot(row) * magStep + 1;
+            const int* magPrev = row > 0 ? scratch.magRows.data() + gradSlot(row - 1) * magStep + 1 : zeroMagRow;
+            const int* magNext = row < height - 1 ? scratch.magRows.data() + gradSlot(row + 1) * magStep + 1 : zeroMagRow;
+            uint8_t* mapRow = map + (row + 1) * mapStep + 1;
+
+            mapRow[-1] = EDGE_NONE;
+            mapRow[width] = EDGE_NONE;
+
+            // Most rows have no strong pixels, so only those that do are scanned for the stack
+            if (scratch.kernels->suppressRow(dx, dy, mag, magPrev, magNext, low, high, mapRow, width) > 0) {
+                for (int x = 0; x < width; x++) {
+                    if (mapRow[x] == EDGE_STRONG) {
+                        scratch.stack.push_back(mapRow + x);
+                    }
+                }
+            }
+        };
+
+        // Gradient rows: the strip plus one halo row each side, replicating at the image border
+        const int gradStart = std::max(0, rowStart - 1);
+        const int gradEnd = std::min(height, rowEnd + 1);
+
+        for (int row = gradStart; row < gradEnd; row++) {
+            const uint8_t* above = blurRow(source, std::max(row - 1, 0), scratch);
+            const uint8_t* centre = blurRow(source, row, scratch);
+            const uint8_t* below = blurRow(source, std::min(row + 1, height - 1), scratch);
+            short* dx = scratch.dxRows.data() + gradSlot(row) * width;
+            short* dy = scratch.dyRows.data() + gradSlot(row) * width;
+            int* mag = scratch.magRows.data() + gradSlot(row) * magStep + 1;
+
+            // Interior columns in the kernel, the two edge columns replicating their neighbour here
+            scratch.kernels->sobelRow(above, centre, below, dx, dy, mag, width);
+            for (int x : {0, width - 1}) {
+                const int left = std::max(x - 1, 0);
+                const int right = std::min(x + 1, width - 1);
+                const int gx = (above[right] - above[left]) + 2 * (centre[right] - centre[left])
+                               + (below[right] - below[left]);
+                const int gy = (below[left] - above[left]) + 2 * (below[x] - above[x])
+                               + (below[right] - above[right]);
+                dx[x] = static_cast<short>(gx);
+                dy[x] = static_cast<short>(gy);
+                mag[x] = std::abs(gx) + std::abs(gy);
+            }
+
+            // A row can be suppressed once the gradient row below it exists
+            if (row - 1 >= rowStart && row - 1 < rowEnd) {
+                suppressRow(row - 1);
+            }
+            if (row == height - 1 && row >= rowStart) {
+                suppressRow(row);
+            }
+        }
+
+        // Hysteresis limited to the strip's own rows; links across strip boundaries are stitched afterwards
+        const uint8_t* stripBegin = map + (rowStart + 1) * mapStep;
+        const uint8_t* stripEnd = map + (rowEnd + 1) * mapStep;
+        const ptrdiff_t neighbours[8] = {
+                -mapStep - 1, -mapStep, -mapStep + 1, -1, 1, mapStep - 1, mapStep, mapStep + 1
+        };
+
+        std::vector<uint8_t*>& stack = scratch.stack;
+        while (!stack.empty()) {
+            uint8_t* pixel = stack.back();
+            stack.pop_back();
+            for (ptrdiff_t offset : neighbours) {
+                uint8_t* neighbour = pixel + offset;
+                if (neighbour >= stripBegin && neighbour < stripEnd && *neighbour == EDGE_CANDIDATE) {
+                    *neighbour = EDGE_STRONG;
+                    stack.push_back(neighbour);
+                }
+            }
+        }
+    }
+
+/**
+ * @brief Check whether the fused strip path can handle an input
+ * @param inputMat Input image matrix
+ * @param kernelSize Gaussian blur kernel size
+ * @return true if the input is 8-bit gray or RGBA and large enough for the kernel and strips
+ */
+    static bool canUseFusedCanny(const cv::Mat& inputMat, int kernelSize) {
+        return (inputMat.channels() == 1 || inputMat.channels() == 4)
+               && kernelSize >= 1 && kernelSize % 2 == 1 && kernelSize <= MAX_FUSED_KERNEL
+               && inputMat.cols > kernelSize && inputMat.rows >= 2 * MIN_STRIP_ROWS;
+    }
+
+/**
+ * @brief Canny edge detection, fused with the gray conversion and Gaussian blur, split into
+ * horizontal strips on a thread pool
+ * Produces the same result as cvtColor, GaussianBlur and single-threaded cv::Canny with an aperture
+ * of 3 and the L1 gradient: each strip runs up to strip-local hysteresis in parallel, then edges that
+ * cross strip boundaries are followed serially from the boundary rows over the whole image.
+ * @param pool Thread pool to run the strips on
+ * @param scratch Buffers reused across frames
+ * @param inputMat Input image (gray or RGBA, see canUseFusedCanny)
+ * @param lowThreshold Lower threshold for edge detection
+ * @param highThreshold Upper threshold for edge detection
+ * @param kernelSize Gaussian blur kernel size
+ * @param outputData Output edge image, 255 for edges and 0 elsewhere in every channel
+ * @param outputStep Bytes between output rows
+ * @param outputChannels Bytes per output pixel (1 = edge mask, 4 = RGBA)
+ */
+    static void parallelCanny(ThreadPool& pool, FrameScratch& scratch, const cv::Mat& inputMat,
+                              double lowThreshold, double highThreshold, int kernelSize,
+                              uint8_t* outputData, size_t outputStep, int outputChannels) {
+        const int width = inputMat.cols;
+        const int height = inputMat.rows;
+        const GraySource source = {inputMat.ptr<uint8_t>(0), static_cast<size_t>(inputMat.step[0]),
+                                   inputMat.channels(), width, height};
+
+        if (lowThreshold > highThreshold) {
+            std::swap(lowThreshold, highThreshold);
+        }
+        const int low = static_cast<int>(std::floor(lowThreshold));
+        const int high = static_cast<int>(std::floor(highThreshold));
+
+        const int stripCount = std::max(1, std::min(pool.getThreadCount(), height / MIN_STRIP_ROWS));
+        if (static_cast<int>(scratch.strips.size()) < stripCount) {
+            scratch.strips.resize(stripCount);
+        }
+        std::vector<int>& stripStarts = scratch.stripStarts;
+        stripStarts.resize(stripCount + 1);
+        for (int i = 0; i <= stripCount; i++) {
+            stripStarts[i] = static_cast<int>(static_cast<int64_t>(height) * i / stripCount);
+        }
+
+        // One map for the whole frame with a border ring; strips fill disjoint rows
+        const ptrdiff_t mapStep = width + 2;
+        scratch.map.resize(static_cast<size_t>(height + 2) * mapStep);
+        uint8_t* map = scratch.map.data();
+        memset(map, EDGE_NONE, mapStep);
+        memset(map + (height + 1) * mapStep, EDGE_NONE, mapStep);
+
+        pool.parallelFor(stripCount, [&](int strip) {
+            cannyStrip(source, stripStarts[strip], stripStarts[strip + 1], low, high, kernelSize,
+                       map, mapStep, scratch.strips[strip]);
+        });
+
+        // Stitch: strong pixels on either side of a boundary seed candidates across it
+        std::vector<uint8_t*>& stack = scratch.stack;
+        stack.clear();
+        for (int strip = 1; strip < stripCount; strip++) {
+            uint8_t* upper = map + stripStarts[strip] * mapStep + 1;   // Last row of the strip above
+            uint8_t* lower = upper + mapStep;                          // First row of the strip below
+            for (int x = 0; x < width; x++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    if (upper[x] == EDGE_STRONG && lower[x + dx] == EDGE_CANDIDATE) {
+                        lower[x + dx] = EDGE_STRONG;
+                        stack.push_back(lower + x + dx);
+                    }
+                    if (lower[x] == EDGE_STRONG && upper[x + dx] == EDGE_CANDIDATE) {
+                        upper[x + dx] = EDGE_STRONG;
+                        stack.push_back(upper + x + dx);
+                    }
+                }
+            }
+        }
+
+        // Follow stitched edges over the whole image; they may cross further boundaries
+        const ptrdiff_t neighbours[8] = {
+                -mapStep - 1, -mapStep, -mapStep + 1, -1, 1, mapStep - 1, mapStep, mapStep + 1
+        };
+        while (!stack.empty()) {
+            uint8_t* pixel = stack.back();
+            stack.pop_back();
+            for (ptrdiff_t offset : neighbours) {
+                uint8_t* neighbour = pixel + offset;
+                if (*neighbour == EDGE_CANDIDATE) {
+                    *neighbour = EDGE_STRONG;
+                    stack.push_back(neighbour);
+                }
+            }
+        }
+
+        // Write the result straight into the caller's buffer (no edge Mat, no channel merge)
+        pool.parallelFor(stripCount, [&](int strip) {
+            for (int row = stripStarts[strip]; row < stripStarts[strip + 1]; row++) {
+                const uint8_t* mapRow = map + (row + 1) * mapStep + 1;
+                uint8_t* outRow = outputData + row * outputStep;
+                if (outputChannels == 4) {
+                    auto* outPixels = reinterpret_cast<uint32_t*>(outRow);
+                    for (int x = 0; x < width; x++) {
+                        outPixels[x] = mapRow[x] == EDGE_STRONG ? 0xFFFFFFFFu : 0u;
+                    }
+                } else {
+                    for (int x = 0; x < width; x++) {
+                        outRow[x] = mapRow[x] == EDGE_STRONG ? 255 : 0;
+                    }
+                }
+            }
+        });
+    }
+
+/**
+ * @brief Get a single-channel view of the input, converting BGR or RGBA into grayScratch
+ */
+    static const cv::Mat& toGray(const cv::Mat& inputMat, cv::Mat& grayScratch) {
+        if (inputMat.channels() == 4) {
+            cv::cvtColor(inputMat, grayScratch, cv::COLOR_RGBA2GRAY);
+            return grayScratch;
+        }
+        if (inputMat.channels() == 3) {
+            cv::cvtColor(inputMat, grayScratch, cv::COLOR_BGR2GRAY);
+            return grayScratch;
+        }
+        // Already single channel (e.g. camera luma plane), read in place
+        return inputMat;
+    }
 
-            // Convert to grayscale if needed
-            if (inputMat.channels() == 4) {
-                cv::cvtColor(inputMat, grayMat, cv::COLOR_RGBA2GRAY);
-            } else if (inputMat.channels() == 3) {
-                cv::cvtColor(inputMat, grayMat, cv::COLOR_BGR2GRAY);
+/**
+ * @brief Expand an 8-bit edge image into the output buffer (white edges on transparent background for RGBA)
+ */
+    static void expandEdges(const cv::Mat& edgeMat, uint8_t* outputData, size_t outputStep, int outputChannels) {
+        const int width = edgeMat.cols;
+        for (int row = 0; row < edgeMat.rows; row++) {
+            const uint8_t* edgeRow = edgeMat.ptr<uint8_t>(row);
+            uint8_t* outRow = outputData + row * outputStep;
+            if (outputChannels == 4) {
+                auto* outPixels = reinterpret_cast<uint32_t*>(outRow);
+                for (int x = 0; x < width; x++) {
+                    outPixels[x] = edgeRow[x] * 0x01010101u;
+                }
             } else {
-                grayMat = inputMat.clone();
+                memcpy(outRow, edgeRow, width);
             }
+        }
+    }
 
-            // Apply Gaussian blur for noise reduction
-            cv::Mat blurredMat;
-            cv::GaussianBlur(grayMat, blurredMat, cv::Size(kernelSize, kernelSize), 1.4);
+/**
+ * @brief Canny edge detection into a caller-supplied buffer, strip-parallel when possible
+ * Falls back to cvtColor, GaussianBlur and cv::Canny on the calling thread without a pool or for
+ * inputs the fused kernel does not handle.
+ * @param pool Thread pool, or nullptr for the single-threaded OpenCV path
+ * @param scratch Buffers reused across frames
+ * @param inputMat Input image matrix (gray, BGR or RGBA format)
+ * @param lowThreshold Lower threshold for edge detection
+ * @param highThreshold Upper threshold for edge detection
+ * @param kernelSize Gaussian blur kernel size
+ * @param outputData Output edge image, 255 for edges and 0 elsewhere in every channel
+ * @param outputStep Bytes between output rows
+ * @param outputChannels Bytes per output pixel (1 = edge mask, 4 = RGBA)
+ */
+    static void detectEdges(ThreadPool* pool, FrameScratch& scratch, const cv::Mat& inputMat,
+                            double lowThreshold, double highThreshold, int kernelSize,
+                            uint8_t* outputData, size_t outputStep, int outputChannels) {
+        // Large enough frames run the fused kernel in strips on the pool
+        if (pool && canUseFusedCanny(inputMat, kernelSize)) {
+            parallelCanny(*pool, scratch, inputMat, lowThreshold, highThreshold, kernelSize,
+                          outputData, outputStep, outputChannels);
+            return;
+        }
 
-            // Apply Canny edge detection
-            cv::Canny(blurredMat, outputMat, lowThreshold, highThreshold, 3, false);
+        const cv::Mat& grayMat = toGray(inputMat, scratch.grayMat);
 
-            LOGI("Canny edge detection completed successfully");
-            return true;
+        // Apply Gaussian blur for noise reduction
+        cv::GaussianBlur(grayMat, scratch.blurredMat, cv::Size(kernelSize, kernelSize), 1.4);
 
-        } catch (const cv::Exception& e) {
-            LOGE("OpenCV exception in applyCanny: %s", e.what());
-            return false;
-        } catch (const std::exception& e) {
-            LOGE("Standard exception in applyCanny: %s", e.what());
-            return false;
+        // Apply Canny edge detection
+        cv::Canny(scratch.blurredMat, scratch.edgeMat, lowThreshold, highThreshold, 3, false);
+
+        expandEdges(scratch.edgeMat, outputData, outputStep, outputChannels);
+    }
+
+/**
+ * @brief Square roots of 0 .. 65535 rounded to 8 bits, so 16-bit gradients need no sqrt per pixel
+ * Anything larger saturates to 255, exactly as cv::magnitude followed by convertTo(CV_8U) does.
+ */
+    static const uint8_t* sqrtTable() {
+        static const std::vector<uint8_t> table = [] {
+            std::vector<uint8_t> values(65536);
+            for (size_t i = 0; i < values.size(); i++) {
+                values[i] = static_cast<uint8_t>(std::min(255L, std::lround(std::sqrt(static_cast<double>(i)))));
+            }
+            return values;
+        }();
+        return table.data();
+    }
+
+/**
+ * @brief First-derivative operators that gradientMagnitude can apply
+ */
+    enum class GradientOperator {
+        Sobel,
+        Scharr,
+        Prewitt
+    };
+
+/**
+ * @brief Build a one-row CV_32F kernel
+ */
+    static cv::Mat makeKernel(float a, float b, float c) {
+        cv::Mat kernel(1, 3, CV_32F);
+        float* values = kernel.ptr<float>(0);
+        values[0] = a;
+        values[1] = b;
+        values[2] = c;
+        return kernel;
+    }
+
+/**
+ * @brief Horizontal and vertical derivatives of a single-channel image
+ * @param depth CV_16S or CV_64F
+ * @param kernelSize Sobel kernel size (Scharr and Prewitt are always 3x3)
+ */
+    static void computeGradients(const cv::Mat& blurredMat, cv::Mat& gradXMat, cv::Mat& gradYMat,
+                                 GradientOperator op, int kernelSize, int depth) {
+        switch (op) {
+            case GradientOperator::Scharr:
+                cv::Scharr(blurredMat, gradXMat, depth, 1, 0);
+                cv::Scharr(blurredMat, gradYMat, depth, 0, 1);
+                break;
+            case GradientOperator::Prewitt: {
+                static const cv::Mat derivative = makeKernel(-1.0f, 0.0f, 1.0f);
+                static const cv::Mat box = makeKernel(1.0f, 1.0f, 1.0f);
+                cv::sepFilter2D(blurredMat, gradXMat, depth, derivative, box);
+                cv::sepFilter2D(blurredMat, gradYMat, depth, box, derivative);
+                break;
+            }
+            case GradientOperator::Sobel:
+            default:
+                cv::Sobel(blurredMat, gradXMat, depth, 1, 0, kernelSize);
+                cv::Sobel(blurredMat, gradYMat, depth, 0, 1, kernelSize);
+                break;
         }
     }
 
+/**
+ * @brief Gradient magnitude of a blurred gray image as 8-bit
+ * @param blurredMat Blurred single-channel input
+ * @param gradXMat Scratch for the horizontal gradient
+ * @param gradYMat Scratch for the vertical gradient
+ * @param outputMat Output magnitude (CV_8UC1)
+ * @param op Derivative operator
+ * @param kernelSize Sobel kernel size (1, 3, 5, 7)
+ * @param mode Gradient and magnitude computation
+ */
+    static void gradientMagnitude(const cv::Mat& blurredMat, cv::Mat& gradXMat, cv::Mat& gradYMat,
+                                  cv::Mat& outputMat, GradientOperator op, int kernelSize, SobelMode mode) {
+        if (mode == SobelMode::Float64) {
+            cv::Mat magnitude;
+            computeGradients(blurredMat, gradXMat, gradYMat, op, kernelSize, CV_64F);
+            cv::magnitude(gradXMat, gradYMat, magnitude);
+            magnitude.convertTo(outputMat, CV_8UC1);
+            return;
+        }
+
+        // 16-bit gradients are a quarter of the CV_64F traffic; they saturate only past 32767,
+        // where the 8-bit magnitude has long been 255 anyway
+        computeGradients(blurredMat, gradXMat, gradYMat, op, kernelSize, CV_16S);
+        outputMat.create(blurredMat.rows, blurredMat.cols, CV_8UC1);
+
+        const uint8_t* table = sqrtTable();
+        for (int row = 0; row < blurredMat.rows; row++) {
+            const int16_t* dx = gradXMat.ptr<int16_t>(row);
+            const int16_t* dy = gradYMat.ptr<int16_t>(row);
+            uint8_t* out = outputMat.ptr<uint8_t>(row);
+
+            if (mode == SobelMode::FixedL1) {
+                for (int x = 0; x < blurredMat.cols; x++) {
+                    const int sum = std::abs(dx[x]) + std::abs(dy[x]);
+                    out[x] = static_cast<uint8_t>(std::min(sum, 255));
+                }
+            } else {
+                for (int x = 0; x < blurredMat.cols; x++) {
+                    const uint32_t squared = static_cast<uint32_t>(dx[x] * dx[x]) +
+                                             static_cast<uint32_t>(dy[x] * dy[x]);
+                    out[x] = squared < 65536 ? table[squared] : 255;
+                }
+            }
+        }
+    }
+
+// Difference-of-Gaussians: inner and outer blur sigmas, and gain applied to the 8-bit difference
+static const double DOG_INNER_SIGMA = 1.0;
+static const double DOG_OUTER_SIGMA = 1.6;
+static const double DOG_GAIN = 4.0;
+
+/**
+ * @brief Everything an edge algorithm needs to process one frame
+ */
+    struct EdgeJob {
+        ThreadPool* pool;                   // Strip threads, or null for single-threaded
+        FrameScratch& scratch;
+        const cv::Mat& inputMat;            // Gray, BGR or RGBA
+        const ProcessingParams& params;     // Thresholds already resolved for this frame
+        uint8_t* outputData;
+        size_t outputStep;
+        int outputChannels;
+    };
+
+    static void runCanny(const EdgeJob& job) {
+        detectEdges(job.pool, job.scratch, job.inputMat, job.params.lowThreshold, job.params.highThreshold,
+                    job.params.blurKernel, job.outputData, job.outputStep, job.outputChannels);
+    }
+
+/**
+ * @brief Gray, blur with the configured kernel, then gradient magnitude with the given operator
+ */
+    static void runGradient(const EdgeJob& job, GradientOperator op) {
+        FrameScratch& scratch = job.scratch;
+        const cv::Mat& grayMat = toGray(job.inputMat, scratch.grayMat);
+        const int kernel = job.params.blurKernel;
+        cv::GaussianBlur(grayMat, scratch.blurredMat, cv::Size(kernel, kernel), 0);
+        gradientMagnitude(scratch.blurredMat, scratch.gradXMat, scratch.gradYMat, scratch.edgeMat,
+                          op, 3, job.params.sobelMode);
+        expandEdges(scratch.edgeMat, job.outputData, job.outputStep, job.outputChannels);
+    }
+
+    static void runSobel(const EdgeJob& job) {
+        runGradient(job, GradientOperator::Sobel);
+    }
+
+    static void runScharr(const EdgeJob& job) {
+        runGradient(job, GradientOperator::Scharr);
+    }
+
+    static void runPrewitt(const EdgeJob& job) {
+        runGradient(job, GradientOperator::Prewitt);
+    }
+
+    static void runLaplacian(const EdgeJob& job) {
+        FrameScratch& scratch = job.scratch;
+        const cv::Mat& grayMat = toGray(job.inputMat, scratch.grayMat);
+        const int kernel = job.params.blurKernel;
+        cv::GaussianBlur(grayMat, scratch.blurredMat, cv::Size(kernel, kernel), 0);
+        cv::Laplacian(scratch.blurredMat, scratch.gradXMat, CV_16S, 3);
+        cv::convertScaleAbs(scratch.gradXMat, scratch.edgeMat);
+        expandEdges(scratch.edgeMat, job.outputData, job.outputStep, job.outputChannels);
+    }
+
+    static void runDifferenceOfGaussians(const EdgeJob& job) {
+        FrameScratch& scratch = job.scratch;
+        const cv::Mat& grayMat = toGray(job.inputMat, scratch.grayMat);
+        cv::GaussianBlur(grayMat, scratch.blurredMat, cv::Size(0, 0), DOG_INNER_SIGMA);
+        cv::GaussianBlur(grayMat, scratch.gradYMat, cv::Size(0, 0), DOG_OUTER_SIGMA);
+        cv::absdiff(scratch.blurredMat, scratch.gradYMat, scratch.gradXMat);
+        scratch.gradXMat.convertTo(scratch.edgeMat, CV_8U, DOG_GAIN);
+        expandEdges(scratch.edgeMat, job.outputData, job.outputStep, job.outputChannels);
+    }
+
+/**
+ * @brief One row of the algorithm dispatch table
+ */
+    struct EdgeAlgorithmEntry {
+        EdgeAlgorithm algorithm;
+        const char* name;
+        bool usesThresholds;                // Only these pay for automatic threshold estimation
+        void (*run)(const EdgeJob& job);
+    };
+
+// Indexed by EdgeAlgorithm
+static const EdgeAlgorithmEntry EDGE_ALGORITHMS[] = {
+        {EdgeAlgorithm::Canny, "Canny", true, runCanny},
+        {EdgeAlgorithm::Sobel, "Sobel", false, runSobel},
+        {EdgeAlgorithm::Scharr, "Scharr", false, runScharr},
+        {EdgeAlgorithm::Laplacian, "Laplacian", false, runLaplacian},
+        {EdgeAlgorithm::DifferenceOfGaussians, "DifferenceOfGaussians", false, runDifferenceOfGaussians},
+        {EdgeAlgorithm::Prewitt, "Prewitt", false, runPrewitt},
+};
+
+static_assert(sizeof(EDGE_ALGORITHMS) / sizeof(EDGE_ALGORITHMS[0]) == EDGE_ALGORITHM_COUNT,
+              "Every EdgeAlgorithm needs a dispatch table entry");
+
+    static const EdgeAlgorithmEntry& algorithmEntry(EdgeAlgorithm algorithm) {
+        const int index = static_cast<int>(algorithm);
+        return EDGE_ALGORITHMS[index >= 0 && index < EDGE_ALGORITHM_COUNT ? index : 0];
+    }
+
+    const char* edgeAlgorithmName(EdgeAlgorithm algorithm) {
+        return algorithmEntry(algorithm).name;
+    }
+
+/**
+ * @brief Apply Canny edge detection to input image using the default detector
+ * @param inputMat Input image matrix (BGR or RGBA format)
+ * @param outputMat Output edge image (single channel)
+ * @param lowThreshold Lower threshold for edge detection (default: 100)
+ * @param highThreshold Upper threshold for edge detection (default: 200)
+ * @param kernelSize Gaussian blur kernel size (default: 3)
+ * @return true if successful, false otherwise
+ */
+    bool applyCanny(const cv::Mat& inputMat, cv::Mat& outputMat,
+                    double lowThreshold = 100.0, double highThreshold = 200.0,
+                    int kernelSize = 3) {
+        return defaultDetector().applyCanny(inputMat, outputMat, lowThreshold, highThreshold, kernelSize);
+    }
+
 /**
  * @brief Apply Sobel edge detection to input image
  * @param inputMat Input image matrix
@@ -71,38 +739,34 @@ namespace EdgeDetection {
  * @return true if successful, false otherwise
  */
     bool applySobel(const cv::Mat& inputMat, cv::Mat& outputMat, int kernelSize = 3) {
+        return applySobel(inputMat, outputMat, kernelSize, SobelMode::Float64);
+    }
+
+/**
+ * @brief Apply Sobel edge detection to input image with a chosen gradient precision
+ * @param inputMat Input image matrix
+ * @param outputMat Output edge image
+ * @param kernelSize Sobel kernel size (1, 3, 5, 7)
+ * @param mode Gradient and magnitude computation
+ * @return true if successful, false otherwise
+ */
+    bool applySobel(const cv::Mat& inputMat, cv::Mat& outputMat, int kernelSize, SobelMode mode) {
         try {
             if (inputMat.empty()) {
                 LOGE("Input matrix is empty for Sobel");
                 return false;
             }
 
-            cv::Mat grayMat;
-
-            // Convert to grayscale if needed
-            if (inputMat.channels() == 4) {
-                cv::cvtColor(inputMat, grayMat, cv::COLOR_RGBA2GRAY);
-            } else if (inputMat.channels() == 3) {
-                cv::cvtColor(inputMat, grayMat, cv::COLOR_BGR2GRAY);
-            } else {
-                grayMat = inputMat.clone();
-            }
+            cv::Mat grayScratch;
+            const cv::Mat& grayMat = toGray(inputMat, grayScratch);
 
             // Apply Gaussian blur
             cv::Mat blurredMat;
             cv::GaussianBlur(grayMat, blurredMat, cv::Size(3, 3), 0);
 
-            // Compute Sobel derivatives
+            // Compute Sobel derivatives and their magnitude
             cv::Mat sobelX, sobelY;
-            cv::Sobel(blurredMat, sobelX, CV_64F, 1, 0, kernelSize);
-            cv::Sobel(blurredMat, sobelY, CV_64F, 0, 1, kernelSize);
-
-            // Compute magnitude
-            cv::Mat magnitude;
-            cv::magnitude(sobelX, sobelY, magnitude);
-
-            // Convert to 8-bit
-            magnitude.convertTo(outputMat, CV_8UC1);
+            gradientMagnitude(blurredMat, sobelX, sobelY, outputMat, GradientOperator::Sobel, kernelSize, mode);
 
             LOGI("Sobel edge detection completed successfully");
             return true;
@@ -148,51 +812,489 @@ namespace EdgeDetection {
     }
 
 /**
- * @brief Process camera frame with optimized parameters for real-time performance
- * @param inputData Input frame data (RGBA format)
+ * @brief Convert camera YUV planes to RGBA reading the plane buffers in place
+ * @param planes Input YUV planes
  * @param width Frame width
  * @param height Frame height
- * @param outputData Output processed frame data
+ * @param rgbaMat Output RGBA image
  * @return true if successful, false otherwise
  */
-    bool processFrame(const uint8_t* inputData, int width, int height, uint8_t* outputData) {
+    static bool yuvPlanesToRGBA(const YuvPlanes& planes, int width, int height, cv::Mat& rgbaMat) {
+        cv::Mat yMat(height, width, CV_8UC1, (void*)planes.y, planes.yRowStride);
+
+        if (planes.uvPixelStride == 2 && (planes.v == planes.u + 1 || planes.u == planes.v + 1)) {
+            // Semi-planar: chroma is already interleaved in the camera buffer, wrap it directly
+            const bool uFirst = planes.v == planes.u + 1;
+            const uint8_t* uvBase = uFirst ? planes.u : planes.v;
+            cv::Mat uvMat(height / 2, width / 2, CV_8UC2, (void*)uvBase, planes.uvRowStride);
+
+            cv::cvtColorTwoPlane(yMat, uvMat, rgbaMat,
+                                 uFirst ? cv::COLOR_YUV2RGBA_NV12 : cv::COLOR_YUV2RGBA_NV21);
+            return true;
+        }
+
+        // Planar (or unusual strides): gather into a packed I420 scratch buffer reused across frames
+        thread_local cv::Mat i420Mat;
+        i420Mat.create(height + height / 2, width, CV_8UC1);
+
+        for (int row = 0; row < height; row++) {
+            memcpy(i420Mat.ptr<uint8_t>(row), planes.y + row * planes.yRowStride, width);
+        }
+
+        const int chromaWidth = width / 2;
+        const int chromaHeight = height / 2;
+        uint8_t* uDst = i420Mat.ptr<uint8_t>(height);
+        uint8_t* vDst = uDst + chromaWidth * chromaHeight;
+
+        for (int row = 0; row < chromaHeight; row++) {
+            const uint8_t* uSrc = planes.u + row * planes.uvRowStride;
+            const uint8_t* vSrc = planes.v + row * planes.uvRowStride;
+            if (planes.uvPixelStride == 1) {
+                memcpy(uDst + row * chromaWidth, uSrc, chromaWidth);
+                memcpy(vDst + row * chromaWidth, vSrc, chromaWidth);
+            } else {
+                for (int col = 0; col < chromaWidth; col++) {
+                    uDst[row * chromaWidth + col] = uSrc[col * planes.uvPixelStride];
+                    vDst[row * chromaWidth + col] = vSrc[col * planes.uvPixelStride];
+                }
+            }
+        }
+
+        cv::cvtColor(i420Mat, rgbaMat, cv::COLOR_YUV2RGBA_I420);
+        return true;
+    }
+
+/**
+ * @brief Convert camera YUV planes to RGBA, writing straight into the caller's buffer
+ * @param planes Input YUV planes referenced in place
+ * @param width Frame width
+ * @param height Frame height
+ * @param outputData Output RGBA frame data
+ * @return true if successful, false otherwise
+ */
+    bool convertYuvFrame(const YuvPlanes& planes, int width, int height, uint8_t* outputData) {
+        try {
+            if (!planes.y || !planes.u || !planes.v || !outputData) {
+                LOGE("Invalid YUV plane or output data pointers");
+                return false;
+            }
+
+            // Output already has the destination size and type, so OpenCV converts into it in place
+            cv::Mat rgbaMat(height, width, CV_8UC4, outputData);
+            if (!yuvPlanesToRGBA(planes, width, height, rgbaMat)) {
+                LOGE("Failed to convert YUV planes to RGBA");
+                return false;
+            }
+
+            if (rgbaMat.data != outputData) {
+                LOGE("YUV conversion did not write to the output buffer");
+                return false;
+            }
+
+            return true;
+
+        } catch (const cv::Exception& e) {
+            LOGE("OpenCV exception in convertYuvFrame: %s", e.what());
+            return false;
+        } catch (const std::exception& e) {
+            LOGE("Standard exception in convertYuvFrame: %s", e.what());
+            return false;
+        }
+    }
+
+    int pyramidDimension(int size, int level) {
+        for (int i = 0; i < level; i++) {
+            size = (size + 1) / 2;
+        }
+        return size;
+    }
+
+    bool downscaleFrame(const uint8_t* inputData, int rowStride, int width, int height, int channels, int level,
+                        uint8_t* outputData) {
         try {
             if (!inputData || !outputData) {
                 LOGE("Invalid input or output data pointers");
                 return false;
             }
+            if ((channels != 1 && channels != 4) || level < 1 || level > MAX_PYRAMID_LEVEL) {
+                LOGE("Unsupported downscale of %d channels by %d levels", channels, level);
+                return false;
+            }
 
-            // Create OpenCV Mat from input data
-            cv::Mat inputMat(height, width, CV_8UC4, (void*)inputData);
+            const int type = channels == 1 ? CV_8UC1 : CV_8UC4;
+            cv::Mat inputMat(height, width, type, const_cast<uint8_t*>(inputData), rowStride);
 
-            // Apply Canny edge detection with optimized parameters for real-time
-            cv::Mat edgeMat;
-            if (!applyCanny(inputMat, edgeMat, 50.0, 150.0, 3)) {
-                LOGE("Failed to apply Canny edge detection");
-                return false;
+            // Intermediate levels reuse per-thread storage, so only the first frame at a size allocates
+            thread_local cv::Mat levelMats[MAX_PYRAMID_LEVEL - 1];
+            const cv::Mat* source = &inputMat;
+            for (int i = 1; i < level; i++) {
+                cv::Mat& levelMat = levelMats[i - 1];
+                cv::pyrDown(*source, levelMat,
+                            cv::Size(pyramidDimension(width, i), pyramidDimension(height, i)));
+                source = &levelMat;
             }
 
-            // Convert edges to RGBA format
-            cv::Mat outputMat;
-            if (!edgeToRGBA(edgeMat, outputMat)) {
-                LOGE("Failed to convert edges to RGBA");
+            cv::Mat outputMat(pyramidDimension(height, level), pyramidDimension(width, level), type, outputData);
+            cv::pyrDown(*source, outputMat, outputMat.size());
+
+            if (outputMat.data != outputData) {
+                LOGE("Pyramid downscale did not write to the output buffer");
                 return false;
             }
+            return true;
 
-            // Copy processed data to output buffer
-            if (outputMat.isContinuous()) {
-                memcpy(outputData, outputMat.data, width * height * 4);
-            } else {
-                // Handle non-continuous data
-                for (int i = 0; i < height; i++) {
-                    memcpy(outputData + i * width * 4,
-                           outputMat.ptr<uint8_t>(i),
-                           width * 4);
+        } catch (const cv::Exception& e) {
+            LOGE("OpenCV exception in downscaleFrame: %s", e.what());
+            return false;
+        } catch (const std::exception& e) {
+            LOGE("Standard exception in downscaleFrame: %s", e.what());
+            return false;
+        }
+    }
+
+    int packedMaskWordsPerRow(int width) {
+        return (width + 31) / 32;
+    }
+
+    size_t outputByteCount(OutputFormat format, int width, int height) {
+        switch (format) {
+            case OutputFormat::EdgeBytes:
+                return static_cast<size_t>(width) * height;
+            case OutputFormat::PackedMask:
+                return static_cast<size_t>(packedMaskWordsPerRow(width)) * 4 * height;
+            case OutputFormat::Rgba:
+            default:
+                return static_cast<size_t>(width) * height * 4;
+        }
+    }
+
+    void packEdgeMask(const uint8_t* edges, size_t edgeStep, int width, int height, uint8_t* mask) {
+        const int wordsPerRow = packedMaskWordsPerRow(width);
+        const int fullWords = width / 32;
+
+        for (int row = 0; row < height; row++) {
+            const uint8_t* src = edges + row * edgeStep;
+            uint8_t* dst = mask + static_cast<size_t>(row) * wordsPerRow * 4;
+
+            for (int word = 0; word < wordsPerRow; word++) {
+                const int x = word * 32;
+                uint32_t bits = 0;
+                if (word < fullWords) {
+                    // Gather the top bit of eight bytes at once: the multiply moves byte i's bit 7 to
+                    // bit 56 + i, so the first pixel lands in the lowest bit (little-endian loads)
+                    for (int group = 0; group < 4; group++) {
+                        uint64_t bytes;
+                        memcpy(&bytes, src + x + group * 8, sizeof(bytes));
+                        const uint64_t gathered = ((bytes & 0x8080808080808080ULL) * 0x0002040810204081ULL) >> 56;
+                        bits |= static_cast<uint32_t>(gathered) << (group * 8);
+                    }
+                } else {
+                    for (int bit = 0; x + bit < width; bit++) {
+                        bits |= static_cast<uint32_t>(src[x + bit] >> 7) << bit;
+                    }
                 }
+                memcpy(dst + word * 4, &bits, sizeof(bits));
+            }
+        }
+    }
+
+    int tileCount(int size, int tileSize) {
+        return (size + tileSize - 1) / tileSize;
+    }
+
+    /**
+     * @brief Fold eight bytes into a running tile hash (multiply, rotate, multiply)
+     * The rotation makes the result depend on word order, so moved content changes the hash too.
+     */
+    static inline uint64_t mixTileWord(uint64_t hash, uint64_t word) {
+        hash ^= word * 0x9E3779B97F4A7C15ULL;
+        hash = (hash << 31) | (hash >> 33);
+        return hash * 0xC2B2AE3D27D4EB4FULL;
+    }
+
+    void hashTiles(const uint8_t* pixels, int width, int height, int channels, int tileSize, uint64_t* hashes) {
+        const int tilesPerRow = tileCount(width, tileSize);
+        const size_t rowBytes = static_cast<size_t>(width) * channels;
+        const size_t tileBytes = static_cast<size_t>(tileSize) * channels;
+
+        for (int tileRow = 0; tileRow * tileSize < height; tileRow++) {
+            uint64_t* rowHashes = hashes + static_cast<size_t>(tileRow) * tilesPerRow;
+            std::fill(rowHashes, rowHashes + tilesPerRow, 0x27D4EB2F165667C5ULL);
+
+            // Walk whole image rows so memory is read in order, feeding each tile its segment
+            const int rowEnd = std::min(height, (tileRow + 1) * tileSize);
+            for (int row = tileRow * tileSize; row < rowEnd; row++) {
+                const uint8_t* src = pixels + row * rowBytes;
+                for (int tile = 0; tile < tilesPerRow; tile++) {
+                    const size_t start = tile * tileBytes;
+                    const size_t end = std::min(rowBytes, start + tileBytes);
+                    uint64_t hash = rowHashes[tile];
+
+                    size_t offset = start;
+                    for (; offset + 8 <= end; offset += 8) {
+                        uint64_t word;
+                        memcpy(&word, src + offset, sizeof(word));
+                        hash = mixTileWord(hash, word);
+                    }
+                    if (offset < end) {
+                        uint64_t word = 0;
+                        memcpy(&word, src + offset, end - offset);
+                        hash = mixTileWord(hash, word);
+                    }
+                    rowHashes[tile] = hash;
+                }
+            }
+        }
+    }
+
+// Frames between average FPS updates
+static const int FPS_WINDOW_FRAMES = 30;
+
+    EdgeDetector::EdgeDetector()
+            : parameters(new ProcessingParams{50.0, 150.0, 3, ThresholdMode::Manual,
+                                                EdgeAlgorithm::Canny, SobelMode::FixedLut}),
+              parameterReaders(0),
+              threadCount(ThreadPool::defaultThreadCount()),
+              windowStart(std::chrono::steady_clock::now()) {
+        if (threadCount > 1) {
+            pool = std::make_shared<ThreadPool>(threadCount);
+        }
+        LOGI("Fused Canny kernels: %s", simdKernels().name);
+    }
+
+    // Defined here, where FrameScratch is complete
+    EdgeDetector::~EdgeDetector() {
+        delete parameters.load();
+    }
+
+    void EdgeDetector::setThreadCount(int count) {
+        const int resolved = count > 0 ? count : ThreadPool::defaultThreadCount();
+
+        std::shared_ptr<ThreadPool> previous;
+        {
+            std::lock_guard<std::mutex> lock(configMutex);
+            if (threadCount == resolved) {
+                return;
+            }
+            threadCount = resolved;
+            previous = std::move(pool);
+            pool = resolved > 1 ? std::make_shared<ThreadPool>(resolved) : nullptr;
+        }
+        // previous is joined here, or by the last frame still using it
+        LOGI("Edge detection thread count set to %d", resolved);
+    }
+
+    int EdgeDetector::getThreadCount() const {
+        std::lock_guard<std::mutex> lock(configMutex);
+        return threadCount;
+    }
+
+    std::shared_ptr<ThreadPool> EdgeDetector::currentPool() const {
+        std::lock_guard<std::mutex> lock(configMutex);
+        return pool;
+    }
+
+    void EdgeDetector::updateParameters(double lowThreshold, double highThreshold, int blurKernel) {
+        if (blurKernel < 1 || blurKernel % 2 == 0) {
+            LOGE("Blur kernel size must be odd and positive, got %d", blurKernel);
+            return;
+        }
+
+        std::lock_guard<std::mutex> lock(parameterWriteMutex);
+        ProcessingParams next = *parameters.load();
+        next.lowThreshold = lowThreshold;
+        next.highThreshold = highThreshold;
+        next.blurKernel = blurKernel;
+        publishParameters(next);
+        LOGI("Parameters updated: thresholds %.1f/%.1f, blur %d", lowThreshold, highThreshold, blurKernel);
+    }
+
+    void EdgeDetector::setThresholdMode(ThresholdMode mode) {
+        std::lock_guard<std::mutex> lock(parameterWriteMutex);
+        ProcessingParams next = *parameters.load();
+        next.thresholdMode = mode;
+        publishParameters(next);
+        LOGI("Threshold mode set to %d", static_cast<int>(mode));
+    }
+
+    void EdgeDetector::setAlgorithm(EdgeAlgorithm algorithm) {
+        std::lock_guard<std::mutex> lock(parameterWriteMutex);
+        ProcessingParams next = *parameters.load();
+        next.algorithm = algorithm;
+        publishParameters(next);
+        LOGI("Edge algorithm set to %s", edgeAlgorithmName(algorithm));
+    }
+
+    void EdgeDetector::setSobelMode(SobelMode mode) {
+        std::lock_guard<std::mutex> lock(parameterWriteMutex);
+        ProcessingParams next = *parameters.load();
+        next.sobelMode = mode;
+        publishParameters(next);
+        LOGI("Sobel mode set to %d", static_cast<int>(mode));
+    }
+
+    // Caller holds parameterWriteMutex
+    void EdgeDetector::publishParameters(const ProcessingParams& next) {
+        retiredParameters.emplace_back(parameters.exchange(new ProcessingParams(next)));
+
+        // A reader that starts after the exchange can only see the new snapshot, so once none is
+        // mid-copy every replaced snapshot is unreachable
+        if (parameterReaders.load() == 0) {
+            retiredParameters.clear();
+        }
+    }
+
+    ProcessingParams EdgeDetector::getParameters() const {
+        parameterReaders.fetch_add(1);
+        const ProcessingParams snapshot = *parameters.load();
+        parameterReaders.fetch_sub(1, std::memory_order_release);
+        return snapshot;
+    }
+
+    std::unique_ptr<FrameScratch> EdgeDetector::acquireScratch() {
+        {
+            std::lock_guard<std::mutex> lock(scratchMutex);
+            if (!idleScratch.empty()) {
+                std::unique_ptr<FrameScratch> scratch = std::move(idleScratch.back());
+                idleScratch.pop_back();
+                return scratch;
+            }
+        }
+        return std::unique_ptr<FrameScratch>(new FrameScratch());
+    }
+
+    void EdgeDetector::releaseScratch(std::unique_ptr<FrameScratch> scratch) {
+        std::lock_guard<std::mutex> lock(scratchMutex);
+        idleScratch.push_back(std::move(scratch));
+    }
+
+    void EdgeDetector::recordFrame(std::chrono::steady_clock::time_point frameStart) {
+        const auto frameEnd = std::chrono::steady_clock::now();
+        const double frameMs = std::chrono::duration<double, std::milli>(frameEnd - frameStart).count();
+
+        std::lock_guard<std::mutex> lock(statsMutex);
+        framesProcessed++;
+        lastProcessingMs = frameMs;
+
+        if (framesProcessed % FPS_WINDOW_FRAMES == 0) {
+            const double windowMs = std::chrono::duration<double, std::milli>(frameEnd - windowStart).count();
+            averageFps = windowMs > 0.0 ? FPS_WINDOW_FRAMES * 1000.0 / windowMs : 0.0;
+            windowStart = frameEnd;
+
+            LOGI("Frame %d processed in %.1f ms, Average FPS: %.2f",
+                 framesProcessed, frameMs, averageFps);
+        }
+    }
+
+    ProcessingStats EdgeDetector::getStats() const {
+        const ProcessingParams current = getParameters();
+
+        std::lock_guard<std::mutex> lock(statsMutex);
+        ProcessingStats stats;
+        stats.processingTime = lastProcessingMs;
+        stats.framesProcessed = framesProcessed;
+        stats.averageFps = averageFps;
+        if (current.thresholdMode == ThresholdMode::Manual) {
+            stats.currentThreshold1 = static_cast<int>(current.lowThreshold);
+            stats.currentThreshold2 = static_cast<int>(current.highThreshold);
+        } else {
+            stats.currentThreshold1 = static_cast<int>(appliedLowThreshold);
+            stats.currentThreshold2 = static_cast<int>(appliedHighThreshold);
+        }
+        return stats;
+    }
+
+    void EdgeDetector::resetStats() {
+        std::lock_guard<std::mutex> lock(statsMutex);
+        framesProcessed = 0;
+        lastProcessingMs = 0.0;
+        averageFps = 0.0;
+        windowStart = std::chrono::steady_clock::now();
+    }
+
+    bool EdgeDetector::applyCanny(const cv::Mat& inputMat, cv::Mat& outputMat,
+                                  double lowThreshold, double highThreshold, int kernelSize) {
+        try {
+            if (inputMat.empty()) {
+                LOGE("Input matrix is empty");
+                return false;
             }
 
+            std::shared_ptr<ThreadPool> currentThreads = currentPool();
+            std::unique_ptr<FrameScratch> scratch = acquireScratch();
+
+            outputMat.create(inputMat.rows, inputMat.cols, CV_8UC1);
+            detectEdges(currentThreads.get(), *scratch, inputMat, lowThreshold, highThreshold, kernelSize,
+                        outputMat.ptr<uint8_t>(0), outputMat.step[0], 1);
+
+            releaseScratch(std::move(scratch));
+            LOGI("Canny edge detection completed successfully");
             return true;
 
+        } catch (const cv::Exception& e) {
+            LOGE("OpenCV exception in applyCanny: %s", e.what());
+            return false;
+        } catch (const std::exception& e) {
+            LOGE("Standard exception in applyCanny: %s", e.what());
+            return false;
+        }
+    }
+
+    bool EdgeDetector::detectEdgesInto(const cv::Mat& inputMat, FrameScratch& scratch, uint8_t* outputData,
+                                       OutputFormat outputFormat) {
+        const int outputChannels = outputFormat == OutputFormat::Rgba ? 4 : 1;
+
+        // A packed mask is detected into scratch bytes first and then packed a word at a time
+        uint8_t* edgeData = outputData;
+        if (outputFormat == OutputFormat::PackedMask) {
+            scratch.maskBytes.resize(static_cast<size_t>(inputMat.cols) * inputMat.rows);
+            edgeData = scratch.maskBytes.data();
+        }
+
+        ProcessingParams current = getParameters();
+        const EdgeAlgorithmEntry& entry = algorithmEntry(current.algorithm);
+
+        if (entry.usesThresholds && current.thresholdMode != ThresholdMode::Manual) {
+            autoThreshold.update(inputMat, current.thresholdMode, &current.lowThreshold, &current.highThreshold);
+
+            std::lock_guard<std::mutex> lock(statsMutex);
+            appliedLowThreshold = current.lowThreshold;
+            appliedHighThreshold = current.highThreshold;
+        }
+
+        std::shared_ptr<ThreadPool> currentThreads = currentPool();
+        const EdgeJob job = {currentThreads.get(), scratch, inputMat, current,
+                             edgeData, static_cast<size_t>(inputMat.cols) * outputChannels, outputChannels};
+        entry.run(job);
+
+        if (outputFormat == OutputFormat::PackedMask) {
+            packEdgeMask(edgeData, inputMat.cols, inputMat.cols, inputMat.rows, outputData);
+        }
+        return true;
+    }
+
+    bool EdgeDetector::processFrame(const uint8_t* inputData, int width, int height, uint8_t* outputData,
+                                    OutputFormat outputFormat) {
+        const auto frameStart = std::chrono::steady_clock::now();
+
+        try {
+            if (!inputData || !outputData) {
+                LOGE("Invalid input or output data pointers");
+                return false;
+            }
+
+            // Create OpenCV Mat from input data
+            cv::Mat inputMat(height, width, CV_8UC4, (void*)inputData);
+
+            std::unique_ptr<FrameScratch> scratch = acquireScratch();
+            const bool success = detectEdgesInto(inputMat, *scratch, outputData, outputFormat);
+            releaseScratch(std::move(scratch));
+
+            if (success) {
+                recordFrame(frameStart);
+            }
+            return success;
+
         } catch (const cv::Exception& e) {
             LOGE("OpenCV exception in processFrame: %s", e.what());
             return false;
@@ -202,4 +1304,123 @@ namespace EdgeDetection {
         }
     }
 
+    bool EdgeDetector::processYuvFrame(const YuvPlanes& planes, int width, int height, uint8_t* outputData,
+                                       OutputFormat outputFormat) {
+        const auto frameStart = std::chrono::steady_clock::now();
+
+        try {
+            if (!planes.y || !planes.u || !planes.v || !outputData) {
+                LOGE("Invalid YUV plane or output data pointers");
+                return false;
+            }
+
+            std::unique_ptr<FrameScratch> scratch = acquireScratch();
+            if (!yuvPlanesToRGBA(planes, width, height, scratch->rgbaMat)) {
+                LOGE("Failed to convert YUV planes to RGBA");
+                releaseScratch(std::move(scratch));
+                return false;
+            }
+
+            const bool success = detectEdgesInto(scratch->rgbaMat, *scratch, outputData, outputFormat);
+            releaseScratch(std::move(scratch));
+
+            if (success) {
+                recordFrame(frameStart);
+            }
+            return success;
+
+        } catch (const cv::Exception& e) {
+            LOGE("OpenCV exception in processYuvFrame: %s", e.what());
+            return false;
+        } catch (const std::exception& e) {
+            LOGE("Standard exception in processYuvFrame: %s", e.what());
+            return false;
+        }
+    }
+
+    bool EdgeDetector::processLumaFrame(const uint8_t* yData, int yRowStride, int width, int height,
+                                        uint8_t* outputData, OutputFormat outputFormat) {
+        const auto frameStart = std::chrono::steady_clock::now();
+
+        try {
+            if (!yData || !outputData) {
+                LOGE("Invalid luma or output data pointers");
+                return false;
+            }
+
+            // Y is the grayscale image, so YUV->RGBA and RGBA->GRAY are both skipped
+            cv::Mat lumaMat(height, width, CV_8UC1, (void*)yData, yRowStride);
+
+            std::unique_ptr<FrameScratch> scratch = acquireScratch();
+            const bool success = detectEdgesInto(lumaMat, *scratch, outputData, outputFormat);
+            releaseScratch(std::move(scratch));
+
+            if (success) {
+                recordFrame(frameStart);
+            }
+            return success;
+
+        } catch (const cv::Exception& e) {
+            LOGE("OpenCV exception in processLumaFrame: %s", e.what());
+            return false;
+        } catch (const std::exception& e) {
+            LOGE("Standard exception in processLumaFrame: %s", e.what());
+            return false;
+        }
+    }
+
+    EdgeDetector& defaultDetector() {
+        static EdgeDetector detector;
+        return detector;
+    }
+
+/**
+ * @brief Process camera frame using the default detector
+ * @param inputData Input frame data (RGBA format)
+ * @param width Frame width
+ * @param height Frame height
+ * @param outputData Output processed frame data
+ * @return true if successful, false otherwise
+ */
+    bool processFrame(const uint8_t* inputData, int width, int height, uint8_t* outputData) {
+        return defaultDetector().processFrame(inputData, width, height, outputData);
+    }
+
+/**
+ * @brief Process camera YUV planes with edge detection using the default detector
+ * @param planes Input YUV planes referenced in place
+ * @param width Frame width
+ * @param height Frame height
+ * @param outputData Output processed frame data (RGBA format)
+ * @return true if successful, false otherwise
+ */
+    bool processYuvFrame(const YuvPlanes& planes, int width, int height, uint8_t* outputData) {
+        return defaultDetector().processYuvFrame(planes, width, height, outputData);
+    }
+
+/**
+ * @brief Process the camera luma plane using the default detector
+ * @param yData Input Y plane
+ * @param yRowStride Bytes between luma rows
+ * @param width Frame width
+ * @param height Frame height
+ * @param outputData Output processed frame data (RGBA format)
+ * @return true if successful, false otherwise
+ */
+    bool processLumaFrame(const uint8_t* yData, int yRowStride, int width, int height, uint8_t* outputData) {
+        return defaultDetector().processLumaFrame(yData, yRowStride, width, height, outputData);
+    }
+
+    ProcessingStats getProcessingStats() {
+        return defaultDetector().getStats();
+    }
+
+    void resetProcessingStats() {
+        defaultDetector().resetStats();
+    }
+
+    void updateProcessingParameters(double lowThreshold, double highThreshold, int blurKernel) {
+        defaultDetector().updateParameters(lowThreshold, highThreshold, blurKernel);
+    }
+
 } // namespace EdgeDetection
\ No newline at end of file
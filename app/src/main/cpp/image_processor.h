@@ -2,7 +2,15 @@
 #define IMAGE_PROCESSOR_H
 
 #include <opencv2/opencv.hpp>
+#include <chrono>
+#include <atomic>
 #include <cstdint>
+#include <memory>
+#include <mutex>
+#include <vector>
+
+#include "auto_threshold.h"
+#include "thread_pool.h"
 
 namespace EdgeDetection {
 
@@ -19,6 +27,15 @@ namespace EdgeDetection {
                     double lowThreshold, double highThreshold,
                     int kernelSize);
 
+/**
+ * @brief How Sobel, Scharr and Prewitt gradients and their magnitude are computed
+ */
+    enum class SobelMode {
+        Float64 = 0,    // CV_64F gradients and cv::magnitude
+        FixedL1 = 1,    // CV_16S gradients, |gx| + |gy|
+        FixedLut = 2    // CV_16S gradients, square root from a table (same output as Float64)
+    };
+
 /**
  * @brief Apply Sobel edge detection algorithm
  * @param inputMat Input image matrix
@@ -28,6 +45,16 @@ namespace EdgeDetection {
  */
     bool applySobel(const cv::Mat& inputMat, cv::Mat& outputMat, int kernelSize);
 
+/**
+ * @brief Apply Sobel edge detection algorithm with a chosen gradient precision
+ * @param inputMat Input image matrix
+ * @param outputMat Output edge image
+ * @param kernelSize Sobel kernel size (1, 3, 5, 7)
+ * @param mode Gradient and magnitude computation
+ * @return true if successful, false otherwise
+ */
+    bool applySobel(const cv::Mat& inputMat, cv::Mat& outputMat, int kernelSize, SobelMode mode);
+
 /**
  * @brief Convert single channel edge image to RGBA format for OpenGL
  * @param edgeMat Input edge image (single channel)
@@ -46,6 +73,75 @@ namespace EdgeDetection {
  */
     bool processFrame(const uint8_t* inputData, int width, int height, uint8_t* outputData);
 
+/**
+ * @brief Camera YUV_420_888 planes referenced in place (no copies)
+ */
+    struct YuvPlanes {
+        const uint8_t* y;           // Luma plane
+        const uint8_t* u;           // Cb plane
+        const uint8_t* v;           // Cr plane
+        int yRowStride;             // Bytes between luma rows
+        int uvRowStride;            // Bytes between chroma rows
+        int uvPixelStride;          // Bytes between chroma samples (1 = planar, 2 = semi-planar)
+    };
+
+/**
+ * @brief Convert camera YUV planes to RGBA without edge detection
+ * @param planes Input YUV planes (any stride / interleaving reported by the camera)
+ * @param width Frame width in pixels
+ * @param height Frame height in pixels
+ * @param outputData Output RGBA frame data (width * height * 4 bytes)
+ * @return true if successful, false otherwise
+ */
+    bool convertYuvFrame(const YuvPlanes& planes, int width, int height, uint8_t* outputData);
+
+// Deepest pyramid level downscaleFrame accepts (1/8 of each dimension)
+    const int MAX_PYRAMID_LEVEL = 3;
+
+/**
+ * @brief Get one dimension of a frame after a number of pyrDown steps
+ * @param size Full-resolution width or height
+ * @param level Number of halvings (0 = unchanged)
+ */
+    int pyramidDimension(int size, int level);
+
+/**
+ * @brief Shrink a gray or RGBA frame by repeated cv::pyrDown so detection runs on fewer pixels
+ * Each level halves both dimensions (rounding up) after a 5x5 Gaussian, so the result is already
+ * smoothed; the last step writes straight into outputData.
+ * @param inputData Input frame
+ * @param rowStride Bytes between input rows
+ * @param width Input width in pixels
+ * @param height Input height in pixels
+ * @param channels Bytes per pixel (1 = gray, 4 = RGBA)
+ * @param level Number of halvings, 1 .. MAX_PYRAMID_LEVEL
+ * @param outputData Output frame, pyramidDimension(width, level) * pyramidDimension(height, level) * channels bytes
+ * @return true if successful, false otherwise
+ */
+    bool downscaleFrame(const uint8_t* inputData, int rowStride, int width, int height, int channels, int level,
+                        uint8_t* outputData);
+
+/**
+ * @brief Process camera YUV planes with edge detection, converting directly from the plane buffers
+ * @param planes Input YUV planes (any stride / interleaving reported by the camera)
+ * @param width Frame width in pixels
+ * @param height Frame height in pixels
+ * @param outputData Output processed frame data (RGBA format)
+ * @return true if successful, false otherwise
+ */
+    bool processYuvFrame(const YuvPlanes& planes, int width, int height, uint8_t* outputData);
+
+/**
+ * @brief Process the camera luma plane directly, skipping all colour conversion
+ * @param yData Input Y plane (used as the grayscale image)
+ * @param yRowStride Bytes between luma rows
+ * @param width Frame width in pixels
+ * @param height Frame height in pixels
+ * @param outputData Output processed frame data (RGBA format)
+ * @return true if successful, false otherwise
+ */
+    bool processLumaFrame(const uint8_t* yData, int yRowStride, int width, int height, uint8_t* outputData);
+
 /**
  * @brief Structure to hold processing statistics
  */
@@ -57,6 +153,89 @@ namespace EdgeDetection {
         int currentThreshold2;      // Current upper threshold
     };
 
+/**
+ * @brief Layout of a detector's output buffer
+ */
+    enum class OutputFormat {
+        Rgba,           // Four identical bytes per pixel
+        EdgeBytes,      // One byte per pixel
+        PackedMask      // One bit per pixel; see packEdgeMask
+    };
+
+/**
+ * @brief Bytes needed for a width x height frame in the given output format
+ */
+    size_t outputByteCount(OutputFormat format, int width, int height);
+
+/**
+ * @brief Number of 32-bit words in one packed mask row
+ */
+    int packedMaskWordsPerRow(int width);
+
+/**
+ * @brief Pack an 8-bit edge image to one bit per pixel
+ * Each row is packedMaskWordsPerRow(width) little-endian 32-bit words; pixel x is bit (x % 32) of
+ * word (x / 32), set where the edge value is 128 or more. Unused bits at the end of a row are zero.
+ * @param edges Edge image, one byte per pixel
+ * @param edgeStep Bytes between edge image rows
+ * @param width Image width in pixels
+ * @param height Image height in pixels
+ * @param mask Output, outputByteCount(OutputFormat::PackedMask, width, height) bytes
+ */
+    void packEdgeMask(const uint8_t* edges, size_t edgeStep, int width, int height, uint8_t* mask);
+
+/**
+ * @brief Number of tiles of the given size needed to cover a dimension, counting a partial last tile
+ */
+    int tileCount(int size, int tileSize);
+
+/**
+ * @brief Hash every tileSize x tileSize tile of a tightly packed image
+ * Tiles are numbered row by row, tileCount(width, tileSize) per row; tiles on the right and bottom
+ * edges cover whatever is left of the image. Identical tile contents always hash the same, so a
+ * changed hash marks a tile that has to be uploaded again.
+ * @param pixels Image, width * channels bytes per row
+ * @param width Image width in pixels
+ * @param height Image height in pixels
+ * @param channels Bytes per pixel
+ * @param tileSize Tile width and height in pixels
+ * @param hashes Output, tileCount(width, tileSize) * tileCount(height, tileSize) values
+ */
+    void hashTiles(const uint8_t* pixels, int width, int height, int channels, int tileSize, uint64_t* hashes);
+
+/**
+ * @brief Edge detector run by an EdgeDetector
+ * Canny produces a binary edge map; the others produce an 8-bit edge strength.
+ */
+    enum class EdgeAlgorithm {
+        Canny = 0,
+        Sobel = 1,
+        Scharr = 2,
+        Laplacian = 3,
+        DifferenceOfGaussians = 4,
+        Prewitt = 5
+    };
+
+    // Number of EdgeAlgorithm values
+    const int EDGE_ALGORITHM_COUNT = 6;
+
+/**
+ * @brief Get the display name of an edge algorithm
+ */
+    const char* edgeAlgorithmName(EdgeAlgorithm algorithm);
+
+/**
+ * @brief Immutable snapshot of the parameters one frame is processed with
+ */
+    struct ProcessingParams {
+        double lowThreshold;        // Lower Canny threshold
+        double highThreshold;       // Upper Canny threshold
+        int blurKernel;             // Gaussian blur kernel size (odd)
+        ThresholdMode thresholdMode; // Manual uses the thresholds above; otherwise they are derived per frame
+        EdgeAlgorithm algorithm;    // Detector run on each frame
+        SobelMode sobelMode;        // Gradient precision when algorithm is Sobel
+    };
+
 /**
  * @brief Get current processing statistics
  * @return ProcessingStats structure with current metrics
@@ -76,6 +255,171 @@ namespace EdgeDetection {
  */
     void updateProcessingParameters(double lowThreshold, double highThreshold, int blurKernel);
 
+/**
+ * @brief Per-call buffers (hysteresis map and stacks) kept by a detector across frames
+ */
+    struct FrameScratch;
+
+/**
+ * @brief Independent edge detection context: parameters, scratch buffers, statistics and thread pool
+ * Several detectors can run at the same time without sharing any state. One detector may also be
+ * used from several threads at once; each call borrows its own scratch buffers.
+ */
+    class EdgeDetector {
+    public:
+        EdgeDetector();
+        ~EdgeDetector();
+
+        EdgeDetector(const EdgeDetector&) = delete;
+        EdgeDetector& operator=(const EdgeDetector&) = delete;
+
+        /**
+         * @brief Process an RGBA frame with edge detection
+         * @param inputData Input frame data (RGBA format)
+         * @param width Frame width in pixels
+         * @param height Frame height in pixels
+         * @param outputData Output processed frame data
+         * @param outputFormat Output buffer layout
+         * @return true if successful, false otherwise
+         */
+        bool processFrame(const uint8_t* inputData, int width, int height, uint8_t* outputData,
+                          OutputFormat outputFormat = OutputFormat::Rgba);
+
+        /**
+         * @brief Process camera YUV planes with edge detection, converting directly from the plane buffers
+         * @param planes Input YUV planes (any stride / interleaving reported by the camera)
+         * @param width Frame width in pixels
+         * @param height Frame height in pixels
+         * @param outputData Output processed frame data
+         * @param outputFormat Output buffer layout
+         * @return true if successful, false otherwise
+         */
+        bool processYuvFrame(const YuvPlanes& planes, int width, int height, uint8_t* outputData,
+                             OutputFormat outputFormat = OutputFormat::Rgba);
+
+        /**
+         * @brief Process the camera luma plane directly, skipping all colour conversion
+         * @param yData Input Y plane (used as the grayscale image)
+         * @param yRowStride Bytes between luma rows
+         * @param width Frame width in pixels
+         * @param height Frame height in pixels
+         * @param outputData Output processed frame data
+         * @param outputFormat Output buffer layout
+         * @return true if successful, false otherwise
+         */
+        bool processLumaFrame(const uint8_t* yData, int yRowStride, int width, int height, uint8_t* outputData,
+                              OutputFormat outputFormat = OutputFormat::Rgba);
+
+        /**
+         * @brief Apply Canny edge detection using this detector's thread pool and scratch buffers
+         * @param inputMat Input image matrix (gray, BGR or RGBA format)
+         * @param outputMat Output edge image (single channel)
+         * @param lowThreshold Lower threshold for edge detection
+         * @param highThreshold Upper threshold for edge detection
+         * @param kernelSize Gaussian blur kernel size
+         * @return true if successful, false otherwise
+         */
+        bool applyCanny(const cv::Mat& inputMat, cv::Mat& outputMat,
+                        double lowThreshold, double highThreshold, int kernelSize);
+
+        /**
+         * @brief Set number of threads each frame is split across (takes effect on the next frame)
+         * @param threadCount Threads per frame (1 = single-threaded OpenCV path, <= 0 = one per CPU core)
+         */
+        void setThreadCount(int threadCount);
+
+        /**
+         * @brief Get number of threads each frame is split across
+         */
+        int getThreadCount() const;
+
+        /**
+         * @brief Update edge detection parameters used by the next frame
+         * Publishes a new snapshot; frames in flight keep the snapshot they started with.
+         * Never waits on a frame being processed.
+         * @param lowThreshold New lower threshold
+         * @param highThreshold New upper threshold
+         * @param blurKernel New Gaussian blur kernel size (odd)
+         */
+        void updateParameters(double lowThreshold, double highThreshold, int blurKernel);
+
+        /**
+         * @brief Choose between the configured thresholds and ones derived from scene luminance
+         * @param mode Threshold mode used from the next frame on
+         */
+        void setThresholdMode(ThresholdMode mode);
+
+        /**
+         * @brief Choose the edge detector run from the next frame on
+         * @param algorithm Edge algorithm
+         */
+        void setAlgorithm(EdgeAlgorithm algorithm);
+
+        /**
+         * @brief Choose how Sobel gradients are computed from the next frame on
+         * @param mode Gradient and magnitude computation
+         */
+        void setSobelMode(SobelMode mode);
+
+        /**
+         * @brief Get the parameters the next frame will be processed with
+         */
+        ProcessingParams getParameters() const;
+
+        /**
+         * @brief Get current processing statistics
+         */
+        ProcessingStats getStats() const;
+
+        /**
+         * @brief Reset processing statistics
+         */
+        void resetStats();
+
+    private:
+        bool detectEdgesInto(const cv::Mat& inputMat, FrameScratch& scratch, uint8_t* outputData,
+                             OutputFormat outputFormat);
+        std::shared_ptr<ThreadPool> currentPool() const;
+        std::unique_ptr<FrameScratch> acquireScratch();
+        void releaseScratch(std::unique_ptr<FrameScratch> scratch);
+        void publishParameters(const ProcessingParams& next);
+        void recordFrame(std::chrono::steady_clock::time_point frameStart);
+
+        // Current parameter snapshot. Readers count themselves in parameterReaders while they copy it,
+        // so a writer can free replaced snapshots once it sees no reader in progress.
+        std::atomic<const ProcessingParams*> parameters;
+        mutable std::atomic<int> parameterReaders;
+        // Serialises writers only; frames never take it
+        std::mutex parameterWriteMutex;
+        std::vector<std::unique_ptr<const ProcessingParams>> retiredParameters;
+
+        // Luminance history for the automatic threshold modes
+        AutoThreshold autoThreshold;
+
+        // Guards the thread pool
+        mutable std::mutex configMutex;
+        std::shared_ptr<ThreadPool> pool;
+        int threadCount;
+
+        // Scratch sets not in use by a call; one per concurrent caller at most
+        std::mutex scratchMutex;
+        std::vector<std::unique_ptr<FrameScratch>> idleScratch;
+
+        // Guards the statistics
+        mutable std::mutex statsMutex;
+        int framesProcessed = 0;
+        double lastProcessingMs = 0.0;
+        double averageFps = 0.0;
+        double appliedLowThreshold = 0.0;
+        double appliedHighThreshold = 0.0;
+        std::chrono::steady_clock::time_point windowStart;
+    };
+
+/**
+ * @brief Get the detector used by the free functions and the handle-less JNI entry points
+ */
+    EdgeDetector& defaultDetector();
+
 } // namespace EdgeDetection
 
 // OpenGL ES related structures and functions
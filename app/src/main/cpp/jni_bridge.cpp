@@ -7,45 +7,15 @@
 #include <android/native_window_jni.h>
 #include <string>
 #include <memory>
-#include <chrono>
+#include <vector>
 
 #include "image_processor.h"
+#include "thread_pool.h"
 
 #define LOG_TAG "EdgeDetectionJNI"
 #define LOGI(...) __android_log_print(ANDROID_LOG_INFO, LOG_TAG, __VA_ARGS__)
 #define LOGE(...) __android_log_print(ANDROID_LOG_ERROR, LOG_TAG, __VA_ARGS__)
 
-// Global variables for performance tracking
-static std::chrono::high_resolution_clock::time_point lastFrameTime;
-static int frameCount = 0;
-static double averageFps = 0.0;
-
-// Shader source code (embedded as strings)
-const char* vertexShaderSource = R"(
-#version 100
-attribute vec2 aPosition;
-attribute vec2 aTexCoord;
-varying vec2 vTexCoord;
-uniform mat4 uMVPMatrix;
-
-void main() {
-    vTexCoord = aTexCoord;
-    gl_Position = vec4(aPosition, 0.0, 1.0);
-}
-)";
-
-const char* fragmentShaderSource = R"(
-#version 100
-precision mediump float;
-varying vec2 vTexCoord;
-uniform sampler2D uTexture;
-
-void main() {
-    vec4 textureColor = texture2D(uTexture, vTexCoord);
-    gl_FragColor = textureColor;
-}
-)";
-
 extern "C" {
 
 /**
@@ -62,9 +32,7 @@ Java_com_example_edgedetectionviewer_EdgeDetectionJNI_nativeInit(
 
     try {
         // Reset performance counters
-        frameCount = 0;
-        averageFps = 0.0;
-        lastFrameTime = std::chrono::high_resolution_clock::now();
+        EdgeDetection::defaultDetector().resetStats();
 
         // Initialize OpenCV (if needed)
         LOGI("Native initialization completed successfully");
@@ -76,8 +44,111 @@ Java_com_example_edgedetectionviewer_EdgeDetectionJNI_nativeInit(
     }
 }
 
+/**
+ * @brief Status codes returned by the buffer-based entry points (mirrored in EdgeDetectionJNI)
+ */
+enum ProcessStatus : jint {
+    STATUS_OK = 0,
+    STATUS_INVALID_ARGUMENT = -1,
+    STATUS_NOT_DIRECT = -2,
+    STATUS_BUFFER_TOO_SMALL = -3,
+    STATUS_PROCESSING_FAILED = -4
+};
+
+/**
+ * @brief Resolve a direct buffer address and check it holds at least the requested number of bytes
+ * @param env JNI environment
+ * @param buffer Java direct ByteBuffer
+ * @param requiredBytes Minimum capacity in bytes
+ * @param name Buffer name used in log messages
+ * @param address Receives the buffer address on success
+ * @return STATUS_OK, or the reason the buffer cannot be used
+ */
+static jint resolveDirectBuffer(JNIEnv* env, jobject buffer, jlong requiredBytes,
+                                const char* name, uint8_t** address) {
+    if (!buffer) {
+        LOGE("%s buffer is null", name);
+        return STATUS_INVALID_ARGUMENT;
+    }
+
+    auto* data = static_cast<uint8_t*>(env->GetDirectBufferAddress(buffer));
+    if (!data) {
+        LOGE("%s buffer must be a direct buffer", name);
+        return STATUS_NOT_DIRECT;
+    }
+
+    jlong capacity = env->GetDirectBufferCapacity(buffer);
+    if (capacity < requiredBytes) {
+        LOGE("%s buffer too small: need %lld, got %lld", name,
+             static_cast<long long>(requiredBytes), static_cast<long long>(capacity));
+        return STATUS_BUFFER_TOO_SMALL;
+    }
+
+    *address = data;
+    return STATUS_OK;
+}
+
+/**
+ * @brief Bytes a strided plane must span to cover the given geometry
+ * @param rowStride Bytes between rows
+ * @param pixelStride Bytes between samples in a row
+ * @param width Samples per row
+ * @param height Number of rows
+ * @return Minimum buffer size in bytes
+ */
+static jlong planeSpan(jint rowStride, jint pixelStride, jint width, jint height) {
+    return static_cast<jlong>(rowStride) * (height - 1) + static_cast<jlong>(pixelStride) * (width - 1) + 1;
+}
+
+/**
+ * @brief Check that strides describe rows which do not overlap, so planeSpan covers every sample read
+ * A row stride of 0 would also be taken by cv::Mat as "packed", reading past the checked span.
+ * @param rowStride Bytes between rows
+ * @param pixelStride Bytes between samples in a row
+ * @param width Samples per row
+ * @return true if the strides are usable
+ */
+static bool isValidPlaneStride(jint rowStride, jint pixelStride, jint width) {
+    return pixelStride >= 1 && rowStride >= static_cast<jlong>(pixelStride) * (width - 1) + 1;
+}
+
+/**
+ * @brief Run RGBA edge detection between two resolved buffers
+ * Shared by processFrame, processFrameInto and process so all go through the same native path
+ * @param detector Detector whose parameters, scratch and statistics are used
+ * @param input Input frame data (RGBA)
+ * @param output Output frame data
+ * @param width Image width
+ * @param height Image height
+ * @param outputFormat Output buffer layout
+ * @return STATUS_OK or STATUS_PROCESSING_FAILED
+ */
+static jint processRgbaFrame(EdgeDetection::EdgeDetector& detector, const uint8_t* input, uint8_t* output,
+                             jint width, jint height, EdgeDetection::OutputFormat outputFormat) {
+    if (!detector.processFrame(input, width, height, output, outputFormat)) {
+        LOGE("Frame processing failed");
+        return STATUS_PROCESSING_FAILED;
+    }
+
+    return STATUS_OK;
+}
+
+/**
+ * @brief Look up the detector behind a handle returned by create()
+ * @param handle Native handle
+ * @return Detector, or nullptr if the handle is 0
+ */
+static EdgeDetection::EdgeDetector* fromHandle(jlong handle) {
+    if (handle == 0) {
+        LOGE("Detector handle is null");
+        return nullptr;
+    }
+    return reinterpret_cast<EdgeDetection::EdgeDetector*>(handle);
+}
+
 /**
  * @brief Process camera frame with edge detection
+ * Thin wrapper over the shared RGBA path that allocates and returns a new Java array
  * @param env JNI environment
  * @param thiz Java object instance
  * @param inputArray Input image data as byte array (RGBA)
@@ -89,18 +160,9 @@ JNIEXPORT jbyteArray JNICALL
 Java_com_example_edgedetectionviewer_EdgeDetectionJNI_processFrame(
         JNIEnv* env, jobject thiz, jbyteArray inputArray, jint width, jint height) {
 
-    auto frameStart = std::chrono::high_resolution_clock::now();
-
     try {
-        if (!inputArray) {
-            LOGE("Input array is null");
-            return nullptr;
-        }
-
-        // Get input data
-        jbyte* inputBytes = env->GetByteArrayElements(inputArray, nullptr);
-        if (!inputBytes) {
-            LOGE("Failed to get input byte array elements");
+        if (!inputArray || width <= 0 || height <= 0) {
+            LOGE("Invalid input array or dimensions");
             return nullptr;
         }
 
@@ -108,7 +170,6 @@ Java_com_example_edgedetectionviewer_EdgeDetectionJNI_processFrame(
         if (inputLength != width * height * 4) {
             LOGE("Input array size mismatch: expected %d, got %d",
                  width * height * 4, inputLength);
-            env->ReleaseByteArrayElements(inputArray, inputBytes, JNI_ABORT);
             return nullptr;
         }
 
@@ -116,243 +177,1264 @@ Java_com_example_edgedetectionviewer_EdgeDetectionJNI_processFrame(
         jbyteArray outputArray = env->NewByteArray(inputLength);
         if (!outputArray) {
             LOGE("Failed to create output byte array");
-            env->ReleaseByteArrayElements(inputArray, inputBytes, JNI_ABORT);
             return nullptr;
         }
 
+        jbyte* inputBytes = env->GetByteArrayElements(inputArray, nullptr);
         jbyte* outputBytes = env->GetByteArrayElements(outputArray, nullptr);
-        if (!outputBytes) {
-            LOGE("Failed to get output byte array elements");
-            env->ReleaseByteArrayElements(inputArray, inputBytes, JNI_ABORT);
+        if (!inputBytes || !outputBytes) {
+            LOGE("Failed to get byte array elements");
+            if (inputBytes) {
+                env->ReleaseByteArrayElements(inputArray, inputBytes, JNI_ABORT);
+            }
+            if (outputBytes) {
+                env->ReleaseByteArrayElements(outputArray, outputBytes, JNI_ABORT);
+            }
             return nullptr;
         }
 
-        // Process frame with edge detection
-        bool success = EdgeDetection::processFrame(
-                reinterpret_cast<const uint8_t*>(inputBytes),
-                width, height,
-                reinterpret_cast<uint8_t*>(outputBytes)
-        );
+        jint status = processRgbaFrame(EdgeDetection::defaultDetector(),
+                                       reinterpret_cast<const uint8_t*>(inputBytes),
+                                       reinterpret_cast<uint8_t*>(outputBytes), width, height,
+                                       EdgeDetection::OutputFormat::Rgba);
 
-        // Release input array
+        // Input is never modified; only commit the output when processing succeeded
         env->ReleaseByteArrayElements(inputArray, inputBytes, JNI_ABORT);
+        env->ReleaseByteArrayElements(outputArray, outputBytes, status == STATUS_OK ? 0 : JNI_ABORT);
 
-        if (!success) {
-            LOGE("Frame processing failed");
-            env->ReleaseByteArrayElements(outputArray, outputBytes, JNI_ABORT);
-            return nullptr;
-        }
+        return status == STATUS_OK ? outputArray : nullptr;
 
-        // Commit output array
-        env->ReleaseByteArrayElements(outputArray, outputBytes, 0);
+    } catch (const std::exception& e) {
+        LOGE("Exception in processFrame: %s", e.what());
+        return nullptr;
+    }
+}
 
-        // Update performance metrics
-        frameCount++;
-        auto frameEnd = std::chrono::high_resolution_clock::now();
-        auto frameDuration = std::chrono::duration_cast<std::chrono::milliseconds>
-                (frameEnd - frameStart).count();
+/**
+ * @brief Process an RGBA frame between caller-supplied direct buffers
+ * @param env JNI environment
+ * @param detector Detector to run
+ * @param inputBuffer Direct buffer holding the input image (RGBA)
+ * @param outputBuffer Direct buffer receiving the result
+ * @param width Image width
+ * @param height Image height
+ * @param outputFormat Output buffer layout
+ * @return STATUS_OK or a negative status code
+ */
+static jint processDirectFrame(JNIEnv* env, EdgeDetection::EdgeDetector& detector,
+                               jobject inputBuffer, jobject outputBuffer, jint width, jint height,
+                               EdgeDetection::OutputFormat outputFormat) {
+    if (width <= 0 || height <= 0) {
+        LOGE("Invalid dimensions %dx%d", width, height);
+        return STATUS_INVALID_ARGUMENT;
+    }
 
-        if (frameCount % 30 == 0) {  // Log every 30 frames
-            auto totalDuration = std::chrono::duration_cast<std::chrono::milliseconds>
-                    (frameEnd - lastFrameTime).count();
-            averageFps = 30000.0 / totalDuration;  // 30 frames / duration in ms * 1000
-            lastFrameTime = frameEnd;
+    const jlong pixels = static_cast<jlong>(width) * height;
+    uint8_t* input = nullptr;
+    uint8_t* output = nullptr;
 
-            LOGI("Frame %d processed in %ld ms, Average FPS: %.2f",
-                 frameCount, frameDuration, averageFps);
-        }
+    jint status = resolveDirectBuffer(env, inputBuffer, pixels * 4, "Input", &input);
+    if (status != STATUS_OK) {
+        return status;
+    }
 
-        return outputArray;
+    status = resolveDirectBuffer(env, outputBuffer,
+                                 static_cast<jlong>(EdgeDetection::outputByteCount(outputFormat, width, height)),
+                                 "Output", &output);
+    if (status != STATUS_OK) {
+        return status;
+    }
+
+    return processRgbaFrame(detector, input, output, width, height, outputFormat);
+}
+
+/**
+ * @brief Process an RGBA frame between caller-supplied direct buffers with the default detector
+ * No Java arrays are created, pinned or copied back
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param inputBuffer Direct buffer holding the input image (RGBA)
+ * @param outputBuffer Direct buffer receiving the result (RGBA)
+ * @param width Image width
+ * @param height Image height
+ * @return STATUS_OK or a negative status code
+ */
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_processFrameInto(
+        JNIEnv* env, jobject thiz, jobject inputBuffer, jobject outputBuffer,
+        jint width, jint height) {
+
+    try {
+        return processDirectFrame(env, EdgeDetection::defaultDetector(), inputBuffer, outputBuffer,
+                                  width, height, EdgeDetection::OutputFormat::Rgba);
 
     } catch (const std::exception& e) {
-        LOGE("Exception in processFrame: %s", e.what());
-        return nullptr;
+        LOGE("Exception in processFrameInto: %s", e.what());
+        return STATUS_PROCESSING_FAILED;
     }
 }
 
 /**
- * @brief Initialize OpenGL ES renderer
+ * @brief Resolve camera YUV plane buffers into a YuvPlanes view, checking each covers the geometry
  * @param env JNI environment
- * @param thiz Java object instance
- * @param width Surface width
- * @param height Surface height
- * @return true if successful
+ * @param yBuffer Direct Y plane buffer
+ * @param uBuffer Direct U plane buffer
+ * @param vBuffer Direct V plane buffer
+ * @param yRowStride Bytes between luma rows
+ * @param uvRowStride Bytes between chroma rows
+ * @param uvPixelStride Bytes between chroma samples
+ * @param width Image width
+ * @param height Image height
+ * @param planes Receives the plane pointers and strides on success
+ * @return STATUS_OK, or the reason a plane cannot be used
  */
-JNIEXPORT jboolean JNICALL
-Java_com_example_edgedetectionviewer_EdgeDetectionJNI_initGL(
-        JNIEnv* env, jobject thiz, jint width, jint height) {
+static jint resolveYuvPlanes(JNIEnv* env, jobject yBuffer, jobject uBuffer, jobject vBuffer,
+                             jint yRowStride, jint uvRowStride, jint uvPixelStride,
+                             jint width, jint height, EdgeDetection::YuvPlanes* planes) {
+    // Chroma is subsampled 2x2, so its geometry is only well defined for even sizes of at least 2x2
+    if (width < 2 || height < 2 || width % 2 != 0 || height % 2 != 0) {
+        LOGE("Invalid YUV dimensions %dx%d", width, height);
+        return STATUS_INVALID_ARGUMENT;
+    }
+    if (!isValidPlaneStride(yRowStride, 1, width) || !isValidPlaneStride(uvRowStride, uvPixelStride, width / 2)) {
+        LOGE("Invalid YUV strides: Y row %d, UV row %d, UV pixel %d", yRowStride, uvRowStride, uvPixelStride);
+        return STATUS_INVALID_ARGUMENT;
+    }
 
-    LOGI("Initializing OpenGL ES renderer (%dx%d)", width, height);
+    const jlong chromaSpan = planeSpan(uvRowStride, uvPixelStride, width / 2, height / 2);
+    uint8_t* y = nullptr;
+    uint8_t* u = nullptr;
+    uint8_t* v = nullptr;
+
+    jint status = resolveDirectBuffer(env, yBuffer, planeSpan(yRowStride, 1, width, height), "Y plane", &y);
+    if (status == STATUS_OK) {
+        status = resolveDirectBuffer(env, uBuffer, chromaSpan, "U plane", &u);
+    }
+    if (status == STATUS_OK) {
+        status = resolveDirectBuffer(env, vBuffer, chromaSpan, "V plane", &v);
+    }
+    if (status != STATUS_OK) {
+        return status;
+    }
+
+    planes->y = y;
+    planes->u = u;
+    planes->v = v;
+    planes->yRowStride = yRowStride;
+    planes->uvRowStride = uvRowStride;
+    planes->uvPixelStride = uvPixelStride;
+    return STATUS_OK;
+}
+
+/**
+ * @brief Convert camera YUV planes to RGBA into a direct buffer, without edge detection
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param yBuffer Direct Y plane buffer
+ * @param uBuffer Direct U plane buffer
+ * @param vBuffer Direct V plane buffer
+ * @param yRowStride Bytes between luma rows
+ * @param uvRowStride Bytes between chroma rows
+ * @param uvPixelStride Bytes between chroma samples
+ * @param width Image width
+ * @param height Image height
+ * @param outputBuffer Direct buffer receiving the RGBA image
+ * @return STATUS_OK or a negative status code
+ */
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_convertYuvPlanes(
+        JNIEnv* env, jobject thiz, jobject yBuffer, jobject uBuffer, jobject vBuffer,
+        jint yRowStride, jint uvRowStride, jint uvPixelStride, jint width, jint height,
+        jobject outputBuffer) {
 
     try {
-        bool success = GLRenderer::initializeGL(width, height);
-        return success ? JNI_TRUE : JNI_FALSE;
+        if (width <= 0 || height <= 0) {
+            LOGE("Invalid dimensions %dx%d", width, height);
+            return STATUS_INVALID_ARGUMENT;
+        }
+
+        EdgeDetection::YuvPlanes planes;
+        uint8_t* output = nullptr;
+
+        jint status = resolveYuvPlanes(env, yBuffer, uBuffer, vBuffer, yRowStride, uvRowStride,
+                                       uvPixelStride, width, height, &planes);
+        if (status == STATUS_OK) {
+            status = resolveDirectBuffer(env, outputBuffer, static_cast<jlong>(width) * height * 4,
+                                         "Output", &output);
+        }
+        if (status != STATUS_OK) {
+            return status;
+        }
+
+        if (!EdgeDetection::convertYuvFrame(planes, width, height, output)) {
+            LOGE("YUV conversion failed");
+            return STATUS_PROCESSING_FAILED;
+        }
+
+        return STATUS_OK;
 
     } catch (const std::exception& e) {
-        LOGE("Exception in initGL: %s", e.what());
-        return JNI_FALSE;
+        LOGE("Exception in convertYuvPlanes: %s", e.what());
+        return STATUS_PROCESSING_FAILED;
     }
 }
 
 /**
- * @brief Create shader program for texture rendering
+ * @brief Shrink a gray or RGBA frame by pyramid levels into a direct buffer
  * @param env JNI environment
  * @param thiz Java object instance
- * @return Shader program ID
+ * @param inputBuffer Direct buffer holding the input frame
+ * @param rowStride Bytes between input rows
+ * @param width Input width
+ * @param height Input height
+ * @param channels Bytes per pixel (1 = gray, 4 = RGBA)
+ * @param level Number of pyrDown halvings
+ * @param outputBuffer Direct buffer receiving the reduced frame
+ * @return STATUS_OK or a negative status code
  */
 JNIEXPORT jint JNICALL
-Java_com_example_edgedetectionviewer_EdgeDetectionJNI_createShaderProgram(
-        JNIEnv* env, jobject thiz) {
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_downscale(
+        JNIEnv* env, jobject thiz, jobject inputBuffer, jint rowStride, jint width, jint height,
+        jint channels, jint level, jobject outputBuffer) {
 
     try {
-        GLRenderer::ShaderProgram program = GLRenderer::createShaderProgram(
-                vertexShaderSource, fragmentShaderSource);
+        if (width <= 0 || height <= 0 || rowStride < width * channels) {
+            LOGE("Invalid dimensions %dx%d with row stride %d", width, height, rowStride);
+            return STATUS_INVALID_ARGUMENT;
+        }
+        if ((channels != 1 && channels != 4) || level < 1 || level > EdgeDetection::MAX_PYRAMID_LEVEL) {
+            LOGE("Unsupported downscale of %d channels by %d levels", channels, level);
+            return STATUS_INVALID_ARGUMENT;
+        }
 
-        return static_cast<jint>(program.programId);
+        uint8_t* input = nullptr;
+        uint8_t* output = nullptr;
+        const jlong outputBytes = static_cast<jlong>(EdgeDetection::pyramidDimension(width, level)) *
+                                  EdgeDetection::pyramidDimension(height, level) * channels;
+
+        // The last pixel of the last row is channels bytes wide
+        const jlong inputBytes = planeSpan(rowStride, channels, width, height) + channels - 1;
+
+        jint status = resolveDirectBuffer(env, inputBuffer, inputBytes, "Input", &input);
+        if (status == STATUS_OK) {
+            status = resolveDirectBuffer(env, outputBuffer, outputBytes, "Output", &output);
+        }
+        if (status != STATUS_OK) {
+            return status;
+        }
+
+        if (!EdgeDetection::downscaleFrame(input, rowStride, width, height, channels, level, output)) {
+            LOGE("Pyramid downscale failed");
+            return STATUS_PROCESSING_FAILED;
+        }
+
+        return STATUS_OK;
 
     } catch (const std::exception& e) {
-        LOGE("Exception in createShaderProgram: %s", e.what());
-        return 0;
+        LOGE("Exception in downscale: %s", e.what());
+        return STATUS_PROCESSING_FAILED;
     }
 }
 
 /**
- * @brief Create OpenGL texture for rendering
+ * @brief Hash the tiles of a tightly packed frame so unchanged tiles can skip the texture upload
  * @param env JNI environment
  * @param thiz Java object instance
- * @param width Texture width
- * @param height Texture height
- * @return Texture ID
+ * @param pixelBuffer Direct buffer holding the frame
+ * @param width Frame width
+ * @param height Frame height
+ * @param channels Bytes per pixel (1 = gray, 4 = RGBA)
+ * @param tileSize Tile width and height in pixels
+ * @param hashArray Receives one hash per tile, row by row
+ * @return STATUS_OK or a negative status code
  */
 JNIEXPORT jint JNICALL
-Java_com_example_edgedetectionviewer_EdgeDetectionJNI_createTexture(
-        JNIEnv* env, jobject thiz, jint width, jint height) {
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_hashTiles(
+        JNIEnv* env, jobject thiz, jobject pixelBuffer, jint width, jint height, jint channels,
+        jint tileSize, jlongArray hashArray) {
 
     try {
-        GLRenderer::TextureInfo textureInfo = GLRenderer::createTexture(width, height);
-        return static_cast<jint>(textureInfo.textureId);
+        if (width <= 0 || height <= 0 || tileSize <= 0 || (channels != 1 && channels != 4)) {
+            LOGE("Invalid tile hash request: %dx%d, %d channels, tile size %d", width, height, channels, tileSize);
+            return STATUS_INVALID_ARGUMENT;
+        }
+
+        const jsize tiles = EdgeDetection::tileCount(width, tileSize) * EdgeDetection::tileCount(height, tileSize);
+        if (!hashArray || env->GetArrayLength(hashArray) < tiles) {
+            LOGE("Tile hash array too small: need %d", tiles);
+            return STATUS_BUFFER_TOO_SMALL;
+        }
+
+        uint8_t* pixels = nullptr;
+        jint status = resolveDirectBuffer(env, pixelBuffer, static_cast<jlong>(width) * height * channels,
+                                          "Pixel", &pixels);
+        if (status != STATUS_OK) {
+            return status;
+        }
+
+        // Hashed outside the array so the GC is never held off while the frame is read
+        thread_local std::vector<uint64_t> hashes;
+        hashes.resize(tiles);
+        EdgeDetection::hashTiles(pixels, width, height, channels, tileSize, hashes.data());
+        env->SetLongArrayRegion(hashArray, 0, tiles, reinterpret_cast<const jlong*>(hashes.data()));
+
+        return STATUS_OK;
 
     } catch (const std::exception& e) {
-        LOGE("Exception in createTexture: %s", e.what());
-        return 0;
+        LOGE("Exception in hashTiles: %s", e.what());
+        return STATUS_PROCESSING_FAILED;
     }
 }
 
 /**
- * @brief Update texture with processed frame data
+ * @brief Process camera YUV planes with edge detection, reading the direct buffers in place
  * @param env JNI environment
- * @param thiz Java object instance
- * @param textureId OpenGL texture ID
- * @param pixelData Processed image data
+ * @param detector Detector to run
+ * @param yBuffer Direct Y plane buffer
+ * @param uBuffer Direct U plane buffer
+ * @param vBuffer Direct V plane buffer
+ * @param yRowStride Bytes between luma rows
+ * @param uvRowStride Bytes between chroma rows
+ * @param uvPixelStride Bytes between chroma samples
  * @param width Image width
  * @param height Image height
+ * @param outputBuffer Direct buffer receiving the result
+ * @param outputFormat Output buffer layout
+ * @return STATUS_OK or a negative status code
  */
-JNIEXPORT void JNICALL
-Java_com_example_edgedetectionviewer_EdgeDetectionJNI_updateTexture(
-        JNIEnv* env, jobject thiz, jint textureId, jbyteArray pixelData,
-        jint width, jint height) {
+static jint processYuvBuffers(JNIEnv* env, EdgeDetection::EdgeDetector& detector,
+                              jobject yBuffer, jobject uBuffer, jobject vBuffer,
+                              jint yRowStride, jint uvRowStride, jint uvPixelStride,
+                              jint width, jint height, jobject outputBuffer,
+                              EdgeDetection::OutputFormat outputFormat) {
+    if (width <= 0 || height <= 0) {
+        LOGE("Invalid dimensions %dx%d", width, height);
+        return STATUS_INVALID_ARGUMENT;
+    }
 
-try {
-if (!pixelData) {
-LOGE("Pixel data is null");
-return;
-}
+    EdgeDetection::YuvPlanes planes;
+    uint8_t* output = nullptr;
 
-jbyte* pixels = env->GetByteArrayElements(pixelData, nullptr);
-if (!pixels) {
-LOGE("Failed to get pixel data elements");
-return;
-}
+    jint status = resolveYuvPlanes(env, yBuffer, uBuffer, vBuffer, yRowStride, uvRowStride,
+                                   uvPixelStride, width, height, &planes);
+    if (status == STATUS_OK) {
+        status = resolveDirectBuffer(env, outputBuffer,
+                                     static_cast<jlong>(EdgeDetection::outputByteCount(outputFormat, width, height)),
+                                     "Output", &output);
+    }
+    if (status != STATUS_OK) {
+        return status;
+    }
 
-GLRenderer::TextureInfo textureInfo;
-textureInfo.textureId = static_cast<unsigned int>(textureId);
-textureInfo.width = width;
-textureInfo.height = height;
-textureInfo.format = 0x1908; // GL_RGBA
+    if (!detector.processYuvFrame(planes, width, height, output, outputFormat)) {
+        LOGE("YUV frame processing failed");
+        return STATUS_PROCESSING_FAILED;
+    }
 
-GLRenderer::updateTexture(textureInfo,
-reinterpret_cast<const uint8_t*>(pixels));
+    return STATUS_OK;
+}
 
-env->ReleaseByteArrayElements(pixelData, pixels, JNI_ABORT);
+/**
+ * @brief Process camera YUV planes with the default detector
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param yBuffer Direct Y plane buffer
+ * @param uBuffer Direct U plane buffer
+ * @param vBuffer Direct V plane buffer
+ * @param yRowStride Bytes between luma rows
+ * @param uvRowStride Bytes between chroma rows
+ * @param uvPixelStride Bytes between chroma samples
+ * @param width Image width
+ * @param height Image height
+ * @param outputBuffer Direct buffer receiving the RGBA result
+ * @return STATUS_OK or a negative status code
+ */
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_processYuvPlanes(
+        JNIEnv* env, jobject thiz, jobject yBuffer, jobject uBuffer, jobject vBuffer,
+        jint yRowStride, jint uvRowStride, jint uvPixelStride, jint width, jint height,
+        jobject outputBuffer) {
 
-} catch (const std::exception& e) {
-LOGE("Exception in updateTexture: %s", e.what());
-}
+    try {
+        return processYuvBuffers(env, EdgeDetection::defaultDetector(), yBuffer, uBuffer, vBuffer,
+                                 yRowStride, uvRowStride, uvPixelStride, width, height, outputBuffer,
+                                 EdgeDetection::OutputFormat::Rgba);
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in processYuvPlanes: %s", e.what());
+        return STATUS_PROCESSING_FAILED;
+    }
 }
 
 /**
- * @brief Render texture to screen
+ * @brief Process the camera luma plane with edge detection, skipping colour conversion
  * @param env JNI environment
- * @param thiz Java object instance
- * @param programId Shader program ID
- * @param textureId Texture ID
+ * @param detector Detector to run
+ * @param yBuffer Direct Y plane buffer
+ * @param yRowStride Bytes between luma rows
+ * @param width Image width
+ * @param height Image height
+ * @param outputBuffer Direct buffer receiving the result
+ * @param outputFormat Output buffer layout
+ * @return STATUS_OK or a negative status code
  */
-JNIEXPORT void JNICALL
-Java_com_example_edgedetectionviewer_EdgeDetectionJNI_renderFrame(
-        JNIEnv* env, jobject thiz, jint programId, jint textureId) {
+static jint processLumaBuffer(JNIEnv* env, EdgeDetection::EdgeDetector& detector,
+                              jobject yBuffer, jint yRowStride, jint width, jint height,
+                              jobject outputBuffer, EdgeDetection::OutputFormat outputFormat) {
+    if (width <= 0 || height <= 0 || !isValidPlaneStride(yRowStride, 1, width)) {
+        LOGE("Invalid dimensions %dx%d with row stride %d", width, height, yRowStride);
+        return STATUS_INVALID_ARGUMENT;
+    }
 
-try {
-GLRenderer::ShaderProgram program;
-program.programId = static_cast<unsigned int>(programId);
-// Note: In a real implementation, you'd store these attribute/uniform locations
-program.positionAttrib = 0;
-program.texCoordAttrib = 1;
-program.textureUniform = 0;
-program.mvpMatrixUniform = -1;
+    uint8_t* yData = nullptr;
+    uint8_t* output = nullptr;
 
-GLRenderer::TextureInfo textureInfo;
-textureInfo.textureId = static_cast<unsigned int>(textureId);
+    jint status = resolveDirectBuffer(env, yBuffer, planeSpan(yRowStride, 1, width, height), "Y plane", &yData);
+    if (status == STATUS_OK) {
+        status = resolveDirectBuffer(env, outputBuffer,
+                                     static_cast<jlong>(EdgeDetection::outputByteCount(outputFormat, width, height)),
+                                     "Output", &output);
+    }
+    if (status != STATUS_OK) {
+        return status;
+    }
 
-GLRenderer::renderTexture(program, textureInfo);
+    if (!detector.processLumaFrame(yData, yRowStride, width, height, output, outputFormat)) {
+        LOGE("Luma frame processing failed");
+        return STATUS_PROCESSING_FAILED;
+    }
 
-} catch (const std::exception& e) {
-LOGE("Exception in renderFrame: %s", e.what());
-}
+    return STATUS_OK;
 }
 
 /**
- * @brief Get current performance statistics
+ * @brief Process the camera luma plane with the default detector
  * @param env JNI environment
  * @param thiz Java object instance
- * @return String containing performance metrics
+ * @param yBuffer Direct Y plane buffer
+ * @param yRowStride Bytes between luma rows
+ * @param width Image width
+ * @param height Image height
+ * @param outputBuffer Direct buffer receiving the RGBA result
+ * @return STATUS_OK or a negative status code
  */
-JNIEXPORT jstring JNICALL
-        Java_com_example_edgedetectionviewer_EdgeDetectionJNI_getPerformanceStats(
-        JNIEnv* env, jobject thiz) {
-
-try {
-std::string stats = "Frames: " + std::to_string(frameCount) +
-                    ", FPS: " + std::to_string(averageFps);
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_processLumaPlane(
+        JNIEnv* env, jobject thiz, jobject yBuffer, jint yRowStride, jint width, jint height,
+        jobject outputBuffer) {
 
-return env->NewStringUTF(stats.c_str());
+    try {
+        return processLumaBuffer(env, EdgeDetection::defaultDetector(), yBuffer, yRowStride,
+                                 width, height, outputBuffer, EdgeDetection::OutputFormat::Rgba);
 
-} catch (const std::exception& e) {
-LOGE("Exception in getPerformanceStats: %s", e.what());
-return env->NewStringUTF("Error getting stats");
+    } catch (const std::exception& e) {
+        LOGE("Exception in processLumaPlane: %s", e.what());
+        return STATUS_PROCESSING_FAILED;
+    }
 }
+
+/**
+ * @brief Format a detector's statistics for the stats overlay
+ * @param detector Detector to report on
+ * @return "Frames: N, FPS: X, Thresholds: L/H"
+ */
+static std::string formatStats(const EdgeDetection::EdgeDetector& detector) {
+    EdgeDetection::ProcessingStats stats = detector.getStats();
+    return "Frames: " + std::to_string(stats.framesProcessed) +
+           ", FPS: " + std::to_string(stats.averageFps) +
+           ", Thresholds: " + std::to_string(stats.currentThreshold1) +
+           "/" + std::to_string(stats.currentThreshold2);
 }
 
 /**
- * @brief Cleanup native resources
+ * @brief Update edge detection parameters of the default detector
  * @param env JNI environment
  * @param thiz Java object instance
+ * @param lowThreshold Lower threshold for Canny edge detection
+ * @param highThreshold Upper threshold for Canny edge detection
+ * @param blurKernel Gaussian blur kernel size
  */
 JNIEXPORT void JNICALL
-Java_com_example_edgedetectionviewer_EdgeDetectionJNI_cleanup(
-        JNIEnv* env, jobject thiz) {
-
-LOGI("Cleaning up native resources");
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_updateParameters(
+        JNIEnv* env, jobject thiz, jdouble lowThreshold, jdouble highThreshold, jint blurKernel) {
 
-try {
-// Reset performance counters
-frameCount = 0;
-averageFps = 0.0;
+    try {
+        EdgeDetection::defaultDetector().updateParameters(lowThreshold, highThreshold, blurKernel);
 
-LOGI("Native cleanup completed");
+    } catch (const std::exception& e) {
+        LOGE("Exception in updateParameters: %s", e.what());
+    }
+}
 
-} catch (const std::exception& e) {
+/**
+ * @brief Choose the edge algorithm the default detector runs
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param algorithm EdgeAlgorithm value (0 = Canny)
+ */
+JNIEXPORT void JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_setAlgorithm(
+        JNIEnv* env, jobject thiz, jint algorithm) {
+
+    if (algorithm < 0 || algorithm >= EdgeDetection::EDGE_ALGORITHM_COUNT) {
+        LOGE("Unknown edge algorithm %d", algorithm);
+        return;
+    }
+
+    try {
+        EdgeDetection::defaultDetector().setAlgorithm(static_cast<EdgeDetection::EdgeAlgorithm>(algorithm));
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in setAlgorithm: %s", e.what());
+    }
+}
+
+/**
+ * @brief Set number of native threads each frame's edge detection is split across
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param threadCount Threads per frame (1 = single-threaded, <= 0 = one per CPU core)
+ */
+JNIEXPORT void JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_setThreadCount(
+        JNIEnv* env, jobject thiz, jint threadCount) {
+
+    try {
+        EdgeDetection::defaultDetector().setThreadCount(threadCount);
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in setThreadCount: %s", e.what());
+    }
+}
+
+/**
+ * @brief Get number of native threads used per frame
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @return Thread count
+ */
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_getThreadCount(
+        JNIEnv* env, jobject thiz) {
+
+    try {
+        return static_cast<jint>(EdgeDetection::defaultDetector().getThreadCount());
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in getThreadCount: %s", e.what());
+        return 1;
+    }
+}
+
+/**
+ * @brief Initialize OpenGL ES renderer
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param width Surface width
+ * @param height Surface height
+ * @return true if successful
+ */
+JNIEXPORT jboolean JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_initGL(
+        JNIEnv* env, jobject thiz, jint width, jint height) {
+
+    LOGI("Initializing OpenGL ES renderer (%dx%d)", width, height);
+
+    try {
+        bool success = GLRenderer::initializeGL(width, height);
+        return success ? JNI_TRUE : JNI_FALSE;
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in initGL: %s", e.what());
+        return JNI_FALSE;
+    }
+}
+
+/**
+ * @brief Create shader program for texture rendering
+ * Sources come from the Java side, which loads them from assets/shaders
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param vertexSource Vertex shader source code
+ * @param fragmentSource Fragment shader source code
+ * @return Shader program ID
+ */
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_createShaderProgram(
+        JNIEnv* env, jobject thiz, jstring vertexSource, jstring fragmentSource) {
+
+    if (!vertexSource || !fragmentSource) {
+        LOGE("Shader source is null");
+        return 0;
+    }
+
+    try {
+        const char* vertexChars = env->GetStringUTFChars(vertexSource, nullptr);
+        const char* fragmentChars = env->GetStringUTFChars(fragmentSource, nullptr);
+        GLRenderer::ShaderProgram program = {};
+        if (vertexChars && fragmentChars) {
+            program = GLRenderer::createShaderProgram(vertexChars, fragmentChars);
+        }
+        if (vertexChars) {
+            env->ReleaseStringUTFChars(vertexSource, vertexChars);
+        }
+        if (fragmentChars) {
+            env->ReleaseStringUTFChars(fragmentSource, fragmentChars);
+        }
+
+        return static_cast<jint>(program.programId);
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in createShaderProgram: %s", e.what());
+        return 0;
+    }
+}
+
+/**
+ * @brief Create OpenGL texture for rendering
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param width Texture width
+ * @param height Texture height
+ * @return Texture ID
+ */
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_createTexture(
+        JNIEnv* env, jobject thiz, jint width, jint height) {
+
+    try {
+        GLRenderer::TextureInfo textureInfo = GLRenderer::createTexture(width, height);
+        return static_cast<jint>(textureInfo.textureId);
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in createTexture: %s", e.what());
+        return 0;
+    }
+}
+
+/**
+ * @brief Update texture with processed frame data
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param textureId OpenGL texture ID
+ * @param pixelData Processed image data
+ * @param width Image width
+ * @param height Image height
+ */
+JNIEXPORT void JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_updateTexture(
+        JNIEnv* env, jobject thiz, jint textureId, jbyteArray pixelData,
+        jint width, jint height) {
+
+try {
+if (!pixelData) {
+LOGE("Pixel data is null");
+return;
+}
+
+jbyte* pixels = env->GetByteArrayElements(pixelData, nullptr);
+if (!pixels) {
+LOGE("Failed to get pixel data elements");
+return;
+}
+
+GLRenderer::TextureInfo textureInfo;
+textureInfo.textureId = static_cast<unsigned int>(textureId);
+textureInfo.width = width;
+textureInfo.height = height;
+textureInfo.format = 0x1908; // GL_RGBA
+
+GLRenderer::updateTexture(textureInfo,
+reinterpret_cast<const uint8_t*>(pixels));
+
+env->ReleaseByteArrayElements(pixelData, pixels, JNI_ABORT);
+
+} catch (const std::exception& e) {
+LOGE("Exception in updateTexture: %s", e.what());
+}
+}
+
+/**
+ * @brief Render texture to screen
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param programId Shader program ID
+ * @param textureId Texture ID
+ */
+JNIEXPORT void JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_renderFrame(
+        JNIEnv* env, jobject thiz, jint programId, jint textureId) {
+
+try {
+GLRenderer::ShaderProgram program;
+program.programId = static_cast<unsigned int>(programId);
+// Note: In a real implementation, you'd store these attribute/uniform locations
+program.positionAttrib = 0;
+program.texCoordAttrib = 1;
+program.textureUniform = 0;
+program.mvpMatrixUniform = -1;
+
+GLRenderer::TextureInfo textureInfo;
+textureInfo.textureId = static_cast<unsigned int>(textureId);
+
+GLRenderer::renderTexture(program, textureInfo);
+
+} catch (const std::exception& e) {
+LOGE("Exception in renderFrame: %s", e.what());
+}
+}
+
+/**
+ * @brief Get current performance statistics
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @return String containing performance metrics
+ */
+JNIEXPORT jstring JNICALL
+        Java_com_example_edgedetectionviewer_EdgeDetectionJNI_getPerformanceStats(
+        JNIEnv* env, jobject thiz) {
+
+try {
+return env->NewStringUTF(formatStats(EdgeDetection::defaultDetector()).c_str());
+
+} catch (const std::exception& e) {
+LOGE("Exception in getPerformanceStats: %s", e.what());
+return env->NewStringUTF("Error getting stats");
+}
+}
+
+/**
+ * @brief Cleanup native resources
+ * @param env JNI environment
+ * @param thiz Java object instance
+ */
+JNIEXPORT void JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_cleanup(
+        JNIEnv* env, jobject thiz) {
+
+LOGI("Cleaning up native resources");
+
+try {
+// Reset performance counters
+EdgeDetection::defaultDetector().resetStats();
+
+LOGI("Native cleanup completed");
+
+} catch (const std::exception& e) {
 LOGE("Exception during cleanup: %s", e.what());
 }
 }
 
+/**
+ * @brief Create an independent detector with its own parameters, scratch, statistics and threads
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @return Native handle, or 0 on failure
+ */
+JNIEXPORT jlong JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_create(
+        JNIEnv* env, jobject thiz) {
+
+    try {
+        auto* detector = new EdgeDetection::EdgeDetector();
+        LOGI("Created detector %p", detector);
+        return reinterpret_cast<jlong>(detector);
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in create: %s", e.what());
+        return 0;
+    }
+}
+
+/**
+ * @brief Destroy a detector created by create(); no call may be using it
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle (0 is ignored)
+ */
+JNIEXPORT void JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_destroy(
+        JNIEnv* env, jobject thiz, jlong handle) {
+
+    if (handle == 0) {
+        return;
+    }
+
+    try {
+        LOGI("Destroying detector %p", reinterpret_cast<void*>(handle));
+        delete reinterpret_cast<EdgeDetection::EdgeDetector*>(handle);
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in destroy: %s", e.what());
+    }
+}
+
+/**
+ * @brief Process an RGBA frame between direct buffers with a given detector
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle
+ * @param inputBuffer Direct buffer holding the input image (RGBA)
+ * @param outputBuffer Direct buffer receiving the result (RGBA)
+ * @param width Image width
+ * @param height Image height
+ * @return STATUS_OK or a negative status code
+ */
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_process(
+        JNIEnv* env, jobject thiz, jlong handle, jobject inputBuffer, jobject outputBuffer,
+        jint width, jint height) {
+
+    try {
+        EdgeDetection::EdgeDetector* detector = fromHandle(handle);
+        if (!detector) {
+            return STATUS_INVALID_ARGUMENT;
+        }
+        return processDirectFrame(env, *detector, inputBuffer, outputBuffer, width, height,
+                                  EdgeDetection::OutputFormat::Rgba);
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in process: %s", e.what());
+        return STATUS_PROCESSING_FAILED;
+    }
+}
+
+/**
+ * @brief Process the camera luma plane with a given detector
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle
+ * @param yBuffer Direct Y plane buffer
+ * @param yRowStride Bytes between luma rows
+ * @param width Image width
+ * @param height Image height
+ * @param outputBuffer Direct buffer receiving the RGBA result
+ * @return STATUS_OK or a negative status code
+ */
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_processLuma(
+        JNIEnv* env, jobject thiz, jlong handle, jobject yBuffer, jint yRowStride,
+        jint width, jint height, jobject outputBuffer) {
+
+    try {
+        EdgeDetection::EdgeDetector* detector = fromHandle(handle);
+        if (!detector) {
+            return STATUS_INVALID_ARGUMENT;
+        }
+        return processLumaBuffer(env, *detector, yBuffer, yRowStride, width, height, outputBuffer,
+                                 EdgeDetection::OutputFormat::Rgba);
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in processLuma: %s", e.what());
+        return STATUS_PROCESSING_FAILED;
+    }
+}
+
+/**
+ * @brief Process camera YUV planes with a given detector
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle
+ * @param yBuffer Direct Y plane buffer
+ * @param uBuffer Direct U plane buffer
+ * @param vBuffer Direct V plane buffer
+ * @param yRowStride Bytes between luma rows
+ * @param uvRowStride Bytes between chroma rows
+ * @param uvPixelStride Bytes between chroma samples
+ * @param width Image width
+ * @param height Image height
+ * @param outputBuffer Direct buffer receiving the RGBA result
+ * @return STATUS_OK or a negative status code
+ */
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_processYuv(
+        JNIEnv* env, jobject thiz, jlong handle, jobject yBuffer, jobject uBuffer, jobject vBuffer,
+        jint yRowStride, jint uvRowStride, jint uvPixelStride, jint width, jint height,
+        jobject outputBuffer) {
+
+    try {
+        EdgeDetection::EdgeDetector* detector = fromHandle(handle);
+        if (!detector) {
+            return STATUS_INVALID_ARGUMENT;
+        }
+        return processYuvBuffers(env, *detector, yBuffer, uBuffer, vBuffer, yRowStride, uvRowStride,
+                                 uvPixelStride, width, height, outputBuffer, EdgeDetection::OutputFormat::Rgba);
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in processYuv: %s", e.what());
+        return STATUS_PROCESSING_FAILED;
+    }
+}
+
+/**
+ * @brief Process an RGBA frame with a given detector, writing one edge byte per pixel
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle
+ * @param inputBuffer Direct buffer holding the input image (RGBA)
+ * @param outputBuffer Direct buffer receiving width * height edge bytes
+ * @param width Image width
+ * @param height Image height
+ * @return STATUS_OK or a negative status code
+ */
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_processEdges(
+        JNIEnv* env, jobject thiz, jlong handle, jobject inputBuffer, jobject outputBuffer,
+        jint width, jint height) {
+
+    try {
+        EdgeDetection::EdgeDetector* detector = fromHandle(handle);
+        if (!detector) {
+            return STATUS_INVALID_ARGUMENT;
+        }
+        return processDirectFrame(env, *detector, inputBuffer, outputBuffer, width, height,
+                                  EdgeDetection::OutputFormat::EdgeBytes);
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in processEdges: %s", e.what());
+        return STATUS_PROCESSING_FAILED;
+    }
+}
+
+/**
+ * @brief Process the camera luma plane with a given detector, writing one edge byte per pixel
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle
+ * @param yBuffer Direct Y plane buffer
+ * @param yRowStride Bytes between luma rows
+ * @param width Image width
+ * @param height Image height
+ * @param outputBuffer Direct buffer receiving width * height edge bytes
+ * @return STATUS_OK or a negative status code
+ */
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_processLumaEdges(
+        JNIEnv* env, jobject thiz, jlong handle, jobject yBuffer, jint yRowStride,
+        jint width, jint height, jobject outputBuffer) {
+
+    try {
+        EdgeDetection::EdgeDetector* detector = fromHandle(handle);
+        if (!detector) {
+            return STATUS_INVALID_ARGUMENT;
+        }
+        return processLumaBuffer(env, *detector, yBuffer, yRowStride, width, height, outputBuffer,
+                                 EdgeDetection::OutputFormat::EdgeBytes);
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in processLumaEdges: %s", e.what());
+        return STATUS_PROCESSING_FAILED;
+    }
+}
+
+/**
+ * @brief Process camera YUV planes with a given detector, writing one edge byte per pixel
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle
+ * @param yBuffer Direct Y plane buffer
+ * @param uBuffer Direct U plane buffer
+ * @param vBuffer Direct V plane buffer
+ * @param yRowStride Bytes between luma rows
+ * @param uvRowStride Bytes between chroma rows
+ * @param uvPixelStride Bytes between chroma samples
+ * @param width Image width
+ * @param height Image height
+ * @param outputBuffer Direct buffer receiving width * height edge bytes
+ * @return STATUS_OK or a negative status code
+ */
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_processYuvEdges(
+        JNIEnv* env, jobject thiz, jlong handle, jobject yBuffer, jobject uBuffer, jobject vBuffer,
+        jint yRowStride, jint uvRowStride, jint uvPixelStride, jint width, jint height,
+        jobject outputBuffer) {
+
+    try {
+        EdgeDetection::EdgeDetector* detector = fromHandle(handle);
+        if (!detector) {
+            return STATUS_INVALID_ARGUMENT;
+        }
+        return processYuvBuffers(env, *detector, yBuffer, uBuffer, vBuffer, yRowStride, uvRowStride,
+                                 uvPixelStride, width, height, outputBuffer,
+                                 EdgeDetection::OutputFormat::EdgeBytes);
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in processYuvEdges: %s", e.what());
+        return STATUS_PROCESSING_FAILED;
+    }
+}
+
+/**
+ * @brief Process an RGBA frame with a given detector, writing a bit-packed edge mask
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle
+ * @param inputBuffer Direct buffer holding the input image (RGBA)
+ * @param outputBuffer Direct buffer receiving EdgeMask.byteCount(width, height) bytes
+ * @param width Image width
+ * @param height Image height
+ * @return STATUS_OK or a negative status code
+ */
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_processMask(
+        JNIEnv* env, jobject thiz, jlong handle, jobject inputBuffer, jobject outputBuffer,
+        jint width, jint height) {
+
+    try {
+        EdgeDetection::EdgeDetector* detector = fromHandle(handle);
+        if (!detector) {
+            return STATUS_INVALID_ARGUMENT;
+        }
+        return processDirectFrame(env, *detector, inputBuffer, outputBuffer, width, height,
+                                  EdgeDetection::OutputFormat::PackedMask);
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in processMask: %s", e.what());
+        return STATUS_PROCESSING_FAILED;
+    }
+}
+
+/**
+ * @brief Process the camera luma plane with a given detector, writing a bit-packed edge mask
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle
+ * @param yBuffer Direct Y plane buffer
+ * @param yRowStride Bytes between luma rows
+ * @param width Image width
+ * @param height Image height
+ * @param outputBuffer Direct buffer receiving EdgeMask.byteCount(width, height) bytes
+ * @return STATUS_OK or a negative status code
+ */
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_processLumaMask(
+        JNIEnv* env, jobject thiz, jlong handle, jobject yBuffer, jint yRowStride,
+        jint width, jint height, jobject outputBuffer) {
+
+    try {
+        EdgeDetection::EdgeDetector* detector = fromHandle(handle);
+        if (!detector) {
+            return STATUS_INVALID_ARGUMENT;
+        }
+        return processLumaBuffer(env, *detector, yBuffer, yRowStride, width, height, outputBuffer,
+                                 EdgeDetection::OutputFormat::PackedMask);
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in processLumaMask: %s", e.what());
+        return STATUS_PROCESSING_FAILED;
+    }
+}
+
+/**
+ * @brief Process camera YUV planes with a given detector, writing a bit-packed edge mask
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle
+ * @param yBuffer Direct Y plane buffer
+ * @param uBuffer Direct U plane buffer
+ * @param vBuffer Direct V plane buffer
+ * @param yRowStride Bytes between luma rows
+ * @param uvRowStride Bytes between chroma rows
+ * @param uvPixelStride Bytes between chroma samples
+ * @param width Image width
+ * @param height Image height
+ * @param outputBuffer Direct buffer receiving EdgeMask.byteCount(width, height) bytes
+ * @return STATUS_OK or a negative status code
+ */
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_processYuvMask(
+        JNIEnv* env, jobject thiz, jlong handle, jobject yBuffer, jobject uBuffer, jobject vBuffer,
+        jint yRowStride, jint uvRowStride, jint uvPixelStride, jint width, jint height,
+        jobject outputBuffer) {
+
+    try {
+        EdgeDetection::EdgeDetector* detector = fromHandle(handle);
+        if (!detector) {
+            return STATUS_INVALID_ARGUMENT;
+        }
+        return processYuvBuffers(env, *detector, yBuffer, uBuffer, vBuffer, yRowStride, uvRowStride,
+                                 uvPixelStride, width, height, outputBuffer,
+                                 EdgeDetection::OutputFormat::PackedMask);
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in processYuvMask: %s", e.what());
+        return STATUS_PROCESSING_FAILED;
+    }
+}
+
+/**
+ * @brief Set number of threads each frame of a given detector is split across
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle
+ * @param threadCount Threads per frame (1 = single-threaded, <= 0 = one per CPU core)
+ */
+JNIEXPORT void JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_setDetectorThreadCount(
+        JNIEnv* env, jobject thiz, jlong handle, jint threadCount) {
+
+    try {
+        EdgeDetection::EdgeDetector* detector = fromHandle(handle);
+        if (detector) {
+            detector->setThreadCount(threadCount);
+        }
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in setDetectorThreadCount: %s", e.what());
+    }
+}
+
+/**
+ * @brief Get number of threads each frame of a given detector is split across
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle
+ * @return Thread count, or 0 for a null handle
+ */
+JNIEXPORT jint JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_getDetectorThreadCount(
+        JNIEnv* env, jobject thiz, jlong handle) {
+
+    try {
+        EdgeDetection::EdgeDetector* detector = fromHandle(handle);
+        return detector ? static_cast<jint>(detector->getThreadCount()) : 0;
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in getDetectorThreadCount: %s", e.what());
+        return 0;
+    }
+}
+
+/**
+ * @brief Update edge detection parameters of a given detector
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle
+ * @param lowThreshold Lower threshold for Canny edge detection
+ * @param highThreshold Upper threshold for Canny edge detection
+ * @param blurKernel Gaussian blur kernel size
+ */
+JNIEXPORT void JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_updateDetectorParameters(
+        JNIEnv* env, jobject thiz, jlong handle, jdouble lowThreshold, jdouble highThreshold,
+        jint blurKernel) {
+
+    try {
+        EdgeDetection::EdgeDetector* detector = fromHandle(handle);
+        if (detector) {
+            detector->updateParameters(lowThreshold, highThreshold, blurKernel);
+        }
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in updateDetectorParameters: %s", e.what());
+    }
+}
+
+/**
+ * @brief Choose how a given detector picks its Canny thresholds
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle
+ * @param mode 0 = manual, 1 = median of luminance, 2 = Otsu
+ */
+JNIEXPORT void JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_setDetectorThresholdMode(
+        JNIEnv* env, jobject thiz, jlong handle, jint mode) {
+
+    if (mode < static_cast<jint>(EdgeDetection::ThresholdMode::Manual) ||
+        mode > static_cast<jint>(EdgeDetection::ThresholdMode::Otsu)) {
+        LOGE("Unknown threshold mode %d", mode);
+        return;
+    }
+
+    try {
+        EdgeDetection::EdgeDetector* detector = fromHandle(handle);
+        if (detector) {
+            detector->setThresholdMode(static_cast<EdgeDetection::ThresholdMode>(mode));
+        }
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in setDetectorThresholdMode: %s", e.what());
+    }
+}
+
+/**
+ * @brief Choose the edge algorithm a given detector runs
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle
+ * @param algorithm EdgeAlgorithm value (0 = Canny)
+ */
+JNIEXPORT void JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_setDetectorAlgorithm(
+        JNIEnv* env, jobject thiz, jlong handle, jint algorithm) {
+
+    if (algorithm < 0 || algorithm >= EdgeDetection::EDGE_ALGORITHM_COUNT) {
+        LOGE("Unknown edge algorithm %d", algorithm);
+        return;
+    }
+
+    try {
+        EdgeDetection::EdgeDetector* detector = fromHandle(handle);
+        if (detector) {
+            detector->setAlgorithm(static_cast<EdgeDetection::EdgeAlgorithm>(algorithm));
+        }
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in setDetectorAlgorithm: %s", e.what());
+    }
+}
+
+/**
+ * @brief Choose how a given detector computes Sobel gradients
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle
+ * @param mode 0 = CV_64F, 1 = CV_16S with L1 magnitude, 2 = CV_16S with table magnitude
+ */
+JNIEXPORT void JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_setDetectorSobelMode(
+        JNIEnv* env, jobject thiz, jlong handle, jint mode) {
+
+    if (mode < static_cast<jint>(EdgeDetection::SobelMode::Float64) ||
+        mode > static_cast<jint>(EdgeDetection::SobelMode::FixedLut)) {
+        LOGE("Unknown Sobel mode %d", mode);
+        return;
+    }
+
+    try {
+        EdgeDetection::EdgeDetector* detector = fromHandle(handle);
+        if (detector) {
+            detector->setSobelMode(static_cast<EdgeDetection::SobelMode>(mode));
+        }
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in setDetectorSobelMode: %s", e.what());
+    }
+}
+
+/**
+ * @brief Get performance statistics of a given detector
+ * @param env JNI environment
+ * @param thiz Java object instance
+ * @param handle Native handle
+ * @return String containing performance metrics
+ */
+JNIEXPORT jstring JNICALL
+Java_com_example_edgedetectionviewer_EdgeDetectionJNI_getDetectorStats(
+        JNIEnv* env, jobject thiz, jlong handle) {
+
+    try {
+        EdgeDetection::EdgeDetector* detector = fromHandle(handle);
+        if (!detector) {
+            return env->NewStringUTF("No detector");
+        }
+        return env->NewStringUTF(formatStats(*detector).c_str());
+
+    } catch (const std::exception& e) {
+        LOGE("Exception in getDetectorStats: %s", e.what());
+        return env->NewStringUTF("Error getting stats");
+    }
+}
+
 } // extern "C"
\ No newline at end of file
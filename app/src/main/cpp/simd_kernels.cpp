@@ -0,0 +1,189 @@
+//
+// Scalar Canny inner loops and runtime selection of the SIMD versions
+//
+#include "simd_kernels.h"
+#include <cstdlib>
+
+#if defined(__aarch64__) || defined(__arm__)
+#include <sys/auxv.h>
+#if defined(__linux__) || defined(__ANDROID__)
+#include <asm/hwcap.h>
+#endif
+#endif
+
+namespace EdgeDetection {
+
+    namespace {
+
+        void rgbaToGrayScalar(const uint8_t* rgba, uint8_t* gray, int width) {
+            for (int x = 0; x < width; x++, rgba += 4) {
+                gray[x] = static_cast<uint8_t>((rgba[0] * R2GRAY + rgba[1] * G2GRAY + rgba[2] * B2GRAY
+                                                + (1 << (GRAY_SHIFT - 1))) >> GRAY_SHIFT);
+            }
+        }
+
+        void horizontalBlurScalar(const uint8_t* src, uint16_t* out, int count, const int* taps, int size) {
+            for (int x = 0; x < count; x++) {
+                int sum = 0;
+                for (int i = 0; i < size; i++) {
+                    sum += taps[i] * src[x + i];
+                }
+                out[x] = static_cast<uint16_t>(sum);
+            }
+        }
+
+        void verticalBlurScalar(const uint16_t* const* rows, const int* taps, int size, uint8_t* out, int width) {
+            for (int x = 0; x < width; x++) {
+                uint32_t sum = 0;
+                for (int i = 0; i < size; i++) {
+                    sum += static_cast<uint32_t>(taps[i]) * rows[i][x];
+                }
+                // Q16 back to 8 bits, rounding to nearest
+                out[x] = static_cast<uint8_t>((sum + (1u << 15)) >> 16);
+            }
+        }
+
+        void sobelRowScalar(const uint8_t* above, const uint8_t* centre, const uint8_t* below,
+                            short* dx, short* dy, int* mag, int width) {
+            for (int x = 1; x < width - 1; x++) {
+                const int gx = (above[x + 1] - above[x - 1]) + 2 * (centre[x + 1] - centre[x - 1])
+                               + (below[x + 1] - below[x - 1]);
+                const int gy = (below[x - 1] - above[x - 1]) + 2 * (below[x] - above[x])
+                               + (below[x + 1] - above[x + 1]);
+                dx[x] = static_cast<short>(gx);
+                dy[x] = static_cast<short>(gy);
+                mag[x] = std::abs(gx) + std::abs(gy);
+            }
+        }
+
+        int suppressRowScalar(const short* dx, const short* dy, const int* mag, const int* magPrev,
+                              const int* magNext, int low, int high, uint8_t* map, int width) {
+            int strong = 0;
+            for (int x = 0; x < width; x++) {
+                const int m = mag[x];
+                uint8_t value = EDGE_NONE;
+
+                if (m > low) {
+                    const int xs = dx[x];
+                    const int ys = dy[x];
+                    const int ax = std::abs(xs);
+                    const int ay = std::abs(ys) << CANNY_SHIFT;
+                    const int tg22x = ax * TG22;
+                    bool isMaximum;
+
+                    if (ay < tg22x) {
+                        isMaximum = m > mag[x - 1] && m >= mag[x + 1];
+                    } else {
+                        const int tg67x = tg22x + (ax << (CANNY_SHIFT + 1));
+                        if (ay > tg67x) {
+                            isMaximum = m > magPrev[x] && m >= magNext[x];
+                        } else {
+                            const int s = (xs ^ ys) < 0 ? -1 : 1;
+                            isMaximum = m > magPrev[x - s] && m > magNext[x + s];
+                        }
+                    }
+
+                    if (isMaximum) {
+                        value = m > high ? EDGE_STRONG : EDGE_CANDIDATE;
+                    }
+                }
+
+                map[x] = value;
+                strong += value == EDGE_STRONG;
+            }
+            return strong;
+        }
+
+        const SimdKernels SCALAR_KERNELS = {
+                SimdLevel::Scalar, "scalar",
+                rgbaToGrayScalar, horizontalBlurScalar, verticalBlurScalar, sobelRowScalar, suppressRowScalar
+        };
+
+        /**
+         * @brief Check whether the running CPU can execute an instruction set
+         */
+        bool cpuSupports(SimdLevel level) {
+            switch (level) {
+                case SimdLevel::Scalar:
+                    return true;
+#if defined(__x86_64__) || defined(__i386__)
+                case SimdLevel::Sse41:
+                    return __builtin_cpu_supports("sse4.1");
+                case SimdLevel::Avx2:
+                    return __builtin_cpu_supports("avx2");
+#endif
+#if defined(__aarch64__)
+                case SimdLevel::Neon:
+                    // ASIMD is mandatory on arm64, but ask the kernel rather than assume it
+                    return (getauxval(AT_HWCAP) & HWCAP_ASIMD) != 0;
+#elif defined(__ARM_NEON)
+                case SimdLevel::Neon:
+                    return (getauxval(AT_HWCAP) & HWCAP_NEON) != 0;
+#endif
+                default:
+                    return false;
+            }
+        }
+
+        const SimdKernels& selectKernels() {
+            // Widest first
+            const SimdLevel preferred[] = {SimdLevel::Avx2, SimdLevel::Sse41, SimdLevel::Neon};
+            for (SimdLevel level : preferred) {
+                const SimdKernels* kernels = simdKernelsFor(level);
+                if (kernels) {
+                    return *kernels;
+                }
+            }
+            return SCALAR_KERNELS;
+        }
+
+    } // namespace
+
+    const SimdKernels& scalarKernels() {
+        return SCALAR_KERNELS;
+    }
+
+    const SimdKernels* simdKernelsFor(SimdLevel level) {
+        if (!cpuSupports(level)) {
+            return nullptr;
+        }
+
+        switch (level) {
+            case SimdLevel::Scalar:
+                return &SCALAR_KERNELS;
+#if defined(__x86_64__) || defined(__i386__)
+            case SimdLevel::Sse41:
+                return &sse41Kernels();
+            case SimdLevel::Avx2:
+                return &avx2Kernels();
+#endif
+#if defined(__aarch64__) || defined(__ARM_NEON)
+            case SimdLevel::Neon:
+                return &neonKernels();
+#endif
+            default:
+                return nullptr;
+        }
+    }
+
+    const SimdKernels& simdKernels() {
+        static const SimdKernels& selected = selectKernels();
+        return selected;
+    }
+
+    const char* simdLevelName(SimdLevel level) {
+        switch (level) {
+            case SimdLevel::Scalar:
+                return "scalar";
+            case SimdLevel::Sse41:
+                return "sse4.1";
+            case SimdLevel::Avx2:
+                return "avx2";
+            case SimdLevel::Neon:
+                return "neon";
+            default:
+                return "unknown";
+        }
+    }
+
+} // namespace EdgeDetection
@@ -0,0 +1,140 @@
+#ifndef SIMD_KERNELS_H
+#define SIMD_KERNELS_H
+
+#include <cstddef>
+#include <cstdint>
+
+namespace EdgeDetection {
+
+// Hysteresis map values, with the same meaning as inside cv::Canny
+static const uint8_t EDGE_CANDIDATE = 0;   // Local maximum above the low threshold
+static const uint8_t EDGE_NONE = 1;        // Cannot be an edge
+static const uint8_t EDGE_STRONG = 2;      // Edge (above the high threshold, or connected to one)
+
+// Largest Gaussian kernel handled by the fused kernel (larger ones use cv::GaussianBlur)
+static const int MAX_FUSED_KERNEL = 15;
+
+// tan(22.5 degrees) in Q15, used to bin the gradient direction without division
+static const int CANNY_SHIFT = 15;
+static const int TG22 = 13573;
+
+// RGB to gray weights in Q14, the same fixed-point weights cv::cvtColor uses for 8-bit images
+static const int GRAY_SHIFT = 14;
+static const int R2GRAY = 4899;
+static const int G2GRAY = 9617;
+static const int B2GRAY = 1868;
+
+/**
+ * @brief Instruction set a kernel table is written for
+ */
+    enum class SimdLevel {
+        Scalar = 0,     // Portable C++, always available
+        Sse41 = 1,      // x86 SSE4.1, 128-bit
+        Avx2 = 2,       // x86 AVX2, 256-bit
+        Neon = 3        // ARM NEON / ASIMD, 128-bit
+    };
+
+// Number of SimdLevel values
+    const int SIMD_LEVEL_COUNT = 4;
+
+/**
+ * @brief Inner loops of the fused Canny kernel, one table per instruction set
+ * Every table gives bit-identical results to the scalar one; only speed differs. The loops cover
+ * the interior of a row, and callers handle the border pixels that need reflected or replicated
+ * neighbours.
+ */
+    struct SimdKernels {
+        SimdLevel level;
+        const char* name;
+
+        /**
+         * @brief RGBA to gray with the Q14 weights cv::cvtColor uses for 8-bit images
+         * @param rgba Input pixels, 4 bytes each
+         * @param gray Output, one byte per pixel
+         * @param width Number of pixels
+         */
+        void (*rgbaToGray)(const uint8_t* rgba, uint8_t* gray, int width);
+
+        /**
+         * @brief Horizontal Gaussian pass: out[i] = sum of taps[k] * src[i + k] (Q8, taps sum to 256)
+         * @param src Gray input; reads count + size - 1 bytes
+         * @param out Output, count values
+         * @param count Number of outputs
+         * @param taps Kernel taps
+         * @param size Kernel size (odd, at most MAX_FUSED_KERNEL)
+         */
+        void (*horizontalBlur)(const uint8_t* src, uint16_t* out, int count, const int* taps, int size);
+
+        /**
+         * @brief Vertical Gaussian pass: out[x] = (sum of taps[k] * rows[k][x] + 2^15) >> 16
+         * @param rows size horizontally blurred rows (Q8)
+         * @param taps Kernel taps
+         * @param size Kernel size
+         * @param out Blurred 8-bit row
+         * @param width Number of pixels
+         */
+        void (*verticalBlur)(const uint16_t* const* rows, const int* taps, int size, uint8_t* out, int width);
+
+        /**
+         * @brief 3x3 Sobel gradients and L1 magnitude for pixels 1 .. width - 2 of a row
+         * @param above Blurred row above
+         * @param centre Blurred row
+         * @param below Blurred row below
+         * @param dx Receives the horizontal gradient
+         * @param dy Receives the vertical gradient
+         * @param mag Receives |dx| + |dy|
+         * @param width Row width (at least 3)
+         */
+        void (*sobelRow)(const uint8_t* above, const uint8_t* centre, const uint8_t* below,
+                         short* dx, short* dy, int* mag, int width);
+
+        /**
+         * @brief Non-maximum suppression of one row, classifying pixels as in cv::Canny
+         * The magnitude rows must be readable one element either side of [0, width).
+         * @param dx Horizontal gradient row
+         * @param dy Vertical gradient row
+         * @param mag Magnitude row
+         * @param magPrev Magnitude row above
+         * @param magNext Magnitude row below
+         * @param low Lower threshold
+         * @param high Upper threshold
+         * @param map Receives EDGE_CANDIDATE, EDGE_NONE or EDGE_STRONG per pixel
+         * @param width Number of pixels
+         * @return Number of strong pixels written
+         */
+        int (*suppressRow)(const short* dx, const short* dy, const int* mag, const int* magPrev,
+                           const int* magNext, int low, int high, uint8_t* map, int width);
+    };
+
+/**
+ * @brief Fastest kernel table this CPU supports, chosen once on first use
+ */
+    const SimdKernels& simdKernels();
+
+/**
+ * @brief Kernel table for an instruction set
+ * @param level Instruction set
+ * @return The table, or nullptr if it is not compiled in or the CPU lacks the instructions
+ */
+    const SimdKernels* simdKernelsFor(SimdLevel level);
+
+/**
+ * @brief Get the name of an instruction set ("scalar", "sse4.1", "avx2", "neon")
+ */
+    const char* simdLevelName(SimdLevel level);
+
+/**
+ * @brief Tables for each instruction set, defined only when built for that architecture
+ */
+    const SimdKernels& scalarKernels();
+#if defined(__x86_64__) || defined(__i386__)
+    const SimdKernels& sse41Kernels();
+    const SimdKernels& avx2Kernels();
+#endif
+#if defined(__aarch64__) || defined(__ARM_NEON)
+    const SimdKernels& neonKernels();
+#endif
+
+} // namespace EdgeDetection
+
+#endif // SIMD_KERNELS_H
@@ -0,0 +1,231 @@
+//
+// NEON versions of the Canny inner loops, for arm64-v8a and armeabi-v7a builds with NEON
+//
+#include "simd_kernels.h"
+
+#if defined(__aarch64__) || defined(__ARM_NEON)
+
+#include <arm_neon.h>
+#include <cstdlib>
+
+namespace EdgeDetection {
+
+    namespace {
+
+        void rgbaToGrayNeon(const uint8_t* rgba, uint8_t* gray, int width) {
+            int x = 0;
+            for (; x + 16 <= width; x += 16) {
+                const uint8x16x4_t p = vld4q_u8(rgba + 4 * x);
+                uint16x8_t halves[2];
+                for (int h = 0; h < 2; h++) {
+                    const uint16x8_t r = vmovl_u8(h == 0 ? vget_low_u8(p.val[0]) : vget_high_u8(p.val[0]));
+                    const uint16x8_t g = vmovl_u8(h == 0 ? vget_low_u8(p.val[1]) : vget_high_u8(p.val[1]));
+                    const uint16x8_t b = vmovl_u8(h == 0 ? vget_low_u8(p.val[2]) : vget_high_u8(p.val[2]));
+
+                    uint32x4_t lo = vmull_n_u16(vget_low_u16(r), R2GRAY);
+                    lo = vmlal_n_u16(lo, vget_low_u16(g), G2GRAY);
+                    lo = vmlal_n_u16(lo, vget_low_u16(b), B2GRAY);
+                    uint32x4_t hi = vmull_n_u16(vget_high_u16(r), R2GRAY);
+                    hi = vmlal_n_u16(hi, vget_high_u16(g), G2GRAY);
+                    hi = vmlal_n_u16(hi, vget_high_u16(b), B2GRAY);
+
+                    // Rounding narrow shift is exactly (sum + 2^13) >> 14
+                    halves[h] = vcombine_u16(vrshrn_n_u32(lo, GRAY_SHIFT), vrshrn_n_u32(hi, GRAY_SHIFT));
+                }
+                vst1q_u8(gray + x, vcombine_u8(vmovn_u16(halves[0]), vmovn_u16(halves[1])));
+            }
+            for (; x < width; x++) {
+                const uint8_t* p = rgba + 4 * x;
+                gray[x] = static_cast<uint8_t>((p[0] * R2GRAY + p[1] * G2GRAY + p[2] * B2GRAY
+                                                + (1 << (GRAY_SHIFT - 1))) >> GRAY_SHIFT);
+            }
+        }
+
+        void horizontalBlurNeon(const uint8_t* src, uint16_t* out, int count, const int* taps, int size) {
+            // Taps sum to 256, so every partial sum fits in 16 unsigned bits
+            int x = 0;
+            for (; x + 16 <= count; x += 16) {
+                uint16x8_t sumLo = vdupq_n_u16(0);
+                uint16x8_t sumHi = vdupq_n_u16(0);
+                for (int i = 0; i < size; i++) {
+                    const uint8x16_t p = vld1q_u8(src + x + i);
+                    const uint16_t tap = static_cast<uint16_t>(taps[i]);
+                    sumLo = vmlaq_n_u16(sumLo, vmovl_u8(vget_low_u8(p)), tap);
+                    sumHi = vmlaq_n_u16(sumHi, vmovl_u8(vget_high_u8(p)), tap);
+                }
+                vst1q_u16(out + x, sumLo);
+                vst1q_u16(out + x + 8, sumHi);
+            }
+            for (; x < count; x++) {
+                int sum = 0;
+                for (int i = 0; i < size; i++) {
+                    sum += taps[i] * src[x + i];
+                }
+                out[x] = static_cast<uint16_t>(sum);
+            }
+        }
+
+        void verticalBlurNeon(const uint16_t* const* rows, const int* taps, int size, uint8_t* out, int width) {
+            int x = 0;
+            for (; x + 8 <= width; x += 8) {
+                uint32x4_t sumLo = vdupq_n_u32(0);
+                uint32x4_t sumHi = vdupq_n_u32(0);
+                for (int i = 0; i < size; i++) {
+                    const uint16x8_t v = vld1q_u16(rows[i] + x);
+                    const uint16_t tap = static_cast<uint16_t>(taps[i]);
+                    sumLo = vmlal_n_u16(sumLo, vget_low_u16(v), tap);
+                    sumHi = vmlal_n_u16(sumHi, vget_high_u16(v), tap);
+                }
+                // (sum + 2^15) >> 16, then the values are already at most 255
+                const uint16x8_t words = vcombine_u16(vrshrn_n_u32(sumLo, 16), vrshrn_n_u32(sumHi, 16));
+                vst1_u8(out + x, vmovn_u16(words));
+            }
+            for (; x < width; x++) {
+                uint32_t sum = 0;
+                for (int i = 0; i < size; i++) {
+                    sum += static_cast<uint32_t>(taps[i]) * rows[i][x];
+                }
+                out[x] = static_cast<uint8_t>((sum + (1u << 15)) >> 16);
+            }
+        }
+
+        inline int16x8_t differenceNeon(const uint8_t* a, const uint8_t* b) {
+            // Wrapping 16-bit subtraction of widened bytes is the exact signed difference
+            return vreinterpretq_s16_u16(vsubl_u8(vld1_u8(a), vld1_u8(b)));
+        }
+
+        void sobelRowNeon(const uint8_t* above, const uint8_t* centre, const uint8_t* below,
+                          short* dx, short* dy, int* mag, int width) {
+            int x = 1;
+            for (; x + 8 <= width - 1; x += 8) {
+                const int16x8_t gx = vaddq_s16(vaddq_s16(differenceNeon(above + x + 1, above + x - 1),
+                                                         differenceNeon(below + x + 1, below + x - 1)),
+                                               vshlq_n_s16(differenceNeon(centre + x + 1, centre + x - 1), 1));
+                const int16x8_t gy = vaddq_s16(vaddq_s16(differenceNeon(below + x - 1, above + x - 1),
+                                                         differenceNeon(below + x + 1, above + x + 1)),
+                                               vshlq_n_s16(differenceNeon(below + x, above + x), 1));
+                const int16x8_t m = vaddq_s16(vabsq_s16(gx), vabsq_s16(gy));
+
+                vst1q_s16(dx + x, gx);
+                vst1q_s16(dy + x, gy);
+                vst1q_s32(mag + x, vmovl_s16(vget_low_s16(m)));
+                vst1q_s32(mag + x + 4, vmovl_s16(vget_high_s16(m)));
+            }
+            for (; x < width - 1; x++) {
+                const int gx = (above[x + 1] - above[x - 1]) + 2 * (centre[x + 1] - centre[x - 1])
+                               + (below[x + 1] - below[x - 1]);
+                const int gy = (below[x - 1] - above[x - 1]) + 2 * (below[x] - above[x])
+                               + (below[x + 1] - above[x + 1]);
+                dx[x] = static_cast<short>(gx);
+                dy[x] = static_cast<short>(gy);
+                mag[x] = std::abs(gx) + std::abs(gy);
+            }
+        }
+
+        /**
+         * @brief Map values for four pixels, as 32-bit lanes, plus the mask of strong ones
+         */
+        inline int32x4_t suppressFourNeon(const short* dx, const short* dy, const int* mag, const int* magPrev,
+                                          const int* magNext, int32x4_t low, int32x4_t high,
+                                          uint32x4_t* strongMask) {
+            const int32x4_t m = vld1q_s32(mag);
+            const int32x4_t xs = vmovl_s16(vld1_s16(dx));
+            const int32x4_t ys = vmovl_s16(vld1_s16(dy));
+
+            const int32x4_t ax = vabsq_s32(xs);
+            const int32x4_t ay = vshlq_n_s32(vabsq_s32(ys), CANNY_SHIFT);
+            const int32x4_t tg22x = vmulq_n_s32(ax, TG22);
+            const int32x4_t tg67x = vaddq_s32(tg22x, vshlq_n_s32(ax, CANNY_SHIFT + 1));
+
+            const uint32x4_t horizontal = vcltq_s32(ay, tg22x);
+            const uint32x4_t vertical = vbicq_u32(vcgtq_s32(ay, tg67x), horizontal);
+            const uint32x4_t diagonal = vmvnq_u32(vorrq_u32(horizontal, vertical));
+
+            // Opposite gradient signs lean the diagonal the other way
+            const uint32x4_t opposite = vcltq_s32(veorq_s32(xs, ys), vdupq_n_s32(0));
+            const int32x4_t diagonalPrev = vbslq_s32(opposite, vld1q_s32(magPrev + 1), vld1q_s32(magPrev - 1));
+            const int32x4_t diagonalNext = vbslq_s32(opposite, vld1q_s32(magNext - 1), vld1q_s32(magNext + 1));
+
+            const uint32x4_t horizontalMax = vandq_u32(vcgtq_s32(m, vld1q_s32(mag - 1)),
+                                                       vcgeq_s32(m, vld1q_s32(mag + 1)));
+            const uint32x4_t verticalMax = vandq_u32(vcgtq_s32(m, vld1q_s32(magPrev)),
+                                                     vcgeq_s32(m, vld1q_s32(magNext)));
+            const uint32x4_t diagonalMax = vandq_u32(vcgtq_s32(m, diagonalPrev), vcgtq_s32(m, diagonalNext));
+
+            uint32x4_t isMaximum = vorrq_u32(vandq_u32(horizontal, horizontalMax),
+                                             vorrq_u32(vandq_u32(vertical, verticalMax),
+                                                       vandq_u32(diagonal, diagonalMax)));
+            isMaximum = vandq_u32(isMaximum, vcgtq_s32(m, low));
+            const uint32x4_t strong = vandq_u32(isMaximum, vcgtq_s32(m, high));
+            *strongMask = strong;
+
+            // EDGE_NONE (1), plus -1 for a maximum (EDGE_CANDIDATE), plus 2 more if strong (EDGE_STRONG)
+            const int32x4_t value = vaddq_s32(vdupq_n_s32(EDGE_NONE), vreinterpretq_s32_u32(isMaximum));
+            return vsubq_s32(value, vshlq_n_s32(vreinterpretq_s32_u32(strong), 1));
+        }
+
+        int suppressRowNeon(const short* dx, const short* dy, const int* mag, const int* magPrev,
+                            const int* magNext, int low, int high, uint8_t* map, int width) {
+            const int32x4_t lowVector = vdupq_n_s32(low);
+            const int32x4_t highVector = vdupq_n_s32(high);
+            // Strong masks are -1 per lane, so subtracting them counts strong pixels
+            int32x4_t strongCount = vdupq_n_s32(0);
+
+            int x = 0;
+            for (; x + 8 <= width; x += 8) {
+                uint32x4_t strong0;
+                uint32x4_t strong1;
+                const int32x4_t v0 = suppressFourNeon(dx + x, dy + x, mag + x, magPrev + x, magNext + x,
+                                                      lowVector, highVector, &strong0);
+                const int32x4_t v1 = suppressFourNeon(dx + x + 4, dy + x + 4, mag + x + 4, magPrev + x + 4,
+                                                      magNext + x + 4, lowVector, highVector, &strong1);
+                const int16x8_t words = vcombine_s16(vmovn_s32(v0), vmovn_s32(v1));
+                vst1_u8(map + x, vreinterpret_u8_s8(vmovn_s16(words)));
+                strongCount = vsubq_s32(strongCount, vreinterpretq_s32_u32(strong0));
+                strongCount = vsubq_s32(strongCount, vreinterpretq_s32_u32(strong1));
+            }
+
+            int strong = vgetq_lane_s32(strongCount, 0) + vgetq_lane_s32(strongCount, 1)
+                         + vgetq_lane_s32(strongCount, 2) + vgetq_lane_s32(strongCount, 3);
+            for (; x < width; x++) {
+                const int m = mag[x];
+                uint8_t value = EDGE_NONE;
+                if (m > low) {
+                    const int xs = dx[x];
+                    const int ys = dy[x];
+                    const int ax = std::abs(xs);
+                    const int ay = std::abs(ys) << CANNY_SHIFT;
+                    const int tg22x = ax * TG22;
+                    bool isMaximum;
+                    if (ay < tg22x) {
+                        isMaximum = m > mag[x - 1] && m >= mag[x + 1];
+                    } else if (ay > tg22x + (ax << (CANNY_SHIFT + 1))) {
+                        isMaximum = m > magPrev[x] && m >= magNext[x];
+                    } else {
+                        const int s = (xs ^ ys) < 0 ? -1 : 1;
+                        isMaximum = m > magPrev[x - s] && m > magNext[x + s];
+                    }
+                    if (isMaximum) {
+                        value = m > high ? EDGE_STRONG : EDGE_CANDIDATE;
+                    }
+                }
+                map[x] = value;
+                strong += value == EDGE_STRONG;
+            }
+            return strong;
+        }
+
+        const SimdKernels NEON_KERNELS = {
+                SimdLevel::Neon, "neon",
+                rgbaToGrayNeon, horizontalBlurNeon, verticalBlurNeon, sobelRowNeon, suppressRowNeon
+        };
+
+    } // namespace
+
+    const SimdKernels& neonKernels() {
+        return NEON_KERNELS;
+    }
+
+} // namespace EdgeDetection
+
+#endif
@@ -0,0 +1,479 @@
+//
+// SSE4.1 and AVX2 versions of the Canny inner loops
+// Each function carries its own target attribute, so the library still runs on CPUs without these
+// instructions as long as simdKernelsFor has checked support before a table is used.
+//
+#include "simd_kernels.h"
+
+#if defined(__x86_64__) || defined(__i386__)
+
+#include <immintrin.h>
+#include <cstdlib>
+#include <cstring>
+
+#define SSE41_TARGET __attribute__((target("sse4.1")))
+#define AVX2_TARGET __attribute__((target("avx2")))
+
+namespace EdgeDetection {
+
+    namespace {
+
+        // Scalar tails for the pixels left over after the last full vector
+
+        void rgbaToGrayTail(const uint8_t* rgba, uint8_t* gray, int start, int width) {
+            for (int x = start; x < width; x++) {
+                const uint8_t* p = rgba + 4 * x;
+                gray[x] = static_cast<uint8_t>((p[0] * R2GRAY + p[1] * G2GRAY + p[2] * B2GRAY
+                                                + (1 << (GRAY_SHIFT - 1))) >> GRAY_SHIFT);
+            }
+        }
+
+        void horizontalBlurTail(const uint8_t* src, uint16_t* out, int start, int count, const int* taps, int size) {
+            for (int x = start; x < count; x++) {
+                int sum = 0;
+                for (int i = 0; i < size; i++) {
+                    sum += taps[i] * src[x + i];
+                }
+                out[x] = static_cast<uint16_t>(sum);
+            }
+        }
+
+        void verticalBlurTail(const uint16_t* const* rows, const int* taps, int size, uint8_t* out,
+                              int start, int width) {
+            for (int x = start; x < width; x++) {
+                uint32_t sum = 0;
+                for (int i = 0; i < size; i++) {
+                    sum += static_cast<uint32_t>(taps[i]) * rows[i][x];
+                }
+                out[x] = static_cast<uint8_t>((sum + (1u << 15)) >> 16);
+            }
+        }
+
+        void sobelTail(const uint8_t* above, const uint8_t* centre, const uint8_t* below,
+                       short* dx, short* dy, int* mag, int start, int end) {
+            for (int x = start; x < end; x++) {
+                const int gx = (above[x + 1] - above[x - 1]) + 2 * (centre[x + 1] - centre[x - 1])
+                               + (below[x + 1] - below[x - 1]);
+                const int gy = (below[x - 1] - above[x - 1]) + 2 * (below[x] - above[x])
+                               + (below[x + 1] - above[x + 1]);
+                dx[x] = static_cast<short>(gx);
+                dy[x] = static_cast<short>(gy);
+                mag[x] = std::abs(gx) + std::abs(gy);
+            }
+        }
+
+        int suppressTail(const short* dx, const short* dy, const int* mag, const int* magPrev,
+                         const int* magNext, int low, int high, uint8_t* map, int start, int width) {
+            int strong = 0;
+            for (int x = start; x < width; x++) {
+                const int m = mag[x];
+                uint8_t value = EDGE_NONE;
+                if (m > low) {
+                    const int xs = dx[x];
+                    const int ys = dy[x];
+                    const int ax = std::abs(xs);
+                    const int ay = std::abs(ys) << CANNY_SHIFT;
+                    const int tg22x = ax * TG22;
+                    bool isMaximum;
+                    if (ay < tg22x) {
+                        isMaximum = m > mag[x - 1] && m >= mag[x + 1];
+                    } else if (ay > tg22x + (ax << (CANNY_SHIFT + 1))) {
+                        isMaximum = m > magPrev[x] && m >= magNext[x];
+                    } else {
+                        const int s = (xs ^ ys) < 0 ? -1 : 1;
+                        isMaximum = m > magPrev[x - s] && m > magNext[x + s];
+                    }
+                    if (isMaximum) {
+                        value = m > high ? EDGE_STRONG : EDGE_CANDIDATE;
+                    }
+                }
+                map[x] = value;
+                strong += value == EDGE_STRONG;
+            }
+            return strong;
+        }
+
+        // ---- SSE4.1 ----
+
+        SSE41_TARGET void rgbaToGraySse41(const uint8_t* rgba, uint8_t* gray, int width) {
+            const __m128i weights = _mm_setr_epi16(R2GRAY, G2GRAY, B2GRAY, 0, R2GRAY, G2GRAY, B2GRAY, 0);
+            const __m128i round = _mm_set1_epi32(1 << (GRAY_SHIFT - 1));
+            const __m128i zero = _mm_setzero_si128();
+
+            int x = 0;
+            for (; x + 8 <= width; x += 8) {
+                const __m128i p0 = _mm_loadu_si128(reinterpret_cast<const __m128i*>(rgba + 4 * x));
+                const __m128i p1 = _mm_loadu_si128(reinterpret_cast<const __m128i*>(rgba + 4 * x + 16));
+
+                // Each madd gives R*wr + G*wg and B*wb per pixel; hadd then joins the pairs
+                const __m128i a = _mm_madd_epi16(_mm_unpacklo_epi8(p0, zero), weights);
+                const __m128i b = _mm_madd_epi16(_mm_unpackhi_epi8(p0, zero), weights);
+                const __m128i c = _mm_madd_epi16(_mm_unpacklo_epi8(p1, zero), weights);
+                const __m128i d = _mm_madd_epi16(_mm_unpackhi_epi8(p1, zero), weights);
+                const __m128i s0 = _mm_srli_epi32(_mm_add_epi32(_mm_hadd_epi32(a, b), round), GRAY_SHIFT);
+                const __m128i s1 = _mm_srli_epi32(_mm_add_epi32(_mm_hadd_epi32(c, d), round), GRAY_SHIFT);
+
+                const __m128i packed = _mm_packus_epi16(_mm_packs_epi32(s0, s1), zero);
+                _mm_storel_epi64(reinterpret_cast<__m128i*>(gray + x), packed);
+            }
+            rgbaToGrayTail(rgba, gray, x, width);
+        }
+
+        SSE41_TARGET void horizontalBlurSse41(const uint8_t* src, uint16_t* out, int count,
+                                              const int* taps, int size) {
+            __m128i tapVectors[MAX_FUSED_KERNEL];
+            for (int i = 0; i < size; i++) {
+                tapVectors[i] = _mm_set1_epi16(static_cast<short>(taps[i]));
+            }
+
+            // Taps sum to 256, so every partial sum fits in 16 unsigned bits
+            int x = 0;
+            for (; x + 8 <= count; x += 8) {
+                __m128i sum = _mm_setzero_si128();
+                for (int i = 0; i < size; i++) {
+                    const __m128i p = _mm_cvtepu8_epi16(
+                            _mm_loadl_epi64(reinterpret_cast<const __m128i*>(src + x + i)));
+                    sum = _mm_add_epi16(sum, _mm_mullo_epi16(p, tapVectors[i]));
+                }
+                _mm_storeu_si128(reinterpret_cast<__m128i*>(out + x), sum);
+            }
+            horizontalBlurTail(src, out, x, count, taps, size);
+        }
+
+        SSE41_TARGET void verticalBlurSse41(const uint16_t* const* rows, const int* taps, int size,
+                                            uint8_t* out, int width) {
+            __m128i tapVectors[MAX_FUSED_KERNEL];
+            for (int i = 0; i < size; i++) {
+                tapVectors[i] = _mm_set1_epi16(static_cast<short>(taps[i]));
+            }
+            const __m128i round = _mm_set1_epi32(1 << 15);
+
+            int x = 0;
+            for (; x + 8 <= width; x += 8) {
+                __m128i sumLo = round;
+                __m128i sumHi = round;
+                for (int i = 0; i < size; i++) {
+                    // 16 x 16 -> 32-bit unsigned products from the low and high halves
+                    const __m128i v = _mm_loadu_si128(reinterpret_cast<const __m128i*>(rows[i] + x));
+                    const __m128i lo = _mm_mullo_epi16(v, tapVectors[i]);
+                    const __m128i hi = _mm_mulhi_epu16(v, tapVectors[i]);
+                    sumLo = _mm_add_epi32(sumLo, _mm_unpacklo_epi16(lo, hi));
+                    sumHi = _mm_add_epi32(sumHi, _mm_unpackhi_epi16(lo, hi));
+                }
+                const __m128i packed = _mm_packs_epi32(_mm_srli_epi32(sumLo, 16), _mm_srli_epi32(sumHi, 16));
+                _mm_storel_epi64(reinterpret_cast<__m128i*>(out + x), _mm_packus_epi16(packed, packed));
+            }
+            verticalBlurTail(rows, taps, size, out, x, width);
+        }
+
+        SSE41_TARGET inline __m128i loadWidened8(const uint8_t* p) {
+            return _mm_cvtepu8_epi16(_mm_loadl_epi64(reinterpret_cast<const __m128i*>(p)));
+        }
+
+        SSE41_TARGET void sobelRowSse41(const uint8_t* above, const uint8_t* centre, const uint8_t* below,
+                                        short* dx, short* dy, int* mag, int width) {
+            int x = 1;
+            for (; x + 8 <= width - 1; x += 8) {
+                const __m128i al = loadWidened8(above + x - 1);
+                const __m128i ac = loadWidened8(above + x);
+                const __m128i ar = loadWidened8(above + x + 1);
+                const __m128i cl = loadWidened8(centre + x - 1);
+                const __m128i cr = loadWidened8(centre + x + 1);
+                const __m128i bl = loadWidened8(below + x - 1);
+                const __m128i bc = loadWidened8(below + x);
+                const __m128i br = loadWidened8(below + x + 1);
+
+                const __m128i centreDiff = _mm_sub_epi16(cr, cl);
+                const __m128i gx = _mm_add_epi16(_mm_add_epi16(_mm_sub_epi16(ar, al), _mm_sub_epi16(br, bl)),
+                                                 _mm_add_epi16(centreDiff, centreDiff));
+                const __m128i middleDiff = _mm_sub_epi16(bc, ac);
+                const __m128i gy = _mm_add_epi16(_mm_add_epi16(_mm_sub_epi16(bl, al), _mm_sub_epi16(br, ar)),
+                                                 _mm_add_epi16(middleDiff, middleDiff));
+                const __m128i m = _mm_add_epi16(_mm_abs_epi16(gx), _mm_abs_epi16(gy));
+
+                _mm_storeu_si128(reinterpret_cast<__m128i*>(dx + x), gx);
+                _mm_storeu_si128(reinterpret_cast<__m128i*>(dy + x), gy);
+                _mm_storeu_si128(reinterpret_cast<__m128i*>(mag + x), _mm_cvtepi16_epi32(m));
+                _mm_storeu_si128(reinterpret_cast<__m128i*>(mag + x + 4), _mm_cvtepi16_epi32(_mm_srli_si128(m, 8)));
+            }
+            sobelTail(above, centre, below, dx, dy, mag, x, width - 1);
+        }
+
+        /**
+         * @brief Map values for four pixels, as 32-bit lanes, plus the mask of strong ones
+         */
+        SSE41_TARGET inline __m128i suppressFour(const short* dx, const short* dy, const int* mag,
+                                                 const int* magPrev, const int* magNext, __m128i low,
+                                                 __m128i high, __m128i* strongMask) {
+            const __m128i zero = _mm_setzero_si128();
+            const __m128i m = _mm_loadu_si128(reinterpret_cast<const __m128i*>(mag));
+            const __m128i xs = _mm_cvtepi16_epi32(_mm_loadl_epi64(reinterpret_cast<const __m128i*>(dx)));
+            const __m128i ys = _mm_cvtepi16_epi32(_mm_loadl_epi64(reinterpret_cast<const __m128i*>(dy)));
+
+            const __m128i ax = _mm_abs_epi32(xs);
+            const __m128i ay = _mm_slli_epi32(_mm_abs_epi32(ys), CANNY_SHIFT);
+            const __m128i tg22x = _mm_mullo_epi32(ax, _mm_set1_epi32(TG22));
+            const __m128i tg67x = _mm_add_epi32(tg22x, _mm_slli_epi32(ax, CANNY_SHIFT + 1));
+
+            const __m128i horizontal = _mm_cmplt_epi32(ay, tg22x);
+            const __m128i vertical = _mm_andnot_si128(horizontal, _mm_cmpgt_epi32(ay, tg67x));
+            const __m128i diagonal = _mm_andnot_si128(_mm_or_si128(horizontal, vertical), _mm_set1_epi32(-1));
+
+            const __m128i left = _mm_loadu_si128(reinterpret_cast<const __m128i*>(mag - 1));
+            const __m128i right = _mm_loadu_si128(reinterpret_cast<const __m128i*>(mag + 1));
+            const __m128i up = _mm_loadu_si128(reinterpret_cast<const __m128i*>(magPrev));
+            const __m128i down = _mm_loadu_si128(reinterpret_cast<const __m128i*>(magNext));
+            const __m128i upLeft = _mm_loadu_si128(reinterpret_cast<const __m128i*>(magPrev - 1));
+            const __m128i upRight = _mm_loadu_si128(reinterpret_cast<const __m128i*>(magPrev + 1));
+            const __m128i downLeft = _mm_loadu_si128(reinterpret_cast<const __m128i*>(magNext - 1));
+            const __m128i downRight = _mm_loadu_si128(reinterpret_cast<const __m128i*>(magNext + 1));
+
+            // Opposite gradient signs lean the diagonal the other way
+            const __m128i opposite = _mm_cmplt_epi32(_mm_xor_si128(xs, ys), zero);
+            const __m128i diagonalPrev = _mm_blendv_epi8(upLeft, upRight, opposite);
+            const __m128i diagonalNext = _mm_blendv_epi8(downRight, downLeft, opposite);
+
+            const __m128i horizontalMax = _mm_andnot_si128(_mm_cmpgt_epi32(right, m), _mm_cmpgt_epi32(m, left));
+            const __m128i verticalMax = _mm_andnot_si128(_mm_cmpgt_epi32(down, m), _mm_cmpgt_epi32(m, up));
+            const __m128i diagonalMax = _mm_and_si128(_mm_cmpgt_epi32(m, diagonalPrev),
+                                                      _mm_cmpgt_epi32(m, diagonalNext));
+
+            __m128i isMaximum = _mm_or_si128(_mm_and_si128(horizontal, horizontalMax),
+                                             _mm_or_si128(_mm_and_si128(vertical, verticalMax),
+                                                          _mm_and_si128(diagonal, diagonalMax)));
+            isMaximum = _mm_and_si128(isMaximum, _mm_cmpgt_epi32(m, low));
+            const __m128i strong = _mm_and_si128(isMaximum, _mm_cmpgt_epi32(m, high));
+            *strongMask = strong;
+
+            // EDGE_NONE (1), plus -1 for a maximum (EDGE_CANDIDATE), plus 2 more if strong (EDGE_STRONG)
+            const __m128i value = _mm_add_epi32(_mm_set1_epi32(EDGE_NONE), isMaximum);
+            return _mm_sub_epi32(value, _mm_add_epi32(strong, strong));
+        }
+
+        SSE41_TARGET int suppressRowSse41(const short* dx, const short* dy, const int* mag, const int* magPrev,
+                                          const int* magNext, int low, int high, uint8_t* map, int width) {
+            const __m128i lowVector = _mm_set1_epi32(low);
+            const __m128i highVector = _mm_set1_epi32(high);
+            int strong = 0;
+
+            int x = 0;
+            for (; x + 8 <= width; x += 8) {
+                __m128i strong0;
+                __m128i strong1;
+                const __m128i v0 = suppressFour(dx + x, dy + x, mag + x, magPrev + x, magNext + x,
+                                                lowVector, highVector, &strong0);
+                const __m128i v1 = suppressFour(dx + x + 4, dy + x + 4, mag + x + 4, magPrev + x + 4,
+                                                magNext + x + 4, lowVector, highVector, &strong1);
+                const __m128i packed = _mm_packs_epi32(v0, v1);
+                _mm_storel_epi64(reinterpret_cast<__m128i*>(map + x), _mm_packus_epi16(packed, packed));
+                strong += __builtin_popcount(_mm_movemask_ps(_mm_castsi128_ps(strong0)))
+                          + __builtin_popcount(_mm_movemask_ps(_mm_castsi128_ps(strong1)));
+            }
+            return strong + suppressTail(dx, dy, mag, magPrev, magNext, low, high, map, x, width);
+        }
+
+        // ---- AVX2 ----
+
+        AVX2_TARGET void rgbaToGrayAvx2(const uint8_t* rgba, uint8_t* gray, int width) {
+            const __m256i weights = _mm256_setr_epi16(R2GRAY, G2GRAY, B2GRAY, 0, R2GRAY, G2GRAY, B2GRAY, 0,
+                                                      R2GRAY, G2GRAY, B2GRAY, 0, R2GRAY, G2GRAY, B2GRAY, 0);
+            const __m256i round = _mm256_set1_epi32(1 << (GRAY_SHIFT - 1));
+            const __m128i order = _mm_setr_epi8(0, 1, 8, 9, 2, 3, 10, 11, 4, 5, 12, 13, 6, 7, 14, 15);
+
+            int x = 0;
+            for (; x + 16 <= width; x += 16) {
+                // Widening four pixels at a time puts pixels 0,1 in the low lane and 2,3 in the high one
+                __m256i sums[4];
+                for (int i = 0; i < 4; i++) {
+                    const __m256i p = _mm256_cvtepu8_epi16(
+                            _mm_loadu_si128(reinterpret_cast<const __m128i*>(rgba + 4 * x + 16 * i)));
+                    sums[i] = _mm256_madd_epi16(p, weights);
+                }
+                // hadd also works within lanes, giving pixels [0 1 4 5 | 2 3 6 7] and [8 9 12 13 | 10 11 14 15]
+                const __m256i s0 = _mm256_srli_epi32(_mm256_add_epi32(_mm256_hadd_epi32(sums[0], sums[1]), round),
+                                                     GRAY_SHIFT);
+                const __m256i s1 = _mm256_srli_epi32(_mm256_add_epi32(_mm256_hadd_epi32(sums[2], sums[3]), round),
+                                                     GRAY_SHIFT);
+                const __m256i words = _mm256_packs_epi32(s0, s1);
+                const __m128i bytes = _mm_packus_epi16(_mm256_castsi256_si128(words),
+                                                       _mm256_extracti128_si256(words, 1));
+
+                // Bytes are now pixels 0 1 4 5 8 9 12 13 2 3 6 7 10 11 14 15
+                _mm_storeu_si128(reinterpret_cast<__m128i*>(gray + x), _mm_shuffle_epi8(bytes, order));
+            }
+            rgbaToGraySse41(rgba + 4 * x, gray + x, width - x);
+        }
+
+        AVX2_TARGET void horizontalBlurAvx2(const uint8_t* src, uint16_t* out, int count,
+                                            const int* taps, int size) {
+            __m256i tapVectors[MAX_FUSED_KERNEL];
+            for (int i = 0; i < size; i++) {
+                tapVectors[i] = _mm256_set1_epi16(static_cast<short>(taps[i]));
+            }
+
+            int x = 0;
+            for (; x + 16 <= count; x += 16) {
+                __m256i sum = _mm256_setzero_si256();
+                for (int i = 0; i < size; i++) {
+                    const __m256i p = _mm256_cvtepu8_epi16(
+                            _mm_loadu_si128(reinterpret_cast<const __m128i*>(src + x + i)));
+                    sum = _mm256_add_epi16(sum, _mm256_mullo_epi16(p, tapVectors[i]));
+                }
+                _mm256_storeu_si256(reinterpret_cast<__m256i*>(out + x), sum);
+            }
+            horizontalBlurSse41(src + x, out + x, count - x, taps, size);
+        }
+
+        AVX2_TARGET void verticalBlurAvx2(const uint16_t* const* rows, const int* taps, int size,
+                                          uint8_t* out, int width) {
+            __m256i tapVectors[MAX_FUSED_KERNEL];
+            for (int i = 0; i < size; i++) {
+                tapVectors[i] = _mm256_set1_epi16(static_cast<short>(taps[i]));
+            }
+            const __m256i round = _mm256_set1_epi32(1 << 15);
+
+            int x = 0;
+            for (; x + 16 <= width; x += 16) {
+                __m256i sumLo = round;
+                __m256i sumHi = round;
+                for (int i = 0; i < size; i++) {
+                    const __m256i v = _mm256_loadu_si256(reinterpret_cast<const __m256i*>(rows[i] + x));
+                    const __m256i lo = _mm256_mullo_epi16(v, tapVectors[i]);
+                    const __m256i hi = _mm256_mulhi_epu16(v, tapVectors[i]);
+                    sumLo = _mm256_add_epi32(sumLo, _mm256_unpacklo_epi16(lo, hi));
+                    sumHi = _mm256_add_epi32(sumHi, _mm256_unpackhi_epi16(lo, hi));
+                }
+                // The in-lane unpacks and packs undo each other, leaving pixels 0..7 | 8..15
+                const __m256i words = _mm256_packs_epi32(_mm256_srli_epi32(sumLo, 16), _mm256_srli_epi32(sumHi, 16));
+                const __m256i bytes = _mm256_permute4x64_epi64(_mm256_packus_epi16(words, words), 0x08);
+                _mm_storeu_si128(reinterpret_cast<__m128i*>(out + x), _mm256_castsi256_si128(bytes));
+            }
+            verticalBlurTail(rows, taps, size, out, x, width);
+        }
+
+        AVX2_TARGET inline __m256i loadWidened16(const uint8_t* p) {
+            return _mm256_cvtepu8_epi16(_mm_loadu_si128(reinterpret_cast<const __m128i*>(p)));
+        }
+
+        AVX2_TARGET void sobelRowAvx2(const uint8_t* above, const uint8_t* centre, const uint8_t* below,
+                                      short* dx, short* dy, int* mag, int width) {
+            int x = 1;
+            for (; x + 16 <= width - 1; x += 16) {
+                const __m256i al = loadWidened16(above + x - 1);
+                const __m256i ac = loadWidened16(above + x);
+                const __m256i ar = loadWidened16(above + x + 1);
+                const __m256i cl = loadWidened16(centre + x - 1);
+                const __m256i cr = loadWidened16(centre + x + 1);
+                const __m256i bl = loadWidened16(below + x - 1);
+                const __m256i bc = loadWidened16(below + x);
+                const __m256i br = loadWidened16(below + x + 1);
+
+                const __m256i centreDiff = _mm256_sub_epi16(cr, cl);
+                const __m256i gx = _mm256_add_epi16(
+                        _mm256_add_epi16(_mm256_sub_epi16(ar, al), _mm256_sub_epi16(br, bl)),
+                        _mm256_add_epi16(centreDiff, centreDiff));
+                const __m256i middleDiff = _mm256_sub_epi16(bc, ac);
+                const __m256i gy = _mm256_add_epi16(
+                        _mm256_add_epi16(_mm256_sub_epi16(bl, al), _mm256_sub_epi16(br, ar)),
+                        _mm256_add_epi16(middleDiff, middleDiff));
+                const __m256i m = _mm256_add_epi16(_mm256_abs_epi16(gx), _mm256_abs_epi16(gy));
+
+                _mm256_storeu_si256(reinterpret_cast<__m256i*>(dx + x), gx);
+                _mm256_storeu_si256(reinterpret_cast<__m256i*>(dy + x), gy);
+                _mm256_storeu_si256(reinterpret_cast<__m256i*>(mag + x),
+                                    _mm256_cvtepi16_epi32(_mm256_castsi256_si128(m)));
+                _mm256_storeu_si256(reinterpret_cast<__m256i*>(mag + x + 8),
+                                    _mm256_cvtepi16_epi32(_mm256_extracti128_si256(m, 1)));
+            }
+            sobelTail(above, centre, below, dx, dy, mag, x, width - 1);
+        }
+
+        AVX2_TARGET int suppressRowAvx2(const short* dx, const short* dy, const int* mag, const int* magPrev,
+                                        const int* magNext, int low, int high, uint8_t* map, int width) {
+            const __m256i lowVector = _mm256_set1_epi32(low);
+            const __m256i highVector = _mm256_set1_epi32(high);
+            const __m256i zero = _mm256_setzero_si256();
+            const __m256i allOnes = _mm256_set1_epi32(-1);
+            int strong = 0;
+
+            int x = 0;
+            for (; x + 8 <= width; x += 8) {
+                const int* m0 = mag + x;
+                const int* up0 = magPrev + x;
+                const int* down0 = magNext + x;
+
+                const __m256i m = _mm256_loadu_si256(reinterpret_cast<const __m256i*>(m0));
+                const __m256i xs = _mm256_cvtepi16_epi32(_mm_loadu_si128(reinterpret_cast<const __m128i*>(dx + x)));
+                const __m256i ys = _mm256_cvtepi16_epi32(_mm_loadu_si128(reinterpret_cast<const __m128i*>(dy + x)));
+
+                const __m256i ax = _mm256_abs_epi32(xs);
+                const __m256i ay = _mm256_slli_epi32(_mm256_abs_epi32(ys), CANNY_SHIFT);
+                const __m256i tg22x = _mm256_mullo_epi32(ax, _mm256_set1_epi32(TG22));
+                const __m256i tg67x = _mm256_add_epi32(tg22x, _mm256_slli_epi32(ax, CANNY_SHIFT + 1));
+
+                const __m256i horizontal = _mm256_cmpgt_epi32(tg22x, ay);
+                const __m256i vertical = _mm256_andnot_si256(horizontal, _mm256_cmpgt_epi32(ay, tg67x));
+                const __m256i diagonal = _mm256_andnot_si256(_mm256_or_si256(horizontal, vertical), allOnes);
+
+                const __m256i left = _mm256_loadu_si256(reinterpret_cast<const __m256i*>(m0 - 1));
+                const __m256i right = _mm256_loadu_si256(reinterpret_cast<const __m256i*>(m0 + 1));
+                const __m256i up = _mm256_loadu_si256(reinterpret_cast<const __m256i*>(up0));
+                const __m256i down = _mm256_loadu_si256(reinterpret_cast<const __m256i*>(down0));
+                const __m256i upLeft = _mm256_loadu_si256(reinterpret_cast<const __m256i*>(up0 - 1));
+                const __m256i upRight = _mm256_loadu_si256(reinterpret_cast<const __m256i*>(up0 + 1));
+                const __m256i downLeft = _mm256_loadu_si256(reinterpret_cast<const __m256i*>(down0 - 1));
+                const __m256i downRight = _mm256_loadu_si256(reinterpret_cast<const __m256i*>(down0 + 1));
+
+                const __m256i opposite = _mm256_cmpgt_epi32(zero, _mm256_xor_si256(xs, ys));
+                const __m256i diagonalPrev = _mm256_blendv_epi8(upLeft, upRight, opposite);
+                const __m256i diagonalNext = _mm256_blendv_epi8(downRight, downLeft, opposite);
+
+                const __m256i horizontalMax = _mm256_andnot_si256(_mm256_cmpgt_epi32(right, m),
+                                                                  _mm256_cmpgt_epi32(m, left));
+                const __m256i verticalMax = _mm256_andnot_si256(_mm256_cmpgt_epi32(down, m),
+                                                                _mm256_cmpgt_epi32(m, up));
+                const __m256i diagonalMax = _mm256_and_si256(_mm256_cmpgt_epi32(m, diagonalPrev),
+                                                             _mm256_cmpgt_epi32(m, diagonalNext));
+
+                __m256i isMaximum = _mm256_or_si256(_mm256_and_si256(horizontal, horizontalMax),
+                                                    _mm256_or_si256(_mm256_and_si256(vertical, verticalMax),
+                                                                    _mm256_and_si256(diagonal, diagonalMax)));
+                isMaximum = _mm256_and_si256(isMaximum, _mm256_cmpgt_epi32(m, lowVector));
+                const __m256i strongMask = _mm256_and_si256(isMaximum, _mm256_cmpgt_epi32(m, highVector));
+
+                __m256i value = _mm256_add_epi32(_mm256_set1_epi32(EDGE_NONE), isMaximum);
+                value = _mm256_sub_epi32(value, _mm256_add_epi32(strongMask, strongMask));
+
+                // Eight 32-bit values down to eight bytes
+                const __m128i words = _mm_packs_epi32(_mm256_castsi256_si128(value),
+                                                      _mm256_extracti128_si256(value, 1));
+                _mm_storel_epi64(reinterpret_cast<__m128i*>(map + x), _mm_packus_epi16(words, words));
+                strong += __builtin_popcount(_mm256_movemask_ps(_mm256_castsi256_ps(strongMask)));
+            }
+            return strong + suppressRowSse41(dx + x, dy + x, mag + x, magPrev + x, magNext + x, low, high,
+                                             map + x, width - x);
+        }
+
+        const SimdKernels SSE41_KERNELS = {
+                SimdLevel::Sse41, "sse4.1",
+                rgbaToGraySse41, horizontalBlurSse41, verticalBlurSse41, sobelRowSse41, suppressRowSse41
+        };
+
+        const SimdKernels AVX2_KERNELS = {
+                SimdLevel::Avx2, "avx2",
+                rgbaToGrayAvx2, horizontalBlurAvx2, verticalBlurAvx2, sobelRowAvx2, suppressRowAvx2
+        };
+
+    } // namespace
+
+    const SimdKernels& sse41Kernels() {
+        return SSE41_KERNELS;
+    }
+
+    const SimdKernels& avx2Kernels() {
+        return AVX2_KERNELS;
+    }
+
+} // namespace EdgeDetection
+
+#endif
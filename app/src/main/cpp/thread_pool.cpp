@@ -0,0 +1,117 @@
+//
+// Native worker pool used to split a frame into strips processed in parallel
+//
+#include "thread_pool.h"
+#include <android/log.h>
+#include <algorithm>
+#include <atomic>
+
+#define LOG_TAG "ThreadPool"
+#define LOGI(...) __android_log_print(ANDROID_LOG_INFO, LOG_TAG, __VA_ARGS__)
+#define LOGE(...) __android_log_print(ANDROID_LOG_ERROR, LOG_TAG, __VA_ARGS__)
+
+namespace EdgeDetection {
+
+    namespace {
+
+        /**
+         * @brief Progress of one parallelFor call, shared by every thread that helps with it
+         */
+        struct ParallelJob {
+            std::function<void(int)> task;
+            int count = 0;
+            std::atomic<int> nextIndex{0};
+            int completed = 0;
+            std::mutex doneMutex;
+            std::condition_variable doneCondition;
+
+            // Claim and run indices until none are left
+            void drain() {
+                int finished = 0;
+                for (int index = nextIndex.fetch_add(1); index < count; index = nextIndex.fetch_add(1)) {
+                    task(index);
+                    finished++;
+                }
+                if (finished > 0) {
+                    std::lock_guard<std::mutex> lock(doneMutex);
+                    completed += finished;
+                    if (completed == count) {
+                        doneCondition.notify_all();
+                    }
+                }
+            }
+        };
+
+    } // namespace
+
+    ThreadPool::ThreadPool(int threadCount) : threadCount(std::max(1, threadCount)) {
+        // The calling thread always takes part, so one fewer worker is needed
+        for (int i = 1; i < this->threadCount; i++) {
+            workers.emplace_back(&ThreadPool::workerLoop, this);
+        }
+        LOGI("Started native thread pool with %d threads", this->threadCount);
+    }
+
+    ThreadPool::~ThreadPool() {
+        {
+            std::lock_guard<std::mutex> lock(queueMutex);
+            stopping = true;
+        }
+        queueCondition.notify_all();
+        for (std::thread& worker : workers) {
+            worker.join();
+        }
+    }
+
+    void ThreadPool::workerLoop() {
+        while (true) {
+            std::function<void()> work;
+            {
+                std::unique_lock<std::mutex> lock(queueMutex);
+                queueCondition.wait(lock, [this] { return stopping || !queue.empty(); });
+                if (queue.empty()) {
+                    return;
+                }
+                work = std::move(queue.front());
+                queue.pop_front();
+            }
+            work();
+        }
+    }
+
+    void ThreadPool::parallelFor(int count, const std::function<void(int)>& task) {
+        if (count <= 0) {
+            return;
+        }
+        if (count == 1 || workers.empty()) {
+            for (int i = 0; i < count; i++) {
+                task(i);
+            }
+            return;
+        }
+
+        auto job = std::make_shared<ParallelJob>();
+        job->task = task;
+        job->count = count;
+
+        // Each helper drains indices until none are left; helpers that start late simply find none
+        const int helpers = std::min(count - 1, static_cast<int>(workers.size()));
+        {
+            std::lock_guard<std::mutex> lock(queueMutex);
+            for (int i = 0; i < helpers; i++) {
+                queue.emplace_back([job] { job->drain(); });
+            }
+        }
+        queueCondition.notify_all();
+
+        job->drain();
+
+        std::unique_lock<std::mutex> lock(job->doneMutex);
+        job->doneCondition.wait(lock, [&job] { return job->completed == job->count; });
+    }
+
+    int ThreadPool::defaultThreadCount() {
+        return std::max(1, static_cast<int>(std::thread::hardware_concurrency()));
+    }
+
+} // namespace EdgeDetection
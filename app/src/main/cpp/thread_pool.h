@@ -0,0 +1,64 @@
+#ifndef THREAD_POOL_H
+#define THREAD_POOL_H
+
+#include <condition_variable>
+#include <deque>
+#include <functional>
+#include <memory>
+#include <mutex>
+#include <thread>
+#include <vector>
+
+namespace EdgeDetection {
+
+/**
+ * @brief Fixed set of native worker threads for splitting one frame's work into parallel tasks
+ * Safe to use from several calling threads at once; each parallelFor call waits only for its own tasks
+ */
+    class ThreadPool {
+    public:
+        /**
+         * @brief Start the worker threads
+         * @param threadCount Total threads working on a parallelFor call, including the caller
+         */
+        explicit ThreadPool(int threadCount);
+
+        /**
+         * @brief Stop and join the worker threads (tasks already queued are finished first)
+         */
+        ~ThreadPool();
+
+        ThreadPool(const ThreadPool&) = delete;
+        ThreadPool& operator=(const ThreadPool&) = delete;
+
+        /**
+         * @brief Run task(0) .. task(count - 1) across the pool and the calling thread, then return
+         * @param count Number of task indices
+         * @param task Function called once per index, possibly concurrently
+         */
+        void parallelFor(int count, const std::function<void(int)>& task);
+
+        /**
+         * @brief Get total number of threads used by parallelFor, including the caller
+         */
+        int getThreadCount() const { return threadCount; }
+
+        /**
+         * @brief Get thread count used when none is configured (one per CPU core)
+         */
+        static int defaultThreadCount();
+
+    private:
+        void workerLoop();
+
+        const int threadCount;
+        std::vector<std::thread> workers;
+        std::deque<std::function<void()>> queue;
+        std::mutex queueMutex;
+        std::condition_variable queueCondition;
+        bool stopping = false;
+    };
+
+} // namespace EdgeDetection
+
+#endif // THREAD_POOL_H
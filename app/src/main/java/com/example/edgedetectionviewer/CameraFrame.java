@@ -0,0 +1,120 @@
+package com.example.edgedetectionviewer;
+
+import android.media.Image;
+import java.nio.ByteBuffer;
+
+/**
+ * Zero-copy view of a YUV_420_888 camera image
+ * Exposes the direct plane buffers and strides so they can be handed to native code in place.
+ * The underlying Image stays open until close() is called by whoever owns the frame.
+ */
+public class CameraFrame implements AutoCloseable {
+
+    private final Image image;
+    private final ByteBuffer yPlane;
+    private final ByteBuffer uPlane;
+    private final ByteBuffer vPlane;
+    private final int yRowStride;
+    private final int uvRowStride;
+    private final int uvPixelStride;
+    private final int width;
+    private final int height;
+    private final long timestampNs;
+
+    private boolean closed = false;
+
+    public CameraFrame(Image image) {
+        Image.Plane[] planes = image.getPlanes();
+        this.image = image;
+        this.yPlane = planes[0].getBuffer();
+        this.uPlane = planes[1].getBuffer();
+        this.vPlane = planes[2].getBuffer();
+        this.yRowStride = planes[0].getRowStride();
+        this.uvRowStride = planes[1].getRowStride();
+        this.uvPixelStride = planes[1].getPixelStride();
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.timestampNs = image.getTimestamp();
+    }
+
+    /**
+     * Get Y (luma) plane as a direct buffer
+     */
+    public ByteBuffer getYPlane() {
+        return yPlane;
+    }
+
+    /**
+     * Get U (Cb) plane as a direct buffer
+     */
+    public ByteBuffer getUPlane() {
+        return uPlane;
+    }
+
+    /**
+     * Get V (Cr) plane as a direct buffer
+     */
+    public ByteBuffer getVPlane() {
+        return vPlane;
+    }
+
+    public int getYRowStride() {
+        return yRowStride;
+    }
+
+    public int getUvRowStride() {
+        return uvRowStride;
+    }
+
+    /**
+     * Get chroma pixel stride (1 for planar I420, 2 for semi-planar NV12/NV21)
+     */
+    public int getUvPixelStride() {
+        return uvPixelStride;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getTimestampNs() {
+        return timestampNs;
+    }
+
+    /**
+     * Copy the luma plane into a tightly packed width * height buffer, dropping any row padding
+     */
+    public void copyLumaTo(ByteBuffer destination) {
+        ByteBuffer source = yPlane.duplicate();
+        destination.clear();
+
+        if (yRowStride == width) {
+            source.position(0).limit(width * height);
+            destination.put(source);
+        } else {
+            for (int row = 0; row < height; row++) {
+                int rowStart = row * yRowStride;
+                source.limit(rowStart + width).position(rowStart);
+                destination.put(source);
+            }
+        }
+
+        destination.flip();
+    }
+
+    /**
+     * Release the underlying camera image back to the ImageReader
+     * Plane buffers must not be accessed after this call
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            image.close();
+        }
+    }
+}
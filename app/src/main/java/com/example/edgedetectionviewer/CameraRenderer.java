@@ -16,7 +16,7 @@ import android.util.Size;
 import android.view.Surface;
 import android.view.TextureView;
 import androidx.core.app.ActivityCompat;
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -36,6 +36,9 @@ public class CameraRenderer {
     private static final int MAX_PREVIEW_WIDTH = 1920;
     private static final int MAX_PREVIEW_HEIGHT = 1080;
 
+    // One image being processed, one waiting in the scheduler mailbox, plus headroom for the reader
+    private static final int IMAGE_READER_MAX_IMAGES = 4;
+
     // Camera objects
     private CameraManager cameraManager;
     private CameraDevice cameraDevice;
@@ -59,12 +62,46 @@ public class CameraRenderer {
         void onError(String error);
     }
 
+    /**
+     * Frame callback variant that receives the camera planes in place instead of a converted RGBA copy
+     * The receiver owns the frame and must close() it once the plane buffers are no longer needed
+     */
+    public interface YuvFrameCallback extends FrameCallback {
+        void onYuvFrameAvailable(CameraFrame frame);
+    }
+
+    /**
+     * Told the size the camera renders into the GPU target at, once a session with it is configured
+     */
+    public interface GpuTargetCallback {
+        void onGpuTargetConfigured(int width, int height);
+    }
+
     private FrameCallback frameCallback;
 
+    // GPU edge detection input; when set it replaces the ImageReader as the processing output
+    private volatile SurfaceTexture gpuTarget;
+    private volatile GpuTargetCallback gpuTargetCallback;
+    private Surface gpuSurface;
+
+    // Former GPU targets waiting for the session being configured, which no longer renders into them,
+    // before they are released; camera thread only
+    private final List<SurfaceTexture> retiredTargets = new ArrayList<>();
+    private boolean isSessionPending = false;
+
+    // Colour conversion (stride aware, output reused across frames, row bands split across cores)
+    private static final int DEFAULT_CONVERSION_PARALLELISM =
+            Math.min(4, Runtime.getRuntime().availableProcessors());
+    private final YuvConverter yuvConverter = new YuvConverter(DEFAULT_CONVERSION_PARALLELISM);
+    private byte[] rgbaBuffer;
+
     // State management
     private boolean isCameraOpened = false;
     private boolean isCapturing = false;
 
+    // Cleared by stopCamera, so a session reconfigured while paused waits for startCamera
+    private volatile boolean isCaptureWanted = true;
+
     public CameraRenderer(Context context, TextureView textureView) {
         this.context = context;
         this.textureView = textureView;
@@ -80,6 +117,71 @@ public class CameraRenderer {
         this.frameCallback = callback;
     }
 
+    /**
+     * Send frames to a GPU texture instead of the ImageReader, or back to the ImageReader with null
+     * Only one of the two is a session output, since not every device can stream preview, YUV and a
+     * third surface at once. An open camera reconfigures its session right away.
+     * @param texture SurfaceTexture the GPU path samples, or null for the CPU path
+     * @param callback Receives the frame size once the session is configured; may be null
+     */
+    public void setGpuTarget(SurfaceTexture texture, GpuTargetCallback callback) {
+        gpuTarget = texture;
+        gpuTargetCallback = callback;
+
+        Handler handler = backgroundHandler;
+        if (handler != null) {
+            handler.post(this::reconfigureSession);
+        }
+    }
+
+    /**
+     * Release a former GPU target once no capture session renders into it
+     * Call after setGpuTarget has moved frames elsewhere. The texture is released when the replacement
+     * session is configured, or right away when no session is being set up.
+     */
+    public void releaseRetiredTarget(SurfaceTexture texture) {
+        Handler handler = backgroundHandler;
+        if (handler == null) {
+            texture.release();
+            return;
+        }
+        handler.post(() -> {
+            retiredTargets.add(texture);
+            if (!isSessionPending) {
+                releaseRetiredTargets();
+            }
+        });
+    }
+
+    private void releaseRetiredTargets() {
+        for (SurfaceTexture texture : retiredTargets) {
+            texture.release();
+        }
+        retiredTargets.clear();
+    }
+
+    /**
+     * Replace the capture session so it targets the current processing output
+     */
+    private void reconfigureSession() {
+        if (cameraDevice == null) {
+            return;
+        }
+        if (captureSession != null) {
+            captureSession.close();
+            captureSession = null;
+        }
+        isCapturing = false;
+        createCameraPreviewSession();
+    }
+
+    /**
+     * Set number of row bands used for YUV to RGBA conversion (1 = serial on the camera thread)
+     */
+    public void setConversionParallelism(int parallelism) {
+        yuvConverter.setParallelism(parallelism);
+    }
+
     /**
      * Setup TextureView for camera preview
      */
@@ -263,16 +365,26 @@ public class CameraRenderer {
      */
     private void setupImageReader() {
         imageReader = ImageReader.newInstance(previewSize.getWidth(), previewSize.getHeight(),
-                ImageFormat.YUV_420_888, 2);
+                ImageFormat.YUV_420_888, IMAGE_READER_MAX_IMAGES);
 
         imageReader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
             @Override
             public void onImageAvailable(ImageReader reader) {
                 Image image = reader.acquireLatestImage();
-                if (image != null && frameCallback != null) {
+                if (image == null) {
+                    return;
+                }
+
+                if (frameCallback instanceof YuvFrameCallback) {
+                    // Hand the planes over without copying, receiver closes the image
+                    ((YuvFrameCallback) frameCallback).onYuvFrameAvailable(new CameraFrame(image));
+                    return;
+                }
+
+                if (frameCallback != null) {
                     processImageFrame(image);
-                    image.close();
                 }
+                image.close();
             }
         }, backgroundHandler);
     }
@@ -301,75 +413,23 @@ public class CameraRenderer {
 
     /**
      * Convert YUV_420_888 image to RGBA byte array
+     * The returned array is reused for the next frame, so it is only valid during the callback
      */
     private byte[] convertYUVToRGB(Image image) {
         Image.Plane[] planes = image.getPlanes();
-        ByteBuffer yBuffer = planes[0].getBuffer();
-        ByteBuffer uBuffer = planes[1].getBuffer();
-        ByteBuffer vBuffer = planes[2].getBuffer();
-
-        int ySize = yBuffer.remaining();
-        int uSize = uBuffer.remaining();
-        int vSize = vBuffer.remaining();
-
-        byte[] nv21 = new byte[ySize + uSize + vSize];
-
-        // Copy Y plane
-        yBuffer.get(nv21, 0, ySize);
-
-        // Copy U and V planes (interleaved for NV21)
-        byte[] uvPixel = new byte[2];
-        int uvIndex = ySize;
-        for (int i = 0; i < uSize; i++) {
-            uvPixel[0] = vBuffer.get(i);
-            uvPixel[1] = uBuffer.get(i);
-            nv21[uvIndex++] = uvPixel[0];
-            nv21[uvIndex++] = uvPixel[1];
-        }
-
-        // Convert to RGBA
         int width = image.getWidth();
         int height = image.getHeight();
-        byte[] rgbaBytes = new byte[width * height * 4];
-
-        convertYUV420ToRGBA(nv21, rgbaBytes, width, height);
 
-        return rgbaBytes;
-    }
-
-    /**
-     * Convert YUV420 to RGBA format
-     */
-    private void convertYUV420ToRGBA(byte[] yuv, byte[] rgba, int width, int height) {
-        int frameSize = width * height;
-
-        for (int j = 0, yp = 0; j < height; j++) {
-            int uvp = frameSize + (j >> 1) * width, u = 0, v = 0;
-            for (int i = 0; i < width; i++, yp++) {
-                int y = (0xff & yuv[yp]) - 16;
-                if (y < 0) y = 0;
-
-                if ((i & 1) == 0) {
-                    v = (0xff & yuv[uvp++]) - 128;
-                    u = (0xff & yuv[uvp++]) - 128;
-                }
-
-                int y1192 = 1192 * y;
-                int r = (y1192 + 1634 * v);
-                int g = (y1192 - 833 * v - 400 * u);
-                int b = (y1192 + 2066 * u);
+        int rgbaSize = width * height * 4;
+        if (rgbaBuffer == null || rgbaBuffer.length != rgbaSize) {
+            rgbaBuffer = new byte[rgbaSize];
+        }
 
-                if (r < 0) r = 0; else if (r > 262143) r = 262143;
-                if (g < 0) g = 0; else if (g > 262143) g = 262143;
-                if (b < 0) b = 0; else if (b > 262143) b = 262143;
+        yuvConverter.convert(planes[0].getBuffer(), planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[0].getRowStride(), planes[1].getRowStride(), planes[1].getPixelStride(),
+                width, height, rgbaBuffer);
 
-                int pixelIndex = yp * 4;
-                rgba[pixelIndex] = (byte) ((r >> 10) & 0xff);     // R
-                rgba[pixelIndex + 1] = (byte) ((g >> 10) & 0xff); // G
-                rgba[pixelIndex + 2] = (byte) ((b >> 10) & 0xff); // B
-                rgba[pixelIndex + 3] = (byte) 255;                // A
-            }
-        }
+        return rgbaBuffer;
     }
 
     /**
@@ -414,7 +474,7 @@ public class CameraRenderer {
             texture.setDefaultBufferSize(previewSize.getWidth(), previewSize.getHeight());
 
             Surface surface = new Surface(texture);
-            Surface readerSurface = imageReader.getSurface();
+            Surface readerSurface = processingSurface();
 
             captureRequestBuilder = cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
             captureRequestBuilder.addTarget(surface);
@@ -426,18 +486,26 @@ public class CameraRenderer {
             captureRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE,
                     CaptureRequest.CONTROL_AE_MODE_ON_AUTO_FLASH);
 
+            // Until the new session is configured the old one may still render into a retired target
+            isSessionPending = true;
             cameraDevice.createCaptureSession(Arrays.asList(surface, readerSurface),
                     new CameraCaptureSession.StateCallback() {
                         @Override
                         public void onConfigured(CameraCaptureSession session) {
+                            isSessionPending = false;
+                            releaseRetiredTargets();
                             if (cameraDevice == null) return;
 
                             captureSession = session;
-                            startCapture();
+                            if (isCaptureWanted) {
+                                startCapture();
+                            }
                         }
 
                         @Override
                         public void onConfigureFailed(CameraCaptureSession session) {
+                            isSessionPending = false;
+                            releaseRetiredTargets();
                             Log.e(TAG, "Failed to configure camera capture session");
                             if (frameCallback != null) {
                                 frameCallback.onError("Failed to configure camera session");
@@ -446,6 +514,8 @@ public class CameraRenderer {
                     }, backgroundHandler);
 
         } catch (CameraAccessException e) {
+            isSessionPending = false;
+            releaseRetiredTargets();
             Log.e(TAG, "Error creating camera preview session", e);
             if (frameCallback != null) {
                 frameCallback.onError("Error creating preview session: " + e.getMessage());
@@ -453,10 +523,35 @@ public class CameraRenderer {
         }
     }
 
+    /**
+     * Get the surface processed frames are captured into: the GPU texture if set, else the ImageReader
+     */
+    private Surface processingSurface() {
+        if (gpuSurface != null) {
+            gpuSurface.release();
+            gpuSurface = null;
+        }
+
+        SurfaceTexture target = gpuTarget;
+        if (target == null) {
+            return imageReader.getSurface();
+        }
+
+        target.setDefaultBufferSize(previewSize.getWidth(), previewSize.getHeight());
+        gpuSurface = new Surface(target);
+        GpuTargetCallback callback = gpuTargetCallback;
+        if (callback != null) {
+            callback.onGpuTargetConfigured(previewSize.getWidth(), previewSize.getHeight());
+        }
+        Log.i(TAG, "Processing frames on the GPU");
+        return gpuSurface;
+    }
+
     /**
      * Start camera capture
      */
     public void startCamera() {
+        isCaptureWanted = true;
         if (captureSession != null && !isCapturing) {
             startCapture();
         }
@@ -483,6 +578,7 @@ public class CameraRenderer {
      * Stop camera capture
      */
     public void stopCamera() {
+        isCaptureWanted = false;
         isCapturing = false;
 
         if (captureSession != null) {
@@ -516,7 +612,17 @@ public class CameraRenderer {
             imageReader = null;
         }
 
+        if (gpuSurface != null) {
+            gpuSurface.release();
+            gpuSurface = null;
+        }
+
         stopBackgroundThread();
+        yuvConverter.release();
+
+        // The session is closed and the camera thread has finished
+        isSessionPending = false;
+        releaseRetiredTargets();
 
         isCameraOpened = false;
         Log.i(TAG, "Camera resources cleaned up");
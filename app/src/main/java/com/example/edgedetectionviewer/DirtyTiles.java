@@ -0,0 +1,102 @@
+package com.example.edgedetectionviewer;
+
+/**
+ * Finds which tiles of a frame differ from what a texture already holds, by comparing tile hashes
+ * Hashes come from EdgeDetectionJNI.hashTiles, one per TILE_SIZE x TILE_SIZE tile, row by row.
+ * When more than FULL_UPLOAD_FRACTION of the tiles changed, one full upload is cheaper than many
+ * small ones, so callers should upload the whole frame instead.
+ */
+public class DirtyTiles {
+
+    // Tile width and height in pixels
+    public static final int TILE_SIZE = 64;
+
+    // Share of changed tiles above which the whole frame is uploaded
+    public static final float FULL_UPLOAD_FRACTION = 0.5f;
+
+    private boolean[] dirty = new boolean[0];
+    private int tilesAcross;
+    private int tilesDown;
+    private int dirtyCount;
+
+    /**
+     * Get number of tiles needed to cover a dimension, counting a partial last tile
+     */
+    public static int tileCount(int size) {
+        return (size + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    /**
+     * Get number of hashes a width x height frame has
+     */
+    public static int hashCount(int width, int height) {
+        return tileCount(width) * tileCount(height);
+    }
+
+    /**
+     * Mark the tiles whose hash changed
+     * @param previous Hashes of the texture's current contents
+     * @param current Hashes of the frame about to be uploaded
+     * @param width Frame width in pixels, the same for both
+     * @param height Frame height in pixels, the same for both
+     * @return Number of changed tiles
+     */
+    public int compare(long[] previous, long[] current, int width, int height) {
+        tilesAcross = tileCount(width);
+        tilesDown = tileCount(height);
+        int count = tilesAcross * tilesDown;
+        if (previous.length < count || current.length < count) {
+            throw new IllegalArgumentException("Expected " + count + " tile hashes");
+        }
+        if (dirty.length < count) {
+            dirty = new boolean[count];
+        }
+
+        dirtyCount = 0;
+        for (int i = 0; i < count; i++) {
+            dirty[i] = previous[i] != current[i];
+            if (dirty[i]) {
+                dirtyCount++;
+            }
+        }
+        return dirtyCount;
+    }
+
+    /**
+     * Check whether enough tiles changed in the last compare that a full upload is the better choice
+     */
+    public boolean isMostlyDirty() {
+        return dirtyCount > FULL_UPLOAD_FRACTION * tilesAcross * tilesDown;
+    }
+
+    public int getDirtyCount() {
+        return dirtyCount;
+    }
+
+    public int getTilesAcross() {
+        return tilesAcross;
+    }
+
+    public int getTilesDown() {
+        return tilesDown;
+    }
+
+    /**
+     * Check whether one tile changed in the last compare
+     */
+    public boolean isDirty(int column, int row) {
+        return dirty[row * tilesAcross + column];
+    }
+
+    /**
+     * Check whether any tile in a row of tiles changed in the last compare
+     */
+    public boolean isRowDirty(int row) {
+        for (int column = 0; column < tilesAcross; column++) {
+            if (dirty[row * tilesAcross + column]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
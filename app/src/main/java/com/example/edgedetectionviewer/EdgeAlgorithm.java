@@ -0,0 +1,28 @@
+package com.example.edgedetectionviewer;
+
+/**
+ * Edge detectors the native library can run
+ * Canny produces a binary edge map; the others produce an 8-bit edge strength. The native ids
+ * index the dispatch table in edge_detection.cpp and must stay in step with EdgeDetection::EdgeAlgorithm.
+ */
+public enum EdgeAlgorithm {
+    CANNY(0),
+    SOBEL(1),
+    SCHARR(2),
+    LAPLACIAN(3),
+    DIFFERENCE_OF_GAUSSIANS(4),
+    PREWITT(5);
+
+    private final int nativeId;
+
+    EdgeAlgorithm(int nativeId) {
+        this.nativeId = nativeId;
+    }
+
+    /**
+     * Get the value passed to native code for this algorithm
+     */
+    public int getNativeId() {
+        return nativeId;
+    }
+}
@@ -1,11 +1,20 @@
 package com.example.edgedetectionviewer;
 
+import java.nio.ByteBuffer;
+
 /**
  * JNI Bridge class for native edge detection operations
  * This class provides the interface between Java code and native C++ implementation
  */
 public class EdgeDetectionJNI {
 
+    // Status codes returned by the buffer-based processing methods
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_INVALID_ARGUMENT = -1;
+    public static final int STATUS_NOT_DIRECT = -2;
+    public static final int STATUS_BUFFER_TOO_SMALL = -3;
+    public static final int STATUS_PROCESSING_FAILED = -4;
+
     // Load native library
     static {
         try {
@@ -31,6 +40,320 @@ public class EdgeDetectionJNI {
      */
     public static native byte[] processFrame(byte[] inputData, int width, int height);
 
+    /**
+     * Process an RGBA frame between caller-supplied direct buffers
+     * Nothing is allocated and no Java arrays are pinned or copied, so prefer this over processFrame
+     * @param input Direct buffer of at least width * height * 4 bytes (RGBA format)
+     * @param output Direct buffer of at least width * height * 4 bytes receiving the result (RGBA format)
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @return STATUS_OK, or a negative STATUS_* code describing the failure
+     */
+    public static native int processFrameInto(ByteBuffer input, ByteBuffer output, int width, int height);
+
+    /**
+     * Process camera YUV_420_888 planes with edge detection without copying them
+     * The plane buffers must be direct and are only read for the duration of the call. Width and height
+     * must be even, and rows may not overlap: yRowStride >= width, uvRowStride covers width / 2 samples.
+     * @param yPlane Y (luma) plane buffer
+     * @param uPlane U (Cb) plane buffer
+     * @param vPlane V (Cr) plane buffer
+     * @param yRowStride Bytes between consecutive luma rows
+     * @param uvRowStride Bytes between consecutive chroma rows
+     * @param uvPixelStride Bytes between consecutive chroma samples (1 = I420, 2 = NV12/NV21)
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @param output Direct buffer of at least width * height * 4 bytes receiving the result (RGBA format)
+     * @return STATUS_OK, or a negative STATUS_* code describing the failure
+     */
+    public static native int processYuvPlanes(ByteBuffer yPlane, ByteBuffer uPlane, ByteBuffer vPlane,
+                                              int yRowStride, int uvRowStride, int uvPixelStride,
+                                              int width, int height, ByteBuffer output);
+
+    /**
+     * Convert camera YUV_420_888 planes to RGBA without running edge detection
+     * @param yPlane Y (luma) plane buffer
+     * @param uPlane U (Cb) plane buffer
+     * @param vPlane V (Cr) plane buffer
+     * @param yRowStride Bytes between consecutive luma rows
+     * @param uvRowStride Bytes between consecutive chroma rows
+     * @param uvPixelStride Bytes between consecutive chroma samples (1 = I420, 2 = NV12/NV21)
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @param output Direct buffer of at least width * height * 4 bytes receiving the RGBA image
+     * @return STATUS_OK, or a negative STATUS_* code describing the failure
+     */
+    public static native int convertYuvPlanes(ByteBuffer yPlane, ByteBuffer uPlane, ByteBuffer vPlane,
+                                              int yRowStride, int uvRowStride, int uvPixelStride,
+                                              int width, int height, ByteBuffer output);
+
+    /**
+     * Shrink a gray or RGBA frame by repeated pyrDown so detection runs on fewer pixels
+     * Each level halves both dimensions, rounding up; see PyramidPolicy.scaledSize
+     * @param input Direct buffer holding the input frame
+     * @param rowStride Bytes between consecutive input rows
+     * @param width Input width in pixels
+     * @param height Input height in pixels
+     * @param channels Bytes per pixel (1 = gray, 4 = RGBA)
+     * @param level Number of halvings, 1 to PyramidPolicy.MAX_LEVEL
+     * @param output Direct buffer of at least scaledSize(width) * scaledSize(height) * channels bytes
+     * @return STATUS_OK, or a negative STATUS_* code describing the failure
+     */
+    public static native int downscale(ByteBuffer input, int rowStride, int width, int height, int channels,
+                                       int level, ByteBuffer output);
+
+    /**
+     * Hash each DirtyTiles.TILE_SIZE square of a frame so unchanged tiles can skip the texture upload
+     * Tiles are numbered row by row; those on the right and bottom edges cover what is left of the frame.
+     * @param pixels Direct buffer holding the frame, tightly packed
+     * @param width Frame width in pixels
+     * @param height Frame height in pixels
+     * @param channels Bytes per pixel (1 = gray, 4 = RGBA)
+     * @param tileSize Tile width and height in pixels
+     * @param hashes Receives one hash per tile, at least DirtyTiles.hashCount(width, height) values
+     * @return STATUS_OK, or a negative STATUS_* code describing the failure
+     */
+    public static native int hashTiles(ByteBuffer pixels, int width, int height, int channels, int tileSize,
+                                       long[] hashes);
+
+    /**
+     * Process only the camera luma plane with edge detection
+     * The Y plane is used directly as the grayscale image, so no colour conversion is performed
+     * @param yPlane Y (luma) plane as a direct buffer
+     * @param yRowStride Bytes between consecutive luma rows
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @param output Direct buffer of at least width * height * 4 bytes receiving the result (RGBA format)
+     * @return STATUS_OK, or a negative STATUS_* code describing the failure
+     */
+    public static native int processLumaPlane(ByteBuffer yPlane, int yRowStride, int width, int height,
+                                              ByteBuffer output);
+
+    /**
+     * Set how many native threads each frame's edge detection is split across
+     * Frames are cut into horizontal strips; the result is identical for every thread count
+     * @param threadCount Threads per frame (1 = single-threaded, 0 or less = one per CPU core)
+     */
+    public static native void setThreadCount(int threadCount);
+
+    /**
+     * Get number of native threads used per frame
+     * @return Thread count
+     */
+    public static native int getThreadCount();
+
+    /**
+     * Create an independent native detector
+     * Each detector owns its parameters, scratch buffers, statistics and thread pool, so several
+     * can run concurrently without sharing state. Release it with destroy.
+     * @return Native handle, or 0 if creation failed
+     */
+    public static native long create();
+
+    /**
+     * Destroy a detector created by create
+     * No other call may be using the handle; 0 is ignored
+     * @param handle Native handle
+     */
+    public static native void destroy(long handle);
+
+    /**
+     * Process an RGBA frame between direct buffers with a given detector
+     * @param handle Native handle from create
+     * @param input Direct buffer of at least width * height * 4 bytes (RGBA format)
+     * @param output Direct buffer of at least width * height * 4 bytes receiving the result (RGBA format)
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @return STATUS_OK, or a negative STATUS_* code describing the failure
+     */
+    public static native int process(long handle, ByteBuffer input, ByteBuffer output, int width, int height);
+
+    /**
+     * Process only the camera luma plane with a given detector
+     * @param handle Native handle from create
+     * @param yPlane Y (luma) plane as a direct buffer
+     * @param yRowStride Bytes between consecutive luma rows
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @param output Direct buffer of at least width * height * 4 bytes receiving the result (RGBA format)
+     * @return STATUS_OK, or a negative STATUS_* code describing the failure
+     */
+    public static native int processLuma(long handle, ByteBuffer yPlane, int yRowStride, int width, int height,
+                                         ByteBuffer output);
+
+    /**
+     * Process camera YUV_420_888 planes with a given detector
+     * @param handle Native handle from create
+     * @param yPlane Y (luma) plane buffer
+     * @param uPlane U (Cb) plane buffer
+     * @param vPlane V (Cr) plane buffer
+     * @param yRowStride Bytes between consecutive luma rows
+     * @param uvRowStride Bytes between consecutive chroma rows
+     * @param uvPixelStride Bytes between consecutive chroma samples (1 = I420, 2 = NV12/NV21)
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @param output Direct buffer of at least width * height * 4 bytes receiving the result (RGBA format)
+     * @return STATUS_OK, or a negative STATUS_* code describing the failure
+     */
+    public static native int processYuv(long handle, ByteBuffer yPlane, ByteBuffer uPlane, ByteBuffer vPlane,
+                                        int yRowStride, int uvRowStride, int uvPixelStride,
+                                        int width, int height, ByteBuffer output);
+
+    /**
+     * Process an RGBA frame with a given detector, writing one edge byte per pixel
+     * A quarter of the RGBA output; upload it as a GL_LUMINANCE texture and colourise it in the shader
+     * @param handle Native handle from create
+     * @param input Direct buffer of at least width * height * 4 bytes (RGBA format)
+     * @param output Direct buffer of at least width * height bytes receiving the edge values
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @return STATUS_OK, or a negative STATUS_* code describing the failure
+     */
+    public static native int processEdges(long handle, ByteBuffer input, ByteBuffer output, int width, int height);
+
+    /**
+     * Process only the camera luma plane with a given detector, writing one edge byte per pixel
+     * @param handle Native handle from create
+     * @param yPlane Y (luma) plane as a direct buffer
+     * @param yRowStride Bytes between consecutive luma rows
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @param output Direct buffer of at least width * height bytes receiving the edge values
+     * @return STATUS_OK, or a negative STATUS_* code describing the failure
+     */
+    public static native int processLumaEdges(long handle, ByteBuffer yPlane, int yRowStride, int width, int height,
+                                              ByteBuffer output);
+
+    /**
+     * Process camera YUV_420_888 planes with a given detector, writing one edge byte per pixel
+     * @param handle Native handle from create
+     * @param yPlane Y (luma) plane buffer
+     * @param uPlane U (Cb) plane buffer
+     * @param vPlane V (Cr) plane buffer
+     * @param yRowStride Bytes between consecutive luma rows
+     * @param uvRowStride Bytes between consecutive chroma rows
+     * @param uvPixelStride Bytes between consecutive chroma samples (1 = I420, 2 = NV12/NV21)
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @param output Direct buffer of at least width * height bytes receiving the edge values
+     * @return STATUS_OK, or a negative STATUS_* code describing the failure
+     */
+    public static native int processYuvEdges(long handle, ByteBuffer yPlane, ByteBuffer uPlane, ByteBuffer vPlane,
+                                             int yRowStride, int uvRowStride, int uvPixelStride,
+                                             int width, int height, ByteBuffer output);
+
+    /**
+     * Process an RGBA frame with a given detector, writing a one-bit-per-pixel edge mask
+     * A pixel's bit is set where its edge value is 128 or more; see EdgeMask for the layout and unpacking
+     * @param handle Native handle from create
+     * @param input Direct buffer of at least width * height * 4 bytes (RGBA format)
+     * @param output Direct buffer of at least EdgeMask.byteCount(width, height) bytes receiving the mask
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @return STATUS_OK, or a negative STATUS_* code describing the failure
+     */
+    public static native int processMask(long handle, ByteBuffer input, ByteBuffer output, int width, int height);
+
+    /**
+     * Process only the camera luma plane with a given detector, writing a one-bit-per-pixel edge mask
+     * @param handle Native handle from create
+     * @param yPlane Y (luma) plane as a direct buffer
+     * @param yRowStride Bytes between consecutive luma rows
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @param output Direct buffer of at least EdgeMask.byteCount(width, height) bytes receiving the mask
+     * @return STATUS_OK, or a negative STATUS_* code describing the failure
+     */
+    public static native int processLumaMask(long handle, ByteBuffer yPlane, int yRowStride, int width, int height,
+                                             ByteBuffer output);
+
+    /**
+     * Process camera YUV_420_888 planes with a given detector, writing a one-bit-per-pixel edge mask
+     * @param handle Native handle from create
+     * @param yPlane Y (luma) plane buffer
+     * @param uPlane U (Cb) plane buffer
+     * @param vPlane V (Cr) plane buffer
+     * @param yRowStride Bytes between consecutive luma rows
+     * @param uvRowStride Bytes between consecutive chroma rows
+     * @param uvPixelStride Bytes between consecutive chroma samples (1 = I420, 2 = NV12/NV21)
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @param output Direct buffer of at least EdgeMask.byteCount(width, height) bytes receiving the mask
+     * @return STATUS_OK, or a negative STATUS_* code describing the failure
+     */
+    public static native int processYuvMask(long handle, ByteBuffer yPlane, ByteBuffer uPlane, ByteBuffer vPlane,
+                                            int yRowStride, int uvRowStride, int uvPixelStride,
+                                            int width, int height, ByteBuffer output);
+
+    /**
+     * Set how many native threads each frame of a given detector is split across
+     * @param handle Native handle from create
+     * @param threadCount Threads per frame (1 = single-threaded, 0 or less = one per CPU core)
+     */
+    public static native void setDetectorThreadCount(long handle, int threadCount);
+
+    /**
+     * Get number of native threads a given detector uses per frame
+     * @param handle Native handle from create
+     * @return Thread count, or 0 for a null handle
+     */
+    public static native int getDetectorThreadCount(long handle);
+
+    /**
+     * Update edge detection parameters of a given detector
+     * @param handle Native handle from create
+     * @param lowThreshold Lower threshold for Canny edge detection
+     * @param highThreshold Upper threshold for Canny edge detection
+     * @param blurKernel Gaussian blur kernel size (3, 5, 7)
+     */
+    public static native void updateDetectorParameters(long handle, double lowThreshold, double highThreshold,
+                                                       int blurKernel);
+
+    /**
+     * Choose how a given detector picks its Canny thresholds
+     * The automatic modes derive them each frame from a sampled luminance histogram smoothed over recent
+     * frames, so they follow exposure changes; the configured thresholds are kept for MANUAL.
+     * @param handle Native handle from create
+     * @param mode Threshold mode to use
+     */
+    public static void setDetectorThresholdMode(long handle, ThresholdMode mode) {
+        setDetectorThresholdMode(handle, mode.getNativeId());
+    }
+
+    private static native void setDetectorThresholdMode(long handle, int mode);
+
+    /**
+     * Choose the edge algorithm a given detector runs, from the next frame on
+     * Frames already in flight finish with the algorithm they started with
+     * @param handle Native handle from create
+     * @param algorithm Algorithm to run
+     */
+    public static void setDetectorAlgorithm(long handle, EdgeAlgorithm algorithm) {
+        setDetectorAlgorithm(handle, algorithm.getNativeId());
+    }
+
+    private static native void setDetectorAlgorithm(long handle, int algorithm);
+
+    /**
+     * Choose how a given detector computes Sobel gradients
+     * FIXED_LUT (the default) gives the same output as FLOAT64 from 16-bit gradients;
+     * FIXED_L1 approximates the magnitude as |gx| + |gy|
+     * @param handle Native handle from create
+     * @param mode Sobel mode to use
+     */
+    public static void setDetectorSobelMode(long handle, SobelMode mode) {
+        setDetectorSobelMode(handle, mode.getNativeId());
+    }
+
+    private static native void setDetectorSobelMode(long handle, int mode);
+
+    /**
+     * Get performance statistics of a given detector
+     * @param handle Native handle from create
+     * @return String containing performance metrics (FPS, frame count, etc.)
+     */
+    public static native String getDetectorStats(long handle);
+
     /**
      * Initialize OpenGL ES renderer
      * @param width Surface width in pixels
@@ -41,9 +364,11 @@ public class EdgeDetectionJNI {
 
     /**
      * Create shader program for texture rendering
+     * @param vertexSource Vertex shader source, e.g. assets/shaders/vertex_shader.glsl
+     * @param fragmentSource Fragment shader source, e.g. assets/shaders/fragment_shader.glsl
      * @return Shader program ID, or 0 if failed
      */
-    public static native int createShaderProgram();
+    public static native int createShaderProgram(String vertexSource, String fragmentSource);
 
     /**
      * Create OpenGL texture for camera frames
@@ -83,6 +408,16 @@ public class EdgeDetectionJNI {
      */
     public static native void updateParameters(double lowThreshold, double highThreshold, int blurKernel);
 
+    /**
+     * Choose the edge algorithm used by processFrame, processFrameInto, processYuvPlanes and processLumaPlane
+     * @param algorithm Algorithm to run
+     */
+    public static void setAlgorithm(EdgeAlgorithm algorithm) {
+        setAlgorithm(algorithm.getNativeId());
+    }
+
+    private static native void setAlgorithm(int algorithm);
+
     /**
      * Cleanup native resources
      * Should be called when the application is shutting down
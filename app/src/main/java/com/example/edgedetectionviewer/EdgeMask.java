@@ -0,0 +1,124 @@
+package com.example.edgedetectionviewer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One-bit-per-pixel edge mask layout written by EdgeDetectionJNI.processMask
+ * Each row is wordsPerRow(width) little-endian 32-bit words; pixel x is bit (x % 32) of word (x / 32),
+ * and unused bits at the end of a row are zero. Because the words are little-endian, pixel x is also
+ * bit (x % 8) of byte (x / 8) in the row, so the routines here walk bytes and never depend on buffer order.
+ * A packed frame is 1/32 the size of the RGBA output.
+ */
+public final class EdgeMask {
+
+    // Edge values at or above this are set in the mask, matching packEdgeMask in native code
+    public static final int EDGE_THRESHOLD = 128;
+
+    private EdgeMask() {
+    }
+
+    /**
+     * Get number of 32-bit words in one mask row
+     * @param width Image width in pixels
+     */
+    public static int wordsPerRow(int width) {
+        return (width + 31) / 32;
+    }
+
+    /**
+     * Get bytes between the starts of consecutive mask rows
+     * @param width Image width in pixels
+     */
+    public static int rowStride(int width) {
+        return wordsPerRow(width) * 4;
+    }
+
+    /**
+     * Get total mask size in bytes
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     */
+    public static int byteCount(int width, int height) {
+        return rowStride(width) * height;
+    }
+
+    /**
+     * Pack one-byte-per-pixel edge values into a mask
+     * @param edges Edge values, width * height bytes
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @param mask Receives the mask from its position; needs byteCount(width, height) bytes remaining
+     */
+    public static void pack(byte[] edges, int width, int height, ByteBuffer mask) {
+        checkSizes(edges.length, width, height, mask);
+
+        int base = mask.position();
+        int stride = rowStride(width);
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * width;
+            int maskRow = base + y * stride;
+            for (int i = 0; i < stride; i++) {
+                int x = i * 8;
+                int end = Math.min(x + 8, width);
+                int bits = 0;
+                for (int bit = 0; x + bit < end; bit++) {
+                    if ((edges[rowStart + x + bit] & 0xFF) >= EDGE_THRESHOLD) {
+                        bits |= 1 << bit;
+                    }
+                }
+                mask.put(maskRow + i, (byte) bits);
+            }
+        }
+    }
+
+    /**
+     * Expand a mask to one byte per pixel (255 for an edge, 0 otherwise)
+     * @param mask Mask starting at its position; byteCount(width, height) bytes are read
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @param out Receives width * height bytes
+     */
+    public static void unpack(ByteBuffer mask, int width, int height, byte[] out) {
+        checkSizes(out.length, width, height, mask);
+
+        int base = mask.position();
+        int stride = rowStride(width);
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * width;
+            int maskRow = base + y * stride;
+            for (int x = 0; x < width; x += 8) {
+                int bits = mask.get(maskRow + (x >> 3)) & 0xFF;
+                int end = Math.min(x + 8, width);
+                for (int px = x; px < end; px++) {
+                    out[rowStart + px] = (byte) -(bits & 1);
+                    bits >>>= 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether a single pixel is set
+     * @param mask Mask starting at its position
+     * @param width Image width in pixels
+     * @param x Pixel column
+     * @param y Pixel row
+     */
+    public static boolean isSet(ByteBuffer mask, int width, int x, int y) {
+        int bits = mask.get(mask.position() + y * rowStride(width) + (x >> 3));
+        return ((bits >> (x & 7)) & 1) != 0;
+    }
+
+    private static void checkSizes(int pixelBytes, int width, int height, ByteBuffer mask) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid mask size " + width + "x" + height);
+        }
+        if (pixelBytes < width * height) {
+            throw new IllegalArgumentException("Pixel array holds " + pixelBytes + " bytes, need " + width * height);
+        }
+        if (mask.remaining() < byteCount(width, height)) {
+            throw new IllegalArgumentException("Mask buffer has " + mask.remaining() + " bytes remaining, need "
+                    + byteCount(width, height));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.edgedetectionviewer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference-counted image buffer handed out by FramePool
+ * Backed by a direct ByteBuffer so it can be passed to native code and GL without copies.
+ * Every holder calls retain() before sharing and release() when done; the last release returns it to the pool.
+ */
+public class Frame {
+
+    // Pixel formats
+    public static final int FORMAT_RGBA = 0;
+    public static final int FORMAT_GRAY = 1;
+
+    private final FramePool pool;
+    private final ByteBuffer buffer;
+    private final int width;
+    private final int height;
+    private final int format;
+    private final AtomicInteger refCount = new AtomicInteger(0);
+
+    // Capture metadata, rewritten each time the frame is reused
+    private long timestampNs;
+    private long sequenceNumber;
+    private int pyramidLevel;
+
+    // Hashes of the frame's tiles for partial texture updates; only valid once set for this use
+    private long[] tileHashes;
+    private boolean hasTileHashes;
+
+    // Where this frame was last acquired (leak detection only)
+    Throwable acquireSite;
+
+    Frame(FramePool pool, int width, int height, int format) {
+        this.pool = pool;
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.buffer = ByteBuffer.allocateDirect(byteCount(width, height, format));
+    }
+
+    /**
+     * Get number of bytes needed for an image of the given size and format
+     */
+    public static int byteCount(int width, int height, int format) {
+        switch (format) {
+            case FORMAT_RGBA:
+                return width * height * 4;
+            case FORMAT_GRAY:
+                return width * height;
+            default:
+                throw new IllegalArgumentException("Unknown frame format: " + format);
+        }
+    }
+
+    /**
+     * Get backing direct buffer (position 0, limit = byte count)
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFormat() {
+        return format;
+    }
+
+    public long getTimestampNs() {
+        return timestampNs;
+    }
+
+    public void setTimestampNs(long timestampNs) {
+        this.timestampNs = timestampNs;
+    }
+
+    /**
+     * Get capture order of the frame, used to put results from parallel workers back in order
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public void setSequenceNumber(long sequenceNumber) {
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    /**
+     * Get number of pyrDown halvings between the camera frame and this one (0 = full resolution)
+     */
+    public int getPyramidLevel() {
+        return pyramidLevel;
+    }
+
+    public void setPyramidLevel(int pyramidLevel) {
+        this.pyramidLevel = pyramidLevel;
+    }
+
+    /**
+     * Get an array for this frame's tile hashes, reused across acquires
+     * Fill it, then call setHasTileHashes(true) so the upload can compare it.
+     * @param count Number of hashes, DirtyTiles.hashCount(width, height)
+     */
+    public long[] getTileHashStorage(int count) {
+        if (tileHashes == null || tileHashes.length < count) {
+            tileHashes = new long[count];
+        }
+        return tileHashes;
+    }
+
+    public void setHasTileHashes(boolean hasTileHashes) {
+        this.hasTileHashes = hasTileHashes;
+    }
+
+    /**
+     * Get the tile hashes set since the frame was acquired, or null if none were computed
+     */
+    public long[] getTileHashes() {
+        return hasTileHashes ? tileHashes : null;
+    }
+
+    /**
+     * Add a reference, e.g. before handing the frame to another thread
+     */
+    public Frame retain() {
+        int count;
+        do {
+            count = refCount.get();
+            if (count <= 0) {
+                throw new IllegalStateException("retain() on a frame that was already released");
+            }
+        } while (!refCount.compareAndSet(count, count + 1));
+        return this;
+    }
+
+    /**
+     * Drop a reference; the last release returns the frame to its pool
+     */
+    public void release() {
+        int count = refCount.decrementAndGet();
+        if (count == 0) {
+            pool.recycle(this);
+        } else if (count < 0) {
+            refCount.set(0);
+            throw new IllegalStateException("release() called more times than retain()");
+        }
+    }
+
+    /**
+     * Get current reference count (for diagnostics)
+     */
+    public int getRefCount() {
+        return refCount.get();
+    }
+
+    /**
+     * Called by the pool when the frame is handed out
+     */
+    void onAcquire() {
+        refCount.set(1);
+        buffer.clear();
+        timestampNs = 0;
+        sequenceNumber = 0;
+        pyramidLevel = 0;
+        hasTileHashes = false;
+    }
+}
@@ -0,0 +1,541 @@
+package com.example.edgedetectionviewer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Three-stage convert -> detect -> upload pipeline, one thread per stage
+ * Stages are connected by bounded SPSC ring buffers of pooled frames, so while frame N is uploaded
+ * frame N+1 can be in detection and frame N+2 in conversion. Throughput is set by the slowest stage
+ * rather than the sum of all three.
+ *
+ * The convert stage runs on whichever thread calls submit() (the frame scheduler thread);
+ * detect and upload each get their own thread. A stage whose output queue is full waits,
+ * and that wait is reported as stall time.
+ *
+ * Detection can use several workers, each processing whole frames. Frames are numbered at submit()
+ * and dealt round-robin, each worker with its own input and output queue; the upload thread
+ * restores capture order through a ReorderBuffer and drops frames that finish too late.
+ */
+public class FramePipeline<T> {
+
+    public static final int STAGE_CONVERT = 0;
+    public static final int STAGE_DETECT = 1;
+    public static final int STAGE_UPLOAD = 2;
+
+    private static final String[] STAGE_NAMES = {"convert", "detect", "upload"};
+
+    // Safety net for a missed unpark; normal hand-offs wake the waiting thread directly
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long STATS_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final int DEFAULT_DETECT_WORKERS = 1;
+    private static final int DEFAULT_MAX_REORDER_DEPTH = 2;
+
+    /**
+     * Turns a pipeline input into a pooled frame for detection (convert stage)
+     * The input stays owned by the caller; return null to skip the input
+     */
+    public interface Converter<T> {
+        Frame convert(T input);
+    }
+
+    /**
+     * Runs edge detection on a converted frame (detect stage)
+     * The pipeline releases the input afterwards; return a new pooled frame, or null on failure
+     */
+    public interface Detector {
+        Frame detect(Frame input);
+    }
+
+    /**
+     * Delivers a processed frame for display (upload stage)
+     * The pipeline releases the frame afterwards; retain() it to keep it longer
+     */
+    public interface Uploader {
+        void upload(Frame output);
+    }
+
+    /**
+     * Runtime counters for one stage
+     * Each stage is written by its own thread only; readers see a recent snapshot.
+     */
+    public static final class StageStats {
+        private final String name;
+        private volatile long processedFrames = 0;
+        private volatile long busyNanos = 0;
+        private volatile long stallNanos = 0;
+        private volatile float throughputFps = 0.0f;
+
+        // Throughput window, touched by the stage thread only
+        private long windowStartNanos = 0;
+        private int windowFrames = 0;
+
+        StageStats(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Sum the counters of parallel workers into one snapshot
+         */
+        static StageStats combine(String name, StageStats[] workers) {
+            StageStats total = new StageStats(name);
+            long frames = 0;
+            long busy = 0;
+            long stall = 0;
+            float fps = 0.0f;
+            for (StageStats worker : workers) {
+                frames += worker.processedFrames;
+                busy += worker.busyNanos;
+                stall += worker.stallNanos;
+                fps += worker.throughputFps;
+            }
+            total.processedFrames = frames;
+            total.busyNanos = busy;
+            total.stallNanos = stall;
+            total.throughputFps = fps;
+            return total;
+        }
+
+        void recordFrame(long startNanos, long endNanos) {
+            processedFrames++;
+            busyNanos += endNanos - startNanos;
+
+            if (windowStartNanos == 0) {
+                windowStartNanos = endNanos;
+                return;
+            }
+
+            windowFrames++;
+            long elapsed = endNanos - windowStartNanos;
+            if (elapsed >= STATS_WINDOW_NANOS) {
+                throughputFps = windowFrames * 1e9f / elapsed;
+                windowFrames = 0;
+                windowStartNanos = endNanos;
+            }
+        }
+
+        void recordStall(long nanos) {
+            stallNanos += nanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getProcessedFrames() {
+            return processedFrames;
+        }
+
+        /**
+         * Get total time spent doing the stage's own work
+         */
+        public long getBusyNanos() {
+            return busyNanos;
+        }
+
+        /**
+         * Get total time spent waiting for room in the next stage's queue
+         */
+        public long getStallNanos() {
+            return stallNanos;
+        }
+
+        /**
+         * Get frames completed per second over the last window
+         */
+        public float getThroughputFps() {
+            return throughputFps;
+        }
+
+        /**
+         * Get mean time per frame spent in the stage's own work, in milliseconds
+         */
+        public double getAverageBusyMs() {
+            long frames = processedFrames;
+            return frames == 0 ? 0.0 : busyNanos / 1e6 / frames;
+        }
+    }
+
+    private final Converter<T> converter;
+    private final Detector detector;
+    private final Uploader uploader;
+    private final int queueCapacity;
+
+    // Detection parallelism, applied at the next start()
+    private int detectWorkers = DEFAULT_DETECT_WORKERS;
+    private int maxReorderDepth = DEFAULT_MAX_REORDER_DEPTH;
+
+    // Per-run state, rebuilt by start()
+    private SpscRingBuffer<Frame>[] detectQueues;
+    private SpscRingBuffer<Frame>[] uploadQueues;
+    private Thread[] detectThreads;
+    private AtomicLongArray lastFinishedSequence;
+    private ReorderBuffer reorderBuffer;
+    private StageStats[] detectStats;
+
+    private final StageStats convertStats = new StageStats(STAGE_NAMES[STAGE_CONVERT]);
+    private final StageStats uploadStats = new StageStats(STAGE_NAMES[STAGE_UPLOAD]);
+
+    // Sequence number for the next submitted frame; every lower number has been queued for detection
+    private volatile long nextSequence = 0;
+
+    private volatile boolean running = false;
+    private volatile Thread convertThread;
+    private volatile Thread uploadThread;
+
+    /**
+     * @param queueCapacity Frames buffered between consecutive stages (per detect worker)
+     */
+    public FramePipeline(Converter<T> converter, Detector detector, Uploader uploader, int queueCapacity) {
+        this.converter = converter;
+        this.detector = detector;
+        this.uploader = uploader;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Set how many frames are detected concurrently and how many finished frames may wait for an
+     * earlier one before it is given up on. Only allowed while stopped; applies at the next start().
+     * @param workerCount Detect worker threads (1 = frames strictly one after another)
+     * @param maxReorderDepth Bound on frames held for reordering, i.e. on added latency in frames
+     */
+    public synchronized void setDetectParallelism(int workerCount, int maxReorderDepth) {
+        if (running) {
+            throw new IllegalStateException("Stop the pipeline before changing detect parallelism");
+        }
+        if (workerCount < 1 || maxReorderDepth < 1) {
+            throw new IllegalArgumentException("Worker count and reorder depth must be positive");
+        }
+        this.detectWorkers = workerCount;
+        this.maxReorderDepth = maxReorderDepth;
+    }
+
+    public synchronized int getDetectWorkers() {
+        return detectWorkers;
+    }
+
+    public synchronized int getMaxReorderDepth() {
+        return maxReorderDepth;
+    }
+
+    /**
+     * Start the detect and upload threads
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        final int workers = detectWorkers;
+        detectQueues = new SpscRingBuffer[workers];
+        uploadQueues = new SpscRingBuffer[workers];
+        detectThreads = new Thread[workers];
+        detectStats = new StageStats[workers];
+        lastFinishedSequence = new AtomicLongArray(workers);
+        reorderBuffer = new ReorderBuffer(maxReorderDepth);
+        nextSequence = 0;
+
+        for (int i = 0; i < workers; i++) {
+            detectQueues[i] = new SpscRingBuffer<>(queueCapacity);
+            uploadQueues[i] = new SpscRingBuffer<>(queueCapacity);
+            detectStats[i] = new StageStats(STAGE_NAMES[STAGE_DETECT]);
+            // Worker i handles sequences i, i + workers, ...; "finished" the one before its first
+            lastFinishedSequence.set(i, i - workers);
+        }
+
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            final int worker = i;
+            detectThreads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    detectLoop(worker);
+                }
+            }, "PipelineDetect-" + i);
+        }
+        uploadThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                uploadLoop();
+            }
+        }, "PipelineUpload");
+
+        for (Thread thread : detectThreads) {
+            thread.start();
+        }
+        uploadThread.start();
+    }
+
+    /**
+     * Stop the stage threads and release every frame still queued between stages
+     * Stop the thread calling submit() first, so nothing is queued after the queues are drained.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        for (Thread thread : detectThreads) {
+            joinQuietly(thread);
+        }
+        joinQuietly(uploadThread);
+        uploadThread = null;
+
+        for (int i = 0; i < detectQueues.length; i++) {
+            releaseAll(detectQueues[i]);
+            releaseAll(uploadQueues[i]);
+        }
+        reorderBuffer.reset(0);
+    }
+
+    /**
+     * Run the convert stage on the calling thread and queue the result for detection
+     * Must always be called from the same thread. Waits while the chosen worker's queue is full.
+     * @return true if the input was converted and queued
+     */
+    public boolean submit(T input) {
+        if (!running) {
+            return false;
+        }
+
+        convertThread = Thread.currentThread();
+
+        long start = System.nanoTime();
+        Frame converted = converter.convert(input);
+        convertStats.recordFrame(start, System.nanoTime());
+
+        if (converted == null) {
+            return false;
+        }
+
+        long sequence = nextSequence;
+        int worker = (int) (sequence % detectQueues.length);
+        converted.setSequenceNumber(sequence);
+
+        boolean queued = put(detectQueues[worker], converted, convertStats, detectThreads[worker]);
+        if (queued) {
+            nextSequence = sequence + 1;
+        }
+        return queued;
+    }
+
+    private void detectLoop(int worker) {
+        SpscRingBuffer<Frame> inputQueue = detectQueues[worker];
+        SpscRingBuffer<Frame> outputQueue = uploadQueues[worker];
+        StageStats stats = detectStats[worker];
+
+        while (running) {
+            Frame input = inputQueue.poll();
+            if (input == null) {
+                LockSupport.parkNanos(this, PARK_NANOS);
+                continue;
+            }
+            LockSupport.unpark(convertThread);
+
+            long sequence = input.getSequenceNumber();
+            long start = System.nanoTime();
+            Frame output;
+            try {
+                output = detector.detect(input);
+            } finally {
+                input.release();
+            }
+            stats.recordFrame(start, System.nanoTime());
+
+            if (output != null) {
+                output.setSequenceNumber(sequence);
+                put(outputQueue, output, stats, uploadThread);
+            }
+
+            // Published after the output is queued, so the upload thread never waits on a failed frame
+            lastFinishedSequence.lazySet(worker, sequence);
+        }
+    }
+
+    private void uploadLoop() {
+        while (running) {
+            // Read before draining: anything counted as finished here is already in an output queue
+            long finishedBelow = finishedBelow();
+            boolean received = false;
+
+            // One frame per worker per pass; workers take sequences round-robin, so this drains in near capture order
+            boolean drained;
+            do {
+                drained = true;
+                for (int worker = 0; worker < uploadQueues.length; worker++) {
+                    Frame output = uploadQueues[worker].poll();
+                    if (output == null) {
+                        continue;
+                    }
+                    drained = false;
+                    received = true;
+                    LockSupport.unpark(detectThreads[worker]);
+                    reorderBuffer.insert(output);
+                    // Gaps may still be filled from queues not drained yet, so only emit what is in order
+                    uploadReadyFrames(Long.MIN_VALUE);
+                }
+            } while (!drained);
+            uploadReadyFrames(finishedBelow);
+
+            if (!received) {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Lowest sequence number that some worker may still produce a frame for
+     */
+    private long finishedBelow() {
+        long submitted = nextSequence;
+        long lowest = submitted;
+        int workers = detectQueues.length;
+        for (int worker = 0; worker < workers; worker++) {
+            long firstUnfinished = lastFinishedSequence.get(worker) + workers;
+            if (firstUnfinished < lowest) {
+                lowest = firstUnfinished;
+            }
+        }
+        return lowest;
+    }
+
+    private void uploadReadyFrames(long finishedBelow) {
+        Frame output;
+        while ((output = reorderBuffer.poll(finishedBelow)) != null) {
+            long start = System.nanoTime();
+            try {
+                uploader.upload(output);
+            } finally {
+                output.release();
+            }
+            uploadStats.recordFrame(start, System.nanoTime());
+        }
+    }
+
+    /**
+     * Queue a frame for the next stage, waiting while the queue is full
+     * The frame is released instead if the pipeline stops while waiting.
+     */
+    private boolean put(SpscRingBuffer<Frame> queue, Frame frame, StageStats stats, Thread consumer) {
+        if (!queue.offer(frame)) {
+            long stallStart = System.nanoTime();
+            while (!queue.offer(frame)) {
+                if (!running) {
+                    stats.recordStall(System.nanoTime() - stallStart);
+                    frame.release();
+                    return false;
+                }
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            stats.recordStall(System.nanoTime() - stallStart);
+        }
+
+        LockSupport.unpark(consumer);
+        return true;
+    }
+
+    private static void releaseAll(SpscRingBuffer<Frame> queue) {
+        Frame frame;
+        while ((frame = queue.poll()) != null) {
+            frame.release();
+        }
+    }
+
+    private static void joinQuietly(Thread thread) {
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Get counters for one stage (STAGE_CONVERT, STAGE_DETECT or STAGE_UPLOAD)
+     * Detect counters are summed over all workers.
+     */
+    public StageStats getStageStats(int stage) {
+        switch (stage) {
+            case STAGE_CONVERT:
+                return convertStats;
+            case STAGE_UPLOAD:
+                return uploadStats;
+            default:
+                return StageStats.combine(STAGE_NAMES[STAGE_DETECT], currentDetectStats());
+        }
+    }
+
+    /**
+     * Get counters for a single detect worker
+     */
+    public StageStats getDetectWorkerStats(int worker) {
+        return currentDetectStats()[worker];
+    }
+
+    /**
+     * Get number of frames waiting in front of a stage (always 0 for STAGE_CONVERT, which is fed by submit)
+     * Detect depth is summed over all workers; upload depth includes frames held for reordering.
+     */
+    public int getQueueDepth(int stage) {
+        if (stage == STAGE_CONVERT || !running) {
+            return 0;
+        }
+
+        int depth = 0;
+        SpscRingBuffer<Frame>[] queues = stage == STAGE_DETECT ? detectQueues : uploadQueues;
+        for (SpscRingBuffer<Frame> queue : queues) {
+            depth += queue.size();
+        }
+        if (stage == STAGE_UPLOAD) {
+            depth += reorderBuffer.getDepth();
+        }
+        return depth;
+    }
+
+    /**
+     * Get number of frames dropped because they finished after a later frame was shown
+     */
+    public long getLateFrames() {
+        ReorderBuffer buffer = reorderBuffer;
+        return buffer == null ? 0 : buffer.getLateFrames();
+    }
+
+    private StageStats[] currentDetectStats() {
+        StageStats[] stats = detectStats;
+        return stats != null ? stats : new StageStats[]{new StageStats(STAGE_NAMES[STAGE_DETECT])};
+    }
+
+    /**
+     * Get one line per stage for the stats overlay
+     */
+    public String getStatsSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (int stage = STAGE_CONVERT; stage <= STAGE_UPLOAD; stage++) {
+            StageStats stats = getStageStats(stage);
+            if (stage > 0) {
+                summary.append('\n');
+            }
+            summary.append(String.format("%s: %.1f fps, %.1f ms/frame, queue %d, stall %d ms",
+                    stats.getName(), stats.getThroughputFps(), stats.getAverageBusyMs(),
+                    getQueueDepth(stage), TimeUnit.NANOSECONDS.toMillis(stats.getStallNanos())));
+        }
+        summary.append(String.format("\nreorder: %d workers, depth %d/%d, late %d",
+                detectQueues == null ? detectWorkers : detectQueues.length,
+                getQueueDepth(STAGE_UPLOAD), maxReorderDepth, getLateFrames()));
+        return summary.toString();
+    }
+}
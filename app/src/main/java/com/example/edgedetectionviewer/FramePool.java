@@ -0,0 +1,173 @@
+package com.example.edgedetectionviewer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pool of reusable, reference-counted frames keyed by size and format
+ * Shared by capture, native processing and GL upload so steady-state frames do not allocate.
+ * With leak detection enabled (debug builds) every outstanding frame remembers where it was acquired.
+ */
+public class FramePool {
+
+    // Idle frames kept per size/format; anything beyond is left to the GC
+    private static final int DEFAULT_MAX_IDLE_PER_KEY = 4;
+
+    /**
+     * Idle frames of one size/format
+     * Sizes change rarely, so a short list scanned linearly avoids boxing map keys per acquire
+     */
+    private static final class Bucket {
+        final int width;
+        final int height;
+        final int format;
+        final ArrayDeque<Frame> idle = new ArrayDeque<>();
+
+        Bucket(int width, int height, int format) {
+            this.width = width;
+            this.height = height;
+            this.format = format;
+        }
+    }
+
+    private final List<Bucket> buckets = new ArrayList<>();
+    private final int maxIdlePerKey;
+    private final boolean leakDetection;
+    private final Set<Frame> outstanding;
+
+    // Statistics
+    private long hits = 0;
+    private long misses = 0;
+    private int inUse = 0;
+    private int highWaterMark = 0;
+
+    public FramePool(boolean leakDetection) {
+        this(DEFAULT_MAX_IDLE_PER_KEY, leakDetection);
+    }
+
+    public FramePool(int maxIdlePerKey, boolean leakDetection) {
+        this.maxIdlePerKey = maxIdlePerKey;
+        this.leakDetection = leakDetection;
+        this.outstanding = leakDetection
+                ? Collections.newSetFromMap(new IdentityHashMap<Frame, Boolean>())
+                : null;
+    }
+
+    /**
+     * Get a frame of the given size and format with a reference count of 1
+     */
+    public synchronized Frame acquire(int width, int height, int format) {
+        Bucket bucket = findBucket(width, height, format);
+        Frame frame = bucket.idle.pollFirst();
+
+        if (frame != null) {
+            hits++;
+        } else {
+            misses++;
+            frame = new Frame(this, width, height, format);
+        }
+
+        frame.onAcquire();
+
+        inUse++;
+        if (inUse > highWaterMark) {
+            highWaterMark = inUse;
+        }
+
+        if (leakDetection) {
+            frame.acquireSite = new Throwable("Frame " + width + "x" + height + " acquired here");
+            outstanding.add(frame);
+        }
+
+        return frame;
+    }
+
+    /**
+     * Return a frame whose reference count reached zero (called by Frame.release)
+     */
+    synchronized void recycle(Frame frame) {
+        inUse--;
+
+        if (leakDetection) {
+            outstanding.remove(frame);
+            frame.acquireSite = null;
+        }
+
+        Bucket bucket = findBucket(frame.getWidth(), frame.getHeight(), frame.getFormat());
+        if (bucket.idle.size() < maxIdlePerKey) {
+            bucket.idle.addFirst(frame);
+        }
+    }
+
+    private Bucket findBucket(int width, int height, int format) {
+        for (int i = 0; i < buckets.size(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket.width == width && bucket.height == height && bucket.format == format) {
+                return bucket;
+            }
+        }
+
+        Bucket bucket = new Bucket(width, height, format);
+        buckets.add(bucket);
+        return bucket;
+    }
+
+    /**
+     * Drop all idle frames (e.g. after a resolution change)
+     */
+    public synchronized void trim() {
+        buckets.clear();
+    }
+
+    /**
+     * Get acquisition sites of frames that were never released
+     * Only available when leak detection is enabled; returns an empty list otherwise
+     */
+    public synchronized List<Throwable> getOutstandingFrames() {
+        List<Throwable> sites = new ArrayList<>();
+        if (leakDetection) {
+            for (Frame frame : outstanding) {
+                sites.add(frame.acquireSite);
+            }
+        }
+        return sites;
+    }
+
+    public boolean isLeakDetectionEnabled() {
+        return leakDetection;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get number of frames currently acquired and not yet released
+     */
+    public synchronized int getInUse() {
+        return inUse;
+    }
+
+    /**
+     * Get maximum number of frames that were in use at the same time
+     */
+    public synchronized int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Get one-line summary for the stats overlay
+     */
+    public synchronized String getStatsSummary() {
+        return "Pool hits: " + hits + ", misses: " + misses
+                + ", in use: " + inUse + ", peak: " + highWaterMark;
+    }
+}
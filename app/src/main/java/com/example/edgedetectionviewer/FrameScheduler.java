@@ -0,0 +1,189 @@
+package com.example.edgedetectionviewer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands frames from the capture thread to a dedicated processing thread through a single-slot mailbox
+ * Submitting never blocks: a newer frame replaces one that has not been picked up yet, and the
+ * replaced frame is recycled immediately so the camera gets its buffer back.
+ * The processing thread always works on the most recent frame and recycles it when done.
+ */
+public class FrameScheduler<T> {
+
+    private static final String THREAD_NAME = "FrameProcessing";
+
+    /**
+     * Processes one frame on the scheduler thread
+     * The scheduler recycles the frame after this returns, so it must not be kept
+     */
+    public interface FrameHandler<T> {
+        void onFrame(T frame);
+    }
+
+    /**
+     * Returns a frame that will not be processed (superseded, or submitted after stop) to its owner
+     */
+    public interface FrameRecycler<T> {
+        void recycle(T frame);
+    }
+
+    private final AtomicReference<T> mailbox = new AtomicReference<>();
+    private final FrameHandler<T> handler;
+    private final FrameRecycler<T> recycler;
+
+    private volatile Thread processingThread;
+    private volatile boolean running = false;
+
+    // Statistics
+    private final AtomicLong submittedFrames = new AtomicLong();
+    private final AtomicLong processedFrames = new AtomicLong();
+    private final AtomicLong supersededFrames = new AtomicLong();
+
+    public FrameScheduler(FrameHandler<T> handler, FrameRecycler<T> recycler) {
+        this.handler = handler;
+        this.recycler = recycler;
+    }
+
+    /**
+     * Start the processing thread
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        running = true;
+        processingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processLoop();
+            }
+        }, THREAD_NAME);
+        processingThread.start();
+    }
+
+    /**
+     * Stop the processing thread, waiting for the frame in progress to finish
+     * A frame still waiting in the mailbox is recycled without being processed
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        Thread thread = processingThread;
+        LockSupport.unpark(thread);
+
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        processingThread = null;
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        drainMailbox();
+    }
+
+    /**
+     * Offer a frame for processing without blocking
+     * Ownership passes to the scheduler: the frame is either processed or recycled
+     */
+    public void submit(T frame) {
+        if (frame == null) {
+            return;
+        }
+
+        if (!running) {
+            recycler.recycle(frame);
+            return;
+        }
+
+        submittedFrames.incrementAndGet();
+
+        // Drop-oldest: whatever the processing thread has not picked up yet is stale now
+        T superseded = mailbox.getAndSet(frame);
+        if (superseded != null) {
+            supersededFrames.incrementAndGet();
+            recycler.recycle(superseded);
+        }
+
+        // stop() may have drained the mailbox between the running check and the swap
+        if (!running) {
+            drainMailbox();
+            return;
+        }
+
+        LockSupport.unpark(processingThread);
+    }
+
+    /**
+     * Processing thread body: take the latest frame, handle it, park until the next one arrives
+     */
+    private void processLoop() {
+        while (running) {
+            T frame = mailbox.getAndSet(null);
+            if (frame == null) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            try {
+                handler.onFrame(frame);
+                processedFrames.incrementAndGet();
+            } finally {
+                recycler.recycle(frame);
+            }
+        }
+    }
+
+    private void drainMailbox() {
+        T pending = mailbox.getAndSet(null);
+        if (pending != null) {
+            recycler.recycle(pending);
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Get number of frames accepted by submit() while running
+     */
+    public long getSubmittedCount() {
+        return submittedFrames.get();
+    }
+
+    /**
+     * Get number of frames the handler completed
+     */
+    public long getProcessedCount() {
+        return processedFrames.get();
+    }
+
+    /**
+     * Get number of frames replaced by a newer one before the processing thread picked them up
+     */
+    public long getSupersededCount() {
+        return supersededFrames.get();
+    }
+
+    /**
+     * Get scheduler statistics as a short display string
+     */
+    public String getStatsSummary() {
+        return "Frames processed: " + processedFrames.get()
+                + ", superseded: " + supersededFrames.get()
+                + " of " + submittedFrames.get();
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.edgedetectionviewer;
 
 import android.content.Context;
+import android.graphics.SurfaceTexture;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
 import android.opengl.Matrix;
@@ -19,26 +20,16 @@ public class GLTextureRenderer implements GLSurfaceView.Renderer {
 
     private static final String TAG = "GLTextureRenderer";
 
-    // Shader source code
-    private static final String VERTEX_SHADER_CODE =
-            "#version 100\n" +
-                    "attribute vec4 aPosition;\n" +
-                    "attribute vec2 aTexCoord;\n" +
-                    "varying vec2 vTexCoord;\n" +
-                    "uniform mat4 uMVPMatrix;\n" +
-                    "void main() {\n" +
-                    "    gl_Position = uMVPMatrix * aPosition;\n" +
-                    "    vTexCoord = aTexCoord;\n" +
-                    "}";
-
-    private static final String FRAGMENT_SHADER_CODE =
-            "#version 100\n" +
-                    "precision mediump float;\n" +
-                    "varying vec2 vTexCoord;\n" +
-                    "uniform sampler2D uTexture;\n" +
-                    "void main() {\n" +
-                    "    gl_FragColor = texture2D(uTexture, vTexCoord);\n" +
-                    "}";
+    // Display shaders under assets/shaders; edge strength is read from the red channel, which holds it
+    // for both RGBA and GL_LUMINANCE textures
+    private static final String VERTEX_SHADER = "vertex_shader.glsl";
+    private static final String FRAGMENT_SHADER = "fragment_shader.glsl";
+
+    // Colour modes understood by the fragment shader
+    public static final int COLOR_MODE_WHITE = 0;
+    public static final int COLOR_MODE_TINTED = 1;
+    public static final int COLOR_MODE_INVERTED = 2;
+    public static final int COLOR_MODE_HEAT = 3;
 
     // Vertex coordinates for a quad
     private static final float[] QUAD_VERTICES = {
@@ -54,9 +45,20 @@ public class GLTextureRenderer implements GLSurfaceView.Renderer {
             0, 2, 3     // Second triangle
     };
 
+    // Textures frames are streamed into; uploads go to one while another is drawn
+    private static final int STREAMING_TEXTURES = 3;
+
+    // Size native GL state starts with, before the first frame arrives
+    private static final int INITIAL_WIDTH = 640;
+    private static final int INITIAL_HEIGHT = 480;
+
     // OpenGL objects
+    private final ShaderLibrary shaderLibrary;
     private int shaderProgram;
-    private int textureId;
+    private final TextureStreamer textureStreamer = new TextureStreamer(STREAMING_TEXTURES);
+
+    // Newest processed frame waiting for the GL thread; frames it replaces are never uploaded
+    private final UploadSlot<Frame> uploadSlot = new UploadSlot<>(Frame::release);
     private int vertexBuffer;
     private int indexBuffer;
 
@@ -65,6 +67,62 @@ public class GLTextureRenderer implements GLSurfaceView.Renderer {
     private int texCoordHandle;
     private int textureHandle;
     private int mvpMatrixHandle;
+    private int colorModeHandle;
+    private int edgeColorHandle;
+
+    /**
+     * Told on the GL thread whether GPU edge detection came up, or stopped working later
+     */
+    public interface GpuDetectionListener {
+        /**
+         * The camera should render into this texture; edges are detected from it on each draw
+         */
+        void onGpuDetectionReady(SurfaceTexture cameraTexture);
+
+        /**
+         * GPU detection is unavailable; frames must come through the CPU path again
+         * @param reason Why, for the log
+         * @param cameraTexture Texture the camera may still be rendering into, or null. It is no longer
+         *                      drawn; release it once the camera session has moved off it.
+         */
+        void onGpuDetectionFailed(String reason, SurfaceTexture cameraTexture);
+    }
+
+    // GPU detection from the camera texture, created and used on the GL thread when requested, and
+    // checked from other threads
+    private volatile GpuDetectionListener gpuDetectionListener;
+    private volatile GpuEdgeDetector gpuEdgeDetector;
+
+    /**
+     * Canny parameters for the GPU passes, replaced as a whole so a draw never mixes two settings
+     */
+    private static final class GpuParameters {
+        final float lowThreshold;
+        final float highThreshold;
+        final int kernelSize;
+
+        GpuParameters(float lowThreshold, float highThreshold, int kernelSize) {
+            this.lowThreshold = lowThreshold;
+            this.highThreshold = highThreshold;
+            this.kernelSize = kernelSize;
+        }
+    }
+
+    // Parameters applied on each draw, starting from the native detector's defaults; null while the
+    // detector is configured for something the shaders cannot run
+    private volatile GpuParameters gpuParameters = new GpuParameters(50.0f, 150.0f, 3);
+
+    // Size the camera renders into the GPU texture at; 0 until the camera session is configured
+    private volatile int gpuFrameWidth;
+    private volatile int gpuFrameHeight;
+
+    // Viewport to restore after the detection passes
+    private int surfaceWidth;
+    private int surfaceHeight;
+
+    // Edge colouring, set from any thread and applied on the next draw
+    private volatile int colorMode = COLOR_MODE_WHITE;
+    private volatile float[] edgeColor = {0.0f, 1.0f, 0.0f};
 
     // Matrix for transformations
     private float[] mvpMatrix = new float[16];
@@ -75,10 +133,6 @@ public class GLTextureRenderer implements GLSurfaceView.Renderer {
     private FloatBuffer vertexFloatBuffer;
     private ByteBuffer indexByteBuffer;
 
-    // Texture dimensions
-    private int textureWidth = 640;
-    private int textureHeight = 480;
-
     // Context reference
     private Context context;
 
@@ -89,6 +143,7 @@ public class GLTextureRenderer implements GLSurfaceView.Renderer {
 
     public GLTextureRenderer(Context context) {
         this.context = context;
+        this.shaderLibrary = new ShaderLibrary(context);
         initializeBuffers();
     }
 
@@ -126,17 +181,33 @@ public class GLTextureRenderer implements GLSurfaceView.Renderer {
         GLES20.glEnable(GLES20.GL_BLEND);
         GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
 
+        // Programs from a lost context are gone; binaries saved earlier make recreating them cheap
+        shaderLibrary.onContextCreated();
+
         // Create shader program
         createShaderProgram();
 
-        // Create texture
-        createTexture();
+        // Create streaming textures
+        textureStreamer.create();
 
         // Create OpenGL buffers
         createBuffers();
 
         // Initialize native OpenGL
-        EdgeDetectionJNI.initGL(textureWidth, textureHeight);
+        EdgeDetectionJNI.initGL(INITIAL_WIDTH, INITIAL_HEIGHT);
+
+        // A detector still here outlived its context without releaseGlResources; its names are now
+        // meaningless, and the camera has to leave its texture before the new one is handed out
+        if (gpuEdgeDetector != null) {
+            GpuEdgeDetector lost = gpuEdgeDetector;
+            gpuEdgeDetector = null;
+            reportGpuDetectionStopped("GL context lost", lost.abandon());
+        }
+
+        // A new context needs a new camera texture; the old one went with the lost context
+        if (gpuDetectionListener != null) {
+            createGpuEdgeDetector();
+        }
 
         checkGLError("onSurfaceCreated");
     }
@@ -146,6 +217,8 @@ public class GLTextureRenderer implements GLSurfaceView.Renderer {
         Log.i(TAG, "onSurfaceChanged: " + width + "x" + height);
 
         // Set viewport
+        surfaceWidth = width;
+        surfaceHeight = height;
         GLES20.glViewport(0, 0, width, height);
 
         // Calculate aspect ratio
@@ -168,6 +241,12 @@ public class GLTextureRenderer implements GLSurfaceView.Renderer {
         // Calculate FPS
         calculateFPS();
 
+        // Upload the newest CPU result, if one arrived since the last draw
+        uploadPendingFrame();
+
+        // Detect edges in the newest camera frame when the GPU path is active
+        int gpuEdgeTexture = detectOnGpu();
+
         // Clear screen
         GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
 
@@ -187,15 +266,28 @@ public class GLTextureRenderer implements GLSurfaceView.Renderer {
         // Set MVP matrix
         GLES20.glUniformMatrix4fv(mvpMatrixHandle, 1, false, mvpMatrix, 0);
 
-        // Bind texture
+        // Edge colouring
+        float[] color = edgeColor;
+        GLES20.glUniform1i(colorModeHandle, colorMode);
+        GLES20.glUniform3f(edgeColorHandle, color[0], color[1], color[2]);
+
+        // Bind the latest uploaded texture; nothing to draw before the first frame
         GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
-        GLES20.glUniform1i(textureHandle, 0);
+        boolean hasTexture;
+        if (gpuEdgeTexture != 0) {
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, gpuEdgeTexture);
+            hasTexture = true;
+        } else {
+            hasTexture = textureStreamer.bindDrawTexture();
+        }
+        if (hasTexture) {
+            GLES20.glUniform1i(textureHandle, 0);
 
-        // Bind index buffer and draw
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
-        GLES20.glDrawElements(GLES20.GL_TRIANGLES, QUAD_INDICES.length,
-                GLES20.GL_UNSIGNED_SHORT, 0);
+            // Bind index buffer and draw
+            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+            GLES20.glDrawElements(GLES20.GL_TRIANGLES, QUAD_INDICES.length,
+                    GLES20.GL_UNSIGNED_SHORT, 0);
+        }
 
         // Disable vertex attributes
         GLES20.glDisableVertexAttribArray(positionHandle);
@@ -205,84 +297,131 @@ public class GLTextureRenderer implements GLSurfaceView.Renderer {
     }
 
     /**
-     * Create and compile shader program
+     * Ask for edge detection on the GPU from the camera texture
+     * Call before the surface is created. The listener is told on the GL thread whether the GPU path
+     * came up; until it does, and after any failure, frames keep coming through updateTexture.
+     * @param listener Receives the camera texture or the failure, or null to stay on the CPU path
      */
-    private void createShaderProgram() {
-        int vertexShader = compileShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER_CODE);
-        int fragmentShader = compileShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER_CODE);
-
-        shaderProgram = GLES20.glCreateProgram();
-        GLES20.glAttachShader(shaderProgram, vertexShader);
-        GLES20.glAttachShader(shaderProgram, fragmentShader);
-        GLES20.glLinkProgram(shaderProgram);
-
-        // Check linking status
-        int[] linkStatus = new int[1];
-        GLES20.glGetProgramiv(shaderProgram, GLES20.GL_LINK_STATUS, linkStatus, 0);
-        if (linkStatus[0] != GLES20.GL_TRUE) {
-            String error = GLES20.glGetProgramInfoLog(shaderProgram);
-            Log.e(TAG, "Failed to link shader program: " + error);
-            GLES20.glDeleteProgram(shaderProgram);
-            shaderProgram = 0;
-            return;
+    public void setGpuDetectionListener(GpuDetectionListener listener) {
+        gpuDetectionListener = listener;
+    }
+
+    /**
+     * Set the size the camera renders into the GPU texture at, once the camera session is configured
+     */
+    public void setGpuFrameSize(int width, int height) {
+        gpuFrameWidth = width;
+        gpuFrameHeight = height;
+    }
+
+    /**
+     * Mirror the native detector's configuration to the GPU path, so both produce the same edges
+     * Safe to call from any thread; the next draw uses it.
+     * @return true if the shaders can run it; otherwise GPU output is not drawn, and frames should go
+     *         through the CPU pipeline until a configuration they can run is set
+     */
+    public boolean setDetectorParameters(double lowThreshold, double highThreshold, int blurKernel,
+                                         ThresholdMode thresholdMode, EdgeAlgorithm algorithm) {
+        if (!GpuEdgeDetector.canRun(thresholdMode, algorithm, blurKernel)) {
+            gpuParameters = null;
+            return false;
         }
+        gpuParameters = new GpuParameters((float) lowThreshold, (float) highThreshold, blurKernel);
+        return true;
+    }
 
-        // Get attribute and uniform locations
-        positionHandle = GLES20.glGetAttribLocation(shaderProgram, "aPosition");
-        texCoordHandle = GLES20.glGetAttribLocation(shaderProgram, "aTexCoord");
-        textureHandle = GLES20.glGetUniformLocation(shaderProgram, "uTexture");
-        mvpMatrixHandle = GLES20.glGetUniformLocation(shaderProgram, "uMVPMatrix");
+    /**
+     * Check whether edges currently come from the GPU path
+     */
+    public boolean isGpuDetectionActive() {
+        return gpuEdgeDetector != null && gpuParameters != null;
+    }
 
-        // Clean up individual shaders
-        GLES20.glDeleteShader(vertexShader);
-        GLES20.glDeleteShader(fragmentShader);
+    private void createGpuEdgeDetector() {
+        GpuEdgeDetector detector = new GpuEdgeDetector();
+        if (!detector.create(shaderLibrary)) {
+            gpuDetectionListener.onGpuDetectionFailed("GPU edge detector could not be created", null);
+            return;
+        }
+        gpuEdgeDetector = detector;
+        gpuDetectionListener.onGpuDetectionReady(detector.getSurfaceTexture());
+    }
 
-        Log.i(TAG, "Shader program created successfully");
+    /**
+     * Delete the GPU detector's GL objects and pass its camera texture to the listener
+     * The capture session still renders into that texture until the listener moves it to the CPU
+     * pipeline, so the listener releases it rather than this thread.
+     */
+    private void stopGpuDetection(String reason) {
+        SurfaceTexture cameraTexture = gpuEdgeDetector.releaseKeepingSurfaceTexture();
+        gpuEdgeDetector = null;
+        reportGpuDetectionStopped(reason, cameraTexture);
+    }
+
+    private void reportGpuDetectionStopped(String reason, SurfaceTexture cameraTexture) {
+        GpuDetectionListener listener = gpuDetectionListener;
+        if (listener != null) {
+            listener.onGpuDetectionFailed(reason, cameraTexture);
+        } else if (cameraTexture != null) {
+            cameraTexture.release();
+        }
     }
 
     /**
-     * Compile individual shader
+     * Run the GPU passes on the newest camera frame
+     * @return Texture with the edges, or 0 to draw the last uploaded CPU frame instead
      */
-    private int compileShader(int type, String source) {
-        int shader = GLES20.glCreateShader(type);
-        GLES20.glShaderSource(shader, source);
-        GLES20.glCompileShader(shader);
-
-        // Check compilation status
-        int[] compileStatus = new int[1];
-        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
-        if (compileStatus[0] != GLES20.GL_TRUE) {
-            String error = GLES20.glGetShaderInfoLog(shader);
-            Log.e(TAG, "Failed to compile shader: " + error);
-            GLES20.glDeleteShader(shader);
+    private int detectOnGpu() {
+        int width = gpuFrameWidth;
+        int height = gpuFrameHeight;
+        GpuParameters parameters = gpuParameters;
+        GpuEdgeDetector detector = gpuEdgeDetector;
+        if (detector == null || parameters == null || width == 0 || height == 0) {
             return 0;
         }
+        detector.setThresholds(parameters.lowThreshold, parameters.highThreshold);
+        detector.setKernelSize(parameters.kernelSize);
+
+        int edgeTexture = 0;
+        try {
+            edgeTexture = detector.processCameraFrame(width, height);
+        } catch (RuntimeException e) {
+            // Fall back to the CPU path for the rest of this context
+            Log.e(TAG, "GPU edge detection failed: " + e.getMessage());
+            stopGpuDetection(e.getMessage());
+        }
 
-        return shader;
+        // The passes render off screen with their own state
+        GLES20.glViewport(0, 0, surfaceWidth, surfaceHeight);
+        GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+        GLES20.glEnable(GLES20.GL_BLEND);
+        return edgeTexture;
     }
 
     /**
-     * Create texture for displaying processed frames
+     * Get the display program from the shader library and look up its locations
      */
-    private void createTexture() {
-        int[] textures = new int[1];
-        GLES20.glGenTextures(1, textures, 0);
-        textureId = textures[0];
-
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
-
-        // Set texture parameters
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
-
-        // Allocate texture memory
-        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA,
-                textureWidth, textureHeight, 0, GLES20.GL_RGBA,
-                GLES20.GL_UNSIGNED_BYTE, null);
+    private void createShaderProgram() {
+        ShaderLibrary.Program program;
+        try {
+            program = shaderLibrary.getProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Failed to create shader program: " + e.getMessage());
+            shaderProgram = 0;
+            return;
+        }
+        shaderProgram = program.getId();
 
-        Log.i(TAG, "Texture created: ID=" + textureId + ", Size=" + textureWidth + "x" + textureHeight);
+        // Get attribute and uniform locations
+        positionHandle = program.attribute("aPosition");
+        texCoordHandle = program.attribute("aTexCoord");
+        textureHandle = program.uniform("uTexture");
+        mvpMatrixHandle = program.uniform("uMVPMatrix");
+        colorModeHandle = program.uniform("uColorMode");
+        edgeColorHandle = program.uniform("uEdgeColor");
+
+        Log.i(TAG, "Shader program ready (" + shaderLibrary.getCompiledCount() + " compiled, "
+                + shaderLibrary.getBinaryLoadCount() + " loaded from binaries)");
     }
 
     /**
@@ -308,32 +447,70 @@ public class GLTextureRenderer implements GLSurfaceView.Renderer {
     }
 
     /**
-     * Update texture with new frame data
+     * Queue a pooled frame for upload on the next draw
+     * Safe to call from any thread; the renderer retains the frame, so the caller keeps its reference
+     * and releases it as usual. A frame still waiting from an earlier call is dropped in favour of
+     * this one.
+     */
+    public void updateTexture(Frame frame) {
+        if (frame == null) {
+            return;
+        }
+        uploadSlot.offer(frame.retain());
+    }
+
+    /**
+     * Upload the newest queued frame into the next streaming texture
      */
-    public void updateTexture(byte[] pixelData, int width, int height) {
-        if (textureId == 0 || pixelData == null) {
-            Log.w(TAG, "Cannot update texture: invalid texture ID or pixel data");
+    private void uploadPendingFrame() {
+        Frame frame = uploadSlot.take();
+        if (frame == null) {
             return;
         }
 
-        // Update texture dimensions if changed
-        if (width != textureWidth || height != textureHeight) {
-            textureWidth = width;
-            textureHeight = height;
-            Log.i(TAG, "Texture dimensions updated: " + width + "x" + height);
+        try {
+            if (!textureStreamer.isCreated()) {
+                Log.w(TAG, "Cannot update texture: textures not created");
+                return;
+            }
+
+            // Single-channel edge frames upload as GL_LUMINANCE, a quarter of the RGBA bytes
+            int format = frame.getFormat() == Frame.FORMAT_GRAY ? GLES20.GL_LUMINANCE : GLES20.GL_RGBA;
+
+            // Pooled frames are already direct, so they upload without a copy; with tile hashes only
+            // the tiles that changed are sent
+            textureStreamer.upload(frame.getBuffer(), frame.getWidth(), frame.getHeight(), format,
+                    frame.getTileHashes());
+
+            checkGLError("updateTexture");
+        } finally {
+            frame.release();
         }
+    }
 
-        // Create byte buffer for pixel data
-        ByteBuffer pixelBuffer = ByteBuffer.allocateDirect(pixelData.length);
-        pixelBuffer.put(pixelData);
-        pixelBuffer.position(0);
+    /**
+     * Get upload statistics as a short display string
+     */
+    public String getUploadStatsSummary() {
+        return uploadSlot.getStatsSummary() + "\n" + textureStreamer.getStatsSummary();
+    }
 
-        // Update texture data
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
-        GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, width, height,
-                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, pixelBuffer);
+    /**
+     * Choose how edges are coloured on screen
+     * @param mode COLOR_MODE_WHITE, COLOR_MODE_TINTED, COLOR_MODE_INVERTED or COLOR_MODE_HEAT
+     */
+    public void setColorMode(int mode) {
+        colorMode = mode;
+    }
 
-        checkGLError("updateTexture");
+    /**
+     * Set the edge colour used by COLOR_MODE_TINTED
+     * @param red Red component (0 - 1)
+     * @param green Green component (0 - 1)
+     * @param blue Blue component (0 - 1)
+     */
+    public void setEdgeColor(float red, float green, float blue) {
+        edgeColor = new float[]{red, green, blue};
     }
 
     /**
@@ -385,19 +562,29 @@ public class GLTextureRenderer implements GLSurfaceView.Renderer {
     }
 
     /**
-     * Cleanup OpenGL resources
+     * Recycle the frame still waiting for upload
+     * Safe to call from any thread. GL objects are released by releaseGlResources on the GL thread.
      */
     public void cleanup() {
-        if (textureId != 0) {
-            GLES20.glDeleteTextures(1, new int[]{textureId}, 0);
-            textureId = 0;
-        }
+        uploadSlot.clear();
+    }
 
-        if (shaderProgram != 0) {
-            GLES20.glDeleteProgram(shaderProgram);
-            shaderProgram = 0;
+    /**
+     * Delete the GL objects of the current context
+     * Must run on the GL thread while the context is current: queue it with GLSurfaceView.queueEvent
+     * before GLSurfaceView.onPause, which destroys the context. onSurfaceCreated builds everything again.
+     */
+    public void releaseGlResources() {
+        textureStreamer.release();
+
+        if (gpuEdgeDetector != null) {
+            stopGpuDetection("GL context released");
         }
 
+        // Deletes the display program and the GPU detection passes
+        shaderLibrary.release();
+        shaderProgram = 0;
+
         if (vertexBuffer != 0 || indexBuffer != 0) {
             GLES20.glDeleteBuffers(2, new int[]{vertexBuffer, indexBuffer}, 0);
             vertexBuffer = 0;
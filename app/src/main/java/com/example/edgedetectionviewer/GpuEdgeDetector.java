@@ -0,0 +1,490 @@
+package com.example.edgedetectionviewer;
+
+import android.graphics.SurfaceTexture;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Canny edge detection in fragment shaders, reading camera frames straight from an OES texture
+ * The camera renders into a SurfaceTexture bound to a GL_TEXTURE_EXTERNAL_OES texture, and each frame
+ * runs gray, horizontal and vertical Gaussian, Sobel, non-maximum suppression with the double
+ * threshold, and a few hysteresis passes, ping-ponging between two RGBA8 framebuffers. Nothing is
+ * read back to the CPU; the result is a texture the renderer draws like an uploaded edge frame.
+ * The passes follow the native fused kernel (same gray weights, sigma 1.4 Gaussian, L1 Sobel
+ * magnitude, direction bins and thresholds), but borders are clamped rather than reflected and
+ * hysteresis only grows edges HYSTERESIS_PASSES pixels from a strong one, so results are close to
+ * the CPU path rather than identical.
+ * All methods must be called on the GL thread.
+ */
+public class GpuEdgeDetector {
+
+    private static final String TAG = "GpuEdgeDetector";
+
+    // Each pass extends edges one pixel from a strong pixel through weak ones
+    public static final int HYSTERESIS_PASSES = 4;
+
+    // Largest Gaussian kernel the blur shader handles, as in the native fused kernel
+    public static final int MAX_KERNEL_SIZE = 15;
+
+    // Sigma the native fused kernel uses for every kernel size
+    private static final double GAUSSIAN_SIGMA = 1.4;
+
+    // Shader assets under assets/shaders
+    private static final String QUAD_VERTEX_SHADER = "gpu/quad_vertex.glsl";
+    private static final String GRAY_SHADER = "gpu/gray_fragment.glsl";
+    private static final String BLUR_SHADER = "gpu/blur_fragment.glsl";
+    private static final String SOBEL_SHADER = "gpu/sobel_fragment.glsl";
+    private static final String SUPPRESS_SHADER = "gpu/suppress_fragment.glsl";
+    private static final String HYSTERESIS_SHADER = "gpu/hysteresis_fragment.glsl";
+
+    // Gray shader variant reading the camera's external OES texture
+    private static final String EXTERNAL_INPUT = "EXTERNAL_INPUT";
+
+    private static final float[] QUAD_VERTICES = {
+            -1.0f, -1.0f,
+            1.0f, -1.0f,
+            -1.0f, 1.0f,
+            1.0f, 1.0f
+    };
+
+    // Maps the quad's v (0 = top image row) to SurfaceTexture coordinates, where t = 0 is the bottom row
+    private static final float[] FLIP_VERTICAL = {
+            1, 0, 0, 0,
+            0, -1, 0, 0,
+            0, 0, 1, 0,
+            0, 1, 0, 1
+    };
+
+    private static final float[] IDENTITY = {
+            1, 0, 0, 0,
+            0, 1, 0, 0,
+            0, 0, 1, 0,
+            0, 0, 0, 1
+    };
+
+    /**
+     * One pass's program with the locations every pass shares
+     */
+    private static final class Pass {
+        final ShaderLibrary.Program program;
+        final int positionHandle;
+        final int texMatrixHandle;
+        final int inputHandle;
+        final int texelHandle;
+
+        Pass(ShaderLibrary.Program program) {
+            this.program = program;
+            positionHandle = program.attribute("aPosition");
+            texMatrixHandle = program.uniform("uTexMatrix");
+            inputHandle = program.uniform("uInput");
+            texelHandle = program.uniform("uTexel");
+        }
+
+        int uniform(String name) {
+            return program.uniform(name);
+        }
+    }
+
+    private Pass grayExternalPass;
+    private Pass grayPass;
+    private Pass blurPass;
+    private Pass sobelPass;
+    private Pass suppressPass;
+    private Pass hysteresisPass;
+
+    private int blurStepHandle;
+    private int blurWeightsHandle;
+    private int blurRadiusHandle;
+    private int lowHandle;
+    private int highHandle;
+    private int finalHandle;
+
+    // Camera input
+    private int cameraTextureId;
+    private SurfaceTexture surfaceTexture;
+    private final float[] cameraTransform = new float[16];
+    private final float[] cameraTexMatrix = new float[16];
+
+    // Ping-pong targets, reallocated when the frame size changes
+    private final int[] targetTextures = new int[2];
+    private final int[] framebuffers = new int[2];
+    private int targetWidth;
+    private int targetHeight;
+    private int outputIndex = -1;
+
+    private final FloatBuffer quadBuffer;
+    private ByteBuffer readbackBuffer;
+
+    // Parameters, set from any thread and used from the next frame
+    private volatile float lowThreshold = 50.0f;
+    private volatile float highThreshold = 150.0f;
+    private volatile int kernelSize = 3;
+
+    // Gaussian weights for the current kernel size
+    private final float[] weights = new float[8];
+    private int weightsKernelSize;
+
+    private long framesProcessed;
+
+    public GpuEdgeDetector() {
+        quadBuffer = ByteBuffer.allocateDirect(QUAD_VERTICES.length * 4).order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        quadBuffer.put(QUAD_VERTICES).position(0);
+    }
+
+    /**
+     * Get the passes' programs and create the camera texture and its SurfaceTexture
+     * Call from onSurfaceCreated. On failure everything created so far is released, and the caller
+     * keeps using the CPU path.
+     * @param shaders Library of the current context, which owns the programs
+     * @return true if the GPU path is usable
+     */
+    public boolean create(ShaderLibrary shaders) {
+        try {
+            grayExternalPass = new Pass(shaders.getProgram(QUAD_VERTEX_SHADER, GRAY_SHADER, EXTERNAL_INPUT));
+            grayPass = new Pass(shaders.getProgram(QUAD_VERTEX_SHADER, GRAY_SHADER));
+            blurPass = new Pass(shaders.getProgram(QUAD_VERTEX_SHADER, BLUR_SHADER));
+            sobelPass = new Pass(shaders.getProgram(QUAD_VERTEX_SHADER, SOBEL_SHADER));
+            suppressPass = new Pass(shaders.getProgram(QUAD_VERTEX_SHADER, SUPPRESS_SHADER));
+            hysteresisPass = new Pass(shaders.getProgram(QUAD_VERTEX_SHADER, HYSTERESIS_SHADER));
+
+            blurStepHandle = blurPass.uniform("uStep");
+            blurWeightsHandle = blurPass.uniform("uWeights");
+            blurRadiusHandle = blurPass.uniform("uRadius");
+            lowHandle = suppressPass.uniform("uLow");
+            highHandle = suppressPass.uniform("uHigh");
+            finalHandle = hysteresisPass.uniform("uFinal");
+
+            int[] textures = new int[1];
+            GLES20.glGenTextures(1, textures, 0);
+            cameraTextureId = textures[0];
+            GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, cameraTextureId);
+            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+            surfaceTexture = new SurfaceTexture(cameraTextureId);
+
+            checkGLError("create");
+            Log.i(TAG, "GPU edge detector created");
+            return true;
+
+        } catch (RuntimeException e) {
+            Log.e(TAG, "GPU edge detection unavailable: " + e.getMessage());
+            release();
+            return false;
+        }
+    }
+
+    /**
+     * Get the SurfaceTexture the camera should render into
+     */
+    public SurfaceTexture getSurfaceTexture() {
+        return surfaceTexture;
+    }
+
+    /**
+     * Latch the newest camera frame and detect edges in it
+     * @param width Camera frame width
+     * @param height Camera frame height
+     * @return Texture holding the edges in its red channel (1 = edge)
+     */
+    public int processCameraFrame(int width, int height) {
+        surfaceTexture.updateTexImage();
+        surfaceTexture.getTransformMatrix(cameraTransform);
+        Matrix.multiplyMM(cameraTexMatrix, 0, cameraTransform, 0, FLIP_VERTICAL, 0);
+        return runPasses(grayExternalPass, GLES11Ext.GL_TEXTURE_EXTERNAL_OES, cameraTextureId, cameraTexMatrix,
+                width, height);
+    }
+
+    /**
+     * Detect edges in an ordinary RGBA texture whose row 0 is the top image row
+     * Used to compare the GPU and CPU paths on the same input.
+     * @param inputTexture GL_TEXTURE_2D with RGBA content
+     * @param width Texture width
+     * @param height Texture height
+     * @return Texture holding the edges in its red channel (1 = edge)
+     */
+    public int process(int inputTexture, int width, int height) {
+        return runPasses(grayPass, GLES20.GL_TEXTURE_2D, inputTexture, IDENTITY, width, height);
+    }
+
+    /**
+     * Set the Canny thresholds, on the same L1 magnitude scale as the native detector
+     */
+    public void setThresholds(float low, float high) {
+        lowThreshold = low;
+        highThreshold = high;
+    }
+
+    /**
+     * Check whether the passes can reproduce a native detector configuration
+     * They only implement Canny with manual thresholds and kernel sizes setKernelSize accepts; anything
+     * else has to run on the CPU path.
+     */
+    public static boolean canRun(ThresholdMode thresholdMode, EdgeAlgorithm algorithm, int kernelSize) {
+        return thresholdMode == ThresholdMode.MANUAL && algorithm == EdgeAlgorithm.CANNY
+                && kernelSize >= 3 && kernelSize <= MAX_KERNEL_SIZE && kernelSize % 2 != 0;
+    }
+
+    /**
+     * Set the Gaussian kernel size (odd, 3 to MAX_KERNEL_SIZE)
+     */
+    public void setKernelSize(int size) {
+        if (size < 3 || size > MAX_KERNEL_SIZE || size % 2 == 0) {
+            throw new IllegalArgumentException("Kernel size must be odd, 3 to " + MAX_KERNEL_SIZE + ": " + size);
+        }
+        kernelSize = size;
+    }
+
+    /**
+     * Copy the last result into one byte per pixel (255 = edge, 0 = none), like processEdges
+     * @param output Buffer of at least width * height bytes
+     */
+    public void readEdges(ByteBuffer output) {
+        if (outputIndex < 0) {
+            throw new IllegalStateException("No frame processed yet");
+        }
+        int pixelCount = targetWidth * targetHeight;
+        if (readbackBuffer == null || readbackBuffer.capacity() < pixelCount * 4) {
+            readbackBuffer = ByteBuffer.allocateDirect(pixelCount * 4);
+        }
+        readbackBuffer.clear();
+
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffers[outputIndex]);
+        GLES20.glReadPixels(0, 0, targetWidth, targetHeight, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE,
+                readbackBuffer);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        checkGLError("readEdges");
+
+        output.clear();
+        for (int i = 0; i < pixelCount; i++) {
+            output.put((readbackBuffer.get(i * 4) & 0xFF) > 127 ? (byte) 255 : 0);
+        }
+        output.flip();
+    }
+
+    public long getFramesProcessed() {
+        return framesProcessed;
+    }
+
+    /**
+     * Delete the textures and framebuffers and release the SurfaceTexture
+     * The programs stay with the shader library.
+     */
+    public void release() {
+        SurfaceTexture texture = releaseKeepingSurfaceTexture();
+        if (texture != null) {
+            texture.release();
+        }
+    }
+
+    /**
+     * Delete the textures and framebuffers but hand over the SurfaceTexture instead of releasing it
+     * For when the camera may still be rendering into it: the caller releases it once the camera
+     * has moved to another surface.
+     * @return The SurfaceTexture, now owned by the caller, or null if there was none
+     */
+    public SurfaceTexture releaseKeepingSurfaceTexture() {
+        return detach(true);
+    }
+
+    /**
+     * Forget the GL objects of a lost context without deleting them, and hand over the SurfaceTexture
+     * Their names may already belong to objects created in the new context, which a delete would destroy.
+     * @return The SurfaceTexture, now owned by the caller, or null if there was none
+     */
+    public SurfaceTexture abandon() {
+        return detach(false);
+    }
+
+    private SurfaceTexture detach(boolean deleteGlObjects) {
+        grayExternalPass = grayPass = blurPass = sobelPass = suppressPass = hysteresisPass = null;
+
+        SurfaceTexture texture = surfaceTexture;
+        surfaceTexture = null;
+        if (deleteGlObjects && cameraTextureId != 0) {
+            GLES20.glDeleteTextures(1, new int[]{cameraTextureId}, 0);
+        }
+        cameraTextureId = 0;
+        if (deleteGlObjects) {
+            deleteTargets();
+        } else {
+            forgetTargets();
+        }
+        return texture;
+    }
+
+    /**
+     * Run every pass from the input texture, leaving the result in targetTextures[outputIndex]
+     */
+    private int runPasses(Pass grayInputPass, int inputTarget, int inputTexture, float[] texMatrix,
+                          int width, int height) {
+        ensureTargets(width, height);
+        updateWeights();
+
+        // Passes overwrite every pixel; blending would mix in the previous contents
+        GLES20.glDisable(GLES20.GL_BLEND);
+        GLES20.glDisable(GLES20.GL_DEPTH_TEST);
+        GLES20.glViewport(0, 0, width, height);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+
+        float texelX = 1.0f / width;
+        float texelY = 1.0f / height;
+
+        // Gray into target 0
+        beginPass(grayInputPass, texMatrix, 0, inputTarget, inputTexture, texelX, texelY);
+        drawQuad(grayInputPass);
+
+        // Horizontal blur into 1, vertical blur back into 0
+        int radius = weightsKernelSize / 2;
+        beginPass(blurPass, IDENTITY, 1, GLES20.GL_TEXTURE_2D, targetTextures[0], texelX, texelY);
+        GLES20.glUniform2f(blurStepHandle, texelX, 0.0f);
+        GLES20.glUniform1fv(blurWeightsHandle, weights.length, weights, 0);
+        GLES20.glUniform1i(blurRadiusHandle, radius);
+        drawQuad(blurPass);
+
+        beginPass(blurPass, IDENTITY, 0, GLES20.GL_TEXTURE_2D, targetTextures[1], texelX, texelY);
+        GLES20.glUniform2f(blurStepHandle, 0.0f, texelY);
+        drawQuad(blurPass);
+
+        // Sobel into 1, suppression and thresholds into 0
+        beginPass(sobelPass, IDENTITY, 1, GLES20.GL_TEXTURE_2D, targetTextures[0], texelX, texelY);
+        drawQuad(sobelPass);
+
+        beginPass(suppressPass, IDENTITY, 0, GLES20.GL_TEXTURE_2D, targetTextures[1], texelX, texelY);
+        GLES20.glUniform1f(lowHandle, lowThreshold);
+        GLES20.glUniform1f(highHandle, highThreshold);
+        drawQuad(suppressPass);
+
+        // Hysteresis ping-pong, ending with the pass that drops unconnected weak edges
+        int source = 0;
+        for (int pass = 0; pass < HYSTERESIS_PASSES; pass++) {
+            int target = 1 - source;
+            beginPass(hysteresisPass, IDENTITY, target, GLES20.GL_TEXTURE_2D, targetTextures[source],
+                    texelX, texelY);
+            GLES20.glUniform1f(finalHandle, pass == HYSTERESIS_PASSES - 1 ? 1.0f : 0.0f);
+            drawQuad(hysteresisPass);
+            source = target;
+        }
+
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        checkGLError("runPasses");
+
+        outputIndex = source;
+        framesProcessed++;
+        return targetTextures[outputIndex];
+    }
+
+    private void beginPass(Pass pass, float[] texMatrix, int target, int inputTarget, int inputTexture,
+                           float texelX, float texelY) {
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffers[target]);
+        GLES20.glUseProgram(pass.program.getId());
+        GLES20.glUniformMatrix4fv(pass.texMatrixHandle, 1, false, texMatrix, 0);
+        GLES20.glBindTexture(inputTarget, inputTexture);
+        GLES20.glUniform1i(pass.inputHandle, 0);
+        if (pass.texelHandle >= 0) {
+            GLES20.glUniform2f(pass.texelHandle, texelX, texelY);
+        }
+    }
+
+    private void drawQuad(Pass pass) {
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GLES20.glEnableVertexAttribArray(pass.positionHandle);
+        GLES20.glVertexAttribPointer(pass.positionHandle, 2, GLES20.GL_FLOAT, false, 8, quadBuffer);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(pass.positionHandle);
+    }
+
+    /**
+     * Sampled Gaussian with the native sigma, normalised to sum to one
+     */
+    private void updateWeights() {
+        int size = kernelSize;
+        if (size == weightsKernelSize) {
+            return;
+        }
+
+        int radius = size / 2;
+        double sum = 0.0;
+        double[] values = new double[radius + 1];
+        for (int i = 0; i <= radius; i++) {
+            values[i] = Math.exp(-(i * i) / (2.0 * GAUSSIAN_SIGMA * GAUSSIAN_SIGMA));
+            sum += i == 0 ? values[i] : 2.0 * values[i];
+        }
+
+        Arrays.fill(weights, 0.0f);
+        for (int i = 0; i <= radius; i++) {
+            weights[i] = (float) (values[i] / sum);
+        }
+        weightsKernelSize = size;
+    }
+
+    /**
+     * Allocate the two ping-pong textures and framebuffers for a frame size
+     */
+    private void ensureTargets(int width, int height) {
+        if (width == targetWidth && height == targetHeight && framebuffers[0] != 0) {
+            return;
+        }
+        deleteTargets();
+
+        GLES20.glGenTextures(2, targetTextures, 0);
+        GLES20.glGenFramebuffers(2, framebuffers, 0);
+        for (int i = 0; i < 2; i++) {
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, targetTextures[i]);
+            // Nearest sampling so every tap reads exactly one texel
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0, GLES20.GL_RGBA,
+                    GLES20.GL_UNSIGNED_BYTE, null);
+
+            GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffers[i]);
+            GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+                    GLES20.GL_TEXTURE_2D, targetTextures[i], 0);
+            int status = GLES20.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+            if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+                GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+                throw new IllegalStateException("Framebuffer incomplete: " + status);
+            }
+        }
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+
+        targetWidth = width;
+        targetHeight = height;
+        outputIndex = -1;
+        Log.i(TAG, "Framebuffers allocated: " + width + "x" + height);
+    }
+
+    private void deleteTargets() {
+        if (framebuffers[0] != 0) {
+            GLES20.glDeleteFramebuffers(2, framebuffers, 0);
+            GLES20.glDeleteTextures(2, targetTextures, 0);
+        }
+        forgetTargets();
+    }
+
+    private void forgetTargets() {
+        framebuffers[0] = framebuffers[1] = 0;
+        targetTextures[0] = targetTextures[1] = 0;
+        targetWidth = 0;
+        targetHeight = 0;
+        outputIndex = -1;
+    }
+
+    private static void checkGLError(String operation) {
+        int error = GLES20.glGetError();
+        if (error != GLES20.GL_NO_ERROR) {
+            throw new IllegalStateException("OpenGL error in " + operation + ": " + error);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.edgedetectionviewer;
 
 import android.Manifest;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
+import android.graphics.SurfaceTexture;
 import android.opengl.GLSurfaceView;
 import android.os.Bundle;
 import android.util.Log;
@@ -24,6 +26,27 @@ public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
     private static final int CAMERA_PERMISSION_REQUEST_CODE = 1001;
 
+    // Frames buffered between consecutive pipeline stages
+    private static final int PIPELINE_QUEUE_CAPACITY = 2;
+
+    // Whole frames detected concurrently (leaving cores for capture and upload), and how many
+    // finished frames may wait for a slower earlier one before it is dropped as late
+    private static final int DETECT_WORKERS =
+            Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 2));
+    private static final int MAX_REORDER_DEPTH = DETECT_WORKERS;
+
+    // Native strip threads per frame, sharing the cores between the whole-frame detect workers
+    private static final int NATIVE_THREADS_PER_FRAME =
+            Math.max(1, Runtime.getRuntime().availableProcessors() / DETECT_WORKERS);
+
+    // Frame rate the adaptive pyramid keeps detection up with. Frames are detected DETECT_WORKERS at
+    // a time, so each may take that many frame intervals before throughput drops below the target.
+    private static final int TARGET_FPS = 30;
+    private static final long DETECT_BUDGET_NANOS = DETECT_WORKERS * 1_000_000_000L / TARGET_FPS;
+
+    // Coarsest pyramid level the adaptive policy may pick (1/4 of each dimension)
+    private static final int MAX_PYRAMID_LEVEL = 2;
+
     // UI Components
     private TextureView cameraTextureView;
     private GLSurfaceView glSurfaceView;
@@ -34,12 +57,46 @@ public class MainActivity extends AppCompatActivity {
     // Core components
     private CameraRenderer cameraRenderer;
     private GLTextureRenderer glTextureRenderer;
+    private FramePool framePool;
+    private FrameScheduler<CameraFrame> frameScheduler;
+    private FramePipeline<CameraFrame> framePipeline;
+    private PyramidPolicy pyramidPolicy;
+
+    // Native detector owned by this activity; 0 until created
+    private long detectorHandle;
 
     // State management
     private boolean isProcessingEnabled = true;
     private boolean isCameraInitialized = false;
     private boolean isGLInitialized = false;
 
+    // Edge output only depends on luminance, so feed the Y plane straight into detection
+    private boolean isLumaOnlyEnabled = true;
+
+    // Detect into one byte per pixel and let the shader colourise it, a quarter of the RGBA upload
+    private boolean isSingleChannelOutputEnabled = true;
+
+    // Upload only the tiles of each edge frame that changed since its texture was last filled
+    private boolean isDirtyTileUploadEnabled = true;
+
+    // Detect in shaders straight from the camera texture; the CPU pipeline is the fallback when the
+    // GPU path cannot be created or fails
+    private boolean isGpuDetectionEnabled = true;
+
+    // Camera texture of the active GPU path, or null while frames go through the CPU pipeline
+    private SurfaceTexture gpuCameraTexture;
+
+    // Detector configuration, set on the native detector and mirrored to the GPU path; starts at the
+    // native defaults
+    private double lowThreshold = 50.0;
+    private double highThreshold = 150.0;
+    private int blurKernel = 3;
+    private ThresholdMode thresholdMode = ThresholdMode.MANUAL;
+    private EdgeAlgorithm edgeAlgorithm = EdgeAlgorithm.CANNY;
+
+    // Whether the shaders can run the configuration above; frames use the CPU pipeline when not
+    private boolean isGpuConfigurationSupported = true;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -53,6 +110,27 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
+        detectorHandle = EdgeDetectionJNI.create();
+        if (detectorHandle == 0) {
+            showError("Failed to create native detector");
+            return;
+        }
+        EdgeDetectionJNI.setDetectorThreadCount(detectorHandle, NATIVE_THREADS_PER_FRAME);
+
+        // Reusable output frames; debug builds track where unreleased frames were acquired
+        boolean isDebuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        framePool = new FramePool(isDebuggable);
+
+        // High-resolution frames are shrunk before detection when it cannot keep up; GL scales the result back up
+        pyramidPolicy = new PyramidPolicy(DETECT_BUDGET_NANOS, MAX_PYRAMID_LEVEL);
+
+        // Camera frames are processed on a dedicated thread so capture callbacks never wait on it.
+        // That thread is the convert stage of a convert -> detect -> upload pipeline.
+        framePipeline = new FramePipeline<>(this::convertCameraFrame, this::detectEdges, this::uploadFrame,
+                PIPELINE_QUEUE_CAPACITY);
+        framePipeline.setDetectParallelism(DETECT_WORKERS, MAX_REORDER_DEPTH);
+        frameScheduler = new FrameScheduler<>(framePipeline::submit, CameraFrame::close);
+
         // Initialize UI components
         initializeUI();
 
@@ -102,7 +180,12 @@ public class MainActivity extends AppCompatActivity {
     private void initializeCamera() {
         try {
             cameraRenderer = new CameraRenderer(this, cameraTextureView);
-            cameraRenderer.setFrameCallback(new CameraRenderer.FrameCallback() {
+            cameraRenderer.setFrameCallback(new CameraRenderer.YuvFrameCallback() {
+                @Override
+                public void onYuvFrameAvailable(CameraFrame frame) {
+                    frameScheduler.submit(frame);
+                }
+
                 @Override
                 public void onFrameAvailable(byte[] frameData, int width, int height) {
                     processFrame(frameData, width, height);
@@ -114,6 +197,9 @@ public class MainActivity extends AppCompatActivity {
                 }
             });
 
+            // The GPU path may have come up before the camera permission was granted
+            applyGpuTarget();
+
             isCameraInitialized = true;
             Log.i(TAG, "Camera initialized successfully");
 
@@ -133,6 +219,10 @@ public class MainActivity extends AppCompatActivity {
 
             // Create custom renderer
             glTextureRenderer = new GLTextureRenderer(this);
+            syncGpuDetection();
+            if (isGpuDetectionEnabled) {
+                glTextureRenderer.setGpuDetectionListener(gpuDetectionListener);
+            }
             glSurfaceView.setRenderer(glTextureRenderer);
 
             // Set render mode to only render when data changes
@@ -147,6 +237,120 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Switches the camera between the GPU texture and the CPU pipeline; called on the GL thread
+     */
+    private final GLTextureRenderer.GpuDetectionListener gpuDetectionListener =
+            new GLTextureRenderer.GpuDetectionListener() {
+                @Override
+                public void onGpuDetectionReady(SurfaceTexture cameraTexture) {
+                    // Each camera frame triggers a draw, which runs the detection passes
+                    cameraTexture.setOnFrameAvailableListener(texture -> glSurfaceView.requestRender());
+                    runOnUiThread(() -> {
+                        gpuCameraTexture = cameraTexture;
+                        applyGpuTarget();
+                    });
+                }
+
+                @Override
+                public void onGpuDetectionFailed(String reason, SurfaceTexture cameraTexture) {
+                    Log.w(TAG, "Using CPU edge detection: " + reason);
+                    if (cameraTexture != null) {
+                        cameraTexture.setOnFrameAvailableListener(null);
+                    }
+                    runOnUiThread(() -> {
+                        gpuCameraTexture = null;
+                        applyGpuTarget();
+                        // Released once the session that replaces the GPU target is configured
+                        if (cameraTexture != null) {
+                            if (cameraRenderer != null) {
+                                cameraRenderer.releaseRetiredTarget(cameraTexture);
+                            } else {
+                                cameraTexture.release();
+                            }
+                        }
+                    });
+                }
+            };
+
+    /**
+     * Point the camera at the GPU texture if that path is active, otherwise at the CPU pipeline
+     */
+    private void applyGpuTarget() {
+        if (cameraRenderer == null) {
+            return;
+        }
+        if (gpuCameraTexture != null && isGpuConfigurationSupported) {
+            cameraRenderer.setGpuTarget(gpuCameraTexture, glTextureRenderer::setGpuFrameSize);
+        } else {
+            cameraRenderer.setGpuTarget(null, null);
+        }
+    }
+
+    /**
+     * Set the Canny thresholds and Gaussian kernel size of both detection paths
+     * Call on the UI thread.
+     */
+    public void updateDetectorParameters(double low, double high, int kernelSize) {
+        lowThreshold = low;
+        highThreshold = high;
+        blurKernel = kernelSize;
+        EdgeDetectionJNI.updateDetectorParameters(detectorHandle, low, high, kernelSize);
+        syncGpuDetection();
+    }
+
+    /**
+     * Choose how thresholds are picked; the automatic modes only run on the CPU pipeline
+     * Call on the UI thread.
+     */
+    public void setThresholdMode(ThresholdMode mode) {
+        thresholdMode = mode;
+        EdgeDetectionJNI.setDetectorThresholdMode(detectorHandle, mode);
+        syncGpuDetection();
+    }
+
+    /**
+     * Choose the edge algorithm; only Canny runs on the GPU path, the others on the CPU pipeline
+     * Call on the UI thread.
+     */
+    public void setEdgeAlgorithm(EdgeAlgorithm algorithm) {
+        edgeAlgorithm = algorithm;
+        EdgeDetectionJNI.setDetectorAlgorithm(detectorHandle, algorithm);
+        syncGpuDetection();
+    }
+
+    /**
+     * Choose how Sobel gradients are computed
+     * Only the Sobel algorithm uses them, and it always runs on the CPU pipeline, so the GPU path is
+     * unaffected.
+     */
+    public void setSobelMode(SobelMode mode) {
+        EdgeDetectionJNI.setDetectorSobelMode(detectorHandle, mode);
+    }
+
+    /**
+     * Mirror the detector configuration to the GPU path, moving the camera to the CPU pipeline while
+     * the shaders cannot run it and back once they can
+     */
+    private void syncGpuDetection() {
+        if (glTextureRenderer == null) {
+            return;
+        }
+        boolean supported = glTextureRenderer.setDetectorParameters(lowThreshold, highThreshold, blurKernel,
+                thresholdMode, edgeAlgorithm);
+        if (supported == isGpuConfigurationSupported) {
+            return;
+        }
+        isGpuConfigurationSupported = supported;
+        if (isGpuDetectionEnabled) {
+            Log.i(TAG, supported
+                    ? "Detector configuration runs on the GPU again"
+                    : "GPU detection cannot run " + edgeAlgorithm + " with " + thresholdMode
+                            + " thresholds and kernel " + blurKernel + "; using CPU edge detection");
+        }
+        applyGpuTarget();
+    }
+
     /**
      * Process camera frame with edge detection
      */
@@ -160,8 +364,12 @@ public class MainActivity extends AppCompatActivity {
             byte[] processedData = EdgeDetectionJNI.processFrame(frameData, width, height);
 
             if (processedData != null && glTextureRenderer != null) {
-                // Update OpenGL texture with processed data
-                glTextureRenderer.updateTexture(processedData, width, height);
+                // Hand the result to the GL thread in a pooled frame; the upload happens on the next draw
+                Frame output = framePool.acquire(width, height, Frame.FORMAT_RGBA);
+                output.getBuffer().put(processedData, 0, Frame.byteCount(width, height, Frame.FORMAT_RGBA));
+                output.getBuffer().position(0);
+                glTextureRenderer.updateTexture(output);
+                output.release();
 
                 // Trigger render
                 glSurfaceView.requestRender();
@@ -175,6 +383,176 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Pipeline convert stage: copy what detection needs out of the camera frame into a pooled frame
+     * Runs on the frame scheduler thread, which closes the camera frame afterwards
+     */
+    private Frame convertCameraFrame(CameraFrame frame) {
+        if (!isProcessingEnabled || !isGLInitialized) {
+            return null;
+        }
+
+        Frame converted = null;
+        try {
+            int width = frame.getWidth();
+            int height = frame.getHeight();
+            int level = pyramidPolicy.getLevel();
+
+            if (isLumaOnlyEnabled && level > 0) {
+                // Shrink straight from the Y plane; the copy and the downscale are one pass
+                converted = framePool.acquire(PyramidPolicy.scaledSize(width, level),
+                        PyramidPolicy.scaledSize(height, level), Frame.FORMAT_GRAY);
+                int status = EdgeDetectionJNI.downscale(frame.getYPlane(), frame.getYRowStride(), width, height, 1,
+                        level, converted.getBuffer());
+                if (status != EdgeDetectionJNI.STATUS_OK) {
+                    Log.w(TAG, "Luma downscale failed with status " + status);
+                    converted.release();
+                    return null;
+                }
+            } else if (isLumaOnlyEnabled) {
+                // The packed Y plane is the grayscale input; chroma is never touched
+                converted = framePool.acquire(width, height, Frame.FORMAT_GRAY);
+                frame.copyLumaTo(converted.getBuffer());
+            } else {
+                converted = framePool.acquire(width, height, Frame.FORMAT_RGBA);
+                int status = EdgeDetectionJNI.convertYuvPlanes(
+                        frame.getYPlane(), frame.getUPlane(), frame.getVPlane(),
+                        frame.getYRowStride(), frame.getUvRowStride(), frame.getUvPixelStride(),
+                        width, height, converted.getBuffer());
+                if (status != EdgeDetectionJNI.STATUS_OK) {
+                    Log.w(TAG, "YUV conversion failed with status " + status);
+                    converted.release();
+                    return null;
+                }
+            }
+
+            if (!isLumaOnlyEnabled && level > 0) {
+                Frame scaled = downscaleFrame(converted, level);
+                converted.release();
+                converted = scaled;
+                if (converted == null) {
+                    return null;
+                }
+            }
+
+            converted.setTimestampNs(frame.getTimestampNs());
+            converted.setPyramidLevel(level);
+            return converted;
+
+        } catch (Exception e) {
+            Log.e(TAG, "Error converting camera frame: " + e.getMessage());
+            if (converted != null) {
+                converted.release();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Shrink a full-resolution RGBA frame by pyramid levels into a new pooled frame
+     * @return The reduced frame, or null if the downscale failed
+     */
+    private Frame downscaleFrame(Frame input, int level) {
+        int width = input.getWidth();
+        int height = input.getHeight();
+        Frame scaled = framePool.acquire(PyramidPolicy.scaledSize(width, level),
+                PyramidPolicy.scaledSize(height, level), Frame.FORMAT_RGBA);
+
+        int status = EdgeDetectionJNI.downscale(input.getBuffer(), width * 4, width, height, 4, level,
+                scaled.getBuffer());
+        if (status != EdgeDetectionJNI.STATUS_OK) {
+            Log.w(TAG, "RGBA downscale failed with status " + status);
+            scaled.release();
+            return null;
+        }
+        return scaled;
+    }
+
+    /**
+     * Pipeline detect stage: run native edge detection from a converted frame into a pooled RGBA frame
+     */
+    private Frame detectEdges(Frame input) {
+        Frame output = null;
+        try {
+            int width = input.getWidth();
+            int height = input.getHeight();
+            boolean singleChannel = isSingleChannelOutputEnabled;
+            output = framePool.acquire(width, height, singleChannel ? Frame.FORMAT_GRAY : Frame.FORMAT_RGBA);
+            output.setTimestampNs(input.getTimestampNs());
+            output.setPyramidLevel(input.getPyramidLevel());
+
+            long detectStart = System.nanoTime();
+            int status;
+            if (input.getFormat() == Frame.FORMAT_GRAY) {
+                status = singleChannel
+                        ? EdgeDetectionJNI.processLumaEdges(detectorHandle, input.getBuffer(), width, width, height,
+                                output.getBuffer())
+                        : EdgeDetectionJNI.processLuma(detectorHandle, input.getBuffer(), width, width, height,
+                                output.getBuffer());
+            } else {
+                status = singleChannel
+                        ? EdgeDetectionJNI.processEdges(detectorHandle, input.getBuffer(), output.getBuffer(),
+                                width, height)
+                        : EdgeDetectionJNI.process(detectorHandle, input.getBuffer(), output.getBuffer(),
+                                width, height);
+            }
+
+            if (status != EdgeDetectionJNI.STATUS_OK) {
+                Log.w(TAG, "Native processing failed with status " + status);
+                output.release();
+                return null;
+            }
+
+            pyramidPolicy.recordFrame(input.getPyramidLevel(), System.nanoTime() - detectStart);
+
+            // Hash the result while it is still in cache, so the upload can skip unchanged tiles
+            if (isDirtyTileUploadEnabled) {
+                hashTiles(output);
+            }
+            return output;
+
+        } catch (Exception e) {
+            Log.e(TAG, "Error detecting edges: " + e.getMessage());
+            if (output != null) {
+                output.release();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Attach tile hashes to a detected frame; without them the frame is uploaded whole
+     */
+    private void hashTiles(Frame frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int channels = frame.getFormat() == Frame.FORMAT_GRAY ? 1 : 4;
+        long[] hashes = frame.getTileHashStorage(DirtyTiles.hashCount(width, height));
+
+        int status = EdgeDetectionJNI.hashTiles(frame.getBuffer(), width, height, channels, DirtyTiles.TILE_SIZE,
+                hashes);
+        if (status != EdgeDetectionJNI.STATUS_OK) {
+            Log.w(TAG, "Tile hashing failed with status " + status);
+            return;
+        }
+        frame.setHasTileHashes(true);
+    }
+
+    /**
+     * Pipeline upload stage: queue the processed frame for the GL thread and request a redraw
+     */
+    private void uploadFrame(Frame output) {
+        try {
+            if (glTextureRenderer != null) {
+                glTextureRenderer.updateTexture(output);
+                glSurfaceView.requestRender();
+                updatePerformanceStats();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error uploading frame: " + e.getMessage());
+        }
+    }
+
     /**
      * Toggle edge detection processing on/off
      */
@@ -212,7 +590,12 @@ public class MainActivity extends AppCompatActivity {
      */
     private void updatePerformanceStats() {
         try {
-            String stats = EdgeDetectionJNI.getPerformanceStats();
+            String stats = EdgeDetectionJNI.getDetectorStats(detectorHandle)
+                    + "\n" + frameScheduler.getStatsSummary()
+                    + "\n" + framePipeline.getStatsSummary()
+                    + "\n" + glTextureRenderer.getUploadStatsSummary()
+                    + "\n" + framePool.getStatsSummary()
+                    + "\n" + pyramidPolicy.getStatsSummary();
             runOnUiThread(() -> {
                 if (statsTextView != null) {
                     statsTextView.setText(stats);
@@ -278,6 +661,14 @@ public class MainActivity extends AppCompatActivity {
             glSurfaceView.onResume();
         }
 
+        if (framePipeline != null) {
+            framePipeline.start();
+        }
+
+        if (frameScheduler != null) {
+            frameScheduler.start();
+        }
+
         if (cameraRenderer != null && isCameraInitialized) {
             cameraRenderer.startCamera();
         }
@@ -289,12 +680,27 @@ public class MainActivity extends AppCompatActivity {
         Log.i(TAG, "MainActivity onPause");
 
         if (glSurfaceView != null) {
+            // GLSurfaceView destroys the context on pause, so delete GL objects while it is still current.
+            // Queued events run before the GL thread acknowledges the pause. This also stops the GPU path,
+            // so the camera resumes on the ImageReader until the next context hands out a new texture.
+            if (glTextureRenderer != null) {
+                glSurfaceView.queueEvent(glTextureRenderer::releaseGlResources);
+            }
             glSurfaceView.onPause();
         }
 
         if (cameraRenderer != null) {
             cameraRenderer.stopCamera();
         }
+
+        // Stop the submitting thread first so nothing is queued after the pipeline drains
+        if (frameScheduler != null) {
+            frameScheduler.stop();
+        }
+
+        if (framePipeline != null) {
+            framePipeline.stop();
+        }
     }
 
     @Override
@@ -307,10 +713,25 @@ public class MainActivity extends AppCompatActivity {
             cameraRenderer.cleanup();
         }
 
+        // GL objects went with the context in onPause; only the pending frame is left to recycle
         if (glTextureRenderer != null) {
             glTextureRenderer.cleanup();
         }
 
+        // Report frames that were acquired but never released
+        if (framePool != null) {
+            for (Throwable site : framePool.getOutstandingFrames()) {
+                Log.w(TAG, "Leaked frame", site);
+            }
+        }
+
+        // Normally already stopped in onPause; stopping joins the detect workers that use the detector
+        if (framePipeline != null) {
+            framePipeline.stop();
+        }
+        EdgeDetectionJNI.destroy(detectorHandle);
+        detectorHandle = 0;
+
         // Cleanup native resources
         EdgeDetectionJNI.cleanup();
     }
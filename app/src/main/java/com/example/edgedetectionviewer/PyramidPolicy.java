@@ -0,0 +1,155 @@
+package com.example.edgedetectionviewer;
+
+import java.util.Locale;
+
+/**
+ * Chooses how many pyrDown levels a camera frame is shrunk by before edge detection
+ * Detection cost scales with pixel count, so each level cuts it about four-fold, and the GL quad
+ * scales the smaller edge texture back up to the view. In adaptive mode the level follows the
+ * measured detect time: it steps to a coarser level while frames run over budget, and back to a
+ * finer one once that level's predicted time fits with headroom to spare.
+ * Thread-safe: the convert stage reads the level while detect workers report their times.
+ */
+public class PyramidPolicy {
+
+    // Passed to setFixedLevel to let measured detect times pick the level
+    public static final int ADAPTIVE = -1;
+
+    // Deepest level EdgeDetectionJNI.downscale accepts (1/8 of each dimension);
+    // must match MAX_PYRAMID_LEVEL in image_processor.h
+    public static final int MAX_LEVEL = 3;
+
+    // Weight of each new sample in the smoothed detect time
+    private static final double SMOOTHING = 0.2;
+
+    // Samples needed at a level before it may change again, so frames still in flight from the
+    // previous level are flushed and one slow frame cannot flip the level
+    private static final int SETTLE_FRAMES = 10;
+
+    // A finer level is chosen only if its predicted time is under this share of the budget;
+    // the gap to stepping coarser (over the whole budget) keeps the level from oscillating
+    private static final double FINER_LEVEL_HEADROOM = 0.6;
+
+    // Samples are capped at this multiple of the budget, so one stall (a GC pause, a busy core)
+    // moves the average only a little
+    private static final double MAX_SAMPLE_BUDGETS = 2.0;
+
+    // Pixel count, and so detect time, between adjacent levels
+    private static final double LEVEL_COST_RATIO = 4.0;
+
+    private final long frameBudgetNanos;
+    private final int maxLevel;
+
+    private int fixedLevel = ADAPTIVE;
+    private int level = 0;
+    private double averageNanos = 0.0;
+    private int samplesAtLevel = 0;
+    private long levelChanges = 0;
+
+    /**
+     * @param frameBudgetNanos Detect time per frame that still sustains the target frame rate
+     * @param maxLevel Coarsest level the adaptive mode may choose
+     */
+    public PyramidPolicy(long frameBudgetNanos, int maxLevel) {
+        if (frameBudgetNanos <= 0) {
+            throw new IllegalArgumentException("Frame budget must be positive: " + frameBudgetNanos);
+        }
+        if (maxLevel < 0 || maxLevel > MAX_LEVEL) {
+            throw new IllegalArgumentException("Unsupported maximum pyramid level: " + maxLevel);
+        }
+        this.frameBudgetNanos = frameBudgetNanos;
+        this.maxLevel = maxLevel;
+    }
+
+    /**
+     * Get one dimension of a frame after the given number of halvings (matches native pyrDown)
+     * @param size Full-resolution width or height
+     * @param level Number of halvings (0 = unchanged)
+     */
+    public static int scaledSize(int size, int level) {
+        for (int i = 0; i < level; i++) {
+            size = (size + 1) / 2;
+        }
+        return size;
+    }
+
+    /**
+     * Pin the level, or hand control back to the measured detect times
+     * @param level 0 to the maximum level, or ADAPTIVE
+     */
+    public synchronized void setFixedLevel(int level) {
+        if (level != ADAPTIVE && (level < 0 || level > maxLevel)) {
+            throw new IllegalArgumentException("Pyramid level out of range: " + level);
+        }
+        fixedLevel = level;
+        if (level != ADAPTIVE) {
+            changeLevel(level);
+        }
+    }
+
+    /**
+     * Get the level the next frame should be shrunk by
+     */
+    public synchronized int getLevel() {
+        return level;
+    }
+
+    /**
+     * Report how long detection took for a frame
+     * Samples from a level other than the current one (frames already in flight) are ignored
+     * @param frameLevel Level the frame was detected at
+     * @param detectNanos Detection time in nanoseconds
+     */
+    public synchronized void recordFrame(int frameLevel, long detectNanos) {
+        if (frameLevel != level) {
+            return;
+        }
+
+        double sample = Math.min(detectNanos, frameBudgetNanos * MAX_SAMPLE_BUDGETS);
+        averageNanos = samplesAtLevel == 0
+                ? sample
+                : averageNanos + SMOOTHING * (sample - averageNanos);
+        samplesAtLevel++;
+
+        if (fixedLevel != ADAPTIVE || samplesAtLevel < SETTLE_FRAMES) {
+            return;
+        }
+
+        if (averageNanos > frameBudgetNanos && level < maxLevel) {
+            changeLevel(level + 1);
+        } else if (level > 0 && averageNanos * LEVEL_COST_RATIO < frameBudgetNanos * FINER_LEVEL_HEADROOM) {
+            changeLevel(level - 1);
+        }
+    }
+
+    /**
+     * Get smoothed detect time at the current level in milliseconds
+     */
+    public synchronized double getAverageDetectMs() {
+        return averageNanos / 1e6;
+    }
+
+    /**
+     * Get number of times the level has changed
+     */
+    public synchronized long getLevelChanges() {
+        return levelChanges;
+    }
+
+    /**
+     * Get one-line summary of the current level and detect time
+     */
+    public synchronized String getStatsSummary() {
+        return String.format(Locale.US, "Pyramid: 1/%d scale%s, detect %.1f ms, changes: %d",
+                1 << level, fixedLevel == ADAPTIVE ? " (adaptive)" : "", averageNanos / 1e6, levelChanges);
+    }
+
+    private void changeLevel(int newLevel) {
+        if (newLevel != level) {
+            level = newLevel;
+            levelChanges++;
+        }
+        averageNanos = 0.0;
+        samplesAtLevel = 0;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.edgedetectionviewer;
+
+/**
+ * Puts frames finished out of order by parallel workers back into capture (sequence) order
+ * Frames are held until every earlier sequence number has been emitted or is known to be missing.
+ * At most maxDepth frames are held: beyond that the buffer gives up on the gap, emits the oldest
+ * frame it has, and frames for the skipped sequence numbers are dropped as late when they arrive.
+ * Not thread-safe; owned by the single thread that drains the workers.
+ */
+public class ReorderBuffer {
+
+    // Held frames sorted by sequence number; one extra slot lets an insert overflow before poll() resolves it
+    private final Frame[] pending;
+    private final int maxDepth;
+    private volatile int pendingCount = 0;
+
+    // Sequence number of the next frame to emit
+    private long nextSequence = 0;
+
+    // Statistics (written by the owning thread, readable from any thread)
+    private volatile long emittedFrames = 0;
+    private volatile long lateFrames = 0;
+    private volatile long skippedSequences = 0;
+
+    public ReorderBuffer(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Reorder depth must be at least 1: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+        this.pending = new Frame[maxDepth + 1];
+    }
+
+    /**
+     * Add a finished frame; ownership passes to the buffer
+     * @return false if the frame was late (its slot was already skipped) and has been released
+     */
+    public boolean insert(Frame frame) {
+        long sequence = frame.getSequenceNumber();
+        if (sequence < nextSequence) {
+            lateFrames++;
+            frame.release();
+            return false;
+        }
+
+        if (pendingCount == pending.length) {
+            // Caller inserted again without polling; drop the oldest held frame to make room
+            lateFrames++;
+            skipTo(pending[0].getSequenceNumber() + 1);
+        }
+
+        int index = pendingCount;
+        while (index > 0 && pending[index - 1].getSequenceNumber() > sequence) {
+            pending[index] = pending[index - 1];
+            index--;
+        }
+        pending[index] = frame;
+        pendingCount++;
+        return true;
+    }
+
+    /**
+     * Take the next frame to display, if it can be released in order
+     * @param finishedBelow Every sequence number below this has been finished by its worker, so a frame
+     *                      for it that has not been inserted by now will never arrive
+     * @return the next frame in order (caller takes ownership), or null if it must wait
+     */
+    public Frame poll(long finishedBelow) {
+        if (pendingCount > 0 && pending[0].getSequenceNumber() == nextSequence) {
+            return emitHead();
+        }
+
+        long target = nextSequence;
+        if (finishedBelow > nextSequence) {
+            // Frames for [nextSequence, finishedBelow) failed or were never produced
+            target = finishedBelow;
+        }
+        if (pendingCount > maxDepth) {
+            // Waited as long as allowed for the gap; whatever fills it later is late
+            target = Math.max(target, pending[0].getSequenceNumber());
+        }
+        if (pendingCount > 0) {
+            target = Math.min(target, pending[0].getSequenceNumber());
+        }
+
+        if (target > nextSequence) {
+            skippedSequences += target - nextSequence;
+            nextSequence = target;
+        }
+
+        if (pendingCount > 0 && pending[0].getSequenceNumber() == nextSequence) {
+            return emitHead();
+        }
+        return null;
+    }
+
+    private Frame emitHead() {
+        Frame head = pending[0];
+        System.arraycopy(pending, 1, pending, 0, pendingCount - 1);
+        pending[--pendingCount] = null;
+        nextSequence = head.getSequenceNumber() + 1;
+        emittedFrames++;
+        return head;
+    }
+
+    private void skipTo(long sequence) {
+        while (pendingCount > 0 && pending[0].getSequenceNumber() < sequence) {
+            Frame dropped = pending[0];
+            System.arraycopy(pending, 1, pending, 0, pendingCount - 1);
+            pending[--pendingCount] = null;
+            dropped.release();
+        }
+        if (sequence > nextSequence) {
+            skippedSequences += sequence - nextSequence;
+            nextSequence = sequence;
+        }
+    }
+
+    /**
+     * Release every held frame and start again from the given sequence number
+     */
+    public void reset(long firstSequence) {
+        for (int i = 0; i < pendingCount; i++) {
+            pending[i].release();
+            pending[i] = null;
+        }
+        pendingCount = 0;
+        nextSequence = firstSequence;
+    }
+
+    /**
+     * Get number of frames currently held waiting for an earlier one
+     */
+    public int getDepth() {
+        return pendingCount;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getEmittedFrames() {
+        return emittedFrames;
+    }
+
+    /**
+     * Get number of frames dropped because a later frame had already been emitted
+     */
+    public long getLateFrames() {
+        return lateFrames;
+    }
+
+    /**
+     * Get number of sequence numbers given up on (failed, or not finished within the reorder depth)
+     */
+    public long getSkippedSequences() {
+        return skippedSequences;
+    }
+}
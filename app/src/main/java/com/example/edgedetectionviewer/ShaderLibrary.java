@@ -0,0 +1,398 @@
+package com.example.edgedetectionviewer;
+
+import android.content.Context;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads shaders from assets/shaders and hands out linked programs, each compiled once per GL context
+ * A program is a vertex and a fragment asset plus optional variant names, which are prepended to both
+ * sources as #define lines. Sources are read from assets once and kept across context loss; programs
+ * and their attribute and uniform locations are cached until the context is recreated.
+ * On GLES 3 every linked program's binary is also written to the code cache, in a directory named
+ * after the GL driver, so later cold starts and context recreations load it instead of compiling.
+ * A binary the driver rejects is deleted and the program is compiled from source again.
+ * All methods except the constructor must be called on the GL thread.
+ */
+public class ShaderLibrary {
+
+    private static final String TAG = "ShaderLibrary";
+
+    // Asset directory the shader names are relative to
+    private static final String ASSET_DIRECTORY = "shaders/";
+
+    // Code cache subdirectory holding one directory of program binaries per driver
+    private static final String BINARY_DIRECTORY = "program_binaries";
+
+    // Written at the start of each binary file, so files from an older layout are ignored
+    private static final int BINARY_FILE_MAGIC = 0x45445042;
+
+    /**
+     * A linked program with its attribute and uniform locations looked up on first use
+     */
+    public static final class Program {
+        private final int id;
+        private final Map<String, Integer> locations = new HashMap<>();
+
+        Program(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Get an attribute location, or -1 if the program has no such active attribute
+         */
+        public int attribute(String name) {
+            Integer location = locations.get("a:" + name);
+            if (location == null) {
+                location = GLES20.glGetAttribLocation(id, name);
+                locations.put("a:" + name, location);
+            }
+            return location;
+        }
+
+        /**
+         * Get a uniform location, or -1 if the program has no such active uniform
+         */
+        public int uniform(String name) {
+            Integer location = locations.get("u:" + name);
+            if (location == null) {
+                location = GLES20.glGetUniformLocation(id, name);
+                locations.put("u:" + name, location);
+            }
+            return location;
+        }
+    }
+
+    private final Context context;
+    private final Map<String, String> sources = new HashMap<>();
+    private final Map<String, Program> programs = new HashMap<>();
+
+    // Where the current context's program binaries go, or null when they are not saved
+    private File binaryDirectory;
+
+    // Statistics
+    private int compiledCount = 0;
+    private int binaryLoadCount = 0;
+
+    public ShaderLibrary(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Start over for a new GL context
+     * Call from onSurfaceCreated before asking for programs. Programs from a lost context are forgotten
+     * rather than deleted, and binaries left by a different driver are removed.
+     */
+    public void onContextCreated() {
+        programs.clear();
+
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        boolean isGles3 = version != null && version.startsWith("OpenGL ES 3");
+        int[] formatCount = new int[1];
+        if (isGles3) {
+            GLES20.glGetIntegerv(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, formatCount, 0);
+        }
+        binaryDirectory = null;
+        if (formatCount[0] == 0) {
+            return;
+        }
+
+        // A driver update can make old binaries unloadable, so each driver gets its own directory
+        String driver = GLES20.glGetString(GLES20.GL_VENDOR) + "|" + GLES20.glGetString(GLES20.GL_RENDERER)
+                + "|" + version;
+        File root = new File(context.getCodeCacheDir(), BINARY_DIRECTORY);
+        binaryDirectory = new File(root, hash(driver));
+        File[] drivers = root.listFiles();
+        if (drivers != null) {
+            for (File directory : drivers) {
+                if (!directory.getName().equals(binaryDirectory.getName())) {
+                    deleteRecursively(directory);
+                }
+            }
+        }
+        if (!binaryDirectory.isDirectory() && !binaryDirectory.mkdirs()) {
+            Log.w(TAG, "Cannot create " + binaryDirectory + "; program binaries will not be saved");
+            binaryDirectory = null;
+        }
+    }
+
+    /**
+     * Get the program built from two shader assets, compiling or loading it on first use in this context
+     * @param vertexShader Vertex shader asset under assets/shaders
+     * @param fragmentShader Fragment shader asset under assets/shaders
+     * @param variants Names defined at the top of both sources, selecting #ifdef blocks
+     * @throws IllegalStateException if an asset cannot be read or the program does not compile or link
+     */
+    public Program getProgram(String vertexShader, String fragmentShader, String... variants) {
+        StringBuilder key = new StringBuilder(vertexShader).append('|').append(fragmentShader);
+        for (String variant : variants) {
+            key.append('|').append(variant);
+        }
+        Program program = programs.get(key.toString());
+        if (program != null) {
+            return program;
+        }
+
+        String vertexSource = withVariants(loadSource(vertexShader), variants);
+        String fragmentSource = withVariants(loadSource(fragmentShader), variants);
+
+        // The sources are part of the binary's name, so an edited shader never loads a stale binary
+        File binaryFile = binaryDirectory == null ? null
+                : new File(binaryDirectory, hash(vertexSource + "\u0000" + fragmentSource) + ".bin");
+
+        int id = binaryFile != null ? loadBinary(binaryFile) : 0;
+        if (id != 0) {
+            binaryLoadCount++;
+        } else {
+            id = compileProgram(vertexSource, fragmentSource);
+            compiledCount++;
+            if (binaryFile != null) {
+                saveBinary(id, binaryFile);
+            }
+        }
+
+        program = new Program(id);
+        programs.put(key.toString(), program);
+        return program;
+    }
+
+    /**
+     * Check whether programs of the current context are saved as binaries
+     */
+    public boolean isBinaryCacheEnabled() {
+        return binaryDirectory != null;
+    }
+
+    /**
+     * Get number of programs compiled from source since the library was created
+     */
+    public int getCompiledCount() {
+        return compiledCount;
+    }
+
+    /**
+     * Get number of programs loaded from a saved binary since the library was created
+     */
+    public int getBinaryLoadCount() {
+        return binaryLoadCount;
+    }
+
+    /**
+     * Delete the programs of the current context
+     */
+    public void release() {
+        for (Program program : programs.values()) {
+            GLES20.glDeleteProgram(program.id);
+        }
+        programs.clear();
+    }
+
+    private String loadSource(String name) {
+        String source = sources.get(name);
+        if (source != null) {
+            return source;
+        }
+
+        try (InputStream input = context.getAssets().open(ASSET_DIRECTORY + name)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int count;
+            while ((count = input.read(chunk)) > 0) {
+                bytes.write(chunk, 0, count);
+            }
+            source = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read shader " + name + ": " + e.getMessage());
+        }
+        sources.put(name, source);
+        return source;
+    }
+
+    /**
+     * Insert a #define per variant, after the #version line if the source starts with one
+     */
+    private static String withVariants(String source, String[] variants) {
+        if (variants.length == 0) {
+            return source;
+        }
+
+        StringBuilder defines = new StringBuilder();
+        for (String variant : variants) {
+            defines.append("#define ").append(variant).append('\n');
+        }
+
+        if (source.startsWith("#version")) {
+            int lineEnd = source.indexOf('\n');
+            if (lineEnd < 0) {
+                return source + "\n" + defines;
+            }
+            return source.substring(0, lineEnd + 1) + defines + source.substring(lineEnd + 1);
+        }
+        return defines + source;
+    }
+
+    private int compileProgram(String vertexSource, String fragmentSource) {
+        int vertexShader = compileShader(GLES20.GL_VERTEX_SHADER, vertexSource);
+        int fragmentShader;
+        try {
+            fragmentShader = compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+        } catch (IllegalStateException e) {
+            GLES20.glDeleteShader(vertexShader);
+            throw e;
+        }
+
+        int program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, vertexShader);
+        GLES20.glAttachShader(program, fragmentShader);
+        if (binaryDirectory != null) {
+            GLES30.glProgramParameteri(program, GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GLES20.GL_TRUE);
+        }
+        GLES20.glLinkProgram(program);
+        GLES20.glDeleteShader(vertexShader);
+        GLES20.glDeleteShader(fragmentShader);
+
+        int[] linkStatus = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        if (linkStatus[0] != GLES20.GL_TRUE) {
+            String error = GLES20.glGetProgramInfoLog(program);
+            GLES20.glDeleteProgram(program);
+            throw new IllegalStateException("Failed to link program: " + error);
+        }
+        return program;
+    }
+
+    private static int compileShader(int type, String source) {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+
+        int[] compileStatus = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
+        if (compileStatus[0] != GLES20.GL_TRUE) {
+            String error = GLES20.glGetShaderInfoLog(shader);
+            GLES20.glDeleteShader(shader);
+            throw new IllegalStateException("Failed to compile shader: " + error);
+        }
+        return shader;
+    }
+
+    /**
+     * Create a program from a saved binary
+     * @return The linked program, or 0 if there is no usable binary
+     */
+    private int loadBinary(File file) {
+        if (!file.isFile()) {
+            return 0;
+        }
+
+        int format;
+        byte[] binary;
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            if (input.readInt() != BINARY_FILE_MAGIC) {
+                throw new IOException("not a program binary");
+            }
+            format = input.readInt();
+            binary = new byte[input.readInt()];
+            input.readFully(binary);
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding program binary " + file.getName() + ": " + e.getMessage());
+            file.delete();
+            return 0;
+        }
+
+        int program = GLES20.glCreateProgram();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(binary.length);
+        buffer.put(binary).position(0);
+        GLES30.glProgramBinary(program, format, buffer, binary.length);
+
+        int[] linkStatus = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        if (linkStatus[0] != GLES20.GL_TRUE) {
+            // The driver may reject binaries from another build of itself; compile instead
+            Log.w(TAG, "Driver rejected program binary " + file.getName());
+            GLES20.glDeleteProgram(program);
+            file.delete();
+            return 0;
+        }
+        return program;
+    }
+
+    /**
+     * Write a linked program's binary; failures only cost the next start a compile
+     */
+    private void saveBinary(int program, File file) {
+        int[] length = new int[1];
+        GLES20.glGetProgramiv(program, GLES30.GL_PROGRAM_BINARY_LENGTH, length, 0);
+        if (length[0] <= 0) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length[0]);
+        int[] written = new int[1];
+        int[] format = new int[1];
+        GLES30.glGetProgramBinary(program, length[0], written, 0, format, 0, buffer);
+        if (written[0] <= 0 || GLES20.glGetError() != GLES20.GL_NO_ERROR) {
+            return;
+        }
+
+        byte[] binary = new byte[written[0]];
+        buffer.position(0);
+        buffer.get(binary);
+
+        // Written under a temporary name, so a crash never leaves a truncated binary behind
+        File temporary = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new FileOutputStream(temporary))) {
+            output.writeInt(BINARY_FILE_MAGIC);
+            output.writeInt(format[0]);
+            output.writeInt(binary.length);
+            output.write(binary);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot save program binary: " + e.getMessage());
+            temporary.delete();
+            return;
+        }
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a of a string, as hex, for file and directory names
+     */
+    private static String hash(String text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return Long.toHexString(hash);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
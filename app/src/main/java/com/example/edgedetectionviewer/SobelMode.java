@@ -0,0 +1,25 @@
+package com.example.edgedetectionviewer;
+
+/**
+ * Ways a native detector can compute Sobel gradients and their magnitude
+ * FIXED_LUT gives the same output as FLOAT64 from 16-bit gradients; FIXED_L1 approximates the
+ * magnitude as |gx| + |gy|. The native ids must stay in step with EdgeDetection::SobelMode.
+ */
+public enum SobelMode {
+    FLOAT64(0),
+    FIXED_L1(1),
+    FIXED_LUT(2);
+
+    private final int nativeId;
+
+    SobelMode(int nativeId) {
+        this.nativeId = nativeId;
+    }
+
+    /**
+     * Get the value passed to native code for this mode
+     */
+    public int getNativeId() {
+        return nativeId;
+    }
+}
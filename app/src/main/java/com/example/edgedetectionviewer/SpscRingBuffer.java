@@ -0,0 +1,91 @@
+package com.example.edgedetectionviewer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue for exactly one producer thread and one consumer thread
+ * Neither side blocks: offer() fails when full and poll() returns null when empty,
+ * so the caller decides whether to wait, drop or retry.
+ */
+public class SpscRingBuffer<T> {
+
+    private final Object[] slots;
+    private final int mask;
+
+    // Next slot to read (written by the consumer only)
+    private final AtomicLong head = new AtomicLong(0);
+    // Next slot to write (written by the producer only)
+    private final AtomicLong tail = new AtomicLong(0);
+
+    /**
+     * @param capacity Maximum number of queued items, rounded up to a power of two
+     */
+    public SpscRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new Object[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Add an item at the tail (producer thread only)
+     * @return false if the queue is full
+     */
+    public boolean offer(T item) {
+        if (item == null) {
+            throw new NullPointerException("Null items are not supported");
+        }
+
+        long currentTail = tail.get();
+        if (currentTail - head.get() == slots.length) {
+            return false;
+        }
+
+        slots[(int) currentTail & mask] = item;
+        // Release store: the slot write is visible before the consumer sees the new tail
+        tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    /**
+     * Remove the item at the head (consumer thread only)
+     * @return the oldest item, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long currentHead = head.get();
+        if (currentHead == tail.get()) {
+            return null;
+        }
+
+        int index = (int) currentHead & mask;
+        T item = (T) slots[index];
+        slots[index] = null;
+        head.lazySet(currentHead + 1);
+        return item;
+    }
+
+    /**
+     * Get number of queued items (a snapshot when read from a third thread)
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        if (size < 0) {
+            return 0;
+        }
+        return (int) Math.min(size, slots.length);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+}
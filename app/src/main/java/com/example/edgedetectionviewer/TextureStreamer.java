@@ -0,0 +1,367 @@
+package com.example.edgedetectionviewer;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Ring of textures that frames are streamed into, so an upload never writes the texture being drawn
+ * Each upload goes to the texture after the one last drawn, and only becomes the draw texture once
+ * the upload is issued. The GPU can keep sampling texture N for the previous draw while texture
+ * N + 1 is filled, instead of the driver stalling or copying to resolve the conflict. Every texture
+ * has a persistent direct buffer for callers that hand over heap arrays, and both the texture and the
+ * buffer are reallocated only when the frame size or pixel format changes.
+ * Frames that come with tile hashes only upload the tiles that differ from what their texture
+ * already holds, which for a still or slowly moving camera is a small part of the frame.
+ * All methods must be called on the GL thread.
+ */
+public class TextureStreamer {
+
+    private static final String TAG = "TextureStreamer";
+
+    // Two is enough to avoid writing the drawn texture; a third covers drivers that queue a frame
+    public static final int MIN_TEXTURES = 2;
+    public static final int MAX_TEXTURES = 3;
+
+    /**
+     * One texture of the ring with its storage description and upload buffer
+     */
+    private static final class Slot {
+        int textureId;
+        int width;
+        int height;
+        int format;
+        ByteBuffer uploadBuffer;
+
+        // Tile hashes of the texture's contents, valid when hasTileHashes is set
+        long[] tileHashes;
+        boolean hasTileHashes;
+    }
+
+    private final Slot[] slots;
+
+    // Slot last uploaded, which is what the renderer draws; -1 until the first upload
+    private int drawSlot = -1;
+
+    private final DirtyTiles dirtyTiles = new DirtyTiles();
+
+    // GLES 3 can upload a sub-rectangle straight out of a full frame; GLES 2 needs whole rows
+    private boolean supportsRowLength;
+
+    // Statistics; the byte counts are also read for display from other threads
+    private long uploadCount = 0;
+    private long reallocationCount = 0;
+    private long partialUploadCount = 0;
+    private volatile long uploadedBytes = 0;
+    private volatile long frameBytes = 0;
+
+    /**
+     * @param textureCount Number of textures in the ring, MIN_TEXTURES to MAX_TEXTURES
+     */
+    public TextureStreamer(int textureCount) {
+        if (textureCount < MIN_TEXTURES || textureCount > MAX_TEXTURES) {
+            throw new IllegalArgumentException("Texture count must be " + MIN_TEXTURES + " to " + MAX_TEXTURES
+                    + ": " + textureCount);
+        }
+        slots = new Slot[textureCount];
+        for (int i = 0; i < textureCount; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    /**
+     * Create the ring's textures with no storage yet
+     * Call from onSurfaceCreated; any textures from a lost context are forgotten rather than deleted
+     */
+    public void create() {
+        int[] textures = new int[slots.length];
+        GLES20.glGenTextures(slots.length, textures, 0);
+
+        for (int i = 0; i < slots.length; i++) {
+            Slot slot = slots[i];
+            slot.textureId = textures[i];
+            slot.width = 0;
+            slot.height = 0;
+            slot.format = 0;
+
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, slot.textureId);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        }
+        drawSlot = -1;
+
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        supportsRowLength = version != null && version.startsWith("OpenGL ES 3");
+
+        Log.i(TAG, "Created " + slots.length + " streaming textures");
+    }
+
+    /**
+     * Check whether create has been called and release has not
+     */
+    public boolean isCreated() {
+        return slots[0].textureId != 0;
+    }
+
+    /**
+     * Upload a frame from a heap array, copying it into the persistent buffer of the next texture
+     * @param pixels Pixel bytes, tightly packed
+     * @param width Frame width
+     * @param height Frame height
+     * @param format GL_RGBA or GL_LUMINANCE
+     */
+    public void upload(byte[] pixels, int width, int height, int format) {
+        int byteCount = width * height * bytesPerPixel(format);
+        if (pixels.length < byteCount) {
+            throw new IllegalArgumentException("Expected " + byteCount + " bytes, got " + pixels.length);
+        }
+
+        Slot slot = slots[nextSlot()];
+        if (slot.uploadBuffer == null || slot.uploadBuffer.capacity() < byteCount) {
+            slot.uploadBuffer = ByteBuffer.allocateDirect(byteCount);
+        }
+        slot.uploadBuffer.clear();
+        slot.uploadBuffer.put(pixels, 0, byteCount);
+        slot.uploadBuffer.flip();
+
+        upload(slot.uploadBuffer, width, height, format, null);
+    }
+
+    /**
+     * Upload a frame from a direct buffer into the next texture, which then becomes the draw texture
+     * The buffer is read from position 0 and can be reused as soon as this returns.
+     * @param pixels Pixel bytes, tightly packed
+     * @param width Frame width
+     * @param height Frame height
+     * @param format GL_RGBA or GL_LUMINANCE
+     * @param tileHashes The frame's DirtyTiles hashes, or null to always upload the whole frame
+     */
+    public void upload(ByteBuffer pixels, int width, int height, int format, long[] tileHashes) {
+        if (!isCreated()) {
+            Log.w(TAG, "Cannot upload: textures not created");
+            return;
+        }
+
+        int index = nextSlot();
+        Slot slot = slots[index];
+
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, slot.textureId);
+        boolean reallocated = ensureStorage(slot, width, height, format);
+
+        // Luminance rows are only byte aligned
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, format == GLES20.GL_LUMINANCE ? 1 : 4);
+
+        // The slot is compared with what it held itself, which with a ring is a few frames back
+        boolean partial = false;
+        if (tileHashes != null && !reallocated && slot.hasTileHashes) {
+            dirtyTiles.compare(slot.tileHashes, tileHashes, width, height);
+            partial = !dirtyTiles.isMostlyDirty();
+        }
+
+        int bytesPerPixel = bytesPerPixel(format);
+        if (partial) {
+            uploadedBytes += uploadDirtyTiles(pixels, width, height, format, bytesPerPixel);
+            partialUploadCount++;
+        } else {
+            pixels.position(0);
+            GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, width, height, format,
+                    GLES20.GL_UNSIGNED_BYTE, pixels);
+            uploadedBytes += (long) width * height * bytesPerPixel;
+        }
+        pixels.position(0);
+        frameBytes += (long) width * height * bytesPerPixel;
+
+        rememberTileHashes(slot, tileHashes, DirtyTiles.hashCount(width, height));
+        drawSlot = index;
+        uploadCount++;
+    }
+
+    /**
+     * Upload the tiles marked by the last compare into the bound texture
+     * With GLES 3 each run of changed tiles in a tile row is one sub-rectangle read in place from the
+     * frame. GLES 2 cannot skip bytes between source rows, so there each band of tile rows holding a
+     * change is uploaded at full width, which is still contiguous in the frame.
+     * @return Number of bytes uploaded
+     */
+    private long uploadDirtyTiles(ByteBuffer pixels, int width, int height, int format, int bytesPerPixel) {
+        long bytes = 0;
+        int tileSize = DirtyTiles.TILE_SIZE;
+
+        if (supportsRowLength) {
+            GLES20.glPixelStorei(GLES30.GL_UNPACK_ROW_LENGTH, width);
+            for (int row = 0; row < dirtyTiles.getTilesDown(); row++) {
+                int y = row * tileSize;
+                int runHeight = Math.min(tileSize, height - y);
+                int column = 0;
+                while (column < dirtyTiles.getTilesAcross()) {
+                    if (!dirtyTiles.isDirty(column, row)) {
+                        column++;
+                        continue;
+                    }
+                    int runStart = column;
+                    while (column < dirtyTiles.getTilesAcross() && dirtyTiles.isDirty(column, row)) {
+                        column++;
+                    }
+                    int x = runStart * tileSize;
+                    int runWidth = Math.min(column * tileSize, width) - x;
+                    pixels.position((y * width + x) * bytesPerPixel);
+                    GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, x, y, runWidth, runHeight, format,
+                            GLES20.GL_UNSIGNED_BYTE, pixels);
+                    bytes += (long) runWidth * runHeight * bytesPerPixel;
+                }
+            }
+            GLES20.glPixelStorei(GLES30.GL_UNPACK_ROW_LENGTH, 0);
+        } else {
+            int row = 0;
+            while (row < dirtyTiles.getTilesDown()) {
+                if (!dirtyTiles.isRowDirty(row)) {
+                    row++;
+                    continue;
+                }
+                int bandStart = row;
+                while (row < dirtyTiles.getTilesDown() && dirtyTiles.isRowDirty(row)) {
+                    row++;
+                }
+                int y = bandStart * tileSize;
+                int bandHeight = Math.min(row * tileSize, height) - y;
+                pixels.position(y * width * bytesPerPixel);
+                GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, y, width, bandHeight, format,
+                        GLES20.GL_UNSIGNED_BYTE, pixels);
+                bytes += (long) width * bandHeight * bytesPerPixel;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Record the hashes of what a slot's texture now holds, or forget them if the frame had none
+     */
+    private static void rememberTileHashes(Slot slot, long[] tileHashes, int count) {
+        if (tileHashes == null) {
+            slot.hasTileHashes = false;
+            return;
+        }
+        if (slot.tileHashes == null || slot.tileHashes.length < count) {
+            slot.tileHashes = new long[count];
+        }
+        System.arraycopy(tileHashes, 0, slot.tileHashes, 0, count);
+        slot.hasTileHashes = true;
+    }
+
+    /**
+     * Bind the most recently uploaded texture to the active texture unit
+     * @return false if nothing has been uploaded yet
+     */
+    public boolean bindDrawTexture() {
+        if (drawSlot < 0) {
+            return false;
+        }
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, slots[drawSlot].textureId);
+        return true;
+    }
+
+    /**
+     * Get the most recently uploaded texture, or 0 if nothing has been uploaded yet
+     */
+    public int getDrawTextureId() {
+        return drawSlot < 0 ? 0 : slots[drawSlot].textureId;
+    }
+
+    public long getUploadCount() {
+        return uploadCount;
+    }
+
+    /**
+     * Get the number of times a texture's storage was reallocated for a new size or format
+     */
+    public long getReallocationCount() {
+        return reallocationCount;
+    }
+
+    /**
+     * Get number of uploads that sent only changed tiles
+     */
+    public long getPartialUploadCount() {
+        return partialUploadCount;
+    }
+
+    /**
+     * Get number of bytes sent to GL, after skipping unchanged tiles
+     */
+    public long getUploadedBytes() {
+        return uploadedBytes;
+    }
+
+    /**
+     * Get number of bytes whole-frame uploads would have sent
+     */
+    public long getFrameBytes() {
+        return frameBytes;
+    }
+
+    /**
+     * Get upload byte statistics as a short display string
+     */
+    public String getStatsSummary() {
+        long uploaded = uploadedBytes;
+        long total = frameBytes;
+        float saved = total == 0 ? 0.0f : 100.0f * (total - uploaded) / total;
+        return String.format("Upload bytes: %.1f of %.1f MB (%.0f%% saved), partial %d of %d",
+                uploaded / 1e6, total / 1e6, saved, partialUploadCount, uploadCount);
+    }
+
+    /**
+     * Delete the textures and drop the upload buffers
+     */
+    public void release() {
+        int[] textures = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            textures[i] = slots[i].textureId;
+            slots[i].textureId = 0;
+            slots[i].uploadBuffer = null;
+            slots[i].hasTileHashes = false;
+        }
+        if (textures[0] != 0) {
+            GLES20.glDeleteTextures(textures.length, textures, 0);
+        }
+        drawSlot = -1;
+    }
+
+    /**
+     * Get the slot after the one being drawn, which the GPU is not reading for the current frame
+     */
+    private int nextSlot() {
+        return (drawSlot + 1) % slots.length;
+    }
+
+    /**
+     * Reallocate the bound texture if the frame differs in size or pixel format
+     * @return true if the texture's contents are undefined until the whole frame is uploaded
+     */
+    private boolean ensureStorage(Slot slot, int width, int height, int format) {
+        if (width == slot.width && height == slot.height && format == slot.format) {
+            return false;
+        }
+
+        // A texture that already had storage is being resized, rather than filled for the first time
+        if (slot.width != 0) {
+            reallocationCount++;
+        }
+        slot.width = width;
+        slot.height = height;
+        slot.format = format;
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, format, width, height, 0, format,
+                GLES20.GL_UNSIGNED_BYTE, null);
+        Log.i(TAG, "Texture " + slot.textureId + " storage: " + width + "x" + height
+                + (format == GLES20.GL_LUMINANCE ? " luminance" : " RGBA"));
+        return true;
+    }
+
+    private static int bytesPerPixel(int format) {
+        return format == GLES20.GL_LUMINANCE ? 1 : 4;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.edgedetectionviewer;
+
+/**
+ * Ways a native detector can pick its Canny thresholds
+ * MANUAL uses the configured low and high thresholds; the automatic modes derive them from each
+ * frame's luminance. The native ids must stay in step with EdgeDetection::ThresholdMode.
+ */
+public enum ThresholdMode {
+    MANUAL(0),
+    MEDIAN(1),
+    OTSU(2);
+
+    private final int nativeId;
+
+    ThresholdMode(int nativeId) {
+        this.nativeId = nativeId;
+    }
+
+    /**
+     * Get the value passed to native code for this mode
+     */
+    public int getNativeId() {
+        return nativeId;
+    }
+}
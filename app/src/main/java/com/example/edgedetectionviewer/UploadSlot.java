@@ -0,0 +1,101 @@
+package com.example.edgedetectionviewer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Single-slot handoff of processed frames from worker threads to the GL thread
+ * Any thread may offer a frame; the GL thread takes the newest one when it draws. A frame offered
+ * while an earlier one is still waiting replaces it, and the replaced frame is recycled without ever
+ * being uploaded, so processing that outruns the display costs no extra texture uploads.
+ */
+public class UploadSlot<T> {
+
+    private final AtomicReference<T> pending = new AtomicReference<>();
+    private final FrameScheduler.FrameRecycler<T> recycler;
+
+    // Statistics
+    private final AtomicLong offeredFrames = new AtomicLong();
+    private final AtomicLong takenFrames = new AtomicLong();
+    private final AtomicLong supersededFrames = new AtomicLong();
+
+    public UploadSlot(FrameScheduler.FrameRecycler<T> recycler) {
+        this.recycler = recycler;
+    }
+
+    /**
+     * Make a frame the next one to upload without blocking
+     * Ownership passes to the slot: the frame is either taken or recycled
+     */
+    public void offer(T frame) {
+        if (frame == null) {
+            return;
+        }
+
+        offeredFrames.incrementAndGet();
+        T superseded = pending.getAndSet(frame);
+        if (superseded != null) {
+            supersededFrames.incrementAndGet();
+            recycler.recycle(superseded);
+        }
+    }
+
+    /**
+     * Take the newest frame, or null if nothing arrived since the last take
+     * Ownership passes to the caller, which recycles the frame once it is uploaded
+     */
+    public T take() {
+        T frame = pending.getAndSet(null);
+        if (frame != null) {
+            takenFrames.incrementAndGet();
+        }
+        return frame;
+    }
+
+    /**
+     * Recycle a frame still waiting to be taken
+     */
+    public void clear() {
+        T frame = pending.getAndSet(null);
+        if (frame != null) {
+            recycler.recycle(frame);
+        }
+    }
+
+    /**
+     * Check whether a frame is waiting to be taken
+     */
+    public boolean hasPending() {
+        return pending.get() != null;
+    }
+
+    /**
+     * Get number of frames accepted by offer()
+     */
+    public long getOfferedCount() {
+        return offeredFrames.get();
+    }
+
+    /**
+     * Get number of frames handed to the GL thread
+     */
+    public long getTakenCount() {
+        return takenFrames.get();
+    }
+
+    /**
+     * Get number of frames replaced by a newer one before the GL thread took them
+     */
+    public long getSupersededCount() {
+        return supersededFrames.get();
+    }
+
+    /**
+     * Get slot statistics as a short display string
+     */
+    public String getStatsSummary() {
+        return "Frames uploaded: " + takenFrames.get()
+                + ", superseded: " + supersededFrames.get()
+                + " of " + offeredFrames.get();
+    }
+}
@@ -0,0 +1,411 @@
+package com.example.edgedetectionviewer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * YUV 4:2:0 to RGBA converter
+ * Handles planar (I420), semi-planar (NV12/NV21) and row-padded layouts by honouring
+ * row and pixel strides, and writes into caller-supplied arrays so steady-state
+ * conversion does not allocate. Per-pixel multiplies are replaced by lookup tables.
+ * With a parallelism above 1, rows are split into bands converted on a fixed worker pool.
+ */
+public class YuvConverter {
+
+    // Packed single-array layouts accepted by convert(byte[], ...)
+    public static final int FORMAT_I420 = 0;
+    public static final int FORMAT_NV12 = 1;
+    public static final int FORMAT_NV21 = 2;
+
+    // Bands smaller than this cost more in handoff than they save
+    private static final int MIN_ROWS_PER_BAND = 32;
+
+    // Fixed-point (10-bit) BT.601 coefficients, same as the original per-pixel loop
+    private static final int[] Y_TABLE = new int[256];
+    private static final int[] RV_TABLE = new int[256];
+    private static final int[] GU_TABLE = new int[256];
+    private static final int[] GV_TABLE = new int[256];
+    private static final int[] BU_TABLE = new int[256];
+
+    // Saturation lookup indexed by (fixed-point value >> 10) + CLAMP_OFFSET
+    // Channel sums span roughly [-259, 534] after the shift, so [-384, 640) covers them
+    private static final int CLAMP_OFFSET = 384;
+    private static final byte[] CLAMP_TABLE = new byte[1024];
+
+    static {
+        for (int i = 0; i < CLAMP_TABLE.length; i++) {
+            int value = i - CLAMP_OFFSET;
+            CLAMP_TABLE[i] = (byte) (value < 0 ? 0 : (value > 255 ? 255 : value));
+        }
+
+        for (int i = 0; i < 256; i++) {
+            int y = i - 16;
+            if (y < 0) y = 0;
+            int c = i - 128;
+
+            Y_TABLE[i] = 1192 * y;
+            RV_TABLE[i] = 1634 * c;
+            GU_TABLE[i] = 400 * c;
+            GV_TABLE[i] = 833 * c;
+            BU_TABLE[i] = 2066 * c;
+        }
+    }
+
+    // One band per worker (band 0 runs on the calling thread), each with its own row scratch
+    private BandTask[] bands;
+    private ExecutorService workerPool;
+    private int parallelism;
+
+    // Cached wrapper for packed input arrays
+    private ByteBuffer packedWrapper;
+
+    public YuvConverter() {
+        this(1);
+    }
+
+    /**
+     * @param parallelism Number of row bands converted concurrently (1 = serial on the calling thread)
+     */
+    public YuvConverter(int parallelism) {
+        setParallelism(parallelism);
+    }
+
+    /**
+     * Change the number of concurrent row bands
+     * Recreates the worker pool, so call this between frames rather than per frame
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        if (parallelism == this.parallelism) {
+            return;
+        }
+
+        release();
+        this.parallelism = parallelism;
+
+        bands = new BandTask[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            bands[i] = new BandTask();
+        }
+
+        if (parallelism > 1) {
+            workerPool = Executors.newFixedThreadPool(parallelism - 1, new ThreadFactory() {
+                private int count = 0;
+
+                @Override
+                public synchronized Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "YuvConverter-" + (count++));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    public synchronized int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Stop the worker pool; the converter falls back to serial conversion until setParallelism is called
+     */
+    public synchronized void release() {
+        if (workerPool != null) {
+            workerPool.shutdown();
+            workerPool = null;
+        }
+        parallelism = 1;
+        bands = new BandTask[]{new BandTask()};
+    }
+
+    /**
+     * Convert a packed YUV 4:2:0 array (no row padding) to RGBA
+     * @param yuv Input data in the given format
+     * @param format FORMAT_I420, FORMAT_NV12 or FORMAT_NV21
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @param rgba Output array of at least width * height * 4 bytes
+     */
+    public synchronized void convert(byte[] yuv, int format, int width, int height, byte[] rgba) {
+        int frameSize = width * height;
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+
+        if (yuv.length < frameSize + 2 * chromaWidth * chromaHeight) {
+            throw new IllegalArgumentException("YUV input too small: " + yuv.length
+                    + " bytes for " + width + "x" + height);
+        }
+
+        if (packedWrapper == null || packedWrapper.array() != yuv) {
+            packedWrapper = ByteBuffer.wrap(yuv);
+        }
+
+        switch (format) {
+            case FORMAT_I420:
+                convertPlanes(packedWrapper, 0, width,
+                        packedWrapper, frameSize,
+                        packedWrapper, frameSize + chromaWidth * chromaHeight,
+                        chromaWidth, 1, width, height, rgba);
+                break;
+            case FORMAT_NV12:
+                convertPlanes(packedWrapper, 0, width,
+                        packedWrapper, frameSize,
+                        packedWrapper, frameSize + 1,
+                        chromaWidth * 2, 2, width, height, rgba);
+                break;
+            case FORMAT_NV21:
+                convertPlanes(packedWrapper, 0, width,
+                        packedWrapper, frameSize + 1,
+                        packedWrapper, frameSize,
+                        chromaWidth * 2, 2, width, height, rgba);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown YUV format: " + format);
+        }
+    }
+
+    /**
+     * Convert separate YUV_420_888 planes (as delivered by Camera2) to RGBA
+     * Works for any row padding and for both planar and interleaved chroma
+     * @param yPlane Y plane buffer
+     * @param uPlane U plane buffer
+     * @param vPlane V plane buffer
+     * @param yRowStride Bytes between luma rows
+     * @param uvRowStride Bytes between chroma rows
+     * @param uvPixelStride Bytes between chroma samples (1 = planar, 2 = semi-planar)
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @param rgba Output array of at least width * height * 4 bytes
+     */
+    public void convert(ByteBuffer yPlane, ByteBuffer uPlane, ByteBuffer vPlane,
+                        int yRowStride, int uvRowStride, int uvPixelStride,
+                        int width, int height, byte[] rgba) {
+        convertPlanes(yPlane, yPlane.position(), yRowStride,
+                uPlane, uPlane.position(),
+                vPlane, vPlane.position(),
+                uvRowStride, uvPixelStride, width, height, rgba);
+    }
+
+    /**
+     * Split the frame into row bands and convert them, in parallel when a worker pool is available
+     */
+    private synchronized void convertPlanes(ByteBuffer yBuf, int yOffset, int yRowStride,
+                                            ByteBuffer uBuf, int uOffset,
+                                            ByteBuffer vBuf, int vOffset,
+                                            int uvRowStride, int uvPixelStride,
+                                            int width, int height, byte[] rgba) {
+        if (rgba.length < width * height * 4) {
+            throw new IllegalArgumentException("RGBA output too small: " + rgba.length
+                    + " bytes for " + width + "x" + height);
+        }
+
+        int bandCount = Math.min(parallelism, Math.max(1, height / MIN_ROWS_PER_BAND));
+
+        if (bandCount == 1) {
+            BandTask band = bands[0];
+            band.set(yBuf, yOffset, yRowStride, uBuf, uOffset, vBuf, vOffset,
+                    uvRowStride, uvPixelStride, width, 0, height, rgba);
+            runPreservingPositions(band, yBuf, uBuf, vBuf);
+            return;
+        }
+
+        // Band edges fall on even rows so every band starts on a fresh chroma row
+        int rowsPerBand = ((height / bandCount) + 1) & ~1;
+        CountDownLatch done = new CountDownLatch(bandCount - 1);
+
+        for (int b = 0; b < bandCount; b++) {
+            int rowStart = b * rowsPerBand;
+            int rowEnd = (b == bandCount - 1) ? height : Math.min(height, rowStart + rowsPerBand);
+
+            // Workers read through their own views so buffer positions are not shared
+            BandTask band = bands[b];
+            band.set(yBuf.duplicate(), yOffset, yRowStride,
+                    uBuf.duplicate(), uOffset, vBuf.duplicate(), vOffset,
+                    uvRowStride, uvPixelStride, width, rowStart, rowEnd, rgba);
+            band.done = (b == 0) ? null : done;
+
+            if (b > 0) {
+                workerPool.execute(band);
+            }
+        }
+
+        bands[0].run();
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for conversion bands", e);
+        }
+
+        for (int b = 0; b < bandCount; b++) {
+            Throwable failure = bands[b].takeFailure();
+            if (failure != null) {
+                throw new IllegalStateException("YUV conversion band " + b + " failed", failure);
+            }
+        }
+    }
+
+    /**
+     * Serial path: convert directly through the caller's buffers and restore their positions
+     */
+    private static void runPreservingPositions(BandTask band, ByteBuffer yBuf, ByteBuffer uBuf, ByteBuffer vBuf) {
+        int yStart = yBuf.position();
+        int uStart = uBuf.position();
+        int vStart = vBuf.position();
+
+        try {
+            band.convertRows();
+        } finally {
+            // Leave caller buffers as we found them
+            yBuf.position(yStart);
+            uBuf.position(uStart);
+            vBuf.position(vStart);
+        }
+    }
+
+    /**
+     * Converts a contiguous range of rows; reused across frames together with its row scratch
+     */
+    private static final class BandTask implements Runnable {
+        private ByteBuffer yBuf;
+        private ByteBuffer uBuf;
+        private ByteBuffer vBuf;
+        private int yOffset;
+        private int uOffset;
+        private int vOffset;
+        private int yRowStride;
+        private int uvRowStride;
+        private int uvPixelStride;
+        private int width;
+        private int rowStart;
+        private int rowEnd;
+        private byte[] rgba;
+
+        private byte[] yRow = new byte[0];
+        private byte[] uRow = new byte[0];
+        private byte[] vRow = new byte[0];
+
+        private CountDownLatch done;
+        private Throwable failure;
+
+        void set(ByteBuffer yBuf, int yOffset, int yRowStride,
+                 ByteBuffer uBuf, int uOffset, ByteBuffer vBuf, int vOffset,
+                 int uvRowStride, int uvPixelStride, int width, int rowStart, int rowEnd, byte[] rgba) {
+            this.yBuf = yBuf;
+            this.yOffset = yOffset;
+            this.yRowStride = yRowStride;
+            this.uBuf = uBuf;
+            this.uOffset = uOffset;
+            this.vBuf = vBuf;
+            this.vOffset = vOffset;
+            this.uvRowStride = uvRowStride;
+            this.uvPixelStride = uvPixelStride;
+            this.width = width;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+            this.rgba = rgba;
+            this.failure = null;
+        }
+
+        @Override
+        public void run() {
+            try {
+                convertRows();
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                // Drop references to the frame so buffers can be released between frames
+                yBuf = null;
+                uBuf = null;
+                vBuf = null;
+                rgba = null;
+                if (done != null) {
+                    done.countDown();
+                }
+            }
+        }
+
+        Throwable takeFailure() {
+            Throwable t = failure;
+            failure = null;
+            return t;
+        }
+
+        void convertRows() {
+            int chromaRowLength = ((width + 1) / 2 - 1) * uvPixelStride + 1;
+            ensureRowCapacity(width, chromaRowLength);
+
+            int out = rowStart * width * 4;
+            for (int j = rowStart; j < rowEnd; j++) {
+                readRow(yBuf, yOffset + j * yRowStride, yRow, width);
+
+                if ((j & 1) == 0 || j == rowStart) {
+                    int chromaRowOffset = (j >> 1) * uvRowStride;
+                    readRow(uBuf, uOffset + chromaRowOffset, uRow, chromaRowLength);
+                    readRow(vBuf, vOffset + chromaRowOffset, vRow, chromaRowLength);
+                }
+
+                // Two luma samples share one chroma sample
+                int c = 0;
+                int i = 0;
+                for (; i + 1 < width; i += 2, c += uvPixelStride) {
+                    int u = uRow[c] & 0xff;
+                    int v = vRow[c] & 0xff;
+                    int r = RV_TABLE[v];
+                    int g = -GV_TABLE[v] - GU_TABLE[u];
+                    int b = BU_TABLE[u];
+
+                    int y = Y_TABLE[yRow[i] & 0xff];
+                    rgba[out] = CLAMP_TABLE[((y + r) >> 10) + CLAMP_OFFSET];     // R
+                    rgba[out + 1] = CLAMP_TABLE[((y + g) >> 10) + CLAMP_OFFSET]; // G
+                    rgba[out + 2] = CLAMP_TABLE[((y + b) >> 10) + CLAMP_OFFSET]; // B
+                    rgba[out + 3] = (byte) 255;                                  // A
+
+                    y = Y_TABLE[yRow[i + 1] & 0xff];
+                    rgba[out + 4] = CLAMP_TABLE[((y + r) >> 10) + CLAMP_OFFSET];
+                    rgba[out + 5] = CLAMP_TABLE[((y + g) >> 10) + CLAMP_OFFSET];
+                    rgba[out + 6] = CLAMP_TABLE[((y + b) >> 10) + CLAMP_OFFSET];
+                    rgba[out + 7] = (byte) 255;
+                    out += 8;
+                }
+
+                if (i < width) {
+                    // Odd width: last column has its own chroma sample
+                    int u = uRow[c] & 0xff;
+                    int v = vRow[c] & 0xff;
+                    int y = Y_TABLE[yRow[i] & 0xff];
+                    rgba[out] = CLAMP_TABLE[((y + RV_TABLE[v]) >> 10) + CLAMP_OFFSET];
+                    rgba[out + 1] = CLAMP_TABLE[((y - GV_TABLE[v] - GU_TABLE[u]) >> 10) + CLAMP_OFFSET];
+                    rgba[out + 2] = CLAMP_TABLE[((y + BU_TABLE[u]) >> 10) + CLAMP_OFFSET];
+                    rgba[out + 3] = (byte) 255;
+                    out += 4;
+                }
+            }
+        }
+
+        private void ensureRowCapacity(int lumaLength, int chromaLength) {
+            if (yRow.length < lumaLength) {
+                yRow = new byte[lumaLength];
+            }
+            if (uRow.length < chromaLength) {
+                uRow = new byte[chromaLength];
+                vRow = new byte[chromaLength];
+            }
+        }
+    }
+
+    /**
+     * Bulk copy one row from a buffer into a scratch array
+     * The last row of a plane may be shorter than the stride, so only the needed bytes are read
+     */
+    private static void readRow(ByteBuffer src, int offset, byte[] dst, int length) {
+        src.position(offset);
+        src.get(dst, 0, length);
+    }
+}
@@ -0,0 +1,132 @@
+//
+// Times each kernel table on a 1280x720 frame's worth of rows and prints the speedup over scalar
+//
+#include "simd_kernels.h"
+
+#include <algorithm>
+#include <chrono>
+#include <cstdio>
+#include <random>
+#include <vector>
+
+using namespace EdgeDetection;
+
+namespace {
+
+    const int WIDTH = 1280;
+    const int HEIGHT = 720;
+    const int KERNEL_SIZE = 5;
+    const int REPEATS = 30;
+
+    // Q8 taps for a 5-tap Gaussian with sigma 1.4
+    const int TAPS[KERNEL_SIZE] = {31, 61, 72, 61, 31};
+
+    struct Inputs {
+        std::vector<uint8_t> rgba;
+        std::vector<uint8_t> gray;
+        std::vector<uint16_t> hblur;
+        std::vector<short> dx;
+        std::vector<short> dy;
+        std::vector<int> mag;
+
+        Inputs() : rgba(4 * WIDTH), gray(WIDTH + KERNEL_SIZE + 2), hblur(KERNEL_SIZE * WIDTH),
+                   dx(WIDTH), dy(WIDTH), mag(3 * (WIDTH + 2)) {
+            std::mt19937 rng(20);
+            std::uniform_int_distribution<int> byte(0, 255);
+            for (uint8_t& value : rgba) value = static_cast<uint8_t>(byte(rng));
+            for (uint8_t& value : gray) value = static_cast<uint8_t>(byte(rng));
+            for (uint16_t& value : hblur) value = static_cast<uint16_t>(byte(rng) * 256);
+            std::uniform_int_distribution<int> gradient(-1020, 1020);
+            for (short& value : dx) value = static_cast<short>(gradient(rng));
+            for (short& value : dy) value = static_cast<short>(gradient(rng));
+            for (int& value : mag) value = std::uniform_int_distribution<int>(0, 2040)(rng);
+        }
+    };
+
+    /**
+     * @brief Best of REPEATS runs of one frame's worth of calls, in microseconds
+     */
+    template<typename Body>
+    double bestMicros(Body body) {
+        double best = 1e30;
+        for (int repeat = 0; repeat < REPEATS; repeat++) {
+            const auto start = std::chrono::steady_clock::now();
+            for (int row = 0; row < HEIGHT; row++) {
+                body();
+            }
+            const std::chrono::duration<double, std::micro> elapsed = std::chrono::steady_clock::now() - start;
+            best = std::min(best, elapsed.count());
+        }
+        return best;
+    }
+
+    volatile int sink;
+
+    void timeKernels(const SimdKernels& kernels, const Inputs& in, double* micros) {
+        std::vector<uint8_t> gray(WIDTH);
+        std::vector<uint16_t> hblur(WIDTH);
+        std::vector<uint8_t> blurred(WIDTH);
+        std::vector<short> dx(WIDTH), dy(WIDTH);
+        std::vector<int> mag(WIDTH);
+        std::vector<uint8_t> map(WIDTH);
+        const uint16_t* rows[KERNEL_SIZE];
+        for (int i = 0; i < KERNEL_SIZE; i++) {
+            rows[i] = in.hblur.data() + i * WIDTH;
+        }
+        const int magStep = WIDTH + 2;
+
+        micros[0] = bestMicros([&] { kernels.rgbaToGray(in.rgba.data(), gray.data(), WIDTH); });
+        micros[1] = bestMicros([&] {
+            kernels.horizontalBlur(in.gray.data(), hblur.data(), WIDTH, TAPS, KERNEL_SIZE);
+        });
+        micros[2] = bestMicros([&] { kernels.verticalBlur(rows, TAPS, KERNEL_SIZE, blurred.data(), WIDTH); });
+        micros[3] = bestMicros([&] {
+            kernels.sobelRow(in.gray.data(), in.gray.data() + 1, in.gray.data() + 2, dx.data(), dy.data(),
+                             mag.data(), WIDTH);
+        });
+        micros[4] = bestMicros([&] {
+            sink = kernels.suppressRow(in.dx.data(), in.dy.data(), in.mag.data() + magStep + 1,
+                                       in.mag.data() + 1, in.mag.data() + 2 * magStep + 1, 200, 600,
+                                       map.data(), WIDTH);
+        });
+    }
+
+} // namespace
+
+int main() {
+    const char* names[] = {"rgbaToGray", "horizontalBlur", "verticalBlur", "sobelRow", "suppressRow"};
+    const int kernelCount = 5;
+    const Inputs inputs;
+
+    std::printf("%dx%d frame, %d-tap blur, best of %d runs, selected: %s\n\n", WIDTH, HEIGHT, KERNEL_SIZE,
+                REPEATS, simdKernels().name);
+    std::printf("%-10s", "isa");
+    for (const char* name : names) {
+        std::printf("%22s", name);
+    }
+    std::printf("%22s\n", "total");
+
+    double scalarMicros[kernelCount + 1] = {};
+    for (int i = 0; i < SIMD_LEVEL_COUNT; i++) {
+        const SimdKernels* kernels = simdKernelsFor(static_cast<SimdLevel>(i));
+        if (!kernels) {
+            continue;
+        }
+
+        double micros[kernelCount + 1] = {};
+        timeKernels(*kernels, inputs, micros);
+        for (int k = 0; k < kernelCount; k++) {
+            micros[kernelCount] += micros[k];
+        }
+        if (kernels->level == SimdLevel::Scalar) {
+            std::copy(micros, micros + kernelCount + 1, scalarMicros);
+        }
+
+        std::printf("%-10s", kernels->name);
+        for (int k = 0; k <= kernelCount; k++) {
+            std::printf("%12.0f us %5.1fx", micros[k], scalarMicros[k] / micros[k]);
+        }
+        std::printf("\n");
+    }
+    return 0;
+}
@@ -0,0 +1,185 @@
+//
+// Checks every SIMD kernel table this CPU supports against the scalar one, bit for bit
+//
+#include "simd_kernels.h"
+
+#include <cstdio>
+#include <cstring>
+#include <random>
+#include <vector>
+
+using namespace EdgeDetection;
+
+namespace {
+
+    // Widths around every vector length, so the tails after the last full vector are covered
+    const int WIDTHS[] = {1, 2, 3, 4, 5, 7, 8, 9, 10, 15, 16, 17, 18, 31, 32, 33, 34, 63, 64, 65, 333, 640};
+    const int ROUNDS = 20;
+
+    std::mt19937 rng(20);
+    int failures = 0;
+
+    int randomInt(int low, int high) {
+        return std::uniform_int_distribution<int>(low, high)(rng);
+    }
+
+    template<typename T>
+    std::vector<T> randomValues(size_t count, int low, int high) {
+        std::vector<T> values(count);
+        for (T& value : values) {
+            value = static_cast<T>(randomInt(low, high));
+        }
+        return values;
+    }
+
+    /**
+     * @brief Random non-negative taps summing to 256, like GaussianKernelQ8
+     */
+    std::vector<int> randomTaps(int size) {
+        std::vector<int> taps(size, 0);
+        for (int remaining = 256; remaining > 0; remaining--) {
+            taps[randomInt(0, size - 1)]++;
+        }
+        return taps;
+    }
+
+    template<typename T>
+    void expectEqual(const SimdKernels& kernels, const char* kernel, int width, const std::vector<T>& expected,
+                     const std::vector<T>& actual) {
+        if (std::memcmp(expected.data(), actual.data(), expected.size() * sizeof(T)) != 0) {
+            std::printf("FAIL %s %s width %d\n", kernels.name, kernel, width);
+            failures++;
+        }
+    }
+
+    void checkRgbaToGray(const SimdKernels& kernels) {
+        for (int width : WIDTHS) {
+            for (int round = 0; round < ROUNDS; round++) {
+                const std::vector<uint8_t> rgba = randomValues<uint8_t>(4 * static_cast<size_t>(width), 0, 255);
+                std::vector<uint8_t> expected(width);
+                std::vector<uint8_t> actual(width);
+                scalarKernels().rgbaToGray(rgba.data(), expected.data(), width);
+                kernels.rgbaToGray(rgba.data(), actual.data(), width);
+                expectEqual(kernels, "rgbaToGray", width, expected, actual);
+            }
+        }
+    }
+
+    void checkHorizontalBlur(const SimdKernels& kernels) {
+        for (int size = 3; size <= MAX_FUSED_KERNEL; size += 2) {
+            for (int width : WIDTHS) {
+                for (int round = 0; round < ROUNDS; round++) {
+                    const std::vector<int> taps = randomTaps(size);
+                    const std::vector<uint8_t> src = randomValues<uint8_t>(width + size - 1, 0, 255);
+                    std::vector<uint16_t> expected(width);
+                    std::vector<uint16_t> actual(width);
+                    scalarKernels().horizontalBlur(src.data(), expected.data(), width, taps.data(), size);
+                    kernels.horizontalBlur(src.data(), actual.data(), width, taps.data(), size);
+                    expectEqual(kernels, "horizontalBlur", width, expected, actual);
+                }
+            }
+        }
+    }
+
+    void checkVerticalBlur(const SimdKernels& kernels) {
+        for (int size = 3; size <= MAX_FUSED_KERNEL; size += 2) {
+            for (int width : WIDTHS) {
+                for (int round = 0; round < ROUNDS; round++) {
+                    const std::vector<int> taps = randomTaps(size);
+                    // Horizontal blur outputs are at most 255 * 256
+                    std::vector<std::vector<uint16_t>> rows;
+                    std::vector<const uint16_t*> rowPointers;
+                    for (int i = 0; i < size; i++) {
+                        rows.push_back(randomValues<uint16_t>(width, 0, 255 * 256));
+                        rowPointers.push_back(rows.back().data());
+                    }
+                    std::vector<uint8_t> expected(width);
+                    std::vector<uint8_t> actual(width);
+                    scalarKernels().verticalBlur(rowPointers.data(), taps.data(), size, expected.data(), width);
+                    kernels.verticalBlur(rowPointers.data(), taps.data(), size, actual.data(), width);
+                    expectEqual(kernels, "verticalBlur", width, expected, actual);
+                }
+            }
+        }
+    }
+
+    void checkSobelRow(const SimdKernels& kernels) {
+        for (int width : WIDTHS) {
+            if (width < 3) {
+                continue;
+            }
+            for (int round = 0; round < ROUNDS; round++) {
+                const std::vector<uint8_t> above = randomValues<uint8_t>(width, 0, 255);
+                const std::vector<uint8_t> centre = randomValues<uint8_t>(width, 0, 255);
+                const std::vector<uint8_t> below = randomValues<uint8_t>(width, 0, 255);
+                std::vector<short> expectedDx(width, 0), expectedDy(width, 0), actualDx(width, 0), actualDy(width, 0);
+                std::vector<int> expectedMag(width, 0), actualMag(width, 0);
+                scalarKernels().sobelRow(above.data(), centre.data(), below.data(), expectedDx.data(),
+                                         expectedDy.data(), expectedMag.data(), width);
+                kernels.sobelRow(above.data(), centre.data(), below.data(), actualDx.data(), actualDy.data(),
+                                 actualMag.data(), width);
+                expectEqual(kernels, "sobelRow dx", width, expectedDx, actualDx);
+                expectEqual(kernels, "sobelRow dy", width, expectedDy, actualDy);
+                expectEqual(kernels, "sobelRow mag", width, expectedMag, actualMag);
+            }
+        }
+    }
+
+    void checkSuppressRow(const SimdKernels& kernels) {
+        // A narrow magnitude range makes ties common, which is where > and >= differ
+        const int magRanges[] = {8, 2040};
+        for (int magRange : magRanges) {
+            for (int width : WIDTHS) {
+                for (int round = 0; round < ROUNDS; round++) {
+                    const std::vector<short> dx = randomValues<short>(width, -1020, 1020);
+                    const std::vector<short> dy = randomValues<short>(width, -1020, 1020);
+                    // Magnitude rows are read one element either side
+                    const std::vector<int> mag = randomValues<int>(width + 2, 0, magRange);
+                    const std::vector<int> magPrev = randomValues<int>(width + 2, 0, magRange);
+                    const std::vector<int> magNext = randomValues<int>(width + 2, 0, magRange);
+                    const int low = randomInt(0, magRange / 2);
+                    const int high = randomInt(low, magRange);
+
+                    std::vector<uint8_t> expected(width);
+                    std::vector<uint8_t> actual(width);
+                    const int expectedStrong = scalarKernels().suppressRow(
+                            dx.data(), dy.data(), mag.data() + 1, magPrev.data() + 1, magNext.data() + 1,
+                            low, high, expected.data(), width);
+                    const int actualStrong = kernels.suppressRow(
+                            dx.data(), dy.data(), mag.data() + 1, magPrev.data() + 1, magNext.data() + 1,
+                            low, high, actual.data(), width);
+                    expectEqual(kernels, "suppressRow", width, expected, actual);
+                    if (expectedStrong != actualStrong) {
+                        std::printf("FAIL %s suppressRow strong count %d != %d, width %d\n", kernels.name,
+                                    actualStrong, expectedStrong, width);
+                        failures++;
+                    }
+                }
+            }
+        }
+    }
+
+} // namespace
+
+int main() {
+    std::printf("Selected kernels: %s\n", simdKernels().name);
+
+    for (int i = 0; i < SIMD_LEVEL_COUNT; i++) {
+        const SimdLevel level = static_cast<SimdLevel>(i);
+        const SimdKernels* kernels = simdKernelsFor(level);
+        if (!kernels) {
+            std::printf("%s: not supported, skipped\n", simdLevelName(level));
+            continue;
+        }
+
+        const int before = failures;
+        checkRgbaToGray(*kernels);
+        checkHorizontalBlur(*kernels);
+        checkVerticalBlur(*kernels);
+        checkSobelRow(*kernels);
+        checkSuppressRow(*kernels);
+        std::printf("%s: %s\n", kernels->name, failures == before ? "bit-exact" : "MISMATCH");
+    }
+
+    return failures == 0 ? 0 : 1;
+}
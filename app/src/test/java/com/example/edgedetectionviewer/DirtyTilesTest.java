@@ -0,0 +1,89 @@
+package com.example.edgedetectionviewer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DirtyTilesTest {
+
+    // 4 x 3 tiles, the last column and row partial
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 130;
+
+    private static long[] hashes(int count) {
+        long[] hashes = new long[count];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = 1000 + i;
+        }
+        return hashes;
+    }
+
+    @Test
+    public void tileCount_includesPartialTiles() {
+        assertEquals(1, DirtyTiles.tileCount(1));
+        assertEquals(1, DirtyTiles.tileCount(64));
+        assertEquals(2, DirtyTiles.tileCount(65));
+        assertEquals(12, DirtyTiles.hashCount(WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void compare_marksOnlyChangedTiles() {
+        DirtyTiles tiles = new DirtyTiles();
+        long[] previous = hashes(12);
+        long[] current = hashes(12);
+        current[5] = -1;
+        current[11] = -2;
+
+        assertEquals(2, tiles.compare(previous, current, WIDTH, HEIGHT));
+        assertEquals(4, tiles.getTilesAcross());
+        assertEquals(3, tiles.getTilesDown());
+        assertTrue(tiles.isDirty(1, 1));
+        assertTrue(tiles.isDirty(3, 2));
+        assertFalse(tiles.isDirty(0, 0));
+        assertFalse(tiles.isRowDirty(0));
+        assertTrue(tiles.isRowDirty(1));
+        assertFalse(tiles.isMostlyDirty());
+    }
+
+    @Test
+    public void identicalFrames_haveNoDirtyTiles() {
+        DirtyTiles tiles = new DirtyTiles();
+        assertEquals(0, tiles.compare(hashes(12), hashes(12), WIDTH, HEIGHT));
+        assertFalse(tiles.isMostlyDirty());
+    }
+
+    @Test
+    public void moreThanThresholdChanged_isMostlyDirty() {
+        DirtyTiles tiles = new DirtyTiles();
+        long[] previous = hashes(12);
+        long[] current = hashes(12);
+
+        // Exactly half changed still goes tile by tile
+        for (int i = 0; i < 6; i++) {
+            current[i] = -i - 1;
+        }
+        tiles.compare(previous, current, WIDTH, HEIGHT);
+        assertFalse(tiles.isMostlyDirty());
+
+        current[6] = -7;
+        tiles.compare(previous, current, WIDTH, HEIGHT);
+        assertTrue(tiles.isMostlyDirty());
+    }
+
+    @Test
+    public void compare_reusesStateAcrossSizes() {
+        DirtyTiles tiles = new DirtyTiles();
+        long[] current = hashes(12);
+        current[0] = -1;
+        tiles.compare(hashes(12), current, WIDTH, HEIGHT);
+
+        // A smaller frame afterwards only looks at its own tiles
+        assertEquals(0, tiles.compare(hashes(1), hashes(1), 64, 64));
+        assertFalse(tiles.isDirty(0, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compare_rejectsTooFewHashes() {
+        new DirtyTiles().compare(hashes(11), hashes(12), WIDTH, HEIGHT);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.edgedetectionviewer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the packed edge mask layout, packing and unpacking
+ */
+public class EdgeMaskTest {
+
+    @Test
+    public void sizes_padRowsToWholeWords() {
+        assertEquals(1, EdgeMask.wordsPerRow(1));
+        assertEquals(1, EdgeMask.wordsPerRow(32));
+        assertEquals(2, EdgeMask.wordsPerRow(33));
+        assertEquals(11, EdgeMask.wordsPerRow(333));
+        assertEquals(640 * 480 / 8, EdgeMask.byteCount(640, 480));
+        assertEquals(44 * 3, EdgeMask.byteCount(333, 3));
+    }
+
+    @Test
+    public void pixelX_isBitOfLittleEndianWord() {
+        int width = 64;
+        byte[] edges = new byte[width];
+        edges[0] = (byte) 255;
+        edges[5] = (byte) 128;
+        edges[6] = (byte) 127;
+        edges[31] = (byte) 200;
+        edges[32] = (byte) 255;
+        ByteBuffer mask = ByteBuffer.allocate(EdgeMask.byteCount(width, 1));
+
+        EdgeMask.pack(edges, width, 1, mask);
+
+        mask.order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals((1 << 0) | (1 << 5) | (1 << 31), mask.getInt(0));
+        assertEquals(1, mask.getInt(4));
+        assertTrue(EdgeMask.isSet(mask, width, 5, 0));
+        assertFalse(EdgeMask.isSet(mask, width, 6, 0));
+    }
+
+    @Test
+    public void oddWidth_leavesPaddingBitsClear() {
+        int width = 37;
+        int height = 2;
+        byte[] edges = new byte[width * height];
+        Arrays.fill(edges, (byte) 255);
+        ByteBuffer mask = ByteBuffer.allocate(EdgeMask.byteCount(width, height)).order(ByteOrder.LITTLE_ENDIAN);
+
+        EdgeMask.pack(edges, width, height, mask);
+
+        for (int y = 0; y < height; y++) {
+            assertEquals(-1, mask.getInt(y * 8));
+            assertEquals(0x1F, mask.getInt(y * 8 + 4));
+        }
+    }
+
+    @Test
+    public void packThenUnpack_matchesThresholdedInput() {
+        Random random = new Random(18);
+        int[][] sizes = {{1, 1}, {31, 5}, {32, 4}, {333, 97}, {640, 480}};
+        for (int[] size : sizes) {
+            int width = size[0];
+            int height = size[1];
+            byte[] edges = new byte[width * height];
+            random.nextBytes(edges);
+            ByteBuffer mask = ByteBuffer.allocateDirect(EdgeMask.byteCount(width, height));
+
+            EdgeMask.pack(edges, width, height, mask);
+            byte[] unpacked = new byte[width * height];
+            EdgeMask.unpack(mask, width, height, unpacked);
+
+            for (int i = 0; i < edges.length; i++) {
+                byte expected = (edges[i] & 0xFF) >= EdgeMask.EDGE_THRESHOLD ? (byte) 255 : 0;
+                assertEquals(width + "x" + height + " pixel " + i, expected, unpacked[i]);
+            }
+        }
+    }
+
+    @Test
+    public void maskPosition_isHonoured() {
+        int width = 40;
+        byte[] edges = new byte[width];
+        edges[39] = (byte) 255;
+        ByteBuffer mask = ByteBuffer.allocate(16 + EdgeMask.byteCount(width, 1));
+        mask.position(16);
+
+        EdgeMask.pack(edges, width, 1, mask);
+
+        assertEquals(16, mask.position());
+        assertTrue(EdgeMask.isSet(mask, width, 39, 0));
+        assertEquals((byte) 0x80, mask.get(16 + 4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void smallMaskBuffer_isRejected() {
+        EdgeMask.pack(new byte[64 * 2], 64, 2, ByteBuffer.allocate(EdgeMask.byteCount(64, 2) - 1));
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.edgedetectionviewer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FramePipelineTest {
+
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 4;
+
+    private final FramePool pool = new FramePool(true);
+    private final List<Long> uploaded = Collections.synchronizedList(new ArrayList<Long>());
+    private volatile long uploadDelayMs = 0;
+    private volatile long slowSequence = -1;
+    private volatile long slowDetectMs = 0;
+    private volatile long failSequence = -1;
+
+    private FramePipeline<Long> pipeline;
+
+    @After
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+    }
+
+    private FramePipeline<Long> newPipeline(int queueCapacity) {
+        return new FramePipeline<>(new FramePipeline.Converter<Long>() {
+            @Override
+            public Frame convert(Long input) {
+                Frame frame = pool.acquire(WIDTH, HEIGHT, Frame.FORMAT_GRAY);
+                frame.setTimestampNs(input);
+                return frame;
+            }
+        }, new FramePipeline.Detector() {
+            @Override
+            public Frame detect(Frame input) {
+                if (input.getSequenceNumber() == slowSequence) {
+                    sleepQuietly(slowDetectMs);
+                }
+                if (input.getSequenceNumber() == failSequence) {
+                    return null;
+                }
+                Frame output = pool.acquire(WIDTH, HEIGHT, Frame.FORMAT_RGBA);
+                output.setTimestampNs(input.getTimestampNs());
+                return output;
+            }
+        }, new FramePipeline.Uploader() {
+            @Override
+            public void upload(Frame output) {
+                sleepQuietly(uploadDelayMs);
+                uploaded.add(output.getTimestampNs());
+            }
+        }, queueCapacity);
+    }
+
+    @Test
+    public void frames_flowThroughAllStagesInOrder() throws Exception {
+        pipeline = newPipeline(2);
+        pipeline.start();
+
+        for (long i = 1; i <= 50; i++) {
+            assertTrue(pipeline.submit(i));
+        }
+        waitForUploads(50);
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(Long.valueOf(i + 1), uploaded.get(i));
+        }
+        assertEquals(50, pipeline.getStageStats(FramePipeline.STAGE_CONVERT).getProcessedFrames());
+        assertEquals(50, pipeline.getStageStats(FramePipeline.STAGE_DETECT).getProcessedFrames());
+        waitForStage(FramePipeline.STAGE_UPLOAD, 50);
+    }
+
+    @Test
+    public void slowUpload_stallsUpstreamStages() throws Exception {
+        uploadDelayMs = 5;
+        pipeline = newPipeline(1);
+        pipeline.start();
+
+        for (long i = 1; i <= 10; i++) {
+            assertTrue(pipeline.submit(i));
+        }
+        waitForUploads(10);
+
+        long stall = pipeline.getStageStats(FramePipeline.STAGE_CONVERT).getStallNanos()
+                + pipeline.getStageStats(FramePipeline.STAGE_DETECT).getStallNanos();
+        assertTrue("Expected upstream stages to wait on the slow upload", stall > 0);
+    }
+
+    @Test
+    public void stop_releasesQueuedFrames() throws Exception {
+        uploadDelayMs = 20;
+        pipeline = newPipeline(2);
+        pipeline.start();
+
+        for (long i = 1; i <= 3; i++) {
+            pipeline.submit(i);
+        }
+        pipeline.stop();
+
+        assertEquals(0, pool.getInUse());
+        assertTrue(pool.getOutstandingFrames().isEmpty());
+        assertFalse(pipeline.submit(4L));
+    }
+
+    @Test
+    public void parallelWorkers_deliverInCaptureOrder() throws Exception {
+        slowSequence = 4;
+        slowDetectMs = 30;
+        pipeline = newPipeline(2);
+        pipeline.setDetectParallelism(3, 8);
+        pipeline.start();
+
+        for (long i = 1; i <= 30; i++) {
+            assertTrue(pipeline.submit(i));
+        }
+        waitForUploads(30);
+
+        for (int i = 0; i < 30; i++) {
+            assertEquals(Long.valueOf(i + 1), uploaded.get(i));
+        }
+        assertEquals(0, pipeline.getLateFrames());
+        assertEquals(30, pipeline.getStageStats(FramePipeline.STAGE_DETECT).getProcessedFrames());
+    }
+
+    @Test
+    public void slowWorker_beyondReorderDepth_isDroppedAsLate() throws Exception {
+        slowSequence = 0;
+        slowDetectMs = 300;
+        pipeline = newPipeline(4);
+        pipeline.setDetectParallelism(2, 1);
+        pipeline.start();
+
+        for (long i = 1; i <= 6; i++) {
+            assertTrue(pipeline.submit(i));
+        }
+        // Worker 0 holds sequences 0, 2 and 4; the other worker's frames overflow the depth and go first
+        waitForUploads(4);
+        waitForLateFrames(2);
+
+        assertEquals(Arrays.asList(2L, 4L, 5L, 6L), uploaded);
+    }
+
+    @Test
+    public void failedDetection_doesNotBlockLaterFrames() throws Exception {
+        failSequence = 1;
+        pipeline = newPipeline(2);
+        pipeline.setDetectParallelism(2, 4);
+        pipeline.start();
+
+        for (long i = 1; i <= 5; i++) {
+            assertTrue(pipeline.submit(i));
+        }
+        waitForUploads(4);
+
+        assertEquals(Arrays.asList(1L, 3L, 4L, 5L), uploaded);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setDetectParallelism_whileRunning_throws() {
+        pipeline = newPipeline(2);
+        pipeline.start();
+        pipeline.setDetectParallelism(2, 2);
+    }
+
+    @Test
+    public void statsSummary_hasOneLinePerStage() {
+        pipeline = newPipeline(2);
+
+        String[] lines = pipeline.getStatsSummary().split("\n");
+
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].startsWith("convert:"));
+        assertTrue(lines[1].startsWith("detect:"));
+        assertTrue(lines[2].startsWith("upload:"));
+        assertTrue(lines[3].startsWith("reorder:"));
+    }
+
+    private void waitForUploads(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (uploaded.size() < count) {
+            assertTrue("Timed out waiting for " + count + " uploads", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private void waitForLateFrames(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pipeline.getLateFrames() < count) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private void waitForStage(int stage, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pipeline.getStageStats(stage).getProcessedFrames() < count) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void sleepQuietly(long ms) {
+        if (ms <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
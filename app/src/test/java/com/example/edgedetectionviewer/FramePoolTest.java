@@ -0,0 +1,92 @@
+package com.example.edgedetectionviewer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for FramePool reuse, reference counting and leak tracking
+ */
+public class FramePoolTest {
+
+    @Test
+    public void releasedFrame_isReused() {
+        FramePool pool = new FramePool(false);
+
+        Frame first = pool.acquire(64, 48, Frame.FORMAT_RGBA);
+        assertTrue(first.getBuffer().isDirect());
+        assertEquals(64 * 48 * 4, first.getBuffer().capacity());
+        first.release();
+
+        Frame second = pool.acquire(64, 48, Frame.FORMAT_RGBA);
+        assertSame(first, second);
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        second.release();
+    }
+
+    @Test
+    public void framesAreKeyedBySize() {
+        FramePool pool = new FramePool(false);
+
+        Frame small = pool.acquire(64, 48, Frame.FORMAT_RGBA);
+        small.release();
+
+        Frame large = pool.acquire(128, 96, Frame.FORMAT_RGBA);
+        assertNotSame(small, large);
+        assertEquals(2, pool.getMisses());
+        large.release();
+    }
+
+    @Test
+    public void retainedFrame_returnsOnLastRelease() {
+        FramePool pool = new FramePool(false);
+
+        Frame frame = pool.acquire(16, 16, Frame.FORMAT_RGBA);
+        frame.retain();
+        assertEquals(2, frame.getRefCount());
+
+        frame.release();
+        assertEquals(1, pool.getInUse());
+
+        frame.release();
+        assertEquals(0, pool.getInUse());
+    }
+
+    @Test
+    public void highWaterMark_tracksPeakUsage() {
+        FramePool pool = new FramePool(false);
+
+        Frame a = pool.acquire(16, 16, Frame.FORMAT_RGBA);
+        Frame b = pool.acquire(16, 16, Frame.FORMAT_RGBA);
+        Frame c = pool.acquire(16, 16, Frame.FORMAT_RGBA);
+        a.release();
+        b.release();
+        c.release();
+        pool.acquire(16, 16, Frame.FORMAT_RGBA).release();
+
+        assertEquals(3, pool.getHighWaterMark());
+        assertEquals(1, pool.getHits());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void doubleRelease_throws() {
+        FramePool pool = new FramePool(false);
+        Frame frame = pool.acquire(16, 16, Frame.FORMAT_RGBA);
+        frame.release();
+        frame.release();
+    }
+
+    @Test
+    public void leakDetection_reportsUnreleasedFrames() {
+        FramePool pool = new FramePool(true);
+
+        Frame leaked = pool.acquire(16, 16, Frame.FORMAT_RGBA);
+        pool.acquire(16, 16, Frame.FORMAT_RGBA).release();
+
+        assertEquals(1, pool.getOutstandingFrames().size());
+
+        leaked.release();
+        assertEquals(0, pool.getOutstandingFrames().size());
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.edgedetectionviewer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FrameSchedulerTest {
+
+    private final List<Integer> processed = Collections.synchronizedList(new ArrayList<Integer>());
+    private final List<Integer> recycled = Collections.synchronizedList(new ArrayList<Integer>());
+    private final CountDownLatch firstFrameStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstFrame = new CountDownLatch(1);
+
+    private FrameScheduler<Integer> scheduler;
+
+    @After
+    public void tearDown() {
+        releaseFirstFrame.countDown();
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+    }
+
+    private FrameScheduler<Integer> newBlockingScheduler() {
+        return new FrameScheduler<>(new FrameScheduler.FrameHandler<Integer>() {
+            @Override
+            public void onFrame(Integer frame) {
+                if (frame == 0) {
+                    firstFrameStarted.countDown();
+                    awaitQuietly(releaseFirstFrame);
+                }
+                processed.add(frame);
+            }
+        }, new FrameScheduler.FrameRecycler<Integer>() {
+            @Override
+            public void recycle(Integer frame) {
+                recycled.add(frame);
+            }
+        });
+    }
+
+    @Test
+    public void submit_whileBusy_keepsOnlyLatestFrame() throws Exception {
+        scheduler = newBlockingScheduler();
+        scheduler.start();
+
+        scheduler.submit(0);
+        assertTrue(firstFrameStarted.await(5, TimeUnit.SECONDS));
+
+        // Processing thread is stuck on frame 0, so 1..4 replace each other in the mailbox
+        for (int i = 1; i <= 4; i++) {
+            scheduler.submit(i);
+        }
+        assertEquals(3, scheduler.getSupersededCount());
+        assertEquals(Integer.valueOf(1), recycled.get(0));
+
+        releaseFirstFrame.countDown();
+        waitForProcessed(2);
+        scheduler.stop();
+
+        assertEquals(2, scheduler.getProcessedCount());
+        assertEquals(5, scheduler.getSubmittedCount());
+        assertEquals(Arrays.asList(0, 4), processed);
+    }
+
+    @Test
+    public void everyFrame_isRecycledExactlyOnce() throws Exception {
+        scheduler = newBlockingScheduler();
+        scheduler.start();
+
+        scheduler.submit(0);
+        assertTrue(firstFrameStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 10; i++) {
+            scheduler.submit(i);
+        }
+        releaseFirstFrame.countDown();
+        waitForProcessed(2);
+        scheduler.stop();
+
+        List<Integer> sorted = new ArrayList<>(recycled);
+        Collections.sort(sorted);
+        for (int i = 0; i <= 10; i++) {
+            assertEquals(Integer.valueOf(i), sorted.get(i));
+        }
+        assertEquals(11, sorted.size());
+    }
+
+    @Test
+    public void stop_recyclesPendingFrameWithoutProcessing() throws Exception {
+        scheduler = newBlockingScheduler();
+        scheduler.start();
+
+        scheduler.submit(0);
+        assertTrue(firstFrameStarted.await(5, TimeUnit.SECONDS));
+        scheduler.submit(7);
+
+        releaseFirstFrame.countDown();
+        scheduler.stop();
+
+        assertFalse(scheduler.isRunning());
+        assertTrue(recycled.contains(7));
+        assertEquals(2, recycled.size());
+    }
+
+    @Test
+    public void submit_whenStopped_recyclesImmediately() {
+        scheduler = newBlockingScheduler();
+
+        scheduler.submit(3);
+
+        assertEquals(Collections.singletonList(3), recycled);
+        assertTrue(processed.isEmpty());
+        assertEquals(0, scheduler.getSubmittedCount());
+    }
+
+    @Test
+    public void restart_processesNewFrames() throws Exception {
+        scheduler = newBlockingScheduler();
+        releaseFirstFrame.countDown();
+
+        scheduler.start();
+        scheduler.submit(0);
+        waitForProcessed(1);
+        scheduler.stop();
+
+        scheduler.start();
+        scheduler.submit(5);
+        waitForProcessed(2);
+
+        assertEquals(Arrays.asList(0, 5), processed);
+    }
+
+    private void waitForProcessed(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.getProcessedCount() < count) {
+            assertTrue("Timed out waiting for " + count + " processed frames", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
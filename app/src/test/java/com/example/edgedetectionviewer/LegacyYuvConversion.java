@@ -0,0 +1,43 @@
+package com.example.edgedetectionviewer;
+
+/**
+ * Copy of the original CameraRenderer conversion loop (packed NV21 input)
+ * Used as the reference for correctness tests and as the benchmark baseline
+ */
+final class LegacyYuvConversion {
+
+    private LegacyYuvConversion() {
+    }
+
+    static void convertNV21ToRGBA(byte[] yuv, byte[] rgba, int width, int height) {
+        int frameSize = width * height;
+
+        for (int j = 0, yp = 0; j < height; j++) {
+            int uvp = frameSize + (j >> 1) * width, u = 0, v = 0;
+            for (int i = 0; i < width; i++, yp++) {
+                int y = (0xff & yuv[yp]) - 16;
+                if (y < 0) y = 0;
+
+                if ((i & 1) == 0) {
+                    v = (0xff & yuv[uvp++]) - 128;
+                    u = (0xff & yuv[uvp++]) - 128;
+                }
+
+                int y1192 = 1192 * y;
+                int r = (y1192 + 1634 * v);
+                int g = (y1192 - 833 * v - 400 * u);
+                int b = (y1192 + 2066 * u);
+
+                if (r < 0) r = 0; else if (r > 262143) r = 262143;
+                if (g < 0) g = 0; else if (g > 262143) g = 262143;
+                if (b < 0) b = 0; else if (b > 262143) b = 262143;
+
+                int pixelIndex = yp * 4;
+                rgba[pixelIndex] = (byte) ((r >> 10) & 0xff);     // R
+                rgba[pixelIndex + 1] = (byte) ((g >> 10) & 0xff); // G
+                rgba[pixelIndex + 2] = (byte) ((b >> 10) & 0xff); // B
+                rgba[pixelIndex + 3] = (byte) 255;                // A
+            }
+        }
+    }
+}
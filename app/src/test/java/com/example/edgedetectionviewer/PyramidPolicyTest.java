@@ -0,0 +1,116 @@
+package com.example.edgedetectionviewer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for PyramidPolicy level selection
+ */
+public class PyramidPolicyTest {
+
+    private static final long BUDGET_NANOS = 33_000_000L;
+
+    @Test
+    public void scaledSize_roundsUpLikePyrDown() {
+        assertEquals(1920, PyramidPolicy.scaledSize(1920, 0));
+        assertEquals(960, PyramidPolicy.scaledSize(1920, 1));
+        assertEquals(270, PyramidPolicy.scaledSize(1080, 2));
+        assertEquals(167, PyramidPolicy.scaledSize(333, 1));
+        assertEquals(84, PyramidPolicy.scaledSize(333, 2));
+        assertEquals(1, PyramidPolicy.scaledSize(1, 3));
+    }
+
+    @Test
+    public void framesWithinBudget_stayAtFullResolution() {
+        PyramidPolicy policy = new PyramidPolicy(BUDGET_NANOS, 2);
+
+        record(policy, 0, 30, 25_000_000L);
+
+        assertEquals(0, policy.getLevel());
+        assertEquals(0, policy.getLevelChanges());
+    }
+
+    @Test
+    public void slowFrames_stepToCoarserLevels() {
+        PyramidPolicy policy = new PyramidPolicy(BUDGET_NANOS, 2);
+
+        record(policy, 0, 10, 120_000_000L);
+        assertEquals(1, policy.getLevel());
+
+        // Still over budget at half resolution
+        record(policy, 1, 10, 40_000_000L);
+        assertEquals(2, policy.getLevel());
+
+        // Never beyond the configured maximum
+        record(policy, 2, 20, 40_000_000L);
+        assertEquals(2, policy.getLevel());
+    }
+
+    @Test
+    public void oneSlowFrame_doesNotChangeLevel() {
+        PyramidPolicy policy = new PyramidPolicy(BUDGET_NANOS, 2);
+
+        record(policy, 0, 9, 10_000_000L);
+        policy.recordFrame(0, 200_000_000L);
+        record(policy, 0, 10, 10_000_000L);
+
+        assertEquals(0, policy.getLevel());
+    }
+
+    @Test
+    public void fastFrames_returnToFinerLevelWithHysteresis() {
+        PyramidPolicy policy = new PyramidPolicy(BUDGET_NANOS, 2);
+        record(policy, 0, 10, 60_000_000L);
+        assertEquals(1, policy.getLevel());
+
+        // 15 ms at half resolution predicts 60 ms at full, so stay
+        record(policy, 1, 30, 15_000_000L);
+        assertEquals(1, policy.getLevel());
+
+        // 4 ms predicts 16 ms, comfortably inside the budget
+        record(policy, 1, 20, 4_000_000L);
+        assertEquals(0, policy.getLevel());
+    }
+
+    @Test
+    public void samplesFromOtherLevels_areIgnored() {
+        PyramidPolicy policy = new PyramidPolicy(BUDGET_NANOS, 2);
+        record(policy, 0, 10, 60_000_000L);
+        assertEquals(1, policy.getLevel());
+
+        // Frames converted before the change finish late and must not push the level further
+        record(policy, 0, 20, 60_000_000L);
+        assertEquals(1, policy.getLevel());
+    }
+
+    @Test
+    public void fixedLevel_overridesMeasurements() {
+        PyramidPolicy policy = new PyramidPolicy(BUDGET_NANOS, 2);
+
+        policy.setFixedLevel(1);
+        assertEquals(1, policy.getLevel());
+        record(policy, 1, 20, 200_000_000L);
+        assertEquals(1, policy.getLevel());
+
+        policy.setFixedLevel(PyramidPolicy.ADAPTIVE);
+        record(policy, 1, 10, 200_000_000L);
+        assertEquals(2, policy.getLevel());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fixedLevelAboveMaximum_isRejected() {
+        new PyramidPolicy(BUDGET_NANOS, 1).setFixedLevel(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maximumBeyondNativeLimit_isRejected() {
+        new PyramidPolicy(BUDGET_NANOS, PyramidPolicy.MAX_LEVEL + 1);
+    }
+
+    private static void record(PyramidPolicy policy, int level, int frames, long detectNanos) {
+        for (int i = 0; i < frames; i++) {
+            policy.recordFrame(level, detectNanos);
+        }
+    }
+}
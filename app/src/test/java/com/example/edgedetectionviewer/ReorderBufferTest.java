@@ -0,0 +1,101 @@
+package com.example.edgedetectionviewer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ReorderBufferTest {
+
+    private final FramePool pool = new FramePool(true);
+
+    private Frame frame(long sequence) {
+        Frame frame = pool.acquire(2, 2, Frame.FORMAT_GRAY);
+        frame.setSequenceNumber(sequence);
+        return frame;
+    }
+
+    private static long emit(ReorderBuffer buffer, long finishedBelow) {
+        Frame frame = buffer.poll(finishedBelow);
+        if (frame == null) {
+            return -1;
+        }
+        long sequence = frame.getSequenceNumber();
+        frame.release();
+        return sequence;
+    }
+
+    @Test
+    public void outOfOrderFrames_areEmittedInSequence() {
+        ReorderBuffer buffer = new ReorderBuffer(4);
+
+        buffer.insert(frame(1));
+        buffer.insert(frame(2));
+        assertEquals(-1, emit(buffer, 0));
+
+        buffer.insert(frame(0));
+        assertEquals(0, emit(buffer, 0));
+        assertEquals(1, emit(buffer, 0));
+        assertEquals(2, emit(buffer, 0));
+        assertEquals(-1, emit(buffer, 0));
+
+        assertEquals(3, buffer.getEmittedFrames());
+        assertEquals(0, pool.getInUse());
+    }
+
+    @Test
+    public void exceedingMaxDepth_skipsGapAndDropsLateFrame() {
+        ReorderBuffer buffer = new ReorderBuffer(2);
+
+        buffer.insert(frame(1));
+        assertEquals(-1, emit(buffer, 0));
+        buffer.insert(frame(2));
+        assertEquals(-1, emit(buffer, 0));
+
+        // Third frame waiting on sequence 0 exceeds the depth, so 0 is given up on
+        buffer.insert(frame(3));
+        assertEquals(1, emit(buffer, 0));
+        assertEquals(2, emit(buffer, 0));
+        assertEquals(3, emit(buffer, 0));
+        assertEquals(1, buffer.getSkippedSequences());
+
+        assertFalse(buffer.insert(frame(0)));
+        assertEquals(1, buffer.getLateFrames());
+        assertEquals(0, pool.getInUse());
+    }
+
+    @Test
+    public void finishedSequences_withoutFrames_areSkipped() {
+        ReorderBuffer buffer = new ReorderBuffer(4);
+
+        // Sequence 0 failed in its worker; 1 is here and everything below 2 is finished
+        buffer.insert(frame(1));
+        assertEquals(1, emit(buffer, 2));
+        assertEquals(1, buffer.getSkippedSequences());
+
+        // Nothing pending, but the gap still advances
+        assertEquals(-1, emit(buffer, 5));
+        buffer.insert(frame(5));
+        assertEquals(5, emit(buffer, 5));
+    }
+
+    @Test
+    public void reset_releasesHeldFrames() {
+        ReorderBuffer buffer = new ReorderBuffer(4);
+
+        buffer.insert(frame(3));
+        buffer.insert(frame(4));
+        assertEquals(2, buffer.getDepth());
+
+        buffer.reset(0);
+
+        assertEquals(0, buffer.getDepth());
+        assertEquals(0, pool.getInUse());
+        buffer.insert(frame(0));
+        assertEquals(0, emit(buffer, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroDepth_throws() {
+        new ReorderBuffer(0);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.edgedetectionviewer;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SpscRingBufferTest {
+
+    @Test
+    public void offerAndPoll_preserveFifoOrder() {
+        SpscRingBuffer<Integer> queue = new SpscRingBuffer<>(4);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(99));
+        assertEquals(4, queue.size());
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void capacity_roundsUpToPowerOfTwo() {
+        assertEquals(1, new SpscRingBuffer<Integer>(1).capacity());
+        assertEquals(4, new SpscRingBuffer<Integer>(3).capacity());
+        assertEquals(8, new SpscRingBuffer<Integer>(8).capacity());
+    }
+
+    @Test
+    public void wrapsAroundManyTimes() {
+        SpscRingBuffer<Integer> queue = new SpscRingBuffer<>(2);
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(queue.offer(i));
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertEquals(0, queue.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCapacity_throws() {
+        new SpscRingBuffer<Integer>(0);
+    }
+
+    @Test
+    public void concurrentProducerConsumer_deliversEveryItemInOrder() throws Exception {
+        final int count = 200000;
+        final SpscRingBuffer<Integer> queue = new SpscRingBuffer<>(8);
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int expected = 0;
+                while (expected < count) {
+                    Integer item = queue.poll();
+                    if (item == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    if (item != expected) {
+                        failure.set("Expected " + expected + " but got " + item);
+                        return;
+                    }
+                    expected++;
+                }
+            }
+        });
+        consumer.start();
+
+        for (int i = 0; i < count; i++) {
+            while (!queue.offer(i)) {
+                Thread.yield();
+            }
+        }
+
+        consumer.join(30000);
+        assertFalse(consumer.isAlive());
+        assertNull(failure.get());
+        assertTrue(queue.isEmpty());
+    }
+}
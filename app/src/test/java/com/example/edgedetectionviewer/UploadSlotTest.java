@@ -0,0 +1,109 @@
+package com.example.edgedetectionviewer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class UploadSlotTest {
+
+    private final List<Integer> recycled = Collections.synchronizedList(new ArrayList<Integer>());
+
+    private UploadSlot<Integer> newSlot() {
+        return new UploadSlot<>(new FrameScheduler.FrameRecycler<Integer>() {
+            @Override
+            public void recycle(Integer frame) {
+                recycled.add(frame);
+            }
+        });
+    }
+
+    @Test
+    public void take_returnsNewestFrameAndRecyclesTheRest() {
+        UploadSlot<Integer> slot = newSlot();
+        for (int i = 0; i < 4; i++) {
+            slot.offer(i);
+        }
+
+        assertEquals(Integer.valueOf(3), slot.take());
+        assertEquals(Arrays.asList(0, 1, 2), recycled);
+        assertEquals(4, slot.getOfferedCount());
+        assertEquals(3, slot.getSupersededCount());
+        assertEquals(1, slot.getTakenCount());
+    }
+
+    @Test
+    public void take_whenEmpty_returnsNull() {
+        UploadSlot<Integer> slot = newSlot();
+        assertNull(slot.take());
+
+        slot.offer(7);
+        assertTrue(slot.hasPending());
+        assertEquals(Integer.valueOf(7), slot.take());
+        assertFalse(slot.hasPending());
+        assertNull(slot.take());
+        assertEquals(0, slot.getSupersededCount());
+    }
+
+    @Test
+    public void clear_recyclesPendingFrame() {
+        UploadSlot<Integer> slot = newSlot();
+        slot.offer(5);
+        slot.clear();
+
+        assertNull(slot.take());
+        assertEquals(Collections.singletonList(5), recycled);
+        assertEquals(0, slot.getTakenCount());
+    }
+
+    @Test
+    public void concurrentOffers_everyFrameIsTakenOrRecycledOnce() throws Exception {
+        final UploadSlot<Integer> slot = newSlot();
+        final int producers = 3;
+        final int framesPerProducer = 10000;
+        final CountDownLatch done = new CountDownLatch(producers);
+        final List<Integer> taken = new ArrayList<>();
+
+        for (int p = 0; p < producers; p++) {
+            final int base = p * framesPerProducer;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < framesPerProducer; i++) {
+                        slot.offer(base + i);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        // Stands in for the GL thread drawing while the producers run
+        while (done.getCount() > 0) {
+            Integer frame = slot.take();
+            if (frame != null) {
+                taken.add(frame);
+            }
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Integer last = slot.take();
+        if (last != null) {
+            taken.add(last);
+        }
+
+        List<Integer> all = new ArrayList<>(taken);
+        all.addAll(recycled);
+        Collections.sort(all);
+        assertEquals(producers * framesPerProducer, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(Integer.valueOf(i), all.get(i));
+        }
+        assertEquals(taken.size(), slot.getTakenCount());
+        assertEquals(recycled.size(), slot.getSupersededCount());
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.edgedetectionviewer;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Host-side benchmark comparing YuvConverter with the original per-pixel loop,
+ * and serial against row-band parallel conversion at 720p, 1080p and 4K
+ * Results are printed to stdout; run with ./gradlew testDebugUnitTest -i to see them
+ */
+public class YuvConverterBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 20;
+
+    private static final int[][] RESOLUTIONS = {
+            {1280, 720},
+            {1920, 1080},
+            {3840, 2160}
+    };
+
+    @Test
+    public void benchmark_legacyVsConverter_1080p() {
+        int width = 1920;
+        int height = 1080;
+
+        byte[] nv21 = randomNV21(width, height);
+        byte[] legacyOut = new byte[width * height * 4];
+        byte[] converterOut = new byte[width * height * 4];
+        YuvConverter converter = new YuvConverter();
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            LegacyYuvConversion.convertNV21ToRGBA(nv21, legacyOut, width, height);
+            converter.convert(nv21, YuvConverter.FORMAT_NV21, width, height, converterOut);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            LegacyYuvConversion.convertNV21ToRGBA(nv21, legacyOut, width, height);
+        }
+        double legacyMs = (System.nanoTime() - start) / 1e6 / ITERATIONS;
+
+        double converterMs = timeConverter(converter, nv21, width, height, converterOut);
+
+        System.out.println(String.format("YUV->RGBA %dx%d: legacy %.2f ms, YuvConverter %.2f ms (%.2fx)",
+                width, height, legacyMs, converterMs, legacyMs / converterMs));
+
+        assertArrayEquals(legacyOut, converterOut);
+    }
+
+    @Test
+    public void benchmark_serialVsParallel() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int[] levels = {1, 2, 4, cores};
+
+        for (int[] resolution : RESOLUTIONS) {
+            int width = resolution[0];
+            int height = resolution[1];
+            byte[] nv21 = randomNV21(width, height);
+            byte[] serialOut = new byte[width * height * 4];
+            byte[] parallelOut = new byte[width * height * 4];
+
+            YuvConverter serial = new YuvConverter(1);
+            double serialMs = timeConverter(serial, nv21, width, height, serialOut);
+
+            StringBuilder line = new StringBuilder(String.format("YUV->RGBA %dx%d: serial %.2f ms",
+                    width, height, serialMs));
+
+            for (int level : levels) {
+                if (level <= 1) {
+                    continue;
+                }
+                YuvConverter parallel = new YuvConverter(level);
+                try {
+                    double parallelMs = timeConverter(parallel, nv21, width, height, parallelOut);
+                    line.append(String.format(", x%d %.2f ms (%.2fx)", level, parallelMs, serialMs / parallelMs));
+                    assertArrayEquals(serialOut, parallelOut);
+                } finally {
+                    parallel.release();
+                }
+            }
+
+            System.out.println(line);
+        }
+    }
+
+    private static double timeConverter(YuvConverter converter, byte[] nv21, int width, int height, byte[] out) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            converter.convert(nv21, YuvConverter.FORMAT_NV21, width, height, out);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            converter.convert(nv21, YuvConverter.FORMAT_NV21, width, height, out);
+        }
+        return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    }
+
+    private static byte[] randomNV21(int width, int height) {
+        byte[] nv21 = new byte[width * height * 3 / 2];
+        new Random(42).nextBytes(nv21);
+        return nv21;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.edgedetectionviewer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for YuvConverter layouts and strides
+ */
+public class YuvConverterTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    /**
+     * Build a packed NV21 frame with random content
+     */
+    private static byte[] randomNV21(int width, int height, long seed) {
+        byte[] nv21 = new byte[width * height * 3 / 2];
+        new Random(seed).nextBytes(nv21);
+        return nv21;
+    }
+
+    /**
+     * Split packed NV21 into separate U and V planes (I420 order)
+     */
+    private static byte[] nv21ToI420(byte[] nv21, int width, int height) {
+        int frameSize = width * height;
+        int chromaSize = frameSize / 4;
+        byte[] i420 = new byte[nv21.length];
+        System.arraycopy(nv21, 0, i420, 0, frameSize);
+        for (int i = 0; i < chromaSize; i++) {
+            i420[frameSize + i] = nv21[frameSize + 2 * i + 1];              // U
+            i420[frameSize + chromaSize + i] = nv21[frameSize + 2 * i];     // V
+        }
+        return i420;
+    }
+
+    /**
+     * Swap chroma byte order NV21 -> NV12
+     */
+    private static byte[] nv21ToNV12(byte[] nv21, int width, int height) {
+        int frameSize = width * height;
+        byte[] nv12 = nv21.clone();
+        for (int i = frameSize; i < nv21.length; i += 2) {
+            nv12[i] = nv21[i + 1];
+            nv12[i + 1] = nv21[i];
+        }
+        return nv12;
+    }
+
+    @Test
+    public void packedNV21_matchesLegacyLoop() {
+        byte[] nv21 = randomNV21(WIDTH, HEIGHT, 1);
+        byte[] expected = new byte[WIDTH * HEIGHT * 4];
+        byte[] actual = new byte[WIDTH * HEIGHT * 4];
+
+        LegacyYuvConversion.convertNV21ToRGBA(nv21, expected, WIDTH, HEIGHT);
+        new YuvConverter().convert(nv21, YuvConverter.FORMAT_NV21, WIDTH, HEIGHT, actual);
+
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void packedI420AndNV12_matchNV21() {
+        byte[] nv21 = randomNV21(WIDTH, HEIGHT, 2);
+        byte[] expected = new byte[WIDTH * HEIGHT * 4];
+        byte[] actual = new byte[WIDTH * HEIGHT * 4];
+        YuvConverter converter = new YuvConverter();
+
+        converter.convert(nv21, YuvConverter.FORMAT_NV21, WIDTH, HEIGHT, expected);
+
+        converter.convert(nv21ToI420(nv21, WIDTH, HEIGHT), YuvConverter.FORMAT_I420, WIDTH, HEIGHT, actual);
+        assertArrayEquals(expected, actual);
+
+        converter.convert(nv21ToNV12(nv21, WIDTH, HEIGHT), YuvConverter.FORMAT_NV12, WIDTH, HEIGHT, actual);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void paddedPlanarPlanes_matchPacked() {
+        byte[] nv21 = randomNV21(WIDTH, HEIGHT, 3);
+        byte[] i420 = nv21ToI420(nv21, WIDTH, HEIGHT);
+        int yStride = WIDTH + 32;
+        int uvStride = WIDTH / 2 + 16;
+
+        ByteBuffer y = ByteBuffer.allocateDirect(yStride * HEIGHT);
+        ByteBuffer u = ByteBuffer.allocateDirect(uvStride * HEIGHT / 2);
+        ByteBuffer v = ByteBuffer.allocateDirect(uvStride * HEIGHT / 2);
+        for (int row = 0; row < HEIGHT; row++) {
+            y.position(row * yStride);
+            y.put(i420, row * WIDTH, WIDTH);
+        }
+        int frameSize = WIDTH * HEIGHT;
+        for (int row = 0; row < HEIGHT / 2; row++) {
+            u.position(row * uvStride);
+            u.put(i420, frameSize + row * WIDTH / 2, WIDTH / 2);
+            v.position(row * uvStride);
+            v.put(i420, frameSize + frameSize / 4 + row * WIDTH / 2, WIDTH / 2);
+        }
+        y.position(0);
+        u.position(0);
+        v.position(0);
+
+        byte[] expected = new byte[WIDTH * HEIGHT * 4];
+        byte[] actual = new byte[WIDTH * HEIGHT * 4];
+        YuvConverter converter = new YuvConverter();
+        converter.convert(nv21, YuvConverter.FORMAT_NV21, WIDTH, HEIGHT, expected);
+        converter.convert(y, u, v, yStride, uvStride, 1, WIDTH, HEIGHT, actual);
+
+        assertArrayEquals(expected, actual);
+        assertEquals("Plane positions must be restored", 0, y.position());
+    }
+
+    @Test
+    public void paddedSemiPlanarPlanes_matchPacked() {
+        // Camera2 style NV21: V buffer starts at the interleaved block, U buffer one byte later
+        byte[] nv21 = randomNV21(WIDTH, HEIGHT, 4);
+        int yStride = WIDTH + 64;
+        int uvStride = WIDTH + 64;
+
+        ByteBuffer y = ByteBuffer.allocateDirect(yStride * HEIGHT);
+        ByteBuffer vu = ByteBuffer.allocateDirect(uvStride * HEIGHT / 2);
+        for (int row = 0; row < HEIGHT; row++) {
+            y.position(row * yStride);
+            y.put(nv21, row * WIDTH, WIDTH);
+        }
+        for (int row = 0; row < HEIGHT / 2; row++) {
+            vu.position(row * uvStride);
+            vu.put(nv21, WIDTH * HEIGHT + row * WIDTH, WIDTH);
+        }
+        y.position(0);
+        vu.position(0);
+        ByteBuffer v = vu.duplicate();
+        vu.position(1);
+        ByteBuffer u = vu.slice();
+
+        byte[] expected = new byte[WIDTH * HEIGHT * 4];
+        byte[] actual = new byte[WIDTH * HEIGHT * 4];
+        YuvConverter converter = new YuvConverter();
+        converter.convert(nv21, YuvConverter.FORMAT_NV21, WIDTH, HEIGHT, expected);
+        converter.convert(y, u, v, yStride, uvStride, 2, WIDTH, HEIGHT, actual);
+
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void parallelBands_matchSerial() {
+        // Odd row count per band exercises chroma-row alignment at band edges
+        int width = 96;
+        int height = 202;
+        byte[] nv21 = randomNV21(width, height, 6);
+        byte[] expected = new byte[width * height * 4];
+        byte[] actual = new byte[width * height * 4];
+
+        new YuvConverter().convert(nv21, YuvConverter.FORMAT_NV21, width, height, expected);
+
+        YuvConverter parallel = new YuvConverter(3);
+        try {
+            parallel.convert(nv21, YuvConverter.FORMAT_NV21, width, height, actual);
+            assertArrayEquals(expected, actual);
+
+            parallel.setParallelism(4);
+            parallel.convert(nv21ToI420(nv21, width, height), YuvConverter.FORMAT_I420, width, height, actual);
+            assertArrayEquals(expected, actual);
+        } finally {
+            parallel.release();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void outputTooSmall_throws() {
+        byte[] nv21 = randomNV21(WIDTH, HEIGHT, 5);
+        new YuvConverter().convert(nv21, YuvConverter.FORMAT_NV21, WIDTH, HEIGHT, new byte[16]);
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Unpacking for the one-bit-per-pixel edge mask produced by the native detector
+ * Each row is maskWordsPerRow(width) little-endian 32-bit words; pixel x is bit (x % 32)
+ * of word (x / 32). Unused bits at the end of a row are zero.
+ */
+
+const LITTLE_ENDIAN = new Uint8Array(new Uint32Array([1]).buffer)[0] === 1;
+
+// RGBA pixels as platform-order 32-bit values: opaque white and opaque black
+const EDGE_PIXEL = 0xffffffff;
+const BACKGROUND_PIXEL = LITTLE_ENDIAN ? 0xff000000 : 0x000000ff;
+
+/**
+ * Number of 32-bit words in one mask row
+ * @param width Image width in pixels
+ */
+export function maskWordsPerRow(width: number): number {
+    return (width + 31) >>> 5;
+}
+
+/**
+ * Total mask size in bytes
+ * @param width Image width in pixels
+ * @param height Image height in pixels
+ */
+export function maskByteLength(width: number, height: number): number {
+    return maskWordsPerRow(width) * 4 * height;
+}
+
+/**
+ * Expand a packed mask to RGBA pixels (white edges on opaque black)
+ * @param mask Packed mask bytes
+ * @param width Image width in pixels
+ * @param height Image height in pixels
+ * @param out Optional RGBA array of width * height * 4 bytes to reuse between frames
+ * @returns RGBA pixel data ready for ImageData
+ */
+export function unpackEdgeMask(
+    mask: Uint8Array,
+    width: number,
+    height: number,
+    out?: Uint8ClampedArray
+): Uint8ClampedArray {
+    const wordsPerRow = maskWordsPerRow(width);
+    if (mask.byteLength < maskByteLength(width, height)) {
+        throw new Error(`Edge mask has ${mask.byteLength} bytes, need ${maskByteLength(width, height)}`);
+    }
+
+    const pixels = out ?? new Uint8ClampedArray(width * height * 4);
+    if (pixels.length < width * height * 4) {
+        throw new Error(`Output holds ${pixels.length} bytes, need ${width * height * 4}`);
+    }
+
+    // Write whole pixels as 32-bit values (out must start on a 4-byte boundary)
+    const pixelWords = new Uint32Array(pixels.buffer, pixels.byteOffset, width * height);
+    const view = new DataView(mask.buffer, mask.byteOffset, mask.byteLength);
+
+    for (let y = 0; y < height; y++) {
+        const rowStart = y * width;
+        for (let word = 0; word < wordsPerRow; word++) {
+            let bits = view.getUint32((y * wordsPerRow + word) * 4, true);
+            const x = word * 32;
+            const end = Math.min(x + 32, width);
+            for (let px = x; px < end; px++) {
+                pixelWords[rowStart + px] = bits & 1 ? EDGE_PIXEL : BACKGROUND_PIXEL;
+                bits >>>= 1;
+            }
+        }
+    }
+    return pixels;
+}
+
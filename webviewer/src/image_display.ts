@@ -1,3 +1,5 @@
+import { unpackEdgeMask } from './edge_mask';
+
 /**
  * Image display utility class for canvas operations
  * Handles drawing images, edge detection patterns, and canvas manipulations
@@ -6,6 +8,7 @@ export class ImageDisplay {
     private canvas: HTMLCanvasElement;
     private ctx: CanvasRenderingContext2D;
     private currentImage: HTMLImageElement | null = null;
+    private maskPixels: Uint8ClampedArray | null = null;
 
     constructor(canvas: HTMLCanvasElement) {
         this.canvas = canvas;
@@ -129,11 +132,11 @@ export class ImageDisplay {
 
     /**
      * Draw image data from byte array (RGBA format)
-     * @param data Uint8Array containing RGBA pixel data
+     * @param data Array containing RGBA pixel data
      * @param width Image width
      * @param height Image height
      */
-    public drawImageData(data: Uint8Array, width: number, height: number): void {
+    public drawImageData(data: Uint8Array | Uint8ClampedArray, width: number, height: number): void {
         this.clear();
 
         // Create ImageData object
@@ -161,6 +164,18 @@ export class ImageDisplay {
         this.ctx.drawImage(tempCanvas, offsetX, offsetY, scaledWidth, scaledHeight);
     }
 
+    /**
+     * Draw a bit-packed edge mask as white edges on black
+     * @param mask Packed mask bytes (see edge_mask.ts for the layout)
+     * @param width Image width
+     * @param height Image height
+     */
+    public drawEdgeMask(mask: Uint8Array, width: number, height: number): void {
+        this.maskPixels = unpackEdgeMask(mask, width, height,
+            this.maskPixels && this.maskPixels.length === width * height * 4 ? this.maskPixels : undefined);
+        this.drawImageData(this.maskPixels, width, height);
+    }
+
     /**
      * Clear the canvas
      */